@@ -0,0 +1,72 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the extraction of the links of interest by the built-in checkers.
+ * <p>
+ * {@link #extract()} evaluates the rule of the checker against a page that has already been fetched and parsed, so it
+ * covers selecting the containers, matching the keywords and extracting the links. {@link #endToEnd()} additionally
+ * fetches and parses the page from a loopback {@link ShopSimulator}, as a check of the daemon does.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckerBenchmark {
+    @Param({"zolonda", "wbw"})
+    public String service;
+
+    @Param({"20", "200", "2000"})
+    public int items;
+
+    private ShopSimulator server;
+    private String url;
+    private Website website;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HostRateLimiter.setLimit(0, 0);
+        server = new ShopSimulator();
+        url = server.url(service, items);
+        website = new Website(url);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public List<String> extract() {
+        return check(website).getHrefs();
+    }
+
+    @Benchmark
+    public List<String> endToEnd() throws IOException {
+        return check(new Website(url)).getHrefs();
+    }
+
+    private RuleChecker check(Website website) {
+        return "zolonda".equals(service) ? new ZolondaChecker(website) : new WBWChecker(website);
+    }
+}
@@ -0,0 +1,188 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.util.Random;
+
+/**
+ * Generates listing pages shaped like the webpages watched by the built-in checkers.
+ * <p>
+ * The pages follow the markup the rules of {@link ZolondaChecker} and {@link WBWChecker} are written against and
+ * surround the listing with the usual page chrome (stylesheets, navigation, inline scripts and a footer), so the
+ * parser has to work through roughly as much unrelated markup as on the real webpages. Every page is generated from
+ * a fixed seed, so each run of a benchmark sees exactly the same input.
+ * </p>
+ */
+public class Fixtures {
+    /**
+     * The share of items that contain one of the keywords of the rule.
+     */
+    static final double MATCH_RATE = 0.1;
+
+    private static final String[] WORDS = {
+        "Sneaker", "Jacke", "Hemd", "Kleid", "Mantel", "Hose", "Stiefel", "Pullover", "Tasche", "Schal",
+        "Wohnung", "Balkon", "Altbau", "Neubau", "Zimmer", "Garten", "Aufzug", "Keller", "Dachgeschoss", "Loggia"
+    };
+    private static final String[] DISTRICTS = {
+        "Pempelfort", "Bilk", "Flingern", "Oberkassel", "Derendorf", "Gerresheim", "Eller"
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Generates a listing page for the given service.
+     *
+     * @param service The service name, either "zolonda", "zolonda-state" or "wbw".
+     * @param items   The number of items on the page.
+     * @return The HTML of the page.
+     * @throws IllegalArgumentException If there is no fixture for the service.
+     */
+    public static String page(String service, int items) {
+        return page(service, items, 0);
+    }
+
+    /**
+     * Generates a version of a listing page for the given service.
+     * <p>
+     * Every version is generated from a different seed, so consecutive versions of a page differ in their items.
+     * </p>
+     *
+     * @param service The service name, either "zolonda", "zolonda-state" or "wbw".
+     * @param items   The number of items on the page.
+     * @param version The version of the page.
+     * @return The HTML of the page.
+     * @throws IllegalArgumentException If there is no fixture for the service.
+     */
+    public static String page(String service, int items, long version) {
+        return switch (service) {
+            case "zolonda" -> zolonda(items, version);
+            case "zolonda-state" -> zolondaState(items, version);
+            case "wbw" -> wbw(items, version);
+            default -> throw new IllegalArgumentException("No fixture for service: " + service);
+        };
+    }
+
+    /**
+     * Generates a Zolonda listing page whose articles are held in a hidden container.
+     *
+     * @param items   The number of articles on the page.
+     * @param version The version of the page.
+     * @return The HTML of the page.
+     */
+    public static String zolonda(int items, long version) {
+        return zolonda(items, version, false);
+    }
+
+    /**
+     * Generates a Zolonda listing page that additionally embeds the state of its articles as JSON, as the shop's
+     * server-rendered pages do.
+     * <p>
+     * The articles are the same as those of {@link #zolonda(int, long)}; the JSON state follows the listing in a
+     * {@code <script id="__STATE__" type="application/json">} element, with one object per article holding its
+     * {@code sku}, {@code name}, {@code url}, {@code price} and {@code isDeal} flag next to nested brand and size data.
+     * </p>
+     *
+     * @param items   The number of articles on the page.
+     * @param version The version of the page.
+     * @return The HTML of the page.
+     */
+    public static String zolondaState(int items, long version) {
+        return zolonda(items, version, true);
+    }
+
+    private static String zolonda(int items, long version, boolean state) {
+        Random random = new Random(items * 31L + version);
+        StringBuilder html = new StringBuilder(items * (state ? 800 : 600));
+        StringBuilder json = new StringBuilder(state ? items * 200 : 0);
+        header(html, "Zolonda - Deals");
+        html.append("<main><div class=\"grid\" hidden>\n");
+        for (int i = 0; i < items; i++) {
+            boolean deal = random.nextDouble() < MATCH_RATE;
+            String brand = word(random);
+            String name = word(random) + ' ' + word(random);
+            int price = 10 + random.nextInt(190);
+            if (state) {
+                json.append(i == 0 ? "" : ",").append("{\"sku\":\"SKU").append(100000 + i)
+                    .append("\",\"name\":\"").append(name)
+                    .append("\",\"brand\":{\"name\":\"").append(brand).append("\",\"logo\":\"/img/b.svg\"}")
+                    .append(",\"url\":\"https://zolonda.example/p/").append(i)
+                    .append("\",\"price\":\"").append(price).append(".99\",\"isDeal\":").append(deal)
+                    .append(",\"sizes\":[36,38,40,42],\"media\":[{\"src\":\"/img/").append(i)
+                    .append(".webp\",\"role\":\"default\"}]}");
+            }
+            html.append("<article class=\"product\" data-sku=\"SKU").append(100000 + i).append("\">")
+                .append("<a href=\"https://zolonda.example/p/").append(i).append("\">")
+                .append("<img src=\"/img/").append(i).append(".webp\" alt=\"\" loading=\"lazy\"></a>")
+                .append("<div class=\"meta\"><span class=\"brand\">").append(brand).append("</span>")
+                .append("<h3 class=\"name\">").append(name).append("</h3>")
+                .append("<span class=\"price\">").append(price).append(",99 &euro;</span>");
+            if (deal) {
+                html.append("<span class=\"badge\">Deal</span>");
+            }
+            html.append("<ul class=\"sizes\">");
+            for (int size = 36; size < 44; size += 2) {
+                html.append("<li>").append(size).append("</li>");
+            }
+            html.append("</ul></div></article>\n");
+        }
+        html.append("</div></main>\n");
+        if (state) {
+            html.append("<script id=\"__STATE__\" type=\"application/json\">{\"page\":{\"title\":\"Deals\"},")
+                .append("\"products\":[").append(json).append("]}</script>\n");
+        }
+        footer(html);
+        return html.toString();
+    }
+
+    /**
+     * Generates a WBW listing page of flats.
+     *
+     * @param items   The number of flats on the page.
+     * @param version The version of the page.
+     * @return The HTML of the page.
+     */
+    public static String wbw(int items, long version) {
+        Random random = new Random(items * 31L + version);
+        StringBuilder html = new StringBuilder(items * 700);
+        header(html, "WBW - Wohnungsangebote");
+        html.append("<main>\n");
+        for (int i = 0; i < items; i++) {
+            boolean match = random.nextDouble() < MATCH_RATE;
+            String district = match ? "Unterrath" : DISTRICTS[random.nextInt(DISTRICTS.length)];
+            html.append("<section class=\"section-wohnung container\">")
+                .append("<h2>").append(1 + random.nextInt(4)).append("-Zimmer-Wohnung in ").append(district).append("</h2>")
+                .append("<div class=\"row\"><div class=\"col\"><img src=\"/img/w").append(i).append(".jpg\" alt=\"\"></div>")
+                .append("<div class=\"col\"><table>")
+                .append("<tr><th>Wohnfl&auml;che</th><td>").append(35 + random.nextInt(90)).append(" m&sup2;</td></tr>")
+                .append("<tr><th>Kaltmiete</th><td>").append(400 + random.nextInt(900)).append(" &euro;</td></tr>")
+                .append("<tr><th>Frei ab</th><td>").append(1 + random.nextInt(28)).append(".0")
+                .append(1 + random.nextInt(9)).append(".2025</td></tr>")
+                .append("</table><p>").append(word(random)).append(", ").append(word(random)).append(", ")
+                .append(word(random)).append("</p>")
+                .append("<a class=\"btn\" href=\"https://wbw.example/wohnung/").append(i).append("\">Details</a>")
+                .append("</div></div></section>\n");
+        }
+        html.append("</main>\n");
+        footer(html);
+        return html.toString();
+    }
+
+    private static void header(StringBuilder html, String title) {
+        html.append("<!DOCTYPE html>\n<html lang=\"de\"><head><meta charset=\"utf-8\"><title>").append(title)
+            .append("</title>\n<link rel=\"stylesheet\" href=\"/css/main.css\">\n<script>")
+            .append("window.dataLayer=window.dataLayer||[];function gtag(){dataLayer.push(arguments);}")
+            .append("gtag('js',new Date());</script>\n</head><body>\n<header><nav><ul>");
+        for (int i = 0; i < 12; i++) {
+            html.append("<li><a href=\"/c/").append(i).append("\">").append(WORDS[i % WORDS.length]).append("</a></li>");
+        }
+        html.append("</ul></nav></header>\n");
+    }
+
+    private static void footer(StringBuilder html) {
+        html.append("<footer><p>Impressum &middot; Datenschutz &middot; AGB</p></footer>\n")
+            .append("<script src=\"/js/app.js\" defer></script>\n</body></html>\n");
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
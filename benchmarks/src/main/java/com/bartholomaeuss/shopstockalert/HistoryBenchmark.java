@@ -0,0 +1,159 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures queries of a {@link History} holding months of checks.
+ * <p>
+ * The history is generated once per trial: {@code targets} targets listing 20 items each are checked every
+ * 15 minutes for {@code days} days, and before every check one of the items of a target is replaced with the
+ * probability {@code change}. {@link #queryTarget()} evaluates all checks of a single target, {@link #queryDay()} the
+ * checks of all targets on a single day, and {@link #queryAll()} all checks of all targets.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark {
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+    private static final Duration INTERVAL = Duration.ofMinutes(15);
+    private static final int ITEMS = 20;
+
+    @Param({"100"})
+    public int targets;
+
+    @Param({"90"})
+    public int days;
+
+    @Param({"0.05"})
+    public double change;
+
+    private Path directory;
+    private History history;
+    private Instant day;
+    private Instant end;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("shopstockalert-history");
+        Random random = new Random(42);
+        List<List<String>> listed = new ArrayList<>();
+        int[] next = new int[targets];
+        for (int target = 0; target < targets; target++) {
+            List<String> ids = new ArrayList<>();
+            while (next[target] < ITEMS) {
+                ids.add(target + "-" + next[target]++);
+            }
+            listed.add(ids);
+        }
+        long checks = Duration.ofDays(days).dividedBy(INTERVAL);
+        try (History writer = History.open(directory, new SteppingClock(INTERVAL.dividedBy(targets)))) {
+            for (long check = 0; check < checks; check++) {
+                for (int target = 0; target < targets; target++) {
+                    List<String> ids = listed.get(target);
+                    if (random.nextDouble() < change) {
+                        ids.remove(random.nextInt(ids.size()));
+                        ids.add(target + "-" + next[target]++);
+                    }
+                    writer.record(key(target), ids);
+                }
+            }
+        }
+        history = History.openReadOnly(directory);
+        day = START.plus(Duration.ofDays(days / 2));
+        end = START.plus(Duration.ofDays(days + 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        history.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public History.Report queryTarget() throws IOException {
+        String key = key(targets / 2);
+        return history.query(key::equals, START, end, ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public History.Report queryDay() throws IOException {
+        return history.query(key -> true, day, day.plus(Duration.ofDays(1)), ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public History.Report queryAll() throws IOException {
+        return history.query(key -> true, START, end, ZoneOffset.UTC);
+    }
+
+    private static String key(int target) {
+        return "zolonda https://zolonda.example/" + target + " alerts@example.com me@example.com";
+    }
+
+    /**
+     * A clock that advances by a fixed step every time it is read, starting at {@link #START}.
+     */
+    private static final class SteppingClock extends Clock {
+        private final long step;
+        private long millis = START.toEpochMilli();
+
+        private SteppingClock(Duration step) {
+            this.step = step.toMillis();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            millis += step;
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    }
+}
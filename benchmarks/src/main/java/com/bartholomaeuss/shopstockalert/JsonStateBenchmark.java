@@ -0,0 +1,110 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the items of interest from the JSON state embedded in a webpage with extracting them from the DOM.
+ * <p>
+ * The pages are generated by {@link Fixtures#zolondaState(int, long)} and carry the same articles both as markup and
+ * as JSON, so all paths report the same deals. {@link #extractDom()} and {@link #extractJson()} evaluate a page that
+ * has already been parsed, so they compare walking the containers with streaming through the JSON.
+ * {@link #endToEndDom()}, {@link #endToEndStream()} and {@link #endToEndJson()} check the page through a loopback
+ * {@link ShopSimulator} with the respective {@link Extraction} mode, as a check of the daemon does; the page changes on
+ * every request, so the items are filtered every time.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonStateBenchmark {
+    /**
+     * The rule of {@link ZolondaChecker} extended by the JSON state of the fixture pages.
+     */
+    static final Rule RULE = Rule.builder("zolonda-state", "div[hidden] article", List.of("deal"))
+        .json(new JsonState("script#__STATE__", "url", "isDeal", "name", "sku", "price"))
+        .build();
+
+    @Param({"20", "200", "2000"})
+    public int items;
+
+    private ShopSimulator server;
+    private Target dom;
+    private Target stream;
+    private Target json;
+    private Document document;
+    private List<Element> scripts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HostRateLimiter.setLimit(0, 0);
+        FetchCache.setLimit(Duration.ZERO, 0);
+        CheckerRegistry.register(RULE);
+        server = new ShopSimulator(Duration.ZERO, 1, 0, false);
+        dom = target(Extraction.DOM);
+        stream = target(Extraction.STREAM);
+        json = target(Extraction.JSON);
+        document = Jsoup.parse(Fixtures.zolondaState(items, 0), "https://zolonda.example/");
+        scripts = document.select(RULE.getJsonState().getScript());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public List<Item> extractDom() {
+        return RULE.evaluate(document).getItems();
+    }
+
+    @Benchmark
+    public List<Item> extractJson() {
+        return RULE.filterJson(scripts).getItems();
+    }
+
+    @Benchmark
+    public List<Item> endToEndDom() {
+        return new RuleChecker(RULE, dom).getItems();
+    }
+
+    @Benchmark
+    public List<Item> endToEndStream() {
+        return new RuleChecker(RULE, stream).getItems();
+    }
+
+    @Benchmark
+    public List<Item> endToEndJson() {
+        return new RuleChecker(RULE, json).getItems();
+    }
+
+    private Target target(Extraction extraction) {
+        return new Target(RULE.getName(), server.url(RULE.getName(), items), Duration.ofMinutes(1),
+            "sender@example.com", List.of("recipient@example.com"),
+            Map.of("extraction", extraction.name().toLowerCase(Locale.ROOT)));
+    }
+}
@@ -0,0 +1,259 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many targets against a local {@link ShopSimulator} and reports how the checking pipeline holds up.
+ * <p>
+ * Every target watches its own simulated page and is checked in a loop on its own virtual thread: the page is fetched
+ * through {@link Website}, including conditional requests, and the rule of the built-in checker is evaluated against it.
+ * At most {@code concurrency} checks run at the same time. At the end, the driver reports the checks per second,
+ * the 50th and 99th percentile of the check latency and the heap use sampled during the run.
+ * </p>
+ * <p>
+ * All settings are passed as {@code key=value} arguments, e.g.
+ * </p>
+ * <pre>
+ * java -cp benchmarks.jar com.bartholomaeuss.shopstockalert.LoadDriver targets=500 items=200 latency=50 change=0.1 errors=0.01
+ * </pre>
+ * <ul>
+ *     <li>{@code service}: the simulated shop, {@code zolonda} (default) or {@code wbw},</li>
+ *     <li>{@code targets}: the number of targets (default 100),</li>
+ *     <li>{@code concurrency}: the maximum number of checks at the same time (default: the number of targets),</li>
+ *     <li>{@code duration}: the length of the run in seconds (default 30),</li>
+ *     <li>{@code interval}: the pause of a target between two checks in milliseconds (default 0),</li>
+ *     <li>{@code items}: the number of items per page (default 200),</li>
+ *     <li>{@code latency}: the response delay of the simulator in milliseconds (default 0),</li>
+ *     <li>{@code change}: the probability that a page changes before a request (default 0.1),</li>
+ *     <li>{@code errors}: the probability that a request fails (default 0),</li>
+ *     <li>{@code validators}: whether the simulator answers conditional requests (default true),</li>
+ *     <li>{@code extraction}: {@code dom} (default) or {@code stream}, see {@link Extraction},</li>
+ *     <li>{@code rate} and {@code burst}: the limit of the {@link HostRateLimiter} in requests per second
+ *     (default 0, i.e. unlimited, since all simulated pages share a single host),</li>
+ *     <li>{@code cache}: the time to live of the {@link FetchCache} in seconds (default 0, i.e. every check downloads
+ *     its page),</li>
+ *     <li>{@code stall} and {@code stalls}: the additional delay of a stalled response in milliseconds (default 1000)
+ *     and the probability that a response stalls (default 0),</li>
+ *     <li>{@code timeout} and {@code hedge}: the deadline of a request and the delay after which a pending request is
+ *     hedged in milliseconds (default 30000 and 0, i.e. no hedging), see {@link Website},</li>
+ *     <li>{@code breaker}: the number of consecutive failures after which the {@link CircuitBreaker} skips the host
+ *     (default 0, i.e. disabled, since all simulated pages share a single host).</li>
+ * </ul>
+ */
+public class LoadDriver {
+    private static final Duration HEAP_SAMPLE_INTERVAL = Duration.ofMillis(100);
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final List<Recorder> recorders = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.out.println("Usage: LoadDriver [key=value ...], see the documentation of LoadDriver for the keys");
+                System.exit(4);
+            }
+            settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        new LoadDriver().run(settings);
+    }
+
+    private void run(Map<String, String> settings) throws IOException, InterruptedException {
+        String service = settings.getOrDefault("service", "zolonda");
+        int targets = Integer.parseInt(settings.getOrDefault("targets", "100"));
+        int concurrency = Integer.parseInt(settings.getOrDefault("concurrency", Integer.toString(targets)));
+        Duration duration = Duration.ofSeconds(Long.parseLong(settings.getOrDefault("duration", "30")));
+        Duration interval = Duration.ofMillis(Long.parseLong(settings.getOrDefault("interval", "0")));
+        int items = Integer.parseInt(settings.getOrDefault("items", "200"));
+        Duration latency = Duration.ofMillis(Long.parseLong(settings.getOrDefault("latency", "0")));
+        double change = Double.parseDouble(settings.getOrDefault("change", "0.1"));
+        double errors = Double.parseDouble(settings.getOrDefault("errors", "0"));
+        boolean validators = Boolean.parseBoolean(settings.getOrDefault("validators", "true"));
+        Extraction extraction = Extraction.parse(settings.getOrDefault("extraction", "dom"));
+        double rate = Double.parseDouble(settings.getOrDefault("rate", "0"));
+        int burst = Integer.parseInt(settings.getOrDefault("burst", "1"));
+        HostRateLimiter.setLimit(rate, burst);
+        FetchCache.setLimit(Duration.ofSeconds(Long.parseLong(settings.getOrDefault("cache", "0"))),
+            FetchCache.DEFAULT_CAPACITY_MB << 20);
+        Duration stall = Duration.ofMillis(Long.parseLong(settings.getOrDefault("stall", "1000")));
+        double stalls = Double.parseDouble(settings.getOrDefault("stalls", "0"));
+        Website.setDeadline(Duration.ofMillis(Long.parseLong(settings.getOrDefault("timeout", "30000"))),
+            Duration.ofMillis(Long.parseLong(settings.getOrDefault("hedge", "0"))));
+        CircuitBreaker.setLimit(Integer.parseInt(settings.getOrDefault("breaker", "0")),
+            Duration.ofSeconds(CircuitBreaker.DEFAULT_COOL_DOWN_SECONDS));
+        Rule rule = switch (service) {
+            case "zolonda" -> ZolondaChecker.RULE;
+            case "wbw" -> WBWChecker.RULE;
+            default -> throw new IllegalArgumentException("No simulated shop for service: " + service);
+        };
+
+        System.out.println("Checking " + targets + " " + service + " targets with " + items + " items for "
+            + duration.toSeconds() + "s (concurrency " + concurrency + ", latency " + latency.toMillis() + "ms, change "
+            + change + ", errors " + errors + ", stalls " + stalls + ", validators " + validators + ", extraction "
+            + extraction + ")");
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        LongAdder heapSamples = new LongAdder();
+        LongAdder heapTotal = new LongAdder();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shopstockalert-heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            long used = memory.getHeapMemoryUsage().getUsed();
+            peakHeap.accumulateAndGet(used, Math::max);
+            heapSamples.increment();
+            heapTotal.add(used);
+        }, 0, HEAP_SAMPLE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        try (ShopSimulator simulator = new ShopSimulator(latency, change, errors, validators, stall, stalls)) {
+            Semaphore permits = new Semaphore(concurrency);
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < targets; i++) {
+                    String url = simulator.url(service, items, i);
+                    Target target = new Target(service, url, interval, "load@example.com", List.of("load@example.com"));
+                    Recorder recorder = new Recorder();
+                    recorders.add(recorder);
+                    workers.execute(() -> drive(target, rule, extraction, permits, deadline, recorder));
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            sampler.shutdownNow();
+            report(elapsed, peakHeap.get(), heapSamples.sum() == 0 ? 0 : heapTotal.sum() / heapSamples.sum(), memory);
+            System.out.println("Simulator: " + simulator.getRequests() + " requests, " + simulator.getNotModified()
+                + " not modified, " + simulator.getErrors() + " failed on purpose, " + simulator.getStalled()
+                + " stalled");
+            System.out.println("Fetch deadlines: " + Website.getTimedOut() + " timed out, " + Website.getHedged()
+                + " hedged");
+        }
+    }
+
+    /**
+     * Checks a single target in a loop until the deadline has passed.
+     *
+     * @param target     The target to be checked.
+     * @param rule       The rule evaluated against the page of the target.
+     * @param extraction The way in which the items are extracted from the page.
+     * @param permits    The permits limiting the number of checks at the same time.
+     * @param deadline   The value of {@link System#nanoTime()} at which the run ends.
+     * @param recorder   The recorder receiving the latency of every check.
+     */
+    private void drive(Target target, Rule rule, Extraction extraction, Semaphore permits, long deadline,
+                       Recorder recorder) {
+        while (System.nanoTime() < deadline) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                boolean modified = check(target, rule, extraction);
+                if (!modified) {
+                    notModified.increment();
+                }
+            } catch (IOException e) {
+                failures.increment();
+            } finally {
+                permits.release();
+            }
+            recorder.record(System.nanoTime() - start);
+            checks.increment();
+            if (!target.getInterval().isZero()) {
+                try {
+                    Thread.sleep(target.getInterval());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches the page of the target and evaluates the rule against it, as a check of the daemon does.
+     *
+     * @param target     The target to be checked.
+     * @param rule       The rule evaluated against the page of the target.
+     * @param extraction The way in which the items are extracted from the page.
+     * @return {@code true} if the page was transferred and evaluated, {@code false} if it was not modified.
+     * @throws IOException If the page cannot be fetched.
+     */
+    private static boolean check(Target target, Rule rule, Extraction extraction) throws IOException {
+        if (extraction == Extraction.STREAM) {
+            List<Element> streamed = new ArrayList<>();
+            Website website = new Website(target.getUrl(), target.getListingKey(), rule.getContainer(), streamed::add);
+            if (website.isNotModified()) {
+                return false;
+            }
+            rule.filter(streamed);
+            return true;
+        }
+        Website website = new Website(target.getUrl(), target.getListingKey());
+        if (website.isNotModified()) {
+            return false;
+        }
+        new RuleChecker(rule, website);
+        return true;
+    }
+
+    private void report(double elapsed, long peakHeap, long averageHeap, MemoryMXBean memory) {
+        long[] all = recorders.stream()
+            .flatMapToLong(recorder -> Arrays.stream(recorder.values, 0, recorder.size))
+            .toArray();
+        Arrays.sort(all);
+        System.gc();
+        long retainedHeap = memory.getHeapMemoryUsage().getUsed();
+        System.out.printf("Checks: %d in %.1fs = %.1f checks/s (%d not modified, %d failed)%n",
+            checks.sum(), elapsed, checks.sum() / elapsed, notModified.sum(), failures.sum());
+        System.out.printf("Latency: p50 %.1fms, p99 %.1fms, max %.1fms%n",
+            percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+        System.out.printf("Heap: peak %d MiB, average %d MiB, retained after GC %d MiB%n",
+            peakHeap >> 20, averageHeap >> 20, retainedHeap >> 20);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Records the latencies of a single target, which is checked by one thread at a time.
+     */
+    private static final class Recorder {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        private void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+}
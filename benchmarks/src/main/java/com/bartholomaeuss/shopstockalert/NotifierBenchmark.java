@@ -0,0 +1,68 @@
+package com.bartholomaeuss.shopstockalert;
+
+import jakarta.mail.MessagingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sending alerts through an {@link SmtpNotifier} to a loopback {@link SmtpSimulator}.
+ * <p>
+ * Four threads send at the same time, as the workers of the outbox do. With {@code messagesPerConnection=1}, every
+ * message opens a connection of its own, as a client without a pool does; otherwise the messages are sent over the
+ * pooled connections. Every reply of the simulator is delayed by the given latency in milliseconds, which stands in for
+ * the round trip to a remote server.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class NotifierBenchmark {
+    @Param({"1", "100"})
+    public int messagesPerConnection;
+
+    @Param({"0", "1"})
+    public int latency;
+
+    private SmtpSimulator server;
+    private SmtpNotifier notifier;
+    private Notification notification;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new SmtpSimulator(Duration.ofMillis(latency));
+        notifier = new SmtpNotifier(server.getHost(), server.getPort(), null, null, false, 4, messagesPerConnection);
+        notification = new Notification("alerts@example.com", "me@example.com", "Zolonda - Deals",
+            "New: Sneaker 79.99 https://zolonda.example/p/1");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        notifier.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void send() throws MessagingException, InterruptedException {
+        notifier.send(notification);
+    }
+}
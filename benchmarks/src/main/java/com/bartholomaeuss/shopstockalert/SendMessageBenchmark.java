@@ -0,0 +1,53 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.google.api.services.gmail.model.Message;
+import jakarta.mail.MessagingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the MIME message of an alert and encoding it in Base64 for the Gmail API.
+ * <p>
+ * The body lists the given number of links, as an alert or a digest of several alerts does.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendMessageBenchmark {
+    @Param({"1", "20", "200"})
+    public int links;
+
+    private String body;
+
+    @Setup
+    public void setUp() {
+        List<String> hrefs = new ArrayList<>();
+        for (int i = 0; i < links; i++) {
+            hrefs.add("https://zolonda.example/p/" + i);
+        }
+        body = hrefs.toString();
+    }
+
+    @Benchmark
+    public Message createMessage() throws MessagingException, IOException {
+        return SendMessage.createMessage("alerts@example.com", "me@example.com", "Zolonda - Deals", body);
+    }
+}
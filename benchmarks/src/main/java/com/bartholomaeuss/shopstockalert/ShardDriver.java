@@ -0,0 +1,227 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs a group of daemons as separate processes on this machine and checks that they share the targets correctly.
+ * <p>
+ * The driver serves changing pages from a local {@link ShopSimulator} and starts {@code members} processes, each of
+ * which runs a {@link Daemon} in a working directory of its own and joins the group through a shared directory (see
+ * {@link ShardCoordinator}). Every target has a recipient of its own and is notified about new and removed items, and
+ * every member appends the notifications it sends to a common log instead of mailing them. After a third of the run,
+ * the first member is killed without warning; after two thirds, it is restarted and a new member joins, so listings
+ * move back to a member that has checked them before. The members forget the items they have notified right away
+ * (see {@link SeenStore}), so every notification follows from the shared snapshots alone, and the changes of an item
+ * must alternate between new and removed. At the end, the driver reports how many notifications every member has sent
+ * and how many changes have been notified twice for the same target, i.e. new or removed twice in a row, which should
+ * be none.
+ * </p>
+ * <p>
+ * All settings are passed as {@code key=value} arguments, e.g.
+ * </p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.bartholomaeuss.shopstockalert.ShardDriver members=3 targets=200
+ * </pre>
+ * <ul>
+ *     <li>{@code members}: the number of members started at the beginning (default 3),</li>
+ *     <li>{@code targets}: the number of targets, each with a page of its own (default 100),</li>
+ *     <li>{@code duration}: the length of the run in seconds (default 60),</li>
+ *     <li>{@code items}: the number of items per page (default 20),</li>
+ *     <li>{@code change}: the probability that a page changes before a request (default 0.5).</li>
+ * </ul>
+ */
+public class ShardDriver {
+    private static final String MEMBER = "member";
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.out.println("Usage: ShardDriver [key=value ...], see the documentation of ShardDriver for the keys");
+                System.exit(4);
+            }
+            settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        if (settings.containsKey(MEMBER)) {
+            member(Path.of(settings.get(MEMBER)), Path.of(settings.get("log")));
+        } else {
+            run(settings);
+        }
+    }
+
+    private static void run(Map<String, String> settings) throws IOException, InterruptedException {
+        int members = Integer.parseInt(settings.getOrDefault("members", "3"));
+        int targets = Integer.parseInt(settings.getOrDefault("targets", "100"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(settings.getOrDefault("duration", "60")));
+        int items = Integer.parseInt(settings.getOrDefault("items", "20"));
+        double change = Double.parseDouble(settings.getOrDefault("change", "0.5"));
+
+        Path directory = Files.createTempDirectory("shopstockalert-shards");
+        Path list = directory.resolve("targets.txt");
+        Path log = directory.resolve("notifications.log");
+        Files.createFile(log);
+        List<Process> processes = new ArrayList<>();
+        try (ShopSimulator simulator = new ShopSimulator(Duration.ZERO, change, 0, false)) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < targets; i++) {
+                lines.add("zolonda " + simulator.url("zolonda", items, i) + " 1 shards@example.com target" + i
+                    + "@example.com alerts=new,removed");
+            }
+            Files.write(list, lines);
+            System.out.println("Checking " + targets + " targets with " + members + " members for "
+                + duration.toSeconds() + "s in " + directory);
+            for (int i = 0; i < members; i++) {
+                processes.add(launch(directory, "member-" + i, list, log));
+            }
+            Thread.sleep(duration.dividedBy(3));
+            System.out.println("Killing member-0");
+            processes.getFirst().destroyForcibly();
+            Thread.sleep(duration.dividedBy(3));
+            System.out.println("Restarting member-0 and starting member-" + members);
+            processes.add(launch(directory, "member-0", list, log));
+            processes.add(launch(directory, "member-" + members, list, log));
+            Thread.sleep(duration.dividedBy(3));
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+            report(log);
+            for (int i = 0; i <= members; i++) {
+                try (Stream<String> output = Files.lines(directory.resolve("member-" + i).resolve("run.log"))) {
+                    output.filter(line -> line.startsWith("Member ")).reduce((first, last) -> last)
+                        .ifPresent(System.out::println);
+                }
+            }
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+            delete(directory);
+        }
+    }
+
+    /**
+     * Starts a member of the group as a separate process.
+     *
+     * @param directory The directory of the run, which holds the shared directory and the working directories.
+     * @param id        The id of the member.
+     * @param list      The target list file.
+     * @param log       The log of the sent notifications.
+     * @return The started {@link Process}.
+     * @throws IOException If the process cannot be started.
+     */
+    private static Process launch(Path directory, String id, Path list, Path log) throws IOException {
+        Path work = Files.createDirectories(directory.resolve(id));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            "-D" + ShardCoordinator.DIRECTORY_PROPERTY + "=" + directory.resolve("shared"),
+            "-D" + ShardCoordinator.ID_PROPERTY + "=" + id,
+            ShardDriver.class.getName(), MEMBER + "=" + list, "log=" + log)
+            .directory(work.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(work.resolve("run.log").toFile())
+            .start();
+    }
+
+    /**
+     * Runs a member of the group until the process is terminated.
+     *
+     * @param list The target list file.
+     * @param log  The log the sent notifications are appended to.
+     * @throws Exception If the member cannot be started.
+     */
+    private static void member(Path list, Path log) throws Exception {
+        HostRateLimiter.setLimit(0, 0);
+        List<Target> targets = Target.load(list);
+        ShardCoordinator shards = ShardCoordinator.fromSystemProperties();
+        SnapshotStore snapshots = SnapshotStore.openShared(shards.getDirectory().resolve("snapshots"));
+        try (shards;
+             SeenStore seenStore = SeenStore.openShared(shards.getDirectory().resolve("seen"), Duration.ZERO);
+             Outbox outbox = Outbox.open(Path.of("outbox"), notification -> append(log, shards.getId(), notification),
+                 4, 1000)) {
+            Daemon daemon = new Daemon(targets, seenStore, snapshots, null, outbox, shards);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+            daemon.start();
+            daemon.awaitTermination();
+        }
+    }
+
+    /**
+     * Appends every line of a notification to the common log, holding a lock on the log while writing.
+     *
+     * @param log          The log of the sent notifications.
+     * @param member       The id of the sending member.
+     * @param notification The notification to be logged.
+     * @throws IOException If the log cannot be written.
+     */
+    private static void append(Path log, String member, Notification notification) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String line : notification.bodyText().split("\n")) {
+            lines.append(member).append('\t').append(notification.toEmailAddress()).append('\t').append(line)
+                .append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            FileLock lock = channel.lock();
+            try {
+                channel.write(StandardCharsets.UTF_8.encode(lines.toString()));
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Reports the notifications per member and the items notified as new twice without having been removed.
+     *
+     * @param log The log of the sent notifications.
+     * @throws IOException If the log cannot be read.
+     */
+    private static void report(Path log) throws IOException {
+        Map<String, Integer> perMember = new TreeMap<>();
+        Set<String> listed = new HashSet<>();
+        int duplicates = 0;
+        for (String line : Files.readAllLines(log)) {
+            String[] columns = line.split("\t", 3);
+            perMember.merge(columns[0], 1, Integer::sum);
+            String change = columns[2];
+            String item = columns[1] + " " + change.substring(change.indexOf(": ") + 2);
+            boolean consistent = change.startsWith(Delta.Type.NEW.getLabel() + ":")
+                ? listed.add(item)
+                : listed.remove(item);
+            if (!consistent) {
+                duplicates++;
+            }
+        }
+        System.out.println("Notified changes per member: " + perMember);
+        System.out.println("Changes notified twice: " + duplicates);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Simulates shops by serving generated {@link Fixtures} over HTTP on the loopback interface.
+ * <p>
+ * A page is requested as {@code /<service>/<items>} or {@code /<service>/<items>/<id>}, e.g. {@code /zolonda/200/7},
+ * where the id distinguishes pages of the same size that change independently of each other. Pages are sent
+ * gzip-compressed if the client accepts it, like the real webpages. Besides serving pages, the simulator can
+ * </p>
+ * <ul>
+ *     <li>delay every response by a fixed <b>latency</b>,</li>
+ *     <li>stall a response for a much longer time with the given <b>stall rate</b>, which produces the slow tail of
+ *     response times that hedged requests cut off (see {@link Website}),</li>
+ *     <li>change a page before responding with the given <b>change rate</b>, i.e. probability per request,</li>
+ *     <li>fail a request with {@code 503 Service Unavailable} and {@code Retry-After: 0}, i.e. as a transient error that
+ *     does not block the host, with the given <b>error rate</b>, and</li>
+ *     <li>send an {@code ETag} with every page and answer a matching conditional request with
+ *     {@code 304 Not Modified} (<b>validators</b>).</li>
+ * </ul>
+ * <p>
+ * The default simulator does none of this, so every request of {@link Website} transfers and parses the whole page.
+ * </p>
+ */
+public class ShopSimulator implements Closeable {
+    /**
+     * The number of distinct variants a changing page cycles through.
+     */
+    static final int VARIANTS = 16;
+
+    private final HttpServer server;
+    private final Duration latency;
+    private final double changeRate;
+    private final double errorRate;
+    private final boolean validators;
+    private final Duration stall;
+    private final double stallRate;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Map<String, Page> variants = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+
+    /**
+     * Starts a simulator on an ephemeral loopback port that serves every page instantly, unchanged and without validators.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    public ShopSimulator() throws IOException {
+        this(Duration.ZERO, 0, 0, false);
+    }
+
+    /**
+     * Starts a simulator on an ephemeral loopback port.
+     *
+     * @param latency    The delay before every response.
+     * @param changeRate The probability that a page changes before a request is answered.
+     * @param errorRate  The probability that a request fails with {@code 503 Service Unavailable}.
+     * @param validators Whether pages carry an {@code ETag} and conditional requests are answered.
+     * @throws IOException If the server cannot be started.
+     */
+    public ShopSimulator(Duration latency, double changeRate, double errorRate, boolean validators) throws IOException {
+        this(latency, changeRate, errorRate, validators, Duration.ZERO, 0);
+    }
+
+    /**
+     * Starts a simulator on an ephemeral loopback port whose responses occasionally stall.
+     *
+     * @param latency    The delay before every response.
+     * @param changeRate The probability that a page changes before a request is answered.
+     * @param errorRate  The probability that a request fails with {@code 503 Service Unavailable}.
+     * @param validators Whether pages carry an {@code ETag} and conditional requests are answered.
+     * @param stall      The additional delay of a stalled response.
+     * @param stallRate  The probability that a response stalls.
+     * @throws IOException If the server cannot be started.
+     */
+    public ShopSimulator(Duration latency, double changeRate, double errorRate, boolean validators, Duration stall,
+                         double stallRate) throws IOException {
+        this.stall = stall;
+        this.stallRate = stallRate;
+        this.latency = latency;
+        this.changeRate = changeRate;
+        this.errorRate = errorRate;
+        this.validators = validators;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    /**
+     * Returns the URL of the given page.
+     *
+     * @param service The service name of the fixture.
+     * @param items   The number of items on the page.
+     * @return The URL under which the page is served.
+     */
+    public String url(String service, int items) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+            + "/" + service + "/" + items;
+    }
+
+    /**
+     * Returns the URL of the given page among several pages of the same size.
+     *
+     * @param service The service name of the fixture.
+     * @param items   The number of items on the page.
+     * @param id      The id distinguishing the page from other pages of the same size.
+     * @return The URL under which the page is served.
+     */
+    public String url(String service, int items, int id) {
+        return url(service, items) + "/" + id;
+    }
+
+    /**
+     * Returns the number of requests received so far.
+     *
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of requests failed on purpose so far.
+     *
+     * @return The number of requests answered with {@code 503 Service Unavailable}.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of conditional requests answered without a body so far.
+     *
+     * @return The number of requests answered with {@code 304 Not Modified}.
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * Returns the number of responses stalled on purpose so far.
+     *
+     * @return The number of stalled responses.
+     */
+    public long getStalled() {
+        return stalled.sum();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Duration delay = latency;
+            if (stallRate > 0 && random.nextDouble() < stallRate) {
+                stalled.increment();
+                delay = delay.plus(stall);
+            }
+            if (!delay.isZero()) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                errors.increment();
+                exchange.getResponseHeaders().set("Retry-After", "0");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Page page;
+            try {
+                String service = path[1];
+                int items = Integer.parseInt(path[2]);
+                String name = exchange.getRequestURI().getPath();
+                boolean change = changeRate > 0 && random.nextDouble() < changeRate;
+                page = pages.compute(name, (key, current) -> {
+                    if (current == null) {
+                        return variant(service, items, 0);
+                    }
+                    return change ? variant(service, items, current.version() + 1) : current;
+                });
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String eTag = "\"" + page.version() + "\"";
+            if (validators) {
+                exchange.getResponseHeaders().set("ETag", eTag);
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.increment();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+            }
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            byte[] body = gzip ? page.gzipped() : page.plain();
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Returns the given version of a page.
+     * <p>
+     * The content of a page cycles through {@link #VARIANTS} generated variants, which are shared by all pages of the
+     * same service and size, so a high change rate does not turn the simulator into the bottleneck of a load test.
+     * </p>
+     *
+     * @param service The service name of the fixture.
+     * @param items   The number of items on the page.
+     * @param version The version of the page.
+     * @return The {@link Page} of the given version.
+     */
+    private Page variant(String service, int items, long version) {
+        long variant = version % VARIANTS;
+        Page page = variants.computeIfAbsent(service + "/" + items + "/" + variant,
+            name -> Page.of(Fixtures.page(service, items, variant), variant));
+        return new Page(page.plain(), page.gzipped(), version);
+    }
+
+    /**
+     * A version of a generated page, both uncompressed and compressed.
+     */
+    private record Page(byte[] plain, byte[] gzipped, long version) {
+        static Page of(String html, long version) {
+            byte[] plain = html.getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(plain);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Page(plain, buffer.toByteArray(), version);
+        }
+    }
+}
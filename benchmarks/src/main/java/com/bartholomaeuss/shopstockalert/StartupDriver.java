@@ -0,0 +1,147 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the wall-clock time of one-shot runs of the application in its different build modes.
+ * <p>
+ * Every mode runs the application as a separate process that checks a page of a local {@link ShopSimulator} and
+ * exits. By default, the page holds no items, which is what a one-shot run usually finds, so the measured time is
+ * dominated by the startup of the process. The following modes are compared, each one only if its file exists:
+ * </p>
+ * <ul>
+ *     <li>{@code jvm}: the shaded jar on the JVM that runs this driver,</li>
+ *     <li>{@code cds}: the shaded jar with the AppCDS archive built by the {@code cds} profile,</li>
+ *     <li>{@code native}: the executable built by the {@code native} profile.</li>
+ * </ul>
+ * <p>
+ * All settings are passed as {@code key=value} arguments, e.g.
+ * </p>
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.bartholomaeuss.shopstockalert.StartupDriver runs=20
+ * </pre>
+ * <ul>
+ *     <li>{@code jar}: the shaded jar (default {@code target/ShopStockAlert-1.0-SNAPSHOT.jar}),</li>
+ *     <li>{@code archive}: the AppCDS archive (default: the jar with the extension {@code .jsa}),</li>
+ *     <li>{@code native}: the native executable (default {@code target/shopstockalert}),</li>
+ *     <li>{@code runs}: the number of measured runs per mode (default 10), after one unmeasured run,</li>
+ *     <li>{@code service}: the simulated shop, {@code wbw} (default) or {@code zolonda},</li>
+ *     <li>{@code items}: the number of items on the page (default 0).</li>
+ * </ul>
+ */
+public class StartupDriver {
+    private static final long RUN_TIMEOUT_SECONDS = 120;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                System.out.println("Usage: StartupDriver [key=value ...], see the documentation of StartupDriver for the keys");
+                System.exit(4);
+            }
+            settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        run(settings);
+    }
+
+    private static void run(Map<String, String> settings) throws IOException, InterruptedException {
+        Path jar = Path.of(settings.getOrDefault("jar", "target/ShopStockAlert-1.0-SNAPSHOT.jar")).toAbsolutePath();
+        Path archive = Path.of(settings.getOrDefault("archive",
+            jar.toString().replaceFirst("\\.jar$", "") + ".jsa")).toAbsolutePath();
+        Path executable = Path.of(settings.getOrDefault("native", "target/shopstockalert")).toAbsolutePath();
+        int runs = Integer.parseInt(settings.getOrDefault("runs", "10"));
+        String service = settings.getOrDefault("service", "wbw");
+        int items = Integer.parseInt(settings.getOrDefault("items", "0"));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        if (Files.exists(jar)) {
+            modes.put("jvm", List.of(java, "-jar", jar.toString()));
+        }
+        if (Files.exists(jar) && Files.exists(archive)) {
+            modes.put("cds", List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xshare:on", "-jar", jar.toString()));
+        }
+        if (Files.isExecutable(executable)) {
+            modes.put("native", List.of(executable.toString()));
+        }
+        if (modes.isEmpty()) {
+            System.out.println("Nothing to measure: neither " + jar + " nor " + executable + " exists");
+            System.exit(4);
+        }
+
+        Path directory = Files.createTempDirectory("shopstockalert-startup");
+        try (ShopSimulator simulator = new ShopSimulator()) {
+            String url = simulator.url(service, items);
+            System.out.println("Running " + service + " with " + items + " items " + runs + " times per mode");
+            for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+                List<String> command = new ArrayList<>(mode.getValue());
+                command.addAll(List.of(service, url, "startup@example.com", "startup@example.com"));
+                launch(command, directory);
+                long[] times = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    times[i] = launch(command, directory);
+                }
+                report(mode.getKey(), times);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Runs the application once and waits for it to exit.
+     *
+     * @param command   The command line of the run.
+     * @param directory The working directory of the run, which receives the seen links and the outbox.
+     * @return The wall-clock time of the run in nanoseconds.
+     * @throws IOException If the process cannot be started or does not exit successfully.
+     * @throws InterruptedException If the driver is interrupted while waiting for the process.
+     */
+    private static long launch(List<String> command, Path directory) throws IOException, InterruptedException {
+        Path log = directory.resolve("run.log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("Run did not finish within " + RUN_TIMEOUT_SECONDS + "s: " + command);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (process.exitValue() != 0) {
+            throw new IOException("Run failed with exit code " + process.exitValue() + ": " + command + "\n"
+                + Files.readString(log));
+        }
+        return elapsed;
+    }
+
+    private static void report(String mode, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-6s min %6.0fms, median %6.0fms, mean %6.0fms, max %6.0fms%n", mode,
+            sorted[0] / 1e6, sorted[sorted.length / 2] / 1e6, Arrays.stream(sorted).average().orElse(0) / 1e6,
+            sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast a listing page is turned into a DOM.
+ * <p>
+ * {@link #parse()} parses the HTML with jsoup alone and isolates the parser, e.g. to compare jsoup versions.
+ * {@link #fetch()} fetches the page from a loopback {@link ShopSimulator} through {@link Website}, which adds the HTTP
+ * round trip and gzip decoding. {@link #stream()} does the same with the streaming extraction of the rule. The
+ * {@link FetchCache} is disabled, so every invocation downloads the page.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebsiteBenchmark {
+    @Param({"zolonda", "wbw"})
+    public String service;
+
+    @Param({"20", "200", "2000"})
+    public int items;
+
+    private ShopSimulator server;
+    private String html;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        HostRateLimiter.setLimit(0, 0);
+        FetchCache.setLimit(Duration.ZERO, 0);
+        server = new ShopSimulator();
+        html = Fixtures.page(service, items);
+        url = server.url(service, items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Document parse() {
+        return Jsoup.parse(html, url);
+    }
+
+    @Benchmark
+    public Document fetch() throws IOException {
+        return new Website(url).getDOM();
+    }
+
+    @Benchmark
+    public int stream() throws IOException {
+        int[] count = {0};
+        Rule rule = "zolonda".equals(service) ? ZolondaChecker.RULE : WBWChecker.RULE;
+        new Website(url, url, rule.getContainer(), element -> count[0]++);
+        return count[0];
+    }
+}
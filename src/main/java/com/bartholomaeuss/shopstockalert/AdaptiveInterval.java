@@ -0,0 +1,91 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The check interval of a single target, adapted to how often the webpage of the target changes.
+ * <p>
+ * The interval starts at the configured interval of the target. Whenever a check finds the webpage changed, the
+ * interval is halved, so a page that changes often is soon checked at the minimum interval and fast-moving deals are
+ * not missed. Whenever a check finds the webpage unchanged, the interval grows by a quarter, so a page that rarely
+ * changes is checked less and less often, up to the maximum interval. Halving on a change and growing slowly otherwise
+ * keeps the interval close to the minimum while a page is busy.
+ * </p>
+ */
+public class AdaptiveInterval {
+    private final Duration min;
+    private final Duration max;
+    private Duration current;
+
+    /**
+     * Constructs the adaptive interval of the given target.
+     *
+     * @param target The target whose interval is adapted.
+     */
+    public AdaptiveInterval(Target target) {
+        this(target.getInterval(), target.getMinInterval(), target.getMaxInterval());
+    }
+
+    /**
+     * Creates the adaptive interval shared by several targets watching the same listing.
+     * <p>
+     * Each of the initial, the minimum and the maximum interval is the shortest among the targets, so no target is
+     * checked less often than it asked for. The minimum never exceeds the maximum, since the shortest minimum does not
+     * exceed the minimum, and thus the maximum, of the target with the shortest maximum.
+     * </p>
+     *
+     * @param targets The targets watching the listing.
+     * @return The {@link AdaptiveInterval} of the listing.
+     */
+    public static AdaptiveInterval of(List<Target> targets) {
+        if (targets.size() == 1) {
+            return new AdaptiveInterval(targets.getFirst());
+        }
+        return new AdaptiveInterval(
+            targets.stream().map(Target::getInterval).min(Comparator.naturalOrder()).orElseThrow(),
+            targets.stream().map(Target::getMinInterval).min(Comparator.naturalOrder()).orElseThrow(),
+            targets.stream().map(Target::getMaxInterval).min(Comparator.naturalOrder()).orElseThrow());
+    }
+
+    /**
+     * Constructs an adaptive interval.
+     *
+     * @param initial The interval before the first check.
+     * @param min     The shortest interval.
+     * @param max     The longest interval.
+     */
+    public AdaptiveInterval(Duration initial, Duration min, Duration max) {
+        this.min = min;
+        this.max = max;
+        this.current = clamp(initial);
+    }
+
+    /**
+     * Returns the current interval.
+     *
+     * @return The {@link Duration} until the next check.
+     */
+    public synchronized Duration get() {
+        return current;
+    }
+
+    /**
+     * Adapts the interval to the outcome of a check.
+     *
+     * @param changed Whether the check found the webpage changed.
+     * @return The adapted {@link Duration} until the next check.
+     */
+    public synchronized Duration update(boolean changed) {
+        current = clamp(changed ? current.dividedBy(2) : current.plus(current.dividedBy(4)));
+        return current;
+    }
+
+    private Duration clamp(Duration interval) {
+        if (interval.compareTo(min) < 0) {
+            return min;
+        }
+        return interval.compareTo(max) > 0 ? max : interval;
+    }
+}
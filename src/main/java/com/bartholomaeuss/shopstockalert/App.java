@@ -1,61 +1,178 @@
 package com.bartholomaeuss.shopstockalert;
 
-import jakarta.mail.MessagingException;
-
+import java.io.Closeable;
 import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * The entry point of the ShopStockAlert application.
  * <p>
  * This class handles the main execution flow of the ShopStockAlert application.
  * Based on the command-line arguments provided, it determines which service checker to use
- * ({@link ZolondaChecker} or {@link WBWChecker}) and processes the specified website URL.
+ * (see {@link CheckerRegistry}) and processes the specified website URL.
  * If any deals are found, the application sends an email notification containing details
- * such as the webpage title and the links to the available deals.
+ * such as the webpage title and the links to the available deals. Links that have already been
+ * notified for the same target are remembered in a {@link SeenStore} and not notified again.
+ * The items found by the previous check of a target are remembered in a {@link SnapshotStore}, so
+ * notifications report what has changed: new and removed items, price drops and items back in stock.
+ * The items found by every check are also appended to a {@link History}, which can be queried later.
+ * </p>
+ * <p>
+ * Alternatively, the application can be started in daemon mode, in which it reads a list of
+ * {@link Target}s from a file and checks all of them periodically from within a single process
+ * (see {@link Daemon}).
  * </p>
  */
 public class App {
+    /**
+     * Path of the log file remembering the links that have already been notified.
+     */
+    private static final String SEEN_STORE_PATH = "seen.log";
+    /**
+     * Directory of the logs of the notified links of every target in the directory shared by a group of daemons.
+     */
+    private static final String SHARED_SEEN_STORE_PATH = "seen";
+    /**
+     * Directory of the snapshots of the items found by the previous check of every target.
+     */
+    private static final String SNAPSHOT_STORE_PATH = "snapshots";
+    /**
+     * Directory of the history of the items found by every check.
+     */
+    private static final String HISTORY_PATH = "history";
+    /**
+     * Directory of the outbox holding the notifications that have not been sent yet.
+     */
+    private static final String OUTBOX_PATH = "outbox";
+    /**
+     * The maximum number of notifications sent at the same time.
+     */
+    private static final int OUTBOX_CONCURRENCY = 4;
+    /**
+     * The maximum number of pending notifications before checks wait for the outbox.
+     */
+    private static final int OUTBOX_CAPACITY = 1000;
+    /**
+     * The maximum time a single run waits for its notifications to be sent before exiting.
+     */
+    private static final Duration ONE_SHOT_SEND_TIMEOUT = Duration.ofMinutes(1);
+    /**
+     * The maximum time the daemon is given on shutdown to finish its running checks, put its pending digests into the
+     * outbox and close its stores.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(2);
+
     /**
      * The main method that runs the ShopStockAlert application.
      * <p>
      * This method expects four command-line arguments: the service name ("zolonda" or "wbw"),
      * the URL of the website to be checked, the sender's email address, and the recipient's email address.
-     * Depending on the specified service, it instantiates the appropriate checker class
-     * ({@link ZolondaChecker} or {@link WBWChecker}) and retrieves relevant information from the webpage.
+     * Depending on the specified service, it creates the appropriate {@link Checker} through the
+     * {@link CheckerRegistry} and retrieves relevant information from the webpage.
      * If deals are found on the webpage, an email notification is sent to the recipient.
-     * If the service name is invalid or the arguments are incorrect, the program exits with an error code.
+     * If the service name is invalid, the arguments are incorrect or the webpage cannot be fetched, the program exits
+     * with an error code.
+     * </p>
+     * <p>
+     * If the first argument is "daemon", the second argument is expected to be the path of a target
+     * list file (see {@link Target#load(Path)}). All targets of the file are then checked periodically
+     * until the process is terminated. An optional third argument names a rules file whose rules are
+     * registered as additional services before the target list is read (see {@link CheckerRegistry#load(Path)}).
+     * If the system property {@value ShardCoordinator#DIRECTORY_PROPERTY} names a shared directory, the daemon splits
+     * the targets with the other daemons using the same directory and keeps its snapshots and notified links there
+     * (see {@link ShardCoordinator}).
+     * </p>
+     * <p>
+     * If the first argument is "history", the history of the checks is queried instead (see
+     * {@link #query(String[])}): the second argument selects the targets, and the optional third and fourth arguments
+     * limit the time range.
      * </p>
      *
      * @param args Command-line arguments:
      *             <ul>
-     *                 <li><b>args[0]</b>: The service name ("zolonda" or "wbw")</li>
-     *                 <li><b>args[1]</b>: The URL of the website to be checked</li>
+     *                 <li><b>args[0]</b>: The service name ("zolonda" or "wbw") or "daemon"</li>
+     *                 <li><b>args[1]</b>: The URL of the website to be checked or the path of the target list file</li>
      *                 <li><b>args[2]</b>: The sender's email address</li>
      *                 <li><b>args[3]</b>: The recipient's email address</li>
      *             </ul>
-     * @throws MessagingException If there is an error sending the email.
-     * @throws GeneralSecurityException If a security exception occurs while processing the email.
-     * @throws IOException If an I/O error occurs during webpage retrieval.
-     */
-    public static void main(String[] args) throws MessagingException, GeneralSecurityException, IOException {
-        if (args.length == 4) {
-            String service = args[0];
-            String url = args[1];
-            String fromEmailAddress = args[2];
-            String toEmailAddress = args[3];
-            if (Objects.equals(service, "zolonda")) {
-                ZolondaChecker zolondaChecker = new ZolondaChecker(url);
-                if (!zolondaChecker.getHrefs().isEmpty()){
-                    SendMessage.sendEmail(fromEmailAddress, toEmailAddress, zolondaChecker.getTitle(), zolondaChecker.getHrefs().toString());
+     * @throws IOException If an I/O error occurs during webpage retrieval or while queueing the email.
+     * @throws InterruptedException If the application is interrupted while waiting for termination or for the email
+     *                              to be sent.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 2 && args.length <= 4 && Objects.equals(args[0], "history")) {
+            try {
+                query(args);
+            } catch (IOException | DateTimeParseException e) {
+                System.out.println("Unable to query the history: " + e.getMessage());
+                System.exit(4);
+            }
+        } else if ((args.length == 2 || args.length == 3) && Objects.equals(args[0], "daemon")) {
+            if (args.length == 3) {
+                CheckerRegistry.load(Path.of(args[2]));
+            }
+            List<Target> targets = Target.load(Path.of(args[1]));
+            ShardCoordinator shards = ShardCoordinator.fromSystemProperties();
+            SnapshotStore snapshots = shards == null
+                ? SnapshotStore.open(Path.of(SNAPSHOT_STORE_PATH))
+                : SnapshotStore.openShared(shards.getDirectory().resolve(SNAPSHOT_STORE_PATH));
+            Closeable metrics = Metrics.serve();
+            try (shards;
+                 SeenStore seenStore = shards == null
+                     ? SeenStore.open(Path.of(SEEN_STORE_PATH), SeenStore.DEFAULT_TTL)
+                     : SeenStore.openShared(shards.getDirectory().resolve(SHARED_SEEN_STORE_PATH),
+                         SeenStore.DEFAULT_TTL);
+                 History history = History.open(Path.of(HISTORY_PATH));
+                 Notifier notifier = Notifier.fromSystemProperties(OUTBOX_CONCURRENCY);
+                 Outbox outbox = openOutbox(notifier)) {
+                Daemon daemon = new Daemon(targets, seenStore, snapshots, history, outbox, shards);
+                Thread main = Thread.currentThread();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    daemon.stop();
+                    try {
+                        main.join(SHUTDOWN_TIMEOUT);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+                daemon.start();
+                daemon.awaitTermination();
+                outbox.getDigest().flushAll();
+            } finally {
+                if (metrics != null) {
+                    metrics.close();
                 }
-            } else if (Objects.equals(service, "wbw")) {
-                WBWChecker wbwChecker = new WBWChecker(url);
-                if (!wbwChecker.getHrefs().isEmpty()) {
-                    SendMessage.sendEmail(fromEmailAddress, toEmailAddress, wbwChecker.getTitle(), wbwChecker.getHrefs().toString());
+            }
+        } else if (args.length == 4 && CheckerRegistry.isRegistered(args[0])) {
+            Target target = new Target(args[0], args[1], Duration.ZERO, args[2], List.of(args[3]));
+            SnapshotStore snapshots = SnapshotStore.open(Path.of(SNAPSHOT_STORE_PATH));
+            boolean failed = false;
+            try (SeenStore seenStore = SeenStore.open(Path.of(SEEN_STORE_PATH), SeenStore.DEFAULT_TTL);
+                 History history = History.open(Path.of(HISTORY_PATH));
+                 Notifier notifier = Notifier.fromSystemProperties(OUTBOX_CONCURRENCY);
+                 Outbox outbox = openOutbox(notifier)) {
+                try {
+                    check(target, seenStore, snapshots, history, outbox);
+                } catch (IOException e) {
+                    System.out.println("Check of " + target + " failed: " + e.getMessage());
+                    failed = true;
                 }
-            } else {
+                if (!outbox.awaitIdle(ONE_SHOT_SEND_TIMEOUT)) {
+                    System.out.println("Not all notifications could be sent, they will be retried on the next run.");
+                }
+            }
+            if (failed) {
                 System.out.println("An error occurred, the program will now exit.");
                 System.exit(4);
             }
@@ -64,4 +181,323 @@ public class App {
             System.exit(4);
         }
     }
+
+    /**
+     * Checks a single target and sends an email notification to all of its recipients if its listing has changed.
+     * <p>
+     * No notification is sent if the webpage, or the part of it the checker is interested in, has not changed
+     * since the previous check of the target. Otherwise, the items found are compared with the {@link Snapshot} of
+     * the previous check (see {@link #alerts(Target, List, List)}), and the changes the target
+     * is interested in are put into the {@link Outbox}, either right away or collected into a {@link Digest} if the
+     * target has a digest window. Unless the check fails, the items of the target are recorded in the history.
+     * </p>
+     *
+     * @param target    The target to be checked.
+     * @param seenStore The store remembering the items that have already been notified as new.
+     * @param snapshots The store remembering the items found by the previous check of every target.
+     * @param history   The history the items found are recorded in, or {@code null} to record nothing.
+     * @param outbox    The outbox the notifications are put into.
+     * @return {@code true} if the webpage has changed since the previous check of the target, {@code false} otherwise.
+     * @throws RetryAfterException If the host of the webpage asked to retry later.
+     * @throws CircuitOpenException If the host of the webpage is skipped because it has failed repeatedly.
+     * @throws IOException If the webpage could not be fetched (see {@link FetchResult}), or if an I/O error occurs
+     *                     while storing the snapshot or while queueing the email.
+     * @throws InterruptedException If the check is interrupted while waiting for capacity in the outbox.
+     * @throws IllegalArgumentException If the service of the target is unknown.
+     */
+    static boolean check(Target target, SeenStore seenStore, SnapshotStore snapshots, History history, Outbox outbox)
+        throws IOException, InterruptedException {
+        return check(List.of(target), seenStore, snapshots, history, outbox);
+    }
+
+    /**
+     * Checks several targets watching the same listing and notifies each of them about the changes of its items.
+     * <p>
+     * The listing is fetched once for all targets, and the keywords of all of them are matched in a single pass over
+     * its items (see {@link CheckerRegistry#create(List)}). Every target is then handled as if it had been checked by
+     * itself (see {@link #check(Target, SeenStore, SnapshotStore, History, Outbox)}).
+     * </p>
+     *
+     * @param targets   The targets to be checked, all with the same {@link Target#getListingKey()}.
+     * @param seenStore The store remembering the items that have already been notified as new.
+     * @param snapshots The store remembering the items found by the previous check of every target.
+     * @param history   The history the items found are recorded in, or {@code null} to record nothing.
+     * @param outbox    The outbox the notifications are put into.
+     * @return {@code true} if the webpage has changed since the previous check of the targets, {@code false} otherwise.
+     * @throws RetryAfterException If the host of the webpage asked to retry later.
+     * @throws CircuitOpenException If the host of the webpage is skipped because it has failed repeatedly.
+     * @throws IOException If the webpage could not be fetched (see {@link FetchResult}), or if an I/O error occurs
+     *                     while storing a snapshot or while queueing an email.
+     * @throws InterruptedException If the check is interrupted while waiting for capacity in the outbox.
+     * @throws IllegalArgumentException If the service of the targets is unknown.
+     */
+    static boolean check(List<Target> targets, SeenStore seenStore, SnapshotStore snapshots, History history,
+                         Outbox outbox) throws IOException, InterruptedException {
+        Target listing = targets.getFirst();
+        Events.Check event = new Events.Check();
+        event.begin();
+        long start = Metrics.start();
+        String outcome = "failed";
+        int alerted = 0;
+        try {
+            List<Checker> checkers = CheckerRegistry.create(targets);
+            for (Checker checker : checkers) {
+                FetchResult fetch = checker.getFetchResult();
+                if (!fetch.isSuccessful()) {
+                    outcome = fetch.getLabel();
+                    throw fetch.error();
+                }
+            }
+            boolean changed = checkers.stream().anyMatch(checker -> !checker.isUnchanged());
+            outcome = changed ? "changed" : "unchanged";
+            try {
+                for (int i = 0; i < targets.size(); i++) {
+                    Target target = targets.get(i);
+                    Checker checker = checkers.get(i);
+                    if (!checker.isUnchanged()) {
+                        Snapshot previous = snapshots.get(target.getKey());
+                        Snapshot current = Snapshot.of(checker.getItemsByPage());
+                        if (checker.isPartial()) {
+                            current = previous.with(current);
+                        }
+                        List<Delta> deltas = previous.diff(current);
+                        List<String> fresh = fresh(target, deltas, seenStore);
+                        List<String> alerts = alerts(target, deltas, fresh);
+                        enqueue(target, checker, alerts, outbox);
+                        seenStore.record(target.getKey(), fresh);
+                        snapshots.put(target.getKey(), current);
+                        alerted += alerts.size();
+                    }
+                    if (history != null) {
+                        record(target, snapshots, history);
+                    }
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                forget(targets);
+                throw e;
+            }
+            return changed;
+        } finally {
+            Metrics.check(listing, outcome, start);
+            if (event.shouldCommit()) {
+                event.target = listing.toString();
+                event.links = alerted;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the new items of a target that have not been notified within their time to live.
+     * <p>
+     * The ids are looked up in the {@link SeenStore} without being recorded; they are recorded once their
+     * notifications have been queued, so an item whose notification could not be queued is notified by the next check.
+     * </p>
+     *
+     * @param target    The checked target.
+     * @param deltas    The changes since the previous check of the target.
+     * @param seenStore The store remembering the items that have already been notified as new.
+     * @return A {@link List} of the ids of the new items to be notified, empty if the target is not interested in new
+     * items.
+     * @throws IOException If the store cannot be read.
+     */
+    private static List<String> fresh(Target target, List<Delta> deltas, SeenStore seenStore) throws IOException {
+        if (!target.getAlerts().contains(Delta.Type.NEW)) {
+            return List.of();
+        }
+        List<String> ids = deltas.stream()
+            .filter(delta -> delta.type() == Delta.Type.NEW)
+            .map(delta -> delta.item().id())
+            .toList();
+        return seenStore.findNew(target.getKey(), ids);
+    }
+
+    /**
+     * Describes the changes between the items of the previous and the current check of a target to be notified.
+     * <p>
+     * If the checker has evaluated only part of the listing (see {@link Checker#isPartial()}), the items of the
+     * previous check that were listed on pages that have not been evaluated are kept rather than reported as removed
+     * (see {@link Snapshot#with(Snapshot)}). New items are only notified if they have not been notified within their
+     * time to live (see {@link #fresh(Target, List, SeenStore)}), so an item that disappears and reappears is not
+     * notified again. The items found become the snapshot the next check is compared with once the notifications
+     * have been queued, so a check that fails before is repeated rather than skipped as unchanged.
+     * </p>
+     *
+     * @param target The checked target.
+     * @param deltas The changes since the previous check of the target.
+     * @param fresh  The ids of the new items to be notified.
+     * @return A {@link List} with one line per change the target is interested in, see {@link Target#getAlerts()}.
+     */
+    private static List<String> alerts(Target target, List<Delta> deltas, List<String> fresh) {
+        Set<Delta.Type> wanted = target.getAlerts();
+        Set<String> notified = new HashSet<>(fresh);
+        List<String> alerts = new ArrayList<>();
+        for (Delta delta : deltas) {
+            if (wanted.contains(delta.type())
+                && (delta.type() != Delta.Type.NEW || notified.contains(delta.item().id()))) {
+                alerts.add(delta.describe());
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Forgets the fetch state of the listing watched by the given targets after their changes could not be stored or
+     * notified, so the next check evaluates the listing in full and reports the changes again (see
+     * {@link RuleChecker#forget(String)}).
+     *
+     * @param targets The targets watching the listing.
+     */
+    private static void forget(List<Target> targets) {
+        RuleChecker.forget(targets.getFirst().getListingKey());
+    }
+
+    /**
+     * Records the items the target lists after a check in the history.
+     * <p>
+     * The items are taken from the snapshot of the target, which also covers checks of an unchanged webpage. A check
+     * that cannot be recorded is reported, but does not fail, so a full disk never keeps notifications from being sent.
+     * </p>
+     *
+     * @param target    The checked target.
+     * @param snapshots The store remembering the items found by the latest check of every target.
+     * @param history   The history the items are recorded in.
+     */
+    private static void record(Target target, SnapshotStore snapshots, History history) {
+        List<String> ids = snapshots.get(target.getKey()).getItems().stream().map(Item::id).toList();
+        try {
+            history.record(target.getKey(), ids);
+        } catch (IOException e) {
+            System.err.println("Unable to record the check of " + target + " in the history: " + e);
+        }
+    }
+
+    /**
+     * Puts a notification about the given changes into the {@link Outbox} for every recipient of the target.
+     *
+     * @param target  The checked target.
+     * @param checker The checker that found the changes.
+     * @param alerts  The descriptions of the changes, one per line of the notification.
+     * @param outbox  The outbox the notifications are put into.
+     * @throws IOException If an I/O error occurs while queueing the email.
+     * @throws InterruptedException If the check is interrupted while waiting for capacity in the outbox.
+     */
+    private static void enqueue(Target target, Checker checker, List<String> alerts, Outbox outbox)
+        throws IOException, InterruptedException {
+        if (alerts.isEmpty()) {
+            return;
+        }
+        String bodyText = String.join("\n", alerts);
+        Duration digestWindow = target.getDigestWindow();
+        for (String toEmailAddress : target.getToEmailAddresses()) {
+            if (digestWindow != null) {
+                outbox.getDigest().add(digestWindow, new Notification(target.getFromEmailAddress(), toEmailAddress,
+                    checker.getTitle(), bodyText));
+            } else {
+                outbox.enqueue(new Notification(target.getFromEmailAddress(), toEmailAddress, checker.getTitle(),
+                    bodyText));
+            }
+        }
+    }
+
+    /**
+     * Opens the outbox of this application, whose notifications are sent by the given notifier.
+     * <p>
+     * The outbox sends at most as many notifications at the same time as the notifier was configured for, so an
+     * SMTP notifier never needs more connections than it keeps open.
+     * </p>
+     *
+     * @param notifier The notifier sending the notifications, see {@link Notifier#fromSystemProperties(int)}.
+     * @return The opened {@link Outbox}.
+     * @throws IOException If the outbox directory cannot be created or read.
+     */
+    private static Outbox openOutbox(Notifier notifier) throws IOException {
+        return Outbox.open(Path.of(OUTBOX_PATH), notifier::send, OUTBOX_CONCURRENCY, OUTBOX_CAPACITY);
+    }
+
+    /**
+     * Prints what the history tells about the items of the matching targets, e.g. how long they stay listed and at
+     * what time of the day they appear.
+     * <p>
+     * The history is opened for queries only, so it can be queried while a daemon in the same directory records its
+     * checks. Times are given as date, e.g. {@code 2026-07-01}, which stands for the whole day in the time zone of the
+     * system, or as instant, e.g. {@code 2026-07-01T12:00:00Z}.
+     * </p>
+     *
+     * @param args Command-line arguments:
+     *             <ul>
+     *                 <li><b>args[0]</b>: "history"</li>
+     *                 <li><b>args[1]</b>: A part of the keys of the targets to be queried (see
+     *                 {@link Target#getKey()}), e.g. a URL or a recipient, or "*" for all targets</li>
+     *                 <li><b>args[2]</b>: The first day or instant to be queried (optional)</li>
+     *                 <li><b>args[3]</b>: The last day or the instant before which to stop (optional)</li>
+     *             </ul>
+     * @throws IOException If the history does not exist or cannot be read.
+     * @throws DateTimeParseException If a time is neither a date nor an instant.
+     */
+    private static void query(String[] args) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = args.length > 2 ? parseTime(args[2], zone, false) : Instant.EPOCH;
+        Instant to = args.length > 3 ? parseTime(args[3], zone, true) : Instant.ofEpochMilli(Long.MAX_VALUE);
+        String filter = args[1];
+        long start = System.nanoTime();
+        History.Report report;
+        try (History history = History.openReadOnly(Path.of(HISTORY_PATH))) {
+            report = history.query(key -> filter.equals("*") || key.contains(filter), from, to, zone);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d checks of %d targets, %.1f items per check.%n", report.checks(), report.targets(),
+            report.checks() == 0 ? 0.0 : (double) report.found() / report.checks());
+        System.out.printf("%d items appeared, %d disappeared.%n", report.appeared(), report.disappeared());
+        if (report.listed().length > 0) {
+            System.out.println("Time listed: median " + format(report.getListed(0.5)) + ", 90th percentile "
+                + format(report.getListed(0.9)) + ", longest " + format(report.getListed(1)) + ".");
+        }
+        if (report.appeared() > 0) {
+            System.out.println("Items appeared per hour of the day (" + zone + "):");
+            int most = Arrays.stream(report.appearedPerHour()).max().orElse(0);
+            for (int hour = 0; hour < report.appearedPerHour().length; hour++) {
+                int appeared = report.appearedPerHour()[hour];
+                System.out.printf("%02d:00 %6d %s%n", hour, appeared, "#".repeat((40 * appeared + most - 1) / most));
+            }
+        }
+        System.out.printf("Scanned %d checks in %d ms.%n", report.scanned(), millis);
+    }
+
+    /**
+     * Parses a time given on the command line.
+     *
+     * @param time The time as date or instant.
+     * @param zone The time zone of a date.
+     * @param end  Whether the time ends a range, in which case a date stands for the end of the day.
+     * @return The parsed {@link Instant}.
+     * @throws DateTimeParseException If the time is neither a date nor an instant.
+     */
+    private static Instant parseTime(String time, ZoneId zone, boolean end) {
+        if (time.contains("T")) {
+            return Instant.parse(time);
+        }
+        LocalDate date = LocalDate.parse(time);
+        return (end ? date.plusDays(1) : date).atStartOfDay(zone).toInstant();
+    }
+
+    /**
+     * Formats a duration with its two most significant units, e.g. "2d 5h" or "45m".
+     *
+     * @param duration The duration to be formatted.
+     * @return The formatted duration.
+     */
+    private static String format(Duration duration) {
+        if (duration.toDays() > 0) {
+            return duration.toDays() + "d " + duration.toHoursPart() + "h";
+        }
+        if (duration.toHours() > 0) {
+            return duration.toHours() + "h " + duration.toMinutesPart() + "m";
+        }
+        if (duration.toMinutes() > 0) {
+            return duration.toMinutes() + "m";
+        }
+        return duration.toSeconds() + "s";
+    }
 }
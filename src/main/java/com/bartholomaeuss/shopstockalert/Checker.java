@@ -0,0 +1,97 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A checker inspects a single webpage and reports the links to the items of interest on it.
+ * <p>
+ * Implementations are created per check through the {@link CheckerRegistry} and are expected to
+ * have fetched and evaluated the webpage once they are constructed.
+ * </p>
+ */
+public interface Checker {
+    /**
+     * Retrieves the Website object associated with this checker.
+     *
+     * @return The {@link Website} object.
+     */
+    Website getWebsite();
+
+    /**
+     * Retrieves the title of the webpage.
+     *
+     * @return The title of the webpage.
+     */
+    String getTitle();
+
+    /**
+     * Retrieves the links to all items of interest found on the webpage.
+     *
+     * @return A {@link List} of {@link String} objects representing the href attributes of the items of interest.
+     */
+    List<String> getHrefs();
+
+    /**
+     * Returns whether the webpage is known to be unchanged since the previous check.
+     * <p>
+     * An unchanged webpage is not evaluated again, so {@link #getHrefs()} returns an empty list.
+     * </p>
+     *
+     * @return {@code true} if the webpage has not changed since the previous check, {@code false} otherwise.
+     */
+    boolean isUnchanged();
+
+    /**
+     * Retrieves all items of interest found on the webpage, with as many fields as the checker can extract.
+     * <p>
+     * By default, every item is identified by its link and has neither title nor price.
+     * </p>
+     *
+     * @return A {@link List} of the items of interest, in the order they were found.
+     */
+    default List<Item> getItems() {
+        return getHrefs().stream().map(Item::of).toList();
+    }
+
+    /**
+     * Retrieves the items of interest found on every page of the listing that has been evaluated in full.
+     * <p>
+     * Pages that have not been evaluated, e.g. because they are unchanged or could not be fetched, are missing, so the
+     * items previously found on them can be kept (see {@link Snapshot#with(Snapshot)}). By default, all items of
+     * {@link #getItems()} are found on a single page.
+     * </p>
+     *
+     * @return A {@link Map} from the URL of every evaluated page to its items of interest, in the order they were found.
+     */
+    default Map<String, List<Item>> getItemsByPage() {
+        return Map.of(Snapshot.UNKNOWN_PAGE, getItems());
+    }
+
+    /**
+     * Returns whether the items of interest cover only part of the webpage.
+     * <p>
+     * This is the case if some pages of a listing could not be evaluated, so items missing from
+     * {@link #getItems()} may still be listed and must not be reported as removed unless their page has been
+     * evaluated (see {@link #getItemsByPage()}).
+     * </p>
+     *
+     * @return {@code true} if only part of the webpage has been evaluated, {@code false} otherwise.
+     */
+    default boolean isPartial() {
+        return false;
+    }
+
+    /**
+     * Returns how fetching the webpage has ended.
+     * <p>
+     * If the webpage could not be fetched, the checker reports no items and is unchanged, so the previous items of the
+     * target are kept until a later check succeeds. By default, the webpage is assumed to have been fetched.
+     * </p>
+     *
+     * @return The {@link FetchResult} of the webpage.
+     */
+    default FetchResult getFetchResult() {
+        return FetchResult.of(getWebsite());
+    }
+}
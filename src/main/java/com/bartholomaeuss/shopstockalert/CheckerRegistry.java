@@ -0,0 +1,289 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the {@link Checker}s available for each service name.
+ * <p>
+ * The built-in services "zolonda" ({@link ZolondaChecker}) and "wbw" ({@link WBWChecker}) are always registered.
+ * Further services can either be registered programmatically or described by {@link Rule}s in a rules file,
+ * so that adding a shop does not require a new class. A rules file is a properties file in which every rule
+ * is described by a set of keys prefixed with the service name:
+ * </p>
+ * <pre>
+ * myshop.container=div.product-grid article
+ * myshop.text=h3
+ * myshop.keywords=sale,deal
+ * myshop.exclude=sold out,ausverkauft
+ * myshop.link=a[href]
+ * myshop.pagination=nav.pager a[href]
+ * myshop.id=data-sku
+ * myshop.price=.price
+ * myshop.availability=.stock
+ * myshop.soldout=sold out,nicht lieferbar
+ * myshop.state=script#__NEXT_DATA__
+ * myshop.state-url=url
+ * myshop.state-flag=isDeal
+ * myshop.state-title=name
+ * myshop.state-id=sku
+ * myshop.state-price=price
+ * myshop.detail=button.add-to-cart:not([disabled])
+ * myshop.detail-soldout=sold out,nicht lieferbar
+ * </pre>
+ * <p>
+ * Only {@code container} and {@code keywords} are required; {@code text} defaults to the whole item,
+ * {@code exclude} defaults to no excluded keywords, {@code link} defaults to {@code a[href]} and {@code pagination}
+ * defaults to {@link Rule#DEFAULT_PAGINATION}. The keys {@code id}, {@code price}, {@code availability} and
+ * {@code soldout} describe the fields of the items (see {@link ItemExtractor}); items without them are identified by
+ * their link, have no price and are considered sold out if they contain one of
+ * {@link ItemExtractor#DEFAULT_SOLD_OUT}. The keys starting with {@code state} describe the products embedded as
+ * JSON (see {@link JsonState}), which targets of the service can read with {@code extraction=json}; {@code state-url}
+ * defaults to {@code url}, and at least one of {@code state-flag} and {@code state-title} is required. The key
+ * {@code detail} has the items of interest verified on their detail pages (see {@link DetailPage}) before they are
+ * reported; {@code detail-soldout} defaults to {@code soldout}.
+ * </p>
+ */
+public class CheckerRegistry {
+    private static final Map<String, Factory> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<String, Rule> RULES = new ConcurrentHashMap<>();
+
+    static {
+        register("zolonda", ZolondaChecker::new);
+        RULES.put("zolonda", ZolondaChecker.RULE);
+        register("wbw", WBWChecker::new);
+        RULES.put("wbw", WBWChecker.RULE);
+    }
+
+    private CheckerRegistry() {
+    }
+
+    /**
+     * Registers a factory that creates a {@link Checker} for a target of the given service.
+     * <p>
+     * A previously registered factory for the same service name is replaced.
+     * </p>
+     *
+     * @param service The service name.
+     * @param factory The factory creating a checker for a target.
+     */
+    public static void register(String service, Factory factory) {
+        FACTORIES.put(service, factory);
+        RULES.remove(service);
+    }
+
+    /**
+     * Registers a {@link RuleChecker} for the given rule under the name of the rule.
+     *
+     * @param rule The rule to be evaluated by the checker.
+     */
+    public static void register(Rule rule) {
+        register(rule.getName(), target -> new RuleChecker(rule, target));
+        RULES.put(rule.getName(), rule);
+    }
+
+    /**
+     * Checks whether a checker is registered for the given service name.
+     *
+     * @param service The service name.
+     * @return {@code true} if a checker is registered, {@code false} otherwise.
+     */
+    public static boolean isRegistered(String service) {
+        return FACTORIES.containsKey(service);
+    }
+
+    /**
+     * Returns the rule describing the given service.
+     *
+     * @param service The service name.
+     * @return The {@link Rule} evaluated by the checkers of the service, or {@code null} if the service is not
+     * described by a rule.
+     */
+    public static Rule getRule(String service) {
+        return RULES.get(service);
+    }
+
+    /**
+     * Creates the checker for the given target, which fetches and evaluates the webpage of the target.
+     *
+     * @param target The target to be checked.
+     * @return The {@link Checker} for the webpage.
+     * @throws IllegalArgumentException If no checker is registered for the service of the target.
+     */
+    public static Checker create(Target target) {
+        Factory factory = FACTORIES.get(target.getService());
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown service: " + target.getService());
+        }
+        return factory.create(target);
+    }
+
+    /**
+     * Creates the checkers for several targets watching the same listing, fetching the listing only once.
+     * <p>
+     * If the service of the targets is described by a {@link Rule}, a single {@link RuleChecker} evaluates the keywords
+     * of all targets in one pass over the items (see {@link SubscriptionIndex}). Otherwise, every target gets a checker
+     * of its own, which fetches the listing by itself.
+     * </p>
+     *
+     * @param targets The targets to be checked, all with the same {@link Target#getListingKey()}.
+     * @return A {@link List} with one {@link Checker} per target, in the order of the targets.
+     * @throws IllegalArgumentException If no checker is registered for the service of the targets, or if a target has
+     *                                  keywords of its own although the service is not described by a rule.
+     */
+    public static List<Checker> create(List<Target> targets) {
+        Rule rule = getRule(targets.getFirst().getService());
+        boolean ownKeywords = targets.stream()
+            .anyMatch(target -> target.getKeywords() != null || target.getExcluded() != null);
+        if (rule == null && ownKeywords) {
+            throw new IllegalArgumentException("Service " + targets.getFirst().getService()
+                + " does not support keywords per target");
+        }
+        if (rule == null || targets.size() == 1 && !ownKeywords) {
+            return targets.stream().map(CheckerRegistry::create).toList();
+        }
+        RuleChecker checker = new RuleChecker(rule, new SubscriptionIndex(targets, rule));
+        List<Checker> checkers = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            checkers.add(checker.getSubscriber(i));
+        }
+        return checkers;
+    }
+
+    /**
+     * Reads all rules from a rules file and registers a {@link RuleChecker} for each of them.
+     *
+     * @param path The path of the rules file.
+     * @return A {@link List} of all rules read from the file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a rule of the file is incomplete or one of its selectors is invalid.
+     */
+    public static List<Rule> load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Set<String> services = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            int separator = key.lastIndexOf('.');
+            if (separator > 0) {
+                services.add(key.substring(0, separator));
+            }
+        }
+        List<Rule> rules = services.stream().map(service -> toRule(service, properties)).toList();
+        rules.forEach(CheckerRegistry::register);
+        return rules;
+    }
+
+    /**
+     * Builds the rule for the given service from the properties of a rules file.
+     *
+     * @param service    The service name.
+     * @param properties The properties of the rules file.
+     * @return The {@link Rule} for the service.
+     * @throws IllegalArgumentException If the rule is incomplete or one of its selectors is invalid.
+     */
+    private static Rule toRule(String service, Properties properties) {
+        String container = properties.getProperty(service + ".container");
+        String keywords = properties.getProperty(service + ".keywords");
+        if (container == null || keywords == null) {
+            throw new IllegalArgumentException("Rule " + service + " requires a container and keywords");
+        }
+        List<String> soldOut = properties.containsKey(service + ".soldout")
+            ? split(properties.getProperty(service + ".soldout"))
+            : ItemExtractor.DEFAULT_SOLD_OUT;
+        try {
+            return Rule.builder(service, container, split(keywords))
+                .text(properties.getProperty(service + ".text"))
+                .exclude(split(properties.getProperty(service + ".exclude", "")))
+                .link(properties.getProperty(service + ".link", "a[href]"))
+                .pagination(properties.getProperty(service + ".pagination"))
+                .items(new ItemExtractor(properties.getProperty(service + ".id"),
+                    properties.getProperty(service + ".price"),
+                    properties.getProperty(service + ".availability"),
+                    soldOut))
+                .json(toJsonState(service, properties))
+                .detail(toDetailPage(service, properties, soldOut))
+                .build();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Rule " + service + " is invalid: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the detail page for the given service from the properties of a rules file.
+     *
+     * @param service    The service name.
+     * @param properties The properties of the rules file.
+     * @param soldOut    The sold-out keywords of the items, used unless the rule has a {@code detail-soldout} key.
+     * @return The {@link DetailPage} of the service, or {@code null} if the rule has no {@code detail} key.
+     */
+    private static DetailPage toDetailPage(String service, Properties properties, List<String> soldOut) {
+        String availability = properties.getProperty(service + ".detail");
+        if (availability == null) {
+            return null;
+        }
+        return new DetailPage(availability, properties.containsKey(service + ".detail-soldout")
+            ? split(properties.getProperty(service + ".detail-soldout"))
+            : soldOut);
+    }
+
+    /**
+     * Builds the JSON state for the given service from the properties of a rules file.
+     *
+     * @param service    The service name.
+     * @param properties The properties of the rules file.
+     * @return The {@link JsonState} of the service, or {@code null} if the rule has no {@code state} key.
+     * @throws IllegalArgumentException If the JSON state has neither a flag nor a title member.
+     */
+    private static JsonState toJsonState(String service, Properties properties) {
+        String script = properties.getProperty(service + ".state");
+        if (script == null) {
+            return null;
+        }
+        return new JsonState(script,
+            properties.getProperty(service + ".state-url", "url"),
+            properties.getProperty(service + ".state-flag"),
+            properties.getProperty(service + ".state-title"),
+            properties.getProperty(service + ".state-id"),
+            properties.getProperty(service + ".state-price"));
+    }
+
+    /**
+     * Splits a comma-separated list of keywords.
+     *
+     * @param keywords The comma-separated keywords.
+     * @return A {@link List} of the trimmed, non-empty keywords.
+     */
+    private static List<String> split(String keywords) {
+        return Arrays.stream(keywords.split(","))
+            .map(String::trim)
+            .filter(keyword -> !keyword.isEmpty())
+            .toList();
+    }
+
+    /**
+     * Creates a {@link Checker} for a {@link Target}.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        /**
+         * Creates a checker that fetches and evaluates the webpage of the given target.
+         *
+         * @param target The target to be checked.
+         * @return The {@link Checker} for the webpage.
+         */
+        Checker create(Target target);
+    }
+}
@@ -0,0 +1,206 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops sending requests to hosts that keep failing, so that a single misbehaving shop does not slow down every check.
+ * <p>
+ * Every host has a breaker that counts the consecutive requests that have failed, i.e. that could not be connected,
+ * timed out or were answered with a server error other than {@code 503}. Once {@code failures} requests in a row have
+ * failed, the breaker opens and every request to the host fails right away with a {@link CircuitOpenException} for
+ * the {@code cool-down}. After the cool-down, a single request is let through to probe the host: if it succeeds, the
+ * breaker closes again, otherwise it stays open for another cool-down.
+ * </p>
+ * <p>
+ * The breaker opens after {@value #DEFAULT_FAILURES} failures and cools down for {@value #DEFAULT_COOL_DOWN_SECONDS}
+ * seconds by default. These can be changed with the system properties {@value #FAILURES_PROPERTY} and
+ * {@value #COOL_DOWN_PROPERTY} (in seconds), or with {@link #setLimit(int, Duration)}. A limit of 0 failures disables
+ * the breakers.
+ * </p>
+ */
+public class CircuitBreaker {
+    /**
+     * The system property holding the number of consecutive failures after which a host is skipped.
+     */
+    public static final String FAILURES_PROPERTY = "shopstockalert.breaker.failures";
+    /**
+     * The system property holding the time for which a failing host is skipped in seconds.
+     */
+    public static final String COOL_DOWN_PROPERTY = "shopstockalert.breaker.cooldown";
+    static final int DEFAULT_FAILURES = 3;
+    static final long DEFAULT_COOL_DOWN_SECONDS = 300;
+
+    private static final Map<String, Breaker> BREAKERS = new ConcurrentHashMap<>();
+    private static final LongAdder REJECTED = new LongAdder();
+    private static volatile int failures =
+        Integer.parseInt(System.getProperty(FAILURES_PROPERTY, Integer.toString(DEFAULT_FAILURES)));
+    private static volatile Duration coolDown = Duration.ofSeconds(
+        Long.parseLong(System.getProperty(COOL_DOWN_PROPERTY, Long.toString(DEFAULT_COOL_DOWN_SECONDS))));
+    /**
+     * The clock the cool-downs are measured with, or {@code null} to use {@link System#nanoTime()}.
+     */
+    private static volatile Clock clock;
+
+    private CircuitBreaker() {
+    }
+
+    /**
+     * Changes the limit applied to every host and closes all breakers.
+     *
+     * @param consecutiveFailures The number of consecutive failures after which a host is skipped, or 0 to disable the
+     *                            breakers.
+     * @param coolDownTime        The time for which a failing host is skipped before it is probed again.
+     */
+    public static void setLimit(int consecutiveFailures, Duration coolDownTime) {
+        failures = Math.max(0, consecutiveFailures);
+        coolDown = coolDownTime;
+        BREAKERS.clear();
+    }
+
+    /**
+     * Measures the cool-downs of all hosts with the given clock instead of {@link System#nanoTime()}, e.g. to move time
+     * forward in tests. All breakers are closed.
+     *
+     * @param testClock The clock to be used, or {@code null} to use {@link System#nanoTime()} again.
+     */
+    static void setClock(Clock testClock) {
+        clock = testClock;
+        BREAKERS.clear();
+    }
+
+    /**
+     * Returns the current time of the clock the cool-downs are measured with.
+     *
+     * @return The current value of {@link System#nanoTime()}, or the nanoseconds since the epoch of the clock set with
+     * {@link #setClock(Clock)}.
+     */
+    private static long now() {
+        Clock current = clock;
+        if (current == null) {
+            return System.nanoTime();
+        }
+        Instant instant = current.instant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * Checks whether a request may be sent to the host of the given URL.
+     * <p>
+     * If the breaker of the host is open but its cool-down has passed, the request is let through as probe and the
+     * breaker stays open for all other requests for another cool-down.
+     * </p>
+     *
+     * @param url The URL to be requested.
+     * @throws CircuitOpenException If the breaker of the host is open.
+     */
+    static void acquire(String url) throws CircuitOpenException {
+        if (failures <= 0) {
+            return;
+        }
+        Breaker breaker = BREAKERS.get(Website.host(url));
+        if (breaker == null) {
+            return;
+        }
+        long remaining = breaker.acquire(coolDown.toNanos(), now());
+        if (remaining > 0) {
+            REJECTED.increment();
+            throw new CircuitOpenException(url, Duration.ofNanos(remaining));
+        }
+    }
+
+    /**
+     * Records that a request to the host of the given URL has been answered, closing its breaker.
+     *
+     * @param url The requested URL.
+     */
+    static void success(String url) {
+        if (failures > 0) {
+            Breaker breaker = BREAKERS.get(Website.host(url));
+            if (breaker != null) {
+                breaker.success();
+            }
+        }
+    }
+
+    /**
+     * Records that a request to the host of the given URL has failed, opening its breaker if the host has failed too
+     * often in a row.
+     *
+     * @param url The requested URL.
+     */
+    static void failure(String url) {
+        int limit = failures;
+        if (limit > 0) {
+            BREAKERS.computeIfAbsent(Website.host(url), ignored -> new Breaker())
+                .failure(limit, coolDown.toNanos(), now());
+        }
+    }
+
+    /**
+     * Returns the number of hosts whose breaker is currently open.
+     *
+     * @return The number of skipped hosts.
+     */
+    public static long getOpen() {
+        return BREAKERS.values().stream().filter(Breaker::isOpen).count();
+    }
+
+    /**
+     * Returns the number of requests that have not been sent because the breaker of their host was open.
+     *
+     * @return The number of rejected requests.
+     */
+    public static long getRejected() {
+        return REJECTED.sum();
+    }
+
+    /**
+     * The breaker of a single host.
+     */
+    private static final class Breaker {
+        private int failed;
+        /**
+         * The time until which the breaker is open (see {@link #now()}), or 0 if it is closed.
+         */
+        private long openUntil;
+
+        /**
+         * Lets a request through unless the breaker is open, letting a probe through after the cool-down.
+         *
+         * @param coolDown The cool-down in nanoseconds.
+         * @param now      The current time, see {@link #now()}.
+         * @return The number of nanoseconds until the next probe if the request is rejected, 0 otherwise.
+         */
+        private synchronized long acquire(long coolDown, long now) {
+            if (openUntil == 0) {
+                return 0;
+            }
+            if (now - openUntil < 0) {
+                return openUntil - now;
+            }
+            openUntil = now + coolDown;
+            return 0;
+        }
+
+        private synchronized void success() {
+            failed = 0;
+            openUntil = 0;
+        }
+
+        private synchronized void failure(int limit, long coolDown, long now) {
+            failed++;
+            if (openUntil != 0 || failed >= limit) {
+                openUntil = now + coolDown;
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return openUntil != 0;
+        }
+    }
+}
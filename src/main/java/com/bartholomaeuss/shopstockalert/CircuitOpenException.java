@@ -0,0 +1,37 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Signals that a request has not been sent because the host has failed repeatedly.
+ * <p>
+ * This exception is thrown for every request to a host whose {@link CircuitBreaker} is open, until its cool-down has
+ * passed and a single request is let through to probe whether the host has recovered.
+ * </p>
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructs a new {@code CircuitOpenException}.
+     *
+     * @param url        The requested URL.
+     * @param retryAfter The time after which the host will be probed again.
+     */
+    public CircuitOpenException(String url, Duration retryAfter) {
+        super("Host of " + url + " is failing, next attempt in " + retryAfter.toSeconds() + "s");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the time after which the host will be probed again.
+     *
+     * @return The {@link Duration} to wait before the next request.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,267 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the checks of many {@link Target}s periodically from within a single process.
+ * <p>
+ * A single scheduler thread triggers the checks of all targets. The check itself
+ * is handed off to a virtual thread, so a slow website only blocks its own check and never the
+ * scheduler or the checks of other targets. Notifications are put into an {@link Outbox} and sent
+ * independently of the checks. The next check of a target is only scheduled once its previous check
+ * has finished, so the checks of a target never overlap. Targets watching the same listing (see
+ * {@link Target#getListingKey()}) are checked together, so the listing is fetched once per check no matter how many
+ * targets watch it.
+ * </p>
+ * <p>
+ * The interval of every target adapts to how often its webpage changes, within the minimum and maximum
+ * interval of the target (see {@link AdaptiveInterval}). Requests to a host are rate-limited by the
+ * {@link HostRateLimiter}; if a host asks to retry later, or is skipped by its {@link CircuitBreaker} after failing
+ * repeatedly, the next check of the target is postponed until the host may be requested again.
+ * </p>
+ * <p>
+ * Several daemons can share the work of a large target list by forming a group through a shared directory (see
+ * {@link ShardCoordinator}): every daemon schedules all listings, but checks only those that belong to it, and the
+ * listings are redistributed whenever a daemon joins or leaves the group. A daemon taking over a listing that another
+ * daemon has checked since forgets the validators, fingerprints and pagination links it remembers for the listing, so
+ * its first check evaluates the listing in full against the shared snapshots.
+ * </p>
+ * <p>
+ * Every {@link #REPORT_INTERVAL} the daemon reports how many checks were skipped because the
+ * {@link Fingerprint} of the watched items had not changed, how many requests the {@link FetchCache} has
+ * served, and how many requests have timed out, been hedged or been skipped. Once every {@link #COMPACTION_INTERVAL} the {@link SeenStore} is compacted.
+ * </p>
+ */
+public class Daemon {
+    /**
+     * The interval in which statistics are reported.
+     */
+    static final Duration REPORT_INTERVAL = Duration.ofMinutes(10);
+    /**
+     * The interval in which the store of notified links is compacted.
+     */
+    static final Duration COMPACTION_INTERVAL = Duration.ofDays(1);
+
+    private final Map<String, List<Target>> listings = new LinkedHashMap<>();
+    private final SeenStore seenStore;
+    private final SnapshotStore snapshots;
+    private final History history;
+    private final Outbox outbox;
+    private final ShardCoordinator shards;
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "shopstockalert-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, AdaptiveInterval> intervals = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code Daemon} for the given targets.
+     *
+     * @param targets   The targets to be checked.
+     * @param seenStore The store remembering the links that have already been notified.
+     * @param snapshots The store remembering the items found by the previous check of every target.
+     * @param outbox    The outbox the notifications are put into.
+     */
+    public Daemon(List<Target> targets, SeenStore seenStore, SnapshotStore snapshots, Outbox outbox) {
+        this(targets, seenStore, snapshots, null, outbox, null);
+    }
+
+    /**
+     * Constructs a new {@code Daemon} that checks only its share of the given targets.
+     * <p>
+     * The other daemons of the group are expected to run with the same targets and a {@link SnapshotStore} in the
+     * same shared directory (see {@link SnapshotStore#openShared(java.nio.file.Path)}).
+     * </p>
+     *
+     * @param targets   The targets to be checked by the group.
+     * @param seenStore The store remembering the links that have already been notified.
+     * @param snapshots The store remembering the items found by the previous check of every target.
+     * @param history   The history the items found by every check are recorded in, or {@code null} to record nothing.
+     * @param outbox    The outbox the notifications are put into.
+     * @param shards    The coordinator of the group, or {@code null} to check all targets.
+     */
+    public Daemon(List<Target> targets, SeenStore seenStore, SnapshotStore snapshots, History history, Outbox outbox,
+                  ShardCoordinator shards) {
+        for (Target target : targets) {
+            listings.computeIfAbsent(target.getListingKey(), key -> new ArrayList<>()).add(target);
+        }
+        this.seenStore = seenStore;
+        this.snapshots = snapshots;
+        this.history = history;
+        this.outbox = outbox;
+        this.shards = shards;
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Schedules the checks of all targets.
+     * <p>
+     * The first check of every listing is started immediately; every further check is started
+     * once the adapted interval of the respective listing has passed after the previous check.
+     * </p>
+     */
+    public void start() {
+        int targets = 0;
+        for (Map.Entry<String, List<Target>> listing : listings.entrySet()) {
+            intervals.put(listing.getKey(), AdaptiveInterval.of(listing.getValue()));
+            schedule(listing.getKey(), Duration.ZERO);
+            targets += listing.getValue().size();
+        }
+        scheduler.scheduleAtFixedRate(Daemon::report,
+            REPORT_INTERVAL.toMillis(), REPORT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::compact,
+            COMPACTION_INTERVAL.toMillis(), COMPACTION_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        System.out.println("Watching " + targets + " targets on " + listings.size() + " listings.");
+        if (shards != null) {
+            reportShare();
+            scheduler.scheduleWithFixedDelay(this::refresh, ShardCoordinator.REFRESH_INTERVAL.toMillis(),
+                ShardCoordinator.REFRESH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Lists the living members of the group and reports the new share of this daemon if the group has changed.
+     */
+    private void refresh() {
+        try {
+            if (shards.refresh()) {
+                reportShare();
+            }
+        } catch (IOException e) {
+            System.err.println("Refreshing the members of " + shards.getDirectory() + " failed: " + e);
+        }
+    }
+
+    /**
+     * Prints the members of the group and the number of listings this daemon is responsible for.
+     */
+    private void reportShare() {
+        long owned = listings.keySet().stream().filter(shards::owns).count();
+        System.out.println("Member " + shards.getId() + " of " + shards.getMembers().size() + " "
+            + shards.getMembers() + ", checking " + owned + " of " + listings.size() + " listings.");
+    }
+
+    /**
+     * Prints how many checks have been skipped because the fingerprint of the watched items had not changed, how
+     * many webpage requests have been served without a download of their own, and how many requests have missed their
+     * deadline, been hedged or not been sent to a failing host.
+     */
+    private static void report() {
+        System.out.printf("Fingerprint unchanged for %d of %d checks (%.1f%% skipped).%n",
+            Fingerprint.getSkips(), Fingerprint.getChecks(), Fingerprint.getSkipRate() * 100);
+        System.out.printf("Fetch cache: %d hits, %d coalesced, %d misses, %d KB cached.%n",
+            FetchCache.getHits(), FetchCache.getCoalesced(), FetchCache.getMisses(), FetchCache.getSize() >> 10);
+        System.out.printf("Fetch deadlines: %d timed out, %d hedged; %d hosts skipped, %d requests not sent.%n",
+            Website.getTimedOut(), Website.getHedged(), CircuitBreaker.getOpen(), CircuitBreaker.getRejected());
+        System.out.printf("Detail pages: %d fetched, %d cached, %d sold out, %d failed.%n",
+            DetailVerifier.getFetched(), DetailVerifier.getCached(), DetailVerifier.getSoldOut(),
+            DetailVerifier.getFailed());
+    }
+
+    /**
+     * Compacts the store of notified links on a virtual thread.
+     */
+    private void compact() {
+        workers.execute(() -> {
+            try {
+                seenStore.compact();
+            } catch (IOException e) {
+                System.err.println("Compaction of notified links failed: " + e);
+            }
+        });
+    }
+
+    /**
+     * Blocks the calling thread until the daemon has been stopped.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void awaitTermination() throws InterruptedException {
+        while (!scheduler.awaitTermination(1, TimeUnit.DAYS)) {
+            // keep waiting until stop() is called
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops scheduling new checks. Checks that are already running are allowed to finish.
+     */
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Schedules the next check of the given listing unless the daemon has been stopped.
+     *
+     * @param listing The listing key of the targets to be checked.
+     * @param delay   The time until the check.
+     */
+    private void schedule(String listing, Duration delay) {
+        try {
+            scheduler.schedule(() -> submit(listing), delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the daemon has been stopped
+        }
+    }
+
+    /**
+     * Starts the check of the targets of the given listing on a virtual thread and schedules the next check once it
+     * has finished.
+     * <p>
+     * If the daemon is a member of a group, the listing is only checked if it belongs to this daemon and no other
+     * member holds its lease; otherwise, the check is skipped and the listing is looked at again after its interval,
+     * when the group may have changed.
+     * </p>
+     *
+     * @param listing The listing key of the targets to be checked.
+     */
+    private void submit(String listing) {
+        List<Target> targets = listings.get(listing);
+        Target target = targets.getFirst();
+        AdaptiveInterval interval = intervals.get(listing);
+        if (shards != null && !shards.owns(listing)) {
+            schedule(listing, interval.get());
+            return;
+        }
+        workers.execute(() -> {
+            Duration next = interval.get();
+            try (ShardCoordinator.Lease lease = shards == null ? null : shards.tryLease(listing)) {
+                if (lease != null && lease.isHandedOver()) {
+                    RuleChecker.forget(listing);
+                }
+                if (shards == null || lease != null) {
+                    next = interval.update(App.check(targets, seenStore, snapshots, history, outbox));
+                }
+            } catch (RetryAfterException e) {
+                System.err.println("Check of " + target + " postponed, host asked to retry after "
+                    + e.getRetryAfter().toSeconds() + "s.");
+                if (e.getRetryAfter().compareTo(next) > 0) {
+                    next = e.getRetryAfter();
+                }
+            } catch (CircuitOpenException e) {
+                System.err.println("Check of " + target + " postponed, host is failing, next attempt in "
+                    + e.getRetryAfter().toSeconds() + "s.");
+                if (e.getRetryAfter().compareTo(next) > 0) {
+                    next = e.getRetryAfter();
+                }
+            } catch (Exception e) {
+                System.err.println("Check of " + target + " failed: " + e);
+            }
+            schedule(listing, next);
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.util.Locale;
+
+/**
+ * A change of a single item between two {@link Snapshot}s of a listing.
+ *
+ * @param type     The kind of change.
+ * @param item     The item as listed now, or as listed before if it has been removed.
+ * @param previous The item as listed before, or {@code null} if it is new.
+ */
+public record Delta(Type type, Item item, Item previous) {
+    /**
+     * Describes this change in a single line, as used in notifications.
+     *
+     * @return A description of the change, e.g. "Price drop: Sneaker 79.99 (was 99.99) /sneaker".
+     */
+    public String describe() {
+        String description = type.getLabel() + ": " + item.describe();
+        if (type == Type.PRICE_DROP) {
+            description += " (was " + Item.formatPrice(previous.price()) + ")";
+        }
+        return description;
+    }
+
+    /**
+     * The kinds of changes of an item.
+     */
+    public enum Type {
+        /**
+         * The item is listed for the first time.
+         */
+        NEW("New"),
+        /**
+         * The item is no longer listed.
+         */
+        REMOVED("Removed"),
+        /**
+         * The price of the item has dropped.
+         */
+        PRICE_DROP("Price drop"),
+        /**
+         * The item was sold out and is available again.
+         */
+        BACK_IN_STOCK("Back in stock");
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the label of this kind of change used in notifications.
+         *
+         * @return The label, e.g. "Price drop".
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Returns the kind of change with the given name, ignoring case and accepting dashes for underscores.
+         *
+         * @param name The name of the kind of change, e.g. "price-drop".
+         * @return The {@link Type}.
+         * @throws IllegalArgumentException If no kind of change has the given name.
+         */
+        public static Type parse(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.util.List;
+
+/**
+ * Describes how the detail page of an item tells whether the item can be bought.
+ * <p>
+ * Listings are often cached or rendered from stale data, so an item may still be listed as available while its detail
+ * page already says that it is sold out. A rule with a detail page has the link of every item of interest followed
+ * before the item is reported (see {@link DetailVerifier}). A detail page consists of
+ * </p>
+ * <ul>
+ *     <li>an <b>availability</b> selector matching the element that is only present while the item can be bought,
+ *     e.g. {@code button.add-to-cart:not([disabled])} or {@code .stock},</li>
+ *     <li>a list of <b>sold-out</b> keywords; an item whose availability text contains one of them (case-insensitive)
+ *     is sold out even though the element is present.</li>
+ * </ul>
+ */
+public class DetailPage {
+    private final Evaluator availability;
+    private final KeywordMatcher soldOut;
+
+    /**
+     * Constructs a new {@code DetailPage} and compiles its selector and keywords.
+     *
+     * @param availability The CSS selector matching the element of the detail page that tells whether the item is
+     *                     available.
+     * @param soldOut      The keywords marking an item as sold out.
+     * @throws org.jsoup.select.Selector.SelectorParseException If the selector is invalid.
+     */
+    public DetailPage(String availability, List<String> soldOut) {
+        this.availability = QueryParser.parse(availability);
+        this.soldOut = new KeywordMatcher(soldOut, List.of());
+    }
+
+    /**
+     * Checks whether the item shown on the given detail page is available.
+     *
+     * @param root The document of the detail page.
+     * @return {@code true} if the page contains the availability element and its text contains none of the sold-out
+     * keywords, {@code false} otherwise.
+     */
+    public boolean isAvailable(Element root) {
+        Element element = root.selectFirst(availability);
+        return element != null && !soldOut.matches(element);
+    }
+}
@@ -0,0 +1,271 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Confirms the availability of the items of interest on their detail pages before they are reported.
+ * <p>
+ * The detail pages linked from a listing are fetched in parallel on a fixed number of virtual threads per check, so a
+ * listing with many items of interest does not flood the shop; the {@link HostRateLimiter} and the
+ * {@link CircuitBreaker} of the host apply as for any other {@link Website}. As the detail pages of a listing share the
+ * host of the listing, the rate of that host rather than the concurrency bounds how fast they are fetched: with the
+ * default of {@value HostRateLimiter#DEFAULT_RATE} requests per second, only a burst of
+ * {@value HostRateLimiter#DEFAULT_BURST} requests, which covers the pages of the listing and the detail pages fetched
+ * at the same time, is sent at once, and every further page waits for its token. Every page is evaluated with the
+ * {@link DetailPage} of the rule, and the verdict is cached per rule and link for a time to live (TTL), so an item
+ * that stays listed is not verified again on every check. A verdict whose TTL has expired is kept until it is evicted
+ * and revalidated with a conditional request, so an unchanged detail page is answered with {@code 304 Not Modified}
+ * and keeps its verdict. The validators of a detail page are forgotten together with its verdict, and a page answered
+ * with {@code 304 Not Modified} whose verdict has been evicted in the meantime is fetched again without them.
+ * </p>
+ * <p>
+ * The TTL defaults to {@value #DEFAULT_TTL_SECONDS} seconds and the number of detail pages fetched at the same time
+ * for a check to {@value #DEFAULT_CONCURRENCY}. They can be changed with the system properties {@value #TTL_PROPERTY}
+ * (in seconds) and {@value #CONCURRENCY_PROPERTY}, or with {@link #setLimit(Duration, int)}. At most
+ * {@value #CAPACITY} verdicts are cached; the least recently used ones are evicted first.
+ * </p>
+ */
+public class DetailVerifier {
+    /**
+     * The system property holding the time to live of a cached verdict in seconds.
+     */
+    public static final String TTL_PROPERTY = "shopstockalert.detail.ttl";
+    /**
+     * The system property holding the number of detail pages fetched at the same time for a check.
+     */
+    public static final String CONCURRENCY_PROPERTY = "shopstockalert.detail.concurrency";
+    static final long DEFAULT_TTL_SECONDS = 3600;
+    static final int DEFAULT_CONCURRENCY = 4;
+    static final int CAPACITY = 10_000;
+    /**
+     * The prefix of the keys under which the {@link Website} remembers the validators of the detail pages.
+     */
+    private static final String VALIDATORS = "detail";
+
+    /**
+     * The cached verdicts in access order, guarded by itself.
+     */
+    private static final LinkedHashMap<Key, Verdict> VERDICTS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Verdict> eldest) {
+            if (size() <= CAPACITY) {
+                return false;
+            }
+            Website.forgetPage(validators(eldest.getKey()));
+            return true;
+        }
+    };
+    private static final LongAdder FETCHED = new LongAdder();
+    private static final LongAdder CACHED = new LongAdder();
+    private static final LongAdder SOLD_OUT = new LongAdder();
+    private static final LongAdder FAILED = new LongAdder();
+    private static volatile Duration ttl = Duration.ofSeconds(
+        Long.parseLong(System.getProperty(TTL_PROPERTY, Long.toString(DEFAULT_TTL_SECONDS))));
+    private static volatile int concurrency = Math.max(1,
+        Integer.parseInt(System.getProperty(CONCURRENCY_PROPERTY, Integer.toString(DEFAULT_CONCURRENCY))));
+
+    private DetailVerifier() {
+    }
+
+    /**
+     * Changes the limits of the verifier and clears its cache, including the validators of the detail pages.
+     *
+     * @param timeToLive  The time for which a verdict is served from the cache, or {@link Duration#ZERO} to verify
+     *                    every item on every check.
+     * @param parallelism The number of detail pages fetched at the same time for a check.
+     */
+    public static void setLimit(Duration timeToLive, int parallelism) {
+        ttl = timeToLive;
+        concurrency = Math.max(1, parallelism);
+        synchronized (VERDICTS) {
+            VERDICTS.clear();
+            Website.forget(VALIDATORS);
+        }
+    }
+
+    /**
+     * Verifies the items behind the given links on their detail pages.
+     * <p>
+     * Relative links are resolved against the URL of the listing. Links with a verdict within its TTL are answered from
+     * the cache; all others are fetched in parallel, and the calling thread waits until all of them have been
+     * evaluated.
+     * </p>
+     *
+     * @param detail The detail page of the rule that found the links.
+     * @param base   The URL of the listing the links were found on.
+     * @param hrefs  The links to the detail pages, as found on the listing.
+     * @return A {@link Map} from every link whose detail page could be evaluated to {@code true} if the item is
+     * available and {@code false} if it is sold out. Links whose detail page could not be fetched are missing.
+     */
+    public static Map<String, Boolean> verify(DetailPage detail, String base, Collection<String> hrefs) {
+        Map<String, Boolean> verified = new ConcurrentHashMap<>();
+        Map<String, Key> stale = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (String href : new LinkedHashSet<>(hrefs)) {
+            Key key = new Key(detail, resolve(base, href));
+            Verdict cached;
+            synchronized (VERDICTS) {
+                cached = VERDICTS.get(key);
+            }
+            if (cached != null && now - cached.verified() < ttl.toNanos()) {
+                CACHED.increment();
+                count(verified, href, cached.available());
+            } else {
+                stale.put(href, key);
+            }
+        }
+        if (stale.isEmpty()) {
+            return verified;
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, stale.size()),
+            Thread.ofVirtual().name("shopstockalert-detail-", 0).factory())) {
+            stale.forEach((href, key) -> executor.execute(() -> {
+                Boolean available = fetch(key);
+                if (available != null) {
+                    count(verified, href, available);
+                }
+            }));
+        }
+        return verified;
+    }
+
+    /**
+     * Fetches the detail page of the given key and caches the verdict.
+     * <p>
+     * If the page is answered with {@code 304 Not Modified}, but its verdict has been evicted since it was fetched the
+     * last time, it is fetched again without validators, as the verdict cannot be told from a response without body.
+     * </p>
+     *
+     * @param key The rule and the absolute URL of the detail page.
+     * @return {@code true} if the item is available, {@code false} if it is sold out, or {@code null} if the page could
+     * not be fetched.
+     */
+    private static Boolean fetch(Key key) {
+        try {
+            Website page = new Website(key.url(), validators(key));
+            Boolean available = null;
+            if (page.isNotModified()) {
+                Verdict previous;
+                synchronized (VERDICTS) {
+                    previous = VERDICTS.get(key);
+                }
+                if (previous != null) {
+                    available = previous.available();
+                } else {
+                    FETCHED.increment();
+                    Website.forgetPage(validators(key));
+                    page = new Website(key.url(), validators(key));
+                }
+            }
+            if (available == null) {
+                available = key.detail().isAvailable(page.getDOM());
+            }
+            FETCHED.increment();
+            synchronized (VERDICTS) {
+                VERDICTS.put(key, new Verdict(available, System.nanoTime()));
+            }
+            return available;
+        } catch (IOException e) {
+            FAILED.increment();
+            System.out.println("Unable to verify " + key.url() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the key under which the {@link Website} remembers the validators of the detail page of the given key.
+     *
+     * @param key The rule and the absolute URL of the detail page.
+     * @return The key of the validators, which is shared by all rules linking to the page.
+     */
+    private static String validators(Key key) {
+        return VALIDATORS + " " + key.url();
+    }
+
+    private static void count(Map<String, Boolean> verified, String href, boolean available) {
+        if (!available) {
+            SOLD_OUT.increment();
+        }
+        verified.put(href, available);
+    }
+
+    /**
+     * Resolves a link found on a listing against the URL of the listing.
+     *
+     * @param base The URL of the listing.
+     * @param href The link as found on the listing.
+     * @return The absolute URL of the link, or the link itself if either of them is not a valid URI.
+     */
+    private static String resolve(String base, String href) {
+        try {
+            return URI.create(base).resolve(href).toString();
+        } catch (IllegalArgumentException e) {
+            return href;
+        }
+    }
+
+    /**
+     * Returns the number of detail pages that have been fetched, including those answered with
+     * {@code 304 Not Modified}.
+     *
+     * @return The number of fetched detail pages.
+     */
+    public static long getFetched() {
+        return FETCHED.sum();
+    }
+
+    /**
+     * Returns the number of items that have been verified from the cache.
+     *
+     * @return The number of cached verdicts used.
+     */
+    public static long getCached() {
+        return CACHED.sum();
+    }
+
+    /**
+     * Returns the number of items that have been found sold out on their detail page, from the cache or not.
+     *
+     * @return The number of items verified as sold out.
+     */
+    public static long getSoldOut() {
+        return SOLD_OUT.sum();
+    }
+
+    /**
+     * Returns the number of detail pages that could not be fetched.
+     *
+     * @return The number of failed verifications.
+     */
+    public static long getFailed() {
+        return FAILED.sum();
+    }
+
+    /**
+     * The key of a cached verdict.
+     *
+     * @param detail The detail page of the rule, compared by identity.
+     * @param url    The absolute URL of the detail page.
+     */
+    private record Key(DetailPage detail, String url) {
+    }
+
+    /**
+     * A cached verdict.
+     *
+     * @param available Whether the item is available.
+     * @param verified  The {@link System#nanoTime()} at which the detail page was fetched.
+     */
+    private record Verdict(boolean available, long verified) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the alerts for one recipient over a short window and sends them as a single email.
+ * <p>
+ * The window of a recipient starts with the first alert added for it. When the window has passed, all alerts
+ * collected for the recipient are put into the {@link Outbox} as one email; the next alert starts a new window.
+ * Alerts are grouped by sender, recipient and window length, so targets with different windows do not delay each other.
+ * </p>
+ * <p>
+ * Every alert is written to its own file in the digest directory of the outbox before {@link #add(Duration,
+ * Notification)} returns, together with the end of its window, and the file is only deleted once the digest has been
+ * put into the outbox. Alerts left over from a previous run are collected again when the outbox is opened, and their
+ * digest is sent when the original window has passed, or right away if it already has.
+ * </p>
+ */
+public class Digest {
+    private static final String SUFFIX = ".alert";
+    /**
+     * The maximum time {@link #close()} waits for a digest that is being put into the outbox.
+     */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Path directory;
+    private final Outbox outbox;
+    /**
+     * The pending digests, guarded by this.
+     */
+    private final Map<Key, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shopstockalert-digest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Digest(Path directory, Outbox outbox) {
+        this.directory = directory;
+        this.outbox = outbox;
+    }
+
+    /**
+     * Opens the digests in the given directory and collects the alerts left over from a previous run again.
+     *
+     * @param directory The directory holding the pending alerts.
+     * @param outbox    The outbox the digests are put into once their window has passed.
+     * @return The opened {@link Digest}.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    static Digest open(Path directory, Outbox outbox) throws IOException {
+        Files.createDirectories(directory);
+        Digest digest = new Digest(directory, outbox);
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            files.forEach(leftovers::add);
+        }
+        leftovers.sort(null);
+        for (Path file : leftovers) {
+            try {
+                Properties properties = read(file);
+                Key key = new Key(properties.getProperty("from"), properties.getProperty("to"),
+                    Duration.ofMillis(Long.parseLong(properties.getProperty("window"))));
+                Instant due = Instant.ofEpochMilli(Long.parseLong(properties.getProperty("due")));
+                digest.collect(key, due, new Alert(properties.getProperty("subject"), properties.getProperty("body"), file));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Unable to read digest alert " + file + ": " + e);
+            }
+        }
+        if (!leftovers.isEmpty()) {
+            System.out.println("Recovered " + leftovers.size() + " pending digest alerts.");
+        }
+        return digest;
+    }
+
+    /**
+     * Adds an alert to the digest of its recipient.
+     *
+     * @param window The length of the window over which alerts are collected.
+     * @param alert  The alert, whose subject is usually the webpage title.
+     * @throws IOException If the alert cannot be written to the digest directory.
+     */
+    public void add(Duration window, Notification alert) throws IOException {
+        Key key = new Key(alert.fromEmailAddress(), alert.toEmailAddress(), window);
+        String subject = alert.subject() == null ? "" : alert.subject();
+        synchronized (this) {
+            Pending digest = pending.get(key);
+            Instant due = digest == null ? Instant.now().plus(window) : digest.due();
+            Path file = directory.resolve(Instant.now().toEpochMilli() + "-" + UUID.randomUUID() + SUFFIX);
+            write(file, key, due, subject, alert.bodyText());
+            collect(key, due, new Alert(subject, alert.bodyText(), file));
+        }
+    }
+
+    /**
+     * Puts all pending digests into the outbox right away, e.g. before the process terminates.
+     */
+    public void flushAll() {
+        List<Key> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(pending.keySet());
+        }
+        keys.forEach(this::flush);
+    }
+
+    /**
+     * Stops sending digests and waits for a digest that is being put into the outbox. Alerts that have not been put
+     * into the outbox yet stay in the digest directory.
+     */
+    void close() {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                System.err.println("A digest is still being queued after " + CLOSE_TIMEOUT.toSeconds() + "s.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds an alert that has already been written to the digest directory, and schedules the flush of its digest if
+     * it is the first alert of the window.
+     *
+     * @param key   The sender, recipient and window of the digest.
+     * @param due   The end of the window.
+     * @param alert The alert.
+     */
+    private synchronized void collect(Key key, Instant due, Alert alert) {
+        Pending digest = pending.get(key);
+        if (digest == null) {
+            digest = new Pending(due, new ArrayList<>());
+            pending.put(key, digest);
+            long delay = Math.max(0, Duration.between(Instant.now(), due).toMillis());
+            try {
+                scheduler.schedule(() -> flush(key), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the outbox has been closed, the alert is sent by a later run
+            }
+        }
+        digest.alerts().add(alert);
+    }
+
+    /**
+     * Puts the digest of the given recipient into the outbox if any alerts are pending for it, and deletes its alerts
+     * from the digest directory.
+     * <p>
+     * If the digest cannot be put into the outbox, its alerts are collected again and retried after another window.
+     * </p>
+     *
+     * @param key The sender, recipient and window of the digest.
+     */
+    private void flush(Key key) {
+        Pending digest;
+        synchronized (this) {
+            digest = pending.remove(key);
+        }
+        if (digest == null || digest.alerts().isEmpty()) {
+            return;
+        }
+        List<Alert> alerts = digest.alerts();
+        String subject = alerts.size() == 1
+            ? alerts.getFirst().subject()
+            : "ShopStockAlert: " + alerts.size() + " alerts";
+        StringBuilder body = new StringBuilder();
+        for (Alert alert : alerts) {
+            body.append(alert.subject()).append('\n').append(alert.bodyText()).append("\n\n");
+        }
+        try {
+            outbox.enqueue(new Notification(key.fromEmailAddress(), key.toEmailAddress(), subject, body.toString().strip()));
+        } catch (IOException e) {
+            System.err.println("Unable to queue digest to " + key.toEmailAddress() + ": " + e);
+            Instant due = Instant.now().plus(key.window());
+            alerts.forEach(alert -> collect(key, due, alert));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while queueing digest to " + key.toEmailAddress());
+            return;
+        }
+        for (Alert alert : alerts) {
+            try {
+                Files.deleteIfExists(alert.file());
+            } catch (IOException e) {
+                System.err.println("Unable to delete digest alert " + alert.file() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Atomically writes an alert and the window of its digest to the given file.
+     *
+     * @param file     The file of the alert.
+     * @param key      The sender, recipient and window of the digest.
+     * @param due      The end of the window.
+     * @param subject  The subject of the alert.
+     * @param bodyText The body text of the alert.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void write(Path file, Key key, Instant due, String subject, String bodyText) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("from", key.fromEmailAddress());
+        properties.setProperty("to", key.toEmailAddress());
+        properties.setProperty("window", Long.toString(key.window().toMillis()));
+        properties.setProperty("due", Long.toString(due.toEpochMilli()));
+        properties.setProperty("subject", subject);
+        properties.setProperty("body", bodyText);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an alert file.
+     *
+     * @param file The file of the alert.
+     * @return The {@link Properties} stored in the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private record Key(String fromEmailAddress, String toEmailAddress, Duration window) {
+    }
+
+    private record Pending(Instant due, List<Alert> alerts) {
+    }
+
+    private record Alert(String subject, String bodyText, Path file) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.bartholomaeuss.shopstockalert;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JDK Flight Recorder events emitted for the phases of a check.
+ * <p>
+ * A check consists of fetching the webpage ({@link Fetch}), parsing it ({@link Parse}), extracting the items of interest
+ * ({@link Extract}) and sending a notification for each recipient ({@link Send}); {@link Check} spans all of them for a
+ * single target. The events are only recorded while a recording is running, e.g. when the application is started with
+ * {@code -XX:StartFlightRecording}; otherwise, beginning and committing an event costs next to nothing.
+ * </p>
+ */
+public final class Events {
+    private Events() {
+    }
+
+    @Name("com.bartholomaeuss.shopstockalert.Check")
+    @Label("Check")
+    @Category("ShopStockAlert")
+    @Description("A complete check of a single target")
+    @StackTrace(false)
+    static final class Check extends Event {
+        @Label("Target")
+        String target;
+        @Label("Links")
+        int links;
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("com.bartholomaeuss.shopstockalert.Fetch")
+    @Label("Fetch")
+    @Category("ShopStockAlert")
+    @Description("Sending the request for a webpage and, unless it is streamed, downloading and decompressing its body")
+    @StackTrace(false)
+    static final class Fetch extends Event {
+        @Label("URL")
+        String url;
+        @Label("Status")
+        int status;
+    }
+
+    @Name("com.bartholomaeuss.shopstockalert.Parse")
+    @Label("Parse")
+    @Category("ShopStockAlert")
+    @Description("Parsing the body of a webpage, including downloading and decompressing it if it is streamed")
+    @StackTrace(false)
+    static final class Parse extends Event {
+        @Label("URL")
+        String url;
+        @Label("Streamed")
+        boolean streamed;
+    }
+
+    @Name("com.bartholomaeuss.shopstockalert.Extract")
+    @Label("Extract")
+    @Category("ShopStockAlert")
+    @Description("Selecting and filtering the items of a webpage and extracting their links")
+    @StackTrace(false)
+    static final class Extract extends Event {
+        @Label("Rule")
+        String rule;
+        @Label("Containers")
+        int containers;
+        @Label("Matches")
+        int matches;
+        @Label("Fingerprint Unchanged")
+        boolean fingerprintUnchanged;
+    }
+
+    @Name("com.bartholomaeuss.shopstockalert.Send")
+    @Label("Send")
+    @Category("ShopStockAlert")
+    @Description("Building and sending a notification through the Gmail API or over SMTP")
+    @StackTrace(false)
+    static final class Send extends Event {
+        @Label("Recipient")
+        String recipient;
+        @Label("Success")
+        boolean success;
+    }
+}
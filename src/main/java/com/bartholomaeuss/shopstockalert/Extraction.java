@@ -0,0 +1,35 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.util.Locale;
+
+/**
+ * The ways in which a {@link RuleChecker} can extract the items from a webpage.
+ */
+public enum Extraction {
+    /**
+     * The whole webpage is parsed into a DOM before the items are extracted.
+     */
+    DOM,
+    /**
+     * The items are extracted while the webpage is still being downloaded and everything else is discarded
+     * (see {@link Website#Website(String, String, org.jsoup.select.Evaluator, java.util.function.Consumer)}).
+     */
+    STREAM,
+    /**
+     * The script elements holding the products as JSON are kept along with the containers while the webpage is being
+     * downloaded, and the products are read from the JSON instead of the DOM (see {@link JsonState}). The containers
+     * are only filtered if the webpage holds no readable JSON state. Requires a rule with a JSON state.
+     */
+    JSON;
+
+    /**
+     * Returns the extraction mode with the given name, ignoring case.
+     *
+     * @param name The name of the extraction mode, e.g. "dom", "stream" or "json".
+     * @return The {@link Extraction} mode.
+     * @throws IllegalArgumentException If no extraction mode has the given name.
+     */
+    public static Extraction parse(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+}
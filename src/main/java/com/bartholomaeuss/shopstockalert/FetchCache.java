@@ -0,0 +1,251 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the downloads of webpages between all {@link Website}s requesting the same URL.
+ * <p>
+ * Concurrent requests for the same URL are coalesced: only the first one is sent, and all others wait for its body
+ * instead of downloading the webpage again. The decompressed bodies are then cached for a short time to live (TTL),
+ * so targets watching the same URL a few seconds apart share a download as well. The cache is bounded by the total
+ * size of the bodies and evicts the least recently used ones first. A body whose TTL has expired is kept until it is
+ * evicted and revalidated with a conditional request, so an unchanged webpage is answered with
+ * {@code 304 Not Modified} and not downloaded again.
+ * </p>
+ * <p>
+ * The TTL defaults to {@value #DEFAULT_TTL_SECONDS} seconds and the size to {@value #DEFAULT_CAPACITY_MB} MB. They can
+ * be changed with the system properties {@value #TTL_PROPERTY} (in seconds) and {@value #CAPACITY_PROPERTY} (in MB),
+ * or with {@link #setLimit(Duration, long)}. A TTL of 0 disables the cache, while concurrent requests are still
+ * coalesced.
+ * </p>
+ */
+public class FetchCache {
+    /**
+     * The system property holding the time to live of a cached body in seconds.
+     */
+    public static final String TTL_PROPERTY = "shopstockalert.fetch.ttl";
+    /**
+     * The system property holding the maximum total size of the cached bodies in MB.
+     */
+    public static final String CAPACITY_PROPERTY = "shopstockalert.fetch.cache";
+    static final long DEFAULT_TTL_SECONDS = 10;
+    static final long DEFAULT_CAPACITY_MB = 32;
+
+    private static final Map<String, CompletableFuture<Body>> IN_FLIGHT = new ConcurrentHashMap<>();
+    /**
+     * The cached bodies in access order, guarded by itself.
+     */
+    private static final LinkedHashMap<String, Body> BODIES = new LinkedHashMap<>(16, 0.75f, true);
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder COALESCED = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static volatile Duration ttl = Duration.ofSeconds(
+        Long.parseLong(System.getProperty(TTL_PROPERTY, Long.toString(DEFAULT_TTL_SECONDS))));
+    private static volatile long capacity =
+        Long.parseLong(System.getProperty(CAPACITY_PROPERTY, Long.toString(DEFAULT_CAPACITY_MB))) << 20;
+    private static long size;
+
+    private FetchCache() {
+    }
+
+    /**
+     * Changes the limits of the cache and clears it.
+     *
+     * @param timeToLive    The time for which a body is served from the cache, or {@link Duration#ZERO} to disable the
+     *                      cache.
+     * @param capacityBytes The maximum total size of the cached bodies in bytes.
+     */
+    public static void setLimit(Duration timeToLive, long capacityBytes) {
+        ttl = timeToLive;
+        capacity = Math.max(0, capacityBytes);
+        synchronized (BODIES) {
+            BODIES.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the body of the webpage at the given URL, from the cache or from a download shared with concurrent
+     * requests if possible.
+     * <p>
+     * If the body has to be downloaded and none is cached, the request is made conditional on the given validators.
+     * A caller waiting for the download of another caller whose request has been answered with
+     * {@code 304 Not Modified} downloads the webpage itself, unless it sent the same validators.
+     * </p>
+     *
+     * @param url        The URL of the webpage.
+     * @param validators The validators of the body the caller has seen last, or {@code null} if there are none.
+     * @param downloader The downloader sending the actual request.
+     * @return The {@link Body} of the webpage, see {@link Body#isNotModified(Website.Validators)}.
+     * @throws IOException If the download fails, or has failed for the request this caller waited for.
+     */
+    static Body fetch(String url, Website.Validators validators, Downloader downloader) throws IOException {
+        Body cached;
+        synchronized (BODIES) {
+            cached = BODIES.get(url);
+        }
+        if (cached != null && System.nanoTime() - cached.fetched() < ttl.toNanos()) {
+            HITS.increment();
+            Metrics.cache("hit");
+            return cached;
+        }
+        CompletableFuture<Body> download = new CompletableFuture<>();
+        CompletableFuture<Body> pending = IN_FLIGHT.putIfAbsent(url, download);
+        if (pending != null) {
+            COALESCED.increment();
+            Metrics.cache("coalesced");
+            Body shared = join(pending);
+            if (shared.bytes() == null && !shared.isNotModified(validators)) {
+                return store(url, downloader.download(url, validators));
+            }
+            return shared;
+        }
+        MISSES.increment();
+        Metrics.cache("miss");
+        try {
+            Body body = downloader.download(url, cached == null ? validators : cached.validators());
+            if (body.bytes() == null && cached != null) {
+                body = new Body(cached.uri(), cached.bytes(), cached.charset(), cached.validators(), body.fetched());
+            }
+            download.complete(store(url, body));
+            return body;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(url, download);
+        }
+    }
+
+    /**
+     * Caches the given body unless the cache is disabled or the body exceeds its capacity, evicting the least
+     * recently used bodies until the cache fits its capacity again.
+     *
+     * @param url  The URL of the webpage.
+     * @param body The body to be cached.
+     * @return The given body.
+     */
+    private static Body store(String url, Body body) {
+        if (body.bytes() == null || ttl.isZero() || body.bytes().length > capacity) {
+            return body;
+        }
+        synchronized (BODIES) {
+            Body previous = BODIES.put(url, body);
+            size += body.bytes().length - (previous == null ? 0 : previous.bytes().length);
+            Iterator<Body> eldest = BODIES.values().iterator();
+            while (size > capacity && eldest.hasNext()) {
+                size -= eldest.next().bytes().length;
+                eldest.remove();
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Waits for a download started by another caller.
+     *
+     * @param pending The future of the download.
+     * @return The downloaded {@link Body}.
+     * @throws IOException If the download has failed or the calling thread is interrupted while waiting.
+     */
+    private static Body join(CompletableFuture<Body> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared download", e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException cause -> throw cause;
+                case UncheckedIOException cause -> throw cause.getCause();
+                case RuntimeException cause -> throw cause;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests that have been served from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns the number of requests that have waited for a download of another request.
+     *
+     * @return The number of coalesced requests.
+     */
+    public static long getCoalesced() {
+        return COALESCED.sum();
+    }
+
+    /**
+     * Returns the number of requests that have been sent to the host.
+     *
+     * @return The number of cache misses.
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Returns the total size of the cached bodies.
+     *
+     * @return The size in bytes.
+     */
+    public static long getSize() {
+        synchronized (BODIES) {
+            return size;
+        }
+    }
+
+    /**
+     * The decompressed body of a webpage.
+     *
+     * @param uri        The URI of the webpage after redirects, used to resolve relative links.
+     * @param bytes      The body, or {@code null} if the host answered {@code 304 Not Modified}.
+     * @param charset    The charset given by the {@code Content-Type} header, or {@code null} if absent.
+     * @param validators The validators of the body, or {@code null} if the host sent none.
+     * @param fetched    The time the body has been downloaded or revalidated, see {@link System#nanoTime()}.
+     */
+    record Body(String uri, byte[] bytes, String charset, Website.Validators validators, long fetched) {
+        /**
+         * Checks whether this body is the one a caller has seen last.
+         *
+         * @param seen The validators of the body the caller has seen last, or {@code null} if there are none.
+         * @return {@code true} if the host has sent validators and they equal the given ones.
+         */
+        boolean isNotModified(Website.Validators seen) {
+            return seen != null && seen.equals(validators);
+        }
+    }
+
+    /**
+     * Downloads a webpage.
+     */
+    @FunctionalInterface
+    interface Downloader {
+        /**
+         * Sends a request for the webpage at the given URL, conditional on the given validators.
+         *
+         * @param url        The URL of the webpage.
+         * @param validators The validators to be sent, or {@code null} for an unconditional request.
+         * @return The downloaded {@link Body}, whose bytes are {@code null} and whose validators are the given ones if
+         * the host answered {@code 304 Not Modified}.
+         * @throws IOException If the request fails.
+         */
+        Body download(String url, Website.Validators validators) throws IOException;
+    }
+}
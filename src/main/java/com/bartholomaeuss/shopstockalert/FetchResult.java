@@ -0,0 +1,108 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The outcome of fetching the webpage of a check.
+ * <p>
+ * A check does not fail with an exception if its webpage cannot be fetched. Instead, its {@link Checker} reports no
+ * items and describes what went wrong with a {@code FetchResult} (see {@link Checker#getFetchResult()}), so the caller
+ * can decide whether to retry, postpone or give up, and the other targets of a run are checked regardless.
+ * </p>
+ *
+ * @param url    The URL of the webpage.
+ * @param status The {@link Status} of the fetch.
+ * @param error  The exception with which the fetch failed, or {@code null} if it succeeded.
+ */
+public record FetchResult(String url, Status status, IOException error) {
+    /**
+     * Creates the result of a successful fetch.
+     *
+     * @param website The fetched website.
+     * @return A {@link FetchResult} with the status {@link Status#FETCHED} or {@link Status#NOT_MODIFIED}.
+     */
+    public static FetchResult of(Website website) {
+        return new FetchResult(website.getUrl(), website.isNotModified() ? Status.NOT_MODIFIED : Status.FETCHED, null);
+    }
+
+    /**
+     * Creates the result of a failed fetch, classifying the exception.
+     *
+     * @param url   The URL of the webpage.
+     * @param error The exception with which the fetch failed.
+     * @return A {@link FetchResult} with the status matching the exception.
+     */
+    public static FetchResult failed(String url, IOException error) {
+        Status status = switch (error) {
+            case HttpTimeoutException ignored -> Status.TIMED_OUT;
+            case RetryAfterException ignored -> Status.THROTTLED;
+            case CircuitOpenException ignored -> Status.CIRCUIT_OPEN;
+            default -> Status.FAILED;
+        };
+        return new FetchResult(url, status, error);
+    }
+
+    /**
+     * Returns whether the webpage has been fetched, or is known to be unchanged.
+     *
+     * @return {@code true} if the status is {@link Status#FETCHED} or {@link Status#NOT_MODIFIED}.
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Returns the time after which the webpage should be requested again if the host asked for it or is skipped.
+     *
+     * @return The {@link Duration} to wait, or {@code null} if the next check may run as scheduled.
+     */
+    public Duration getRetryAfter() {
+        return switch (error) {
+            case RetryAfterException e -> e.getRetryAfter();
+            case CircuitOpenException e -> e.getRetryAfter();
+            case null, default -> null;
+        };
+    }
+
+    /**
+     * Returns the status as label for logs and metrics, e.g. "timed_out".
+     *
+     * @return The lower-case name of the status.
+     */
+    public String getLabel() {
+        return status.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The ways in which fetching a webpage can end.
+     */
+    public enum Status {
+        /**
+         * The webpage has been downloaded.
+         */
+        FETCHED,
+        /**
+         * The server reported that the webpage has not changed since the previous fetch.
+         */
+        NOT_MODIFIED,
+        /**
+         * The host could not be connected or did not deliver the webpage within the deadline.
+         */
+        TIMED_OUT,
+        /**
+         * The host asked not to be requested for a while (see {@link RetryAfterException}).
+         */
+        THROTTLED,
+        /**
+         * The request has not been sent because the host has failed repeatedly (see {@link CircuitBreaker}).
+         */
+        CIRCUIT_OPEN,
+        /**
+         * The webpage could not be fetched for any other reason, e.g. an error status or a refused connection.
+         */
+        FAILED
+    }
+}
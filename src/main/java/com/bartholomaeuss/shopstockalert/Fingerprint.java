@@ -0,0 +1,160 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes fingerprints of the regions of a webpage a checker is interested in and remembers them per target.
+ * <p>
+ * Many webpages change on every request because of ads or timestamps, while the items a checker looks at rarely
+ * change. A fingerprint is a 64-bit FNV-1a hash over the tag names, attributes and text of the items only (including
+ * the data of script elements, which may hold the items as JSON, see {@link JsonState}), so it stays the same as long
+ * as the items stay the same. If the fingerprint of a webpage matches the one of the previous
+ * check of the same target, filtering, link extraction and notification can be skipped. Since the new fingerprint is
+ * remembered as soon as it has been compared, a check whose changes cannot be stored or notified has to forget it
+ * again (see {@link #forget(String)}), so the next check does not skip them.
+ * </p>
+ * <p>
+ * The number of comparisons and skipped checks is counted, so the share of work saved can be reported
+ * (see {@link #getSkipRate()}).
+ * </p>
+ */
+public class Fingerprint {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final Map<String, Long> LAST = new ConcurrentHashMap<>();
+    private static final LongAdder CHECKS = new LongAdder();
+    private static final LongAdder SKIPS = new LongAdder();
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the given elements and their descendants.
+     * <p>
+     * The strings already held by the DOM are hashed character by character, so no intermediate strings are built.
+     * </p>
+     *
+     * @param elements The elements to be fingerprinted, in document order.
+     * @return The fingerprint of the elements.
+     */
+    public static long of(List<Element> elements) {
+        long[] hash = {OFFSET_BASIS};
+        NodeVisitor visitor = new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element element) {
+                    hash[0] = mix(hash[0], '<');
+                    hash[0] = mix(hash[0], element.normalName());
+                    for (Attribute attribute : element.attributes()) {
+                        hash[0] = mix(hash[0], attribute.getKey());
+                        hash[0] = mix(hash[0], '=');
+                        hash[0] = mix(hash[0], attribute.getValue());
+                    }
+                } else if (node instanceof TextNode textNode) {
+                    hash[0] = mix(hash[0], textNode.getWholeText());
+                } else if (node instanceof DataNode dataNode) {
+                    hash[0] = mix(hash[0], dataNode.getWholeData());
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element) {
+                    hash[0] = mix(hash[0], '>');
+                }
+            }
+        };
+        for (Element element : elements) {
+            NodeTraversor.traverse(visitor, element);
+        }
+        return hash[0];
+    }
+
+    /**
+     * Compares the fingerprint with the one remembered for the key and remembers the new fingerprint.
+     *
+     * @param key         The key of the target the fingerprint belongs to.
+     * @param fingerprint The fingerprint of the current check.
+     * @return {@code true} if the fingerprint equals the one of the previous check, {@code false} otherwise.
+     */
+    public static boolean unchanged(String key, long fingerprint) {
+        Long previous = LAST.put(key, fingerprint);
+        boolean unchanged = previous != null && previous == fingerprint;
+        CHECKS.increment();
+        if (unchanged) {
+            SKIPS.increment();
+        }
+        return unchanged;
+    }
+
+    /**
+     * Extends a fingerprint by a string that is not part of the webpage but decides about the items as well.
+     *
+     * @param fingerprint The fingerprint to be extended.
+     * @param value       The string to be hashed into the fingerprint.
+     * @return The extended fingerprint.
+     */
+    public static long extend(long fingerprint, String value) {
+        return mix(mix(fingerprint, value), '\0');
+    }
+
+    /**
+     * Forgets the fingerprints remembered for the given key and for the further pages checked under it, so the next
+     * comparison for them reports a change.
+     *
+     * @param key The key of the first page of a listing.
+     */
+    public static void forget(String key) {
+        LAST.keySet().removeIf(page -> page.equals(key) || page.startsWith(key + " "));
+    }
+
+    /**
+     * Returns the number of fingerprints compared so far.
+     *
+     * @return The number of comparisons.
+     */
+    public static long getChecks() {
+        return CHECKS.sum();
+    }
+
+    /**
+     * Returns the number of checks skipped so far because the fingerprint had not changed.
+     *
+     * @return The number of skipped checks.
+     */
+    public static long getSkips() {
+        return SKIPS.sum();
+    }
+
+    /**
+     * Returns the share of checks skipped because the fingerprint had not changed.
+     *
+     * @return The skip rate between 0 and 1, or 0 if no fingerprints have been compared yet.
+     */
+    public static double getSkipRate() {
+        long checks = getChecks();
+        return checks == 0 ? 0 : (double) getSkips() / checks;
+    }
+
+    private static long mix(long hash, char c) {
+        return (hash ^ c) * PRIME;
+    }
+
+    private static long mix(long hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash = (hash ^ s.charAt(i)) * PRIME;
+        }
+        return hash;
+    }
+}
@@ -55,6 +55,46 @@ public class GMailAuth {
      * Path to the credentials file that contains the client secrets.
      */
     private static final String CREDENTIALS_FILE_PATH = "/cs.json";
+    /**
+     * Access tokens expiring within this many seconds are refreshed before they are used.
+     */
+    private static final long REFRESH_AHEAD_SECONDS = 300;
+    /**
+     * The credential of this process, loaded on first use.
+     */
+    private static Credential cachedCredential;
+
+    /**
+     * Returns the authorized {@link Credential} object of this process, loading it on first use.
+     *
+     * <p>The client secrets and the stored tokens are only read once per process. Every further call returns the
+     * same credential, whose access token is refreshed proactively if it expires within the next five minutes,
+     * so a send never has to wait for a token refresh triggered by an expired token.</p>
+     *
+     * @param HTTP_TRANSPORT The network HTTP transport used for communication with the Gmail API.
+     * @return An authorized {@link Credential} object.
+     * @throws IOException If the credentials file cannot be found or read, or the access token cannot be refreshed.
+     */
+    static synchronized Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT) throws IOException {
+        if (cachedCredential == null) {
+            cachedCredential = loadCredentials(HTTP_TRANSPORT);
+        }
+        refreshIfExpiring(cachedCredential);
+        return cachedCredential;
+    }
+
+    /**
+     * Refreshes the access token of the credential if it expires soon.
+     *
+     * @param credential The {@link Credential} object to be refreshed.
+     * @throws IOException If the access token cannot be refreshed.
+     */
+    static void refreshIfExpiring(final Credential credential) throws IOException {
+        Long expiresInSeconds = credential.getExpiresInSeconds();
+        if (credential.getRefreshToken() != null && expiresInSeconds != null && expiresInSeconds < REFRESH_AHEAD_SECONDS) {
+            credential.refreshToken();
+        }
+    }
 
     /**
      * Creates an authorized {@link Credential} object for accessing the Gmail API.
@@ -69,7 +109,7 @@ public class GMailAuth {
      * @return An authorized {@link Credential} object.
      * @throws IOException If the credentials file cannot be found or read.
      */
-    static Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT) throws IOException {
+    private static Credential loadCredentials(final NetHttpTransport HTTP_TRANSPORT) throws IOException {
 
         InputStream in = GMailAuth.class.getResourceAsStream(CREDENTIALS_FILE_PATH);
         if (in == null) {
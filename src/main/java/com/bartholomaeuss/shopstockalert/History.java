@@ -0,0 +1,620 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.LongStream;
+
+/**
+ * Records the items found by every check, so questions like how long items stay listed or at what time of day they
+ * appear can be answered later.
+ * <p>
+ * Every successful check appends a row holding the time of the check, the target, the number of items found and the
+ * ids of these items. The history is an append-only directory of column files, each holding a single field of all rows
+ * in a fixed-size little-endian encoding, which are memory-mapped in chunks of {@value #CHUNK} bytes:
+ * </p>
+ * <pre>
+ * header      = magic:int32 version:int32 rows:int64 items:int64 strings:int64
+ * time.col    = epoch millis:int64 per row, never decreasing
+ * target.col  = target key:int32 per row, an index into strings.txt
+ * offset.col  = index of the first item id of the row in items.col:int64 per row
+ * count.col   = number of items:int32 per row
+ * items.col   = item id:int32 per item, an index into strings.txt
+ * strings.txt = one target key or item id per line
+ * </pre>
+ * <p>
+ * A row whose items are the same as those of the previous row of its target refers to the item ids of that row instead
+ * of repeating them, so the many checks that find nothing new take 24 bytes each. The header is updated after the
+ * columns, so a row becomes visible only once it has been written completely, and a row left incomplete by a crashed
+ * writer is overwritten when the history is opened again.
+ * </p>
+ * <p>
+ * A query (see {@link #query(Predicate, Instant, Instant, ZoneId)}) finds the rows of its time range by binary search
+ * in the time column, and only reads the item ids of rows whose target matches and whose items have changed, so a
+ * query for a few targets scans months of history within milliseconds. A history is written by a single process, but
+ * may be queried by other processes at the same time (see {@link #openReadOnly(Path)}). Opening a history for
+ * recording takes an exclusive lock on its header, so a second writer, e.g. a one-shot check while a daemon is running
+ * in the same working directory, fails instead of corrupting the columns.
+ * </p>
+ */
+public class History implements Closeable {
+    /**
+     * The size of every memory-mapped part of a column file.
+     */
+    static final int CHUNK = 1 << 23;
+
+    private static final int MAGIC = 0x53534148;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ROWS = 8;
+    private static final int ITEMS = 16;
+    private static final int STRINGS = 24;
+    private static final String HEADER_FILE = "header";
+    private static final String STRINGS_FILE = "strings.txt";
+    private static final int BLOCK = 4096;
+    /**
+     * The histories this process has opened for recording, as the lock of a file is held by the whole process.
+     */
+    private static final Set<Path> WRITING = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final Clock clock;
+    private final boolean writable;
+    private final FileChannel headerChannel;
+    private final ByteBuffer header;
+    private final Column time;
+    private final Column target;
+    private final Column offset;
+    private final Column count;
+    private final Column items;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final Map<Integer, Latest> latest = new HashMap<>();
+    private FileChannel stringsChannel;
+    private long stringBytes;
+    private long rowCount;
+    private long itemCount;
+    private long lastTime;
+
+    private History(Path directory, Clock clock, boolean writable) throws IOException {
+        this.directory = directory;
+        this.clock = clock;
+        this.writable = writable;
+        headerChannel = openFile(directory.resolve(HEADER_FILE));
+        if (writable && headerChannel.tryLock() == null) {
+            headerChannel.close();
+            throw new IOException("History " + directory + " is being recorded by another process");
+        }
+        boolean created = writable && headerChannel.size() == 0;
+        if (!created && headerChannel.size() < HEADER_SIZE) {
+            headerChannel.close();
+            throw new IOException("Not a history: " + directory);
+        }
+        header = headerChannel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0,
+            HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            header.putInt(0, MAGIC).putInt(4, VERSION);
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            headerChannel.close();
+            throw new IOException("Not a history of this version: " + directory);
+        }
+        time = new Column(openFile(directory.resolve("time.col")), Long.BYTES, writable);
+        target = new Column(openFile(directory.resolve("target.col")), Integer.BYTES, writable);
+        offset = new Column(openFile(directory.resolve("offset.col")), Long.BYTES, writable);
+        count = new Column(openFile(directory.resolve("count.col")), Integer.BYTES, writable);
+        items = new Column(openFile(directory.resolve("items.col")), Integer.BYTES, writable);
+    }
+
+    /**
+     * Opens the history in the given directory for recording checks, creating it if it does not exist yet.
+     *
+     * @param directory The directory holding the column files.
+     * @return The opened {@link History}.
+     * @throws IOException If the directory cannot be created, if it holds something else than a history, or if the
+     *                     history is already being recorded.
+     */
+    public static History open(Path directory) throws IOException {
+        return open(directory, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the history in the given directory for recording checks using the given clock.
+     *
+     * @param directory The directory holding the column files.
+     * @param clock     The clock providing the time of every check.
+     * @return The opened {@link History}.
+     * @throws IOException If the directory cannot be created, if it holds something else than a history, or if the
+     *                     history is already being recorded.
+     */
+    static History open(Path directory, Clock clock) throws IOException {
+        Files.createDirectories(directory);
+        if (!WRITING.add(directory.toAbsolutePath().normalize())) {
+            throw new IOException("History " + directory + " is already being recorded");
+        }
+        History history;
+        try {
+            history = new History(directory, clock, true);
+        } catch (IOException | RuntimeException e) {
+            WRITING.remove(directory.toAbsolutePath().normalize());
+            throw e;
+        }
+        try {
+            history.load();
+            history.stringsChannel = FileChannel.open(directory.resolve(STRINGS_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+            history.stringsChannel.truncate(history.stringBytes).position(history.stringBytes);
+        } catch (IOException e) {
+            history.close();
+            throw e;
+        }
+        return history;
+    }
+
+    /**
+     * Opens the history in the given directory for queries only, e.g. while a daemon is recording its checks.
+     * <p>
+     * The history covers the checks that had been recorded completely when it was opened.
+     * </p>
+     *
+     * @param directory The directory holding the column files.
+     * @return The opened {@link History}.
+     * @throws IOException If the directory does not hold a history.
+     */
+    public static History openReadOnly(Path directory) throws IOException {
+        if (!Files.exists(directory.resolve(HEADER_FILE))) {
+            throw new IOException("No history has been recorded in " + directory.toAbsolutePath());
+        }
+        History history = new History(directory, Clock.systemUTC(), false);
+        try {
+            history.load();
+        } catch (IOException e) {
+            history.close();
+            throw e;
+        }
+        return history;
+    }
+
+    /**
+     * Appends a check of the given target to the history.
+     * <p>
+     * The time of the check is taken from the clock, but never lies before the time of the previous check, so the
+     * time column stays sorted even if the clock is set back.
+     * </p>
+     *
+     * @param key The key of the checked target, see {@link Target#getKey()}.
+     * @param ids The ids of the items found by the check, see {@link Item#id()}.
+     * @throws IOException If the history cannot be written.
+     * @throws IllegalStateException If the history has been opened for queries only.
+     */
+    public synchronized void record(String key, List<String> ids) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("History " + directory + " has been opened for queries only");
+        }
+        lastTime = Math.max(lastTime, clock.millis());
+        int targetCode = code(key);
+        int[] itemCodes = new int[ids.size()];
+        for (int i = 0; i < itemCodes.length; i++) {
+            itemCodes[i] = code(ids.get(i));
+        }
+        Latest previous = latest.get(targetCode);
+        long first;
+        if (previous != null && Arrays.equals(previous.codes(), itemCodes)) {
+            first = previous.offset();
+        } else {
+            first = itemCount;
+            for (int itemCode : itemCodes) {
+                items.putInt(itemCount++, itemCode);
+            }
+            latest.put(targetCode, new Latest(first, itemCodes));
+        }
+        time.putLong(rowCount, lastTime);
+        target.putInt(rowCount, targetCode);
+        offset.putLong(rowCount, first);
+        count.putInt(rowCount, itemCodes.length);
+        header.putLong(STRINGS, stringBytes).putLong(ITEMS, itemCount).putLong(ROWS, ++rowCount);
+    }
+
+    /**
+     * Returns the number of checks in the history.
+     *
+     * @return The number of rows.
+     */
+    public synchronized long size() {
+        return rowCount;
+    }
+
+    /**
+     * Evaluates the checks of the matching targets within the given time range.
+     * <p>
+     * Every item found by a check of a target is <b>listed</b> from that check on until the first check of the target
+     * that no longer finds it. The query counts the items that have appeared and disappeared within the time range;
+     * items found by the first check of a target in the time range are taken as listed before and are not counted as
+     * appeared, so their time listed is unknown.
+     * </p>
+     *
+     * @param targets The condition the keys of the targets must meet, see {@link Target#getKey()}.
+     * @param from    The start of the time range, inclusive.
+     * @param to      The end of the time range, exclusive.
+     * @param zone    The time zone in which the hours of the day are counted.
+     * @return The {@link Report} of the query.
+     * @throws IOException If the column files cannot be mapped.
+     */
+    public synchronized Report query(Predicate<String> targets, Instant from, Instant to, ZoneId zone)
+        throws IOException {
+        long start = search(from.toEpochMilli());
+        long end = Math.max(start, search(to.toEpochMilli()));
+        byte[] matches = new byte[strings.size()];
+        Listing[] listings = new Listing[strings.size()];
+        int[] appearedPerHour = new int[24];
+        int[] targetBlock = new int[BLOCK];
+        long[] timeBlock = new long[BLOCK];
+        long[] offsetBlock = new long[BLOCK];
+        int[] countBlock = new int[BLOCK];
+        for (long row = start; row < end; row += BLOCK) {
+            int length = (int) Math.min(BLOCK, end - row);
+            target.getInts(row, targetBlock, length);
+            boolean read = false;
+            for (int i = 0; i < length; i++) {
+                int targetCode = targetBlock[i];
+                if (matches[targetCode] == 0) {
+                    matches[targetCode] = targets.test(strings.get(targetCode)) ? (byte) 1 : (byte) 2;
+                }
+                if (matches[targetCode] != 1) {
+                    continue;
+                }
+                if (!read) {
+                    time.getLongs(row, timeBlock, length);
+                    offset.getLongs(row, offsetBlock, length);
+                    count.getInts(row, countBlock, length);
+                    read = true;
+                }
+                if (listings[targetCode] == null) {
+                    listings[targetCode] = new Listing();
+                }
+                listings[targetCode].check(timeBlock[i], offsetBlock[i], countBlock[i], zone, appearedPerHour);
+            }
+        }
+        int checked = 0;
+        long checks = 0;
+        long found = 0;
+        int appeared = 0;
+        int disappeared = 0;
+        LongStream.Builder listed = LongStream.builder();
+        for (Listing listing : listings) {
+            if (listing != null) {
+                checked++;
+                checks += listing.checks;
+                found += listing.found;
+                appeared += listing.appeared;
+                disappeared += listing.disappeared;
+                listing.listed.forEach(listed::add);
+            }
+        }
+        return new Report(end - start, checks, checked, found, appeared, disappeared, listed.build().sorted().toArray(),
+            appearedPerHour);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (headerChannel) {
+            for (Column column : List.of(time, target, offset, count, items)) {
+                column.channel.close();
+            }
+            if (stringsChannel != null) {
+                stringsChannel.close();
+            }
+        } finally {
+            if (writable) {
+                WRITING.remove(directory.toAbsolutePath().normalize());
+            }
+        }
+    }
+
+    /**
+     * Reads the size of the history from its header and the target keys and item ids it refers to.
+     *
+     * @throws IOException If the strings or the time column cannot be read.
+     */
+    private void load() throws IOException {
+        rowCount = header.getLong(ROWS);
+        itemCount = header.getLong(ITEMS);
+        stringBytes = header.getLong(STRINGS);
+        if (rowCount > 0) {
+            lastTime = time.getLong(rowCount - 1);
+        }
+        Path file = directory.resolve(STRINGS_FILE);
+        byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+        if (bytes.length < stringBytes) {
+            throw new IOException("History " + directory + " is missing strings");
+        }
+        String text = new String(bytes, 0, (int) stringBytes, StandardCharsets.UTF_8);
+        for (int begin = 0, end; (end = text.indexOf('\n', begin)) >= 0; begin = end + 1) {
+            strings.add(text.substring(begin, end));
+        }
+        if (writable) {
+            for (int i = 0; i < strings.size(); i++) {
+                codes.put(strings.get(i), i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the given string in the strings file, appending it if it is not there yet.
+     *
+     * @param string The target key or item id.
+     * @return The index of the string.
+     * @throws IOException If the string cannot be appended.
+     */
+    private int code(String string) throws IOException {
+        String sanitized = string.replace('\n', ' ').replace('\r', ' ');
+        Integer code = codes.get(sanitized);
+        if (code != null) {
+            return code;
+        }
+        ByteBuffer line = StandardCharsets.UTF_8.encode(sanitized + "\n");
+        stringBytes += line.remaining();
+        while (line.hasRemaining()) {
+            stringsChannel.write(line);
+        }
+        codes.put(sanitized, strings.size());
+        strings.add(sanitized);
+        return strings.size() - 1;
+    }
+
+    /**
+     * Finds the first row checked at or after the given time.
+     *
+     * @param millis The time in epoch milliseconds.
+     * @return The index of the row, or the number of rows if all rows have been checked before.
+     * @throws IOException If the time column cannot be mapped.
+     */
+    private long search(long millis) throws IOException {
+        long low = 0;
+        long high = rowCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (time.getLong(middle) < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private FileChannel openFile(Path file) throws IOException {
+        return writable
+            ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * The result of a query of the history.
+     *
+     * @param scanned         The number of checks within the time range, of any target.
+     * @param checks          The number of checks of the matching targets.
+     * @param targets         The number of matching targets that have been checked.
+     * @param found           The number of items found by all checks of the matching targets.
+     * @param appeared        The number of items that have appeared.
+     * @param disappeared     The number of items that have disappeared.
+     * @param listed          The times in milliseconds that the items which have both appeared and disappeared were
+     *                        listed, sorted in ascending order.
+     * @param appearedPerHour The number of items that have appeared in every hour of the day.
+     */
+    public record Report(long scanned, long checks, int targets, long found, int appeared, int disappeared,
+                         long[] listed, int[] appearedPerHour) {
+        /**
+         * Returns the time for which the given share of items was listed at most.
+         *
+         * @param quantile The share of items between 0 and 1, e.g. 0.5 for the median.
+         * @return The {@link Duration}, or {@code null} if no item has appeared and disappeared.
+         */
+        public Duration getListed(double quantile) {
+            if (listed.length == 0) {
+                return null;
+            }
+            int index = (int) Math.ceil(quantile * listed.length) - 1;
+            return Duration.ofMillis(listed[Math.clamp(index, 0, listed.length - 1)]);
+        }
+    }
+
+    /**
+     * The item ids most recently written for a target.
+     *
+     * @param offset The index of the first item id in the items column.
+     * @param codes  The item ids.
+     */
+    private record Latest(long offset, int[] codes) {
+    }
+
+    /**
+     * The state of a target while a query walks through its checks, and what has been found out about it.
+     */
+    private final class Listing {
+        /**
+         * The time from which an item found by the first check of a target is listed, which is unknown.
+         */
+        private static final long BEFORE = Long.MIN_VALUE;
+
+        private Map<Integer, Long> since = new HashMap<>();
+        private long offset;
+        private int size;
+        private long checks;
+        private long found;
+        private int appeared;
+        private int disappeared;
+        private final List<Long> listed = new ArrayList<>();
+
+        /**
+         * Compares the items of the next check of the target with those of the previous check.
+         * <p>
+         * If the check refers to the same item ids as the previous check, the items are known to be unchanged and are
+         * not read at all.
+         * </p>
+         *
+         * @param checked         The time of the check in epoch milliseconds.
+         * @param first           The index of the first item id of the check.
+         * @param count           The number of items found by the check.
+         * @param zone            The time zone in which the hours of the day are counted.
+         * @param appearedPerHour The number of items that have appeared in every hour of the day.
+         * @throws IOException If the items column cannot be mapped.
+         */
+        private void check(long checked, long first, int count, ZoneId zone, int[] appearedPerHour)
+            throws IOException {
+            found += count;
+            if (checks++ > 0 && offset == first && size == count) {
+                return;
+            }
+            int[] ids = new int[count];
+            items.getInts(first, ids, count);
+            Map<Integer, Long> current = new HashMap<>();
+            for (int id : ids) {
+                Long listedSince = since.remove(id);
+                if (listedSince == null) {
+                    listedSince = checks == 1 ? BEFORE : checked;
+                    if (listedSince != BEFORE) {
+                        appeared++;
+                        appearedPerHour[Instant.ofEpochMilli(checked).atZone(zone).getHour()]++;
+                    }
+                }
+                current.put(id, listedSince);
+            }
+            for (long listedSince : since.values()) {
+                disappeared++;
+                if (listedSince != BEFORE) {
+                    listed.add(checked - listedSince);
+                }
+            }
+            since = current;
+            offset = first;
+            size = count;
+        }
+    }
+
+    /**
+     * A column file of fixed-size values, memory-mapped in chunks as far as it is used.
+     */
+    private static final class Column {
+        private final FileChannel channel;
+        private final int width;
+        private final boolean writable;
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+        private Column(FileChannel channel, int width, boolean writable) {
+            this.channel = channel;
+            this.width = width;
+            this.writable = writable;
+        }
+
+        private long getLong(long index) throws IOException {
+            long position = index * width;
+            return chunk(position).getLong((int) (position % CHUNK));
+        }
+
+        /**
+         * Copies consecutive values of an int column into the given array.
+         *
+         * @param index       The index of the first value.
+         * @param destination The array the values are copied into, starting at index 0.
+         * @param length      The number of values to be copied.
+         * @throws IOException If the column cannot be mapped.
+         */
+        private void getInts(long index, int[] destination, int length) throws IOException {
+            int copied = 0;
+            while (copied < length) {
+                ByteBuffer values = slice(index + copied, length - copied);
+                int remaining = values.remaining() / width;
+                values.asIntBuffer().get(destination, copied, remaining);
+                copied += remaining;
+            }
+        }
+
+        /**
+         * Copies consecutive values of a long column into the given array.
+         *
+         * @param index       The index of the first value.
+         * @param destination The array the values are copied into, starting at index 0.
+         * @param length      The number of values to be copied.
+         * @throws IOException If the column cannot be mapped.
+         */
+        private void getLongs(long index, long[] destination, int length) throws IOException {
+            int copied = 0;
+            while (copied < length) {
+                ByteBuffer values = slice(index + copied, length - copied);
+                int remaining = values.remaining() / width;
+                values.asLongBuffer().get(destination, copied, remaining);
+                copied += remaining;
+            }
+        }
+
+        /**
+         * Returns a view of consecutive values up to the end of the chunk holding the first of them.
+         *
+         * @param index  The index of the first value.
+         * @param length The maximum number of values.
+         * @return A little-endian {@link ByteBuffer} holding the values.
+         * @throws IOException If the column cannot be mapped.
+         */
+        private ByteBuffer slice(long index, int length) throws IOException {
+            long position = index * width;
+            int begin = (int) (position % CHUNK);
+            int values = Math.min(length, (CHUNK - begin) / width);
+            return chunk(position).slice(begin, values * width).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private void putLong(long index, long value) throws IOException {
+            long position = index * width;
+            chunk(position).putLong((int) (position % CHUNK), value);
+        }
+
+        private void putInt(long index, int value) throws IOException {
+            long position = index * width;
+            chunk(position).putInt((int) (position % CHUNK), value);
+        }
+
+        /**
+         * Returns the chunk holding the given position, mapping the chunks up to it if they have not been mapped yet.
+         * <p>
+         * A writable column maps whole chunks, which grows the file to the end of the last chunk; a column opened for
+         * queries only maps as much of the file as there is.
+         * </p>
+         *
+         * @param position The position in the file.
+         * @return The chunk holding the position.
+         * @throws IOException If the chunk cannot be mapped.
+         */
+        private MappedByteBuffer chunk(long position) throws IOException {
+            int index = (int) (position / CHUNK);
+            if (index < chunks.size()) {
+                return chunks.get(index);
+            }
+            while (chunks.size() <= index) {
+                long begin = (long) chunks.size() * CHUNK;
+                MappedByteBuffer chunk = writable
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, begin, CHUNK)
+                    : channel.map(FileChannel.MapMode.READ_ONLY, begin, Math.min(CHUNK, channel.size() - begin));
+                chunks.add((MappedByteBuffer) chunk.order(ByteOrder.LITTLE_ENDIAN));
+            }
+            return chunks.get(index);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits the rate of requests sent to each host, so that targets sharing a host do not get the application throttled.
+ * <p>
+ * Every host has a token bucket that holds up to {@code burst} tokens and is refilled with {@code rate} tokens per
+ * second. Each request takes a token; if none is left, the request waits until the next token is due. The limits
+ * default to {@value #DEFAULT_RATE} requests per second with bursts of {@value #DEFAULT_BURST} requests and can be
+ * changed with the system properties {@value #RATE_PROPERTY} and {@value #BURST_PROPERTY}, or with
+ * {@link #setLimit(double, int)}. A rate of 0 disables the limit.
+ * </p>
+ * <p>
+ * The default burst lets a single check send its parallel requests to a host without waiting: the pages of a listing
+ * fetched at the same time (see {@link Pagination#DEFAULT_CONCURRENCY}) plus the detail pages verified at the same
+ * time (see {@link DetailVerifier#DEFAULT_CONCURRENCY}). The default rate then refills the bucket within a few seconds,
+ * which is short compared with the poll interval of a target but still keeps a busy host from being flooded.
+ * </p>
+ * <p>
+ * A host that answered with a {@code Retry-After} header is blocked until the given time has passed: every request
+ * to it fails right away with a {@link RetryAfterException} instead of being sent.
+ * </p>
+ */
+public class HostRateLimiter {
+    /**
+     * The system property holding the number of requests per second and host.
+     */
+    public static final String RATE_PROPERTY = "shopstockalert.host.rate";
+    /**
+     * The system property holding the number of requests a host may receive in a burst.
+     */
+    public static final String BURST_PROPERTY = "shopstockalert.host.burst";
+    static final double DEFAULT_RATE = 2;
+    static final int DEFAULT_BURST = Pagination.DEFAULT_CONCURRENCY + DetailVerifier.DEFAULT_CONCURRENCY;
+    /**
+     * The time to wait after a {@code 429} or {@code 503} response that does not say how long to wait.
+     */
+    static final Duration DEFAULT_RETRY_AFTER = Duration.ofMinutes(1);
+
+    private static final Map<String, Bucket> BUCKETS = new ConcurrentHashMap<>();
+    private static final Map<String, Block> BLOCKS = new ConcurrentHashMap<>();
+    private static volatile double rate = Double.parseDouble(System.getProperty(RATE_PROPERTY, Double.toString(DEFAULT_RATE)));
+    private static volatile int burst = Integer.parseInt(System.getProperty(BURST_PROPERTY, Integer.toString(DEFAULT_BURST)));
+    /**
+     * The clock the buckets and blocks are measured with, or {@code null} to use {@link System#nanoTime()}.
+     */
+    private static volatile Clock clock;
+
+    private HostRateLimiter() {
+    }
+
+    /**
+     * Changes the limit applied to every host.
+     *
+     * @param requestsPerSecond The number of requests per second and host, or 0 to disable the limit.
+     * @param burstSize         The number of requests a host may receive in a burst.
+     */
+    public static void setLimit(double requestsPerSecond, int burstSize) {
+        rate = requestsPerSecond;
+        burst = Math.max(1, burstSize);
+        BUCKETS.clear();
+    }
+
+    /**
+     * Measures the buckets and blocks of all hosts with the given clock instead of {@link System#nanoTime()}, e.g. to
+     * move time forward in tests. All buckets and blocks are reset.
+     *
+     * @param testClock The clock to be used, or {@code null} to use {@link System#nanoTime()} again.
+     */
+    static void setClock(Clock testClock) {
+        clock = testClock;
+        BUCKETS.clear();
+        BLOCKS.clear();
+    }
+
+    /**
+     * Returns the current time of the clock the buckets and blocks are measured with.
+     *
+     * @return The current value of {@link System#nanoTime()}, or the nanoseconds since the epoch of the clock set with
+     * {@link #setClock(Clock)}.
+     */
+    private static long now() {
+        Clock current = clock;
+        if (current == null) {
+            return System.nanoTime();
+        }
+        Instant instant = current.instant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    /**
+     * Waits until a request may be sent to the host of the given URL.
+     *
+     * @param url The URL to be requested.
+     * @throws RetryAfterException If the host has asked not to be requested until a later time.
+     * @throws IOException If the calling thread is interrupted while waiting.
+     */
+    static void acquire(String url) throws IOException {
+        String host = Website.host(url);
+        Block block = BLOCKS.get(host);
+        if (block != null) {
+            long remaining = block.until() - now();
+            if (remaining > 0) {
+                throw new RetryAfterException(block.status(), url, Duration.ofNanos(remaining));
+            }
+            BLOCKS.remove(host, block);
+        }
+        double currentRate = rate;
+        if (currentRate <= 0) {
+            return;
+        }
+        long now = now();
+        long wait = BUCKETS.computeIfAbsent(host, ignored -> new Bucket(burst, now)).reserve(currentRate, burst, now);
+        if (wait > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to request " + url, e);
+            }
+        }
+    }
+
+    /**
+     * Takes a token for a request to the host of the given URL if one is available right away, without waiting.
+     * <p>
+     * This is used for requests that are optional, such as hedged requests (see {@link Website}), which are rather not
+     * sent than delayed.
+     * </p>
+     *
+     * @param url The URL to be requested.
+     * @return {@code true} if the request may be sent now, {@code false} if the host is blocked or out of tokens.
+     */
+    static boolean tryAcquire(String url) {
+        String host = Website.host(url);
+        Block block = BLOCKS.get(host);
+        long now = now();
+        if (block != null && block.until() - now > 0) {
+            return false;
+        }
+        double currentRate = rate;
+        if (currentRate <= 0) {
+            return true;
+        }
+        return BUCKETS.computeIfAbsent(host, ignored -> new Bucket(burst, now)).tryTake(currentRate, burst, now);
+    }
+
+    /**
+     * Blocks the host of the given URL after it answered with {@code 429} or {@code 503}.
+     *
+     * @param url        The requested URL.
+     * @param status     The status code of the response.
+     * @param retryAfter The value of the {@code Retry-After} header of the response, or {@code null} if absent.
+     * @return The {@link RetryAfterException} to be thrown for the response.
+     */
+    static RetryAfterException block(String url, int status, String retryAfter) {
+        Duration delay = parseRetryAfter(retryAfter);
+        BLOCKS.put(Website.host(url), new Block(now() + delay.toNanos(), status));
+        return new RetryAfterException(status, url, delay);
+    }
+
+    /**
+     * Parses the value of a {@code Retry-After} header, which is either a number of seconds or an HTTP date.
+     *
+     * @param value The value of the header, or {@code null} if absent.
+     * @return The time to wait, or {@link #DEFAULT_RETRY_AFTER} if the value is absent or invalid.
+     */
+    static Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.strip())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.strip(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return DEFAULT_RETRY_AFTER;
+            }
+        }
+    }
+
+    /**
+     * The token bucket of a single host.
+     */
+    private static final class Bucket {
+        private double tokens;
+        private long updated;
+
+        private Bucket(int burst, long now) {
+            this.tokens = burst;
+            this.updated = now;
+        }
+
+        /**
+         * Takes a token, possibly one that is only due in the future.
+         *
+         * @param rate  The number of tokens added per second.
+         * @param burst The maximum number of tokens.
+         * @param now   The current time, see {@link #now()}.
+         * @return The number of nanoseconds until the taken token is due, or 0 if it is available right away.
+         */
+        private synchronized long reserve(double rate, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - updated) * rate / 1e9);
+            updated = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+
+        /**
+         * Takes a token if one is available right away.
+         *
+         * @param rate  The number of tokens added per second.
+         * @param burst The maximum number of tokens.
+         * @param now   The current time, see {@link #now()}.
+         * @return {@code true} if a token has been taken, {@code false} otherwise.
+         */
+        private synchronized boolean tryTake(double rate, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - updated) * rate / 1e9);
+            updated = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * A host that must not be requested before the given time.
+     *
+     * @param until  The time until which the host is blocked, see {@link #now()}.
+     * @param status The status code with which the host asked to be left alone.
+     */
+    private record Block(long until, int status) {
+    }
+}
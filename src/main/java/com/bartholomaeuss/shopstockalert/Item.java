@@ -0,0 +1,84 @@
+package com.bartholomaeuss.shopstockalert;
+
+/**
+ * A single item of interest found on a webpage, e.g. an article or a flat.
+ * <p>
+ * Items are identified by their id, which is the link of the item unless the rule takes it from an attribute
+ * (see {@link ItemExtractor}). Prices are kept in minor units, e.g. cents, so they can be compared exactly.
+ * </p>
+ *
+ * @param id           The id of the item, unique within a listing.
+ * @param title        The title of the item.
+ * @param price        The price of the item in minor units, or {@link #NO_PRICE} if the item has no price.
+ * @param availability The availability of the item.
+ * @param href         The link to the item, or an empty string if the item has no link.
+ */
+public record Item(String id, String title, long price, Availability availability, String href) {
+    /**
+     * The price of an item whose price is unknown.
+     */
+    public static final long NO_PRICE = -1;
+
+    /**
+     * Creates an item of which only the link is known.
+     *
+     * @param href The link to the item.
+     * @return An {@link Item} identified by its link, without title and price.
+     */
+    public static Item of(String href) {
+        return new Item(href, "", NO_PRICE, Availability.UNKNOWN, href);
+    }
+
+    /**
+     * Returns whether the price of this item is known.
+     *
+     * @return {@code true} if the item has a price, {@code false} otherwise.
+     */
+    public boolean hasPrice() {
+        return price != NO_PRICE;
+    }
+
+    /**
+     * Describes this item in a single line, as used in notifications.
+     *
+     * @return The title, the price if known and the link of the item.
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder(title);
+        if (hasPrice()) {
+            description.append(description.isEmpty() ? "" : " ").append(formatPrice(price));
+        }
+        if (!href.isEmpty()) {
+            description.append(description.isEmpty() ? "" : " ").append(href);
+        }
+        return description.toString();
+    }
+
+    /**
+     * Formats a price given in minor units with two decimals.
+     *
+     * @param price The price in minor units.
+     * @return The formatted price, e.g. "12.99".
+     */
+    static String formatPrice(long price) {
+        return price / 100 + "." + (price % 100 < 10 ? "0" : "") + price % 100;
+    }
+
+    /**
+     * The availability of an item.
+     */
+    public enum Availability {
+        /**
+         * The listing does not say whether the item is available.
+         */
+        UNKNOWN,
+        /**
+         * The item is available.
+         */
+        IN_STOCK,
+        /**
+         * The item is listed but sold out.
+         */
+        OUT_OF_STOCK
+    }
+}
@@ -0,0 +1,144 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.util.List;
+
+/**
+ * Describes how the fields of an {@link Item} are extracted from an item of interest.
+ * <p>
+ * The title and the link are determined by the {@link Rule}. An item extractor adds
+ * </p>
+ * <ul>
+ *     <li>an optional <b>id</b> attribute of the item element (e.g. {@code data-sku}); if absent or empty, the item
+ *     is identified by its link, or by its title if it has no link,</li>
+ *     <li>an optional <b>price</b> selector matching the element holding the price; if absent, items have no
+ *     price,</li>
+ *     <li>an optional <b>availability</b> selector matching the element telling whether the item is available; if
+ *     absent, the text of the whole item is used,</li>
+ *     <li>a list of <b>sold-out</b> keywords; an item whose availability text contains one of them (case-insensitive)
+ *     is out of stock, any other item is in stock.</li>
+ * </ul>
+ */
+public class ItemExtractor {
+    /**
+     * The keywords marking an item as sold out if a rule does not specify any.
+     */
+    public static final List<String> DEFAULT_SOLD_OUT = List.of("sold out", "out of stock", "ausverkauft",
+        "vergriffen", "nicht lieferbar");
+    /**
+     * The item extractor of rules that do not specify any item fields.
+     */
+    public static final ItemExtractor DEFAULT = new ItemExtractor(null, null, null, DEFAULT_SOLD_OUT);
+
+    private final String id;
+    private final Evaluator price;
+    private final Evaluator availability;
+    private final KeywordMatcher soldOut;
+
+    /**
+     * Constructs a new {@code ItemExtractor} and compiles its selectors and keywords.
+     *
+     * @param id           The attribute of the item element holding the id, or {@code null} to identify items by
+     *                     their link.
+     * @param price        The CSS selector matching the element within an item that holds the price, or {@code null}
+     *                     if items have no price.
+     * @param availability The CSS selector matching the element within an item that tells whether the item is
+     *                     available, or {@code null} to use the whole item.
+     * @param soldOut      The keywords marking an item as sold out.
+     * @throws org.jsoup.select.Selector.SelectorParseException If one of the selectors is invalid.
+     */
+    public ItemExtractor(String id, String price, String availability, List<String> soldOut) {
+        this.id = id == null || id.isBlank() ? null : id;
+        this.price = price == null || price.isBlank() ? null : QueryParser.parse(price);
+        this.availability = availability == null || availability.isBlank() ? null : QueryParser.parse(availability);
+        this.soldOut = new KeywordMatcher(soldOut, List.of());
+    }
+
+    /**
+     * Extracts the fields of an item of interest.
+     *
+     * @param item  The element representing the item.
+     * @param title The title of the item.
+     * @param href  The link to the item, or an empty string if the item has no link.
+     * @return The extracted {@link Item}.
+     */
+    Item extract(Element item, String title, String href) {
+        String itemId = id == null ? "" : item.attr(id);
+        if (itemId.isEmpty()) {
+            itemId = href.isEmpty() ? title : href;
+        }
+        long itemPrice = Item.NO_PRICE;
+        if (price != null) {
+            Element priceElement = item.selectFirst(price);
+            if (priceElement != null) {
+                itemPrice = parsePrice(priceElement.text());
+            }
+        }
+        Element availabilityElement = availability == null ? item : item.selectFirst(availability);
+        Item.Availability itemAvailability = availabilityElement == null || !soldOut.matches(availabilityElement)
+            ? Item.Availability.IN_STOCK
+            : Item.Availability.OUT_OF_STOCK;
+        return new Item(itemId, title, itemPrice, itemAvailability, href);
+    }
+
+    /**
+     * Parses the first price in the given text.
+     * <p>
+     * Both decimal commas and decimal points are understood: a separator followed by one or two digits at the end of
+     * the number is the decimal separator, every other separator groups thousands. For example, "1.299,90 EUR",
+     * "$1,299.90" and "1299.9" all yield 129990.
+     * </p>
+     *
+     * @param text The text holding the price.
+     * @return The price in minor units, or {@link Item#NO_PRICE} if the text holds no number.
+     */
+    static long parsePrice(String text) {
+        int start = 0;
+        while (start < text.length() && !Character.isDigit(text.charAt(start))) {
+            start++;
+        }
+        if (start == text.length()) {
+            return Item.NO_PRICE;
+        }
+        int end = start;
+        while (end < text.length() && (Character.isDigit(text.charAt(end)) || isSeparator(text, end))) {
+            end++;
+        }
+        long units = 0;
+        long cents = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                if (decimals >= 0) {
+                    cents = cents * 10 + Character.digit(c, 10);
+                    decimals++;
+                } else {
+                    units = units * 10 + Character.digit(c, 10);
+                }
+            } else if ((c == '.' || c == ',') && end - i - 1 <= 2 && decimals < 0) {
+                decimals = 0;
+            }
+        }
+        if (decimals == 1) {
+            cents *= 10;
+        }
+        return units * 100 + cents;
+    }
+
+    /**
+     * Checks whether the character at the given index separates the digits of a number.
+     *
+     * @param text  The text holding the number.
+     * @param index The index of the character.
+     * @return {@code true} for a point, comma, apostrophe or (non-breaking) space that is followed by a digit.
+     */
+    private static boolean isSeparator(String text, int index) {
+        char c = text.charAt(index);
+        return (c == '.' || c == ',' || c == '\'' || c == ' ' || c == '\u00A0')
+            && index + 1 < text.length() && Character.isDigit(text.charAt(index + 1));
+    }
+}
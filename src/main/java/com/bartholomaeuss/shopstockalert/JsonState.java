@@ -0,0 +1,196 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.function.Consumer;
+
+/**
+ * Describes where a webpage embeds the state of its products as JSON and how the products are read from it.
+ * <p>
+ * Many shops render their listings from a JSON document shipped in a {@code <script>} element (e.g.
+ * {@code <script id="__NEXT_DATA__" type="application/json">}), which holds the same products as the DOM, but with
+ * plain fields instead of markup that changes with every redesign. A JSON state consists of
+ * </p>
+ * <ul>
+ *     <li>a <b>script</b> selector that matches the elements holding the JSON,</li>
+ *     <li>the name of the <b>url</b> member linking to a product; every JSON object with this member is a product,</li>
+ *     <li>the optional name of a boolean <b>flag</b> member marking a product of interest (e.g. {@code isDeal}),</li>
+ *     <li>the optional name of the <b>title</b> member of a product (e.g. {@code name}), which is filtered with the
+ *     keywords of the rule unless a flag member is given,</li>
+ *     <li>the optional names of the <b>id</b> and <b>price</b> members of a product.</li>
+ * </ul>
+ * <p>
+ * The JSON is streamed with a {@link JsonReader}, so no tree of the document is built: only the members named above
+ * are read, everything else is skipped, and the members of a product may appear in any order, before or after the
+ * objects nested into it. A script whose JSON is preceded by JavaScript, e.g.
+ * {@code window.__STATE__ = {...};}, is read from its first opening brace or bracket on.
+ * </p>
+ */
+public class JsonState {
+    private final Evaluator script;
+    private final String url;
+    private final String flag;
+    private final String title;
+    private final String id;
+    private final String price;
+
+    /**
+     * Constructs a new {@code JsonState} and compiles its script selector.
+     *
+     * @param script The CSS selector matching the script elements holding the JSON.
+     * @param url    The name of the member holding the link to a product.
+     * @param flag   The name of the boolean member marking a product of interest, or {@code null} if the titles of
+     *               the products are filtered with the keywords.
+     * @param title  The name of the member holding the title of a product, or {@code null} if products have no
+     *               title.
+     * @param id     The name of the member holding the id of a product, or {@code null} to identify products by link.
+     * @param price  The name of the member holding the price of a product, or {@code null} if products have no price.
+     * @throws IllegalArgumentException If neither a flag nor a title member is given.
+     * @throws org.jsoup.select.Selector.SelectorParseException If the script selector is invalid.
+     */
+    public JsonState(String script, String url, String flag, String title, String id, String price) {
+        if (flag == null && title == null) {
+            throw new IllegalArgumentException("A JSON state requires a flag or a title member");
+        }
+        this.script = QueryParser.parse(script);
+        this.url = url;
+        this.flag = flag;
+        this.title = title;
+        this.id = id;
+        this.price = price;
+    }
+
+    /**
+     * Returns the compiled script selector.
+     *
+     * @return The {@link Evaluator} matching the script elements holding the JSON.
+     */
+    public Evaluator getScript() {
+        return script;
+    }
+
+    /**
+     * Returns whether products are filtered by their flag member instead of the keywords.
+     *
+     * @return {@code true} if a flag member is given, {@code false} if the titles are filtered with the keywords.
+     */
+    public boolean hasFlag() {
+        return flag != null;
+    }
+
+    /**
+     * Streams through the JSON held by a script and reports every product found in it.
+     * <p>
+     * If a flag member is given, only products whose flag is {@code true} are reported. A product is reported once all
+     * of its members have been read, so nested products are reported before the products they are nested into.
+     * </p>
+     *
+     * @param data     The content of the script element.
+     * @param consumer The consumer of the products.
+     * @throws IOException If the JSON is malformed.
+     */
+    public void read(String data, Consumer<Product> consumer) throws IOException {
+        int start = 0;
+        while (start < data.length() && data.charAt(start) != '{' && data.charAt(start) != '[') {
+            start++;
+        }
+        if (start == data.length()) {
+            return;
+        }
+        JsonReader reader = new JsonReader(new StringReader(data.substring(start)));
+        reader.setLenient(true);
+        readValue(reader, consumer);
+    }
+
+    private void readValue(JsonReader reader, Consumer<Product> consumer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> readObject(reader, consumer);
+            case BEGIN_ARRAY -> {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readValue(reader, consumer);
+                }
+                reader.endArray();
+            }
+            default -> reader.skipValue();
+        }
+    }
+
+    /**
+     * Reads an object, reporting it as product if it has a url member and the nested products while reading it.
+     *
+     * @param reader   The reader positioned at the beginning of the object.
+     * @param consumer The consumer of the products.
+     * @throws IOException If the JSON is malformed.
+     */
+    private void readObject(JsonReader reader, Consumer<Product> consumer) throws IOException {
+        String productUrl = null;
+        boolean flagged = flag == null;
+        String productTitle = null;
+        String productId = null;
+        String productPrice = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                readValue(reader, consumer);
+            } else if (name.equals(flag)) {
+                flagged = token == JsonToken.BOOLEAN ? reader.nextBoolean() : "true".equals(nextString(reader, token));
+            } else if (name.equals(url)) {
+                productUrl = nextString(reader, token);
+            } else if (name.equals(title)) {
+                productTitle = nextString(reader, token);
+            } else if (name.equals(id)) {
+                productId = nextString(reader, token);
+            } else if (name.equals(price)) {
+                productPrice = nextString(reader, token);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (productUrl != null && flagged) {
+            consumer.accept(new Product(productUrl, productId, productTitle, productPrice));
+        }
+    }
+
+    /**
+     * Reads a primitive value as string.
+     *
+     * @param reader The reader positioned at the value.
+     * @param token  The type of the value.
+     * @return The value, or {@code null} if it is {@code null}.
+     * @throws IOException If the JSON is malformed.
+     */
+    private static String nextString(JsonReader reader, JsonToken token) throws IOException {
+        switch (token) {
+            case NULL -> {
+                reader.nextNull();
+                return null;
+            }
+            case BOOLEAN -> {
+                return Boolean.toString(reader.nextBoolean());
+            }
+            default -> {
+                return reader.nextString();
+            }
+        }
+    }
+
+    /**
+     * A product read from the JSON state of a webpage.
+     *
+     * @param url   The link to the product.
+     * @param id    The id of the product, or {@code null} if absent.
+     * @param title The title of the product, or {@code null} if absent.
+     * @param price The price of the product as given in the JSON, or {@code null} if absent.
+     */
+    public record Product(String url, String id, String title, String price) {
+    }
+}
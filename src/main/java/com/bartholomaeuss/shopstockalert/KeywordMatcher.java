@@ -0,0 +1,478 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Matches the text of an element against several keywords at once.
+ * <p>
+ * The keywords are compiled into an Aho-Corasick automaton, so the text is scanned a single time no matter how
+ * many keywords there are. The text nodes of the element are fed into the automaton character by character,
+ * folded to lower case, without building the text of the element or any other intermediate string.
+ * </p>
+ * <p>
+ * The characters fed are exactly those of {@link Element#text()}: whitespace is collapsed except within elements that
+ * preserve it (e.g. {@code pre}), invisible characters are dropped, a space separates block elements and
+ * {@code br} from their surroundings under the same conditions as in jsoup, and leading and trailing whitespace is
+ * trimmed. Several elements are joined the same way as by {@link org.jsoup.select.Elements#text()}. Case is folded
+ * per character, which agrees with {@link String#toLowerCase(java.util.Locale)} for {@link java.util.Locale#ROOT}
+ * except for its few context-dependent mappings, such as the final sigma.
+ * </p>
+ * <p>
+ * Text matches if it contains at least one of the keywords and none of the excluded keywords (e.g. "sold out").
+ * The scan stops as soon as the outcome is certain: at the first excluded keyword, or at the first keyword if
+ * there are no excluded keywords.
+ * </p>
+ * <p>
+ * Alternatively, {@link #find(List)} scans the whole text and reports which of the keywords it contains, so a single
+ * scan can serve many sets of keywords at once (see {@link SubscriptionIndex}).
+ * </p>
+ */
+public class KeywordMatcher {
+    private static final byte INCLUDED = 1;
+    private static final byte EXCLUDED = 2;
+
+    /**
+     * Transition labels per state, sorted ascending.
+     */
+    private final char[][] labels;
+    /**
+     * Transition targets per state, in the order of {@link #labels}.
+     */
+    private final int[][] targets;
+    private final int[] failure;
+    private final byte[] output;
+    /**
+     * Indices of the included keywords ending in each state, including those reached through failure links.
+     */
+    private final int[][] keywordIds;
+    private final boolean hasExcluded;
+
+    /**
+     * Compiles the given keywords into a matcher.
+     *
+     * @param included The keywords of which the text has to contain at least one.
+     * @param excluded The keywords of which the text must not contain any.
+     */
+    public KeywordMatcher(List<String> included, List<String> excluded) {
+        List<char[]> labelList = new ArrayList<>();
+        List<int[]> targetList = new ArrayList<>();
+        List<Byte> outputList = new ArrayList<>();
+        List<int[]> keywordIdList = new ArrayList<>();
+        labelList.add(new char[0]);
+        targetList.add(new int[0]);
+        outputList.add((byte) 0);
+        keywordIdList.add(new int[0]);
+        boolean anyExcluded = false;
+        for (int pass = 0; pass < 2; pass++) {
+            byte flag = pass == 0 ? INCLUDED : EXCLUDED;
+            List<String> keywords = pass == 0 ? included : excluded;
+            for (int id = 0; id < keywords.size(); id++) {
+                String normalized = normalize(keywords.get(id));
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                anyExcluded |= flag == EXCLUDED;
+                int state = 0;
+                for (int i = 0; i < normalized.length(); i++) {
+                    char c = normalized.charAt(i);
+                    int next = find(labelList.get(state), targetList.get(state), c);
+                    if (next < 0) {
+                        next = labelList.size();
+                        labelList.add(new char[0]);
+                        targetList.add(new int[0]);
+                        outputList.add((byte) 0);
+                        keywordIdList.add(new int[0]);
+                        insert(labelList, targetList, state, c, next);
+                    }
+                    state = next;
+                }
+                outputList.set(state, (byte) (outputList.get(state) | flag));
+                if (flag == INCLUDED) {
+                    keywordIdList.set(state, append(keywordIdList.get(state), id));
+                }
+            }
+        }
+        this.labels = labelList.toArray(new char[0][]);
+        this.targets = targetList.toArray(new int[0][]);
+        this.output = new byte[outputList.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = outputList.get(i);
+        }
+        this.keywordIds = keywordIdList.toArray(new int[0][]);
+        this.failure = new int[labels.length];
+        this.hasExcluded = anyExcluded;
+        buildFailureLinks();
+    }
+
+    /**
+     * Checks whether the text of the given element matches.
+     *
+     * @param element The element whose text is to be matched.
+     * @return {@code true} if the text contains one of the keywords and none of the excluded keywords.
+     */
+    public boolean matches(Element element) {
+        Scan scan = new Scan();
+        scan.begin();
+        scan(element, scan);
+        return scan.result();
+    }
+
+    /**
+     * Checks whether the combined text of the given elements matches, as if their texts were joined by spaces.
+     *
+     * @param elements The elements whose text is to be matched.
+     * @return {@code true} if the text contains one of the keywords and none of the excluded keywords.
+     */
+    public boolean matches(List<Element> elements) {
+        Scan scan = new Scan();
+        for (Element element : elements) {
+            if (scan.done) {
+                break;
+            }
+            separate(scan);
+            scan(element, scan);
+        }
+        return scan.result();
+    }
+
+    /**
+     * Finds all included keywords contained in the combined text of the given elements, as if their texts were joined
+     * by spaces.
+     * <p>
+     * Unlike {@link #matches(List)}, the whole text is scanned and the excluded keywords are ignored.
+     * </p>
+     *
+     * @param elements The elements whose text is to be scanned.
+     * @return A {@link BitSet} holding the indices of the found keywords within the list of included keywords.
+     */
+    public BitSet find(List<Element> elements) {
+        Scan scan = new Scan();
+        scan.found = new BitSet();
+        for (Element element : elements) {
+            separate(scan);
+            scan(element, scan);
+        }
+        return scan.found;
+    }
+
+    /**
+     * Checks whether the given plain text matches, e.g. a field read from the JSON state of a webpage.
+     *
+     * @param text The text to be matched.
+     * @return {@code true} if the text contains one of the keywords and none of the excluded keywords.
+     */
+    public boolean matches(CharSequence text) {
+        Scan scan = new Scan();
+        scan.begin();
+        normalize(scan, text);
+        return scan.result();
+    }
+
+    /**
+     * Finds all included keywords contained in the given plain text.
+     *
+     * @param text The text to be scanned.
+     * @return A {@link BitSet} holding the indices of the found keywords within the list of included keywords.
+     */
+    public BitSet find(CharSequence text) {
+        Scan scan = new Scan();
+        scan.found = new BitSet();
+        scan.begin();
+        normalize(scan, text);
+        return scan.found;
+    }
+
+    /**
+     * Feeds the text nodes of the element into the automaton until the outcome is certain.
+     *
+     * @param element The element whose text is to be scanned.
+     * @param scan    The state of the scan.
+     */
+    private void scan(Element element, Scan scan) {
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    if (textNode instanceof CDataNode
+                        || textNode.parentNode() instanceof Element parent && preservesWhitespace(parent)) {
+                        String text = textNode.getWholeText();
+                        for (int i = 0; i < text.length() && !scan.done; i++) {
+                            emit(scan, text.charAt(i));
+                        }
+                    } else {
+                        normalize(scan, textNode.getWholeText());
+                    }
+                } else if (node instanceof Element child && scan.written && !scan.lastSpace
+                    && (child.isBlock() || child.nameIs("br"))) {
+                    emit(scan, ' ');
+                }
+                return scan.done ? FilterResult.STOP : FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                if (node instanceof Element child && child.isBlock() && !scan.lastSpace) {
+                    Node next = child.nextSibling();
+                    if (next instanceof TextNode || next instanceof Element sibling && !sibling.tag().formatAsBlock()) {
+                        emit(scan, ' ');
+                    }
+                }
+                return scan.done ? FilterResult.STOP : FilterResult.CONTINUE;
+            }
+        }, element);
+    }
+
+    /**
+     * Feeds the given text with its whitespace collapsed and its invisible characters dropped, like jsoup's
+     * normalized text nodes.
+     *
+     * @param scan The state of the scan.
+     * @param text The text to be fed.
+     */
+    private void normalize(Scan scan, CharSequence text) {
+        boolean stripLeading = scan.lastSpace;
+        boolean lastWasWhite = false;
+        boolean reachedNonWhite = false;
+        for (int i = 0; i < text.length() && !scan.done; i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+                    continue;
+                }
+                emit(scan, ' ');
+                lastWasWhite = true;
+            } else if (c != '\u200B' && c != '\u00AD') {
+                emit(scan, c);
+                lastWasWhite = false;
+                reachedNonWhite = true;
+            }
+        }
+    }
+
+    /**
+     * Appends a character to the text of the current element, holding back whitespace until it is known not to be
+     * trailing, and dropping it if it is leading.
+     *
+     * @param scan The state of the scan.
+     * @param c    The character of the text of the element.
+     */
+    private void emit(Scan scan, char c) {
+        scan.written = true;
+        scan.lastSpace = c == ' ';
+        if (c <= ' ') {
+            if (scan.trimmed) {
+                scan.blanks.append(c);
+            }
+            return;
+        }
+        scan.trimmed = true;
+        for (int i = 0; i < scan.blanks.length() && !scan.done; i++) {
+            feed(scan, scan.blanks.charAt(i));
+        }
+        scan.blanks.setLength(0);
+        if (!scan.done) {
+            feed(scan, c);
+        }
+    }
+
+    /**
+     * Starts the text of the next of several elements, separated by a space from the text before, if any.
+     *
+     * @param scan The state of the scan.
+     */
+    private void separate(Scan scan) {
+        if (scan.fed) {
+            feed(scan, ' ');
+        }
+        scan.begin();
+    }
+
+    /**
+     * Feeds a single character of the text into the automaton.
+     *
+     * @param scan The state of the scan.
+     * @param c    The character as it appears in the text.
+     */
+    private void feed(Scan scan, char c) {
+        scan.fed = true;
+        step(scan, Character.toLowerCase(c));
+    }
+
+    private void step(Scan scan, char c) {
+        int state = scan.state;
+        int next;
+        while ((next = find(labels[state], targets[state], c)) < 0 && state != 0) {
+            state = failure[state];
+        }
+        scan.state = Math.max(next, 0);
+        if (scan.found != null) {
+            for (int id : keywordIds[scan.state]) {
+                scan.found.set(id);
+            }
+            return;
+        }
+        byte hit = output[scan.state];
+        if ((hit & EXCLUDED) != 0) {
+            scan.excluded = true;
+            scan.done = true;
+        } else if ((hit & INCLUDED) != 0) {
+            scan.included = true;
+            scan.done = !hasExcluded;
+        }
+    }
+
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < labels[state].length; i++) {
+                char c = labels[state][i];
+                int child = targets[state][i];
+                int fallback = failure[state];
+                int next;
+                while ((next = find(labels[fallback], targets[fallback], c)) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = next < 0 || next == child ? 0 : next;
+                output[child] |= output[failure[child]];
+                for (int id : keywordIds[failure[child]]) {
+                    keywordIds[child] = append(keywordIds[child], id);
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int find(char[] stateLabels, int[] stateTargets, char c) {
+        int index = Arrays.binarySearch(stateLabels, c);
+        return index < 0 ? -1 : stateTargets[index];
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] appended = Arrays.copyOf(ids, ids.length + 1);
+        appended[ids.length] = id;
+        return appended;
+    }
+
+    private static void insert(List<char[]> labelList, List<int[]> targetList, int state, char c, int target) {
+        char[] oldLabels = labelList.get(state);
+        int[] oldTargets = targetList.get(state);
+        int position = -Arrays.binarySearch(oldLabels, c) - 1;
+        char[] newLabels = new char[oldLabels.length + 1];
+        int[] newTargets = new int[oldTargets.length + 1];
+        System.arraycopy(oldLabels, 0, newLabels, 0, position);
+        System.arraycopy(oldTargets, 0, newTargets, 0, position);
+        newLabels[position] = c;
+        newTargets[position] = target;
+        System.arraycopy(oldLabels, position, newLabels, position + 1, oldLabels.length - position);
+        System.arraycopy(oldTargets, position, newTargets, position + 1, oldTargets.length - position);
+        labelList.set(state, newLabels);
+        targetList.set(state, newTargets);
+    }
+
+    /**
+     * Folds a keyword to lower case and collapses its whitespace the same way the scanned text is.
+     *
+     * @param keyword The keyword to be normalized.
+     * @return The normalized keyword.
+     */
+    static String normalize(String keyword) {
+        StringBuilder normalized = new StringBuilder(keyword.length());
+        boolean space = false;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Checks whether the text of the given element is kept as it is, like jsoup does for {@code pre} and
+     * {@code textarea}, looking at most five levels up.
+     *
+     * @param element The parent of a text node.
+     * @return {@code true} if the whitespace of the text is preserved.
+     */
+    private static boolean preservesWhitespace(Element element) {
+        for (int i = 0; i < 6 && element != null; i++) {
+            if (element.tag().preserveWhitespace()) {
+                return true;
+            }
+            element = element.parent();
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u00A0';
+    }
+
+    /**
+     * The mutable state of scanning the text of one item.
+     */
+    private static final class Scan {
+        private int state = 0;
+        /**
+         * Whether any character has been fed into the automaton.
+         */
+        private boolean fed = false;
+        /**
+         * Whether the text of the current element, before trimming, is not empty.
+         */
+        private boolean written = false;
+        /**
+         * Whether the text of the current element, before trimming, ends with a space.
+         */
+        private boolean lastSpace = false;
+        /**
+         * Whether the current element has any text left after trimming its leading whitespace.
+         */
+        private boolean trimmed = false;
+        /**
+         * The whitespace held back until it is known not to be trailing.
+         */
+        private final StringBuilder blanks = new StringBuilder();
+        private boolean included = false;
+        private boolean excluded = false;
+        private boolean done = false;
+        /**
+         * The indices of the keywords found so far, or {@code null} if the scan only decides whether the text matches.
+         */
+        private BitSet found;
+
+        private void begin() {
+            written = false;
+            lastSpace = false;
+            trimmed = false;
+            blanks.setLength(0);
+        }
+
+        private boolean result() {
+            return included && !excluded;
+        }
+    }
+}
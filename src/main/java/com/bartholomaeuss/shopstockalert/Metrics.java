@@ -0,0 +1,255 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters and latency histograms of the checks and exposes them in the Prometheus text format.
+ * <p>
+ * Metrics are only collected if the system property {@value #PORT_PROPERTY} is set, e.g.
+ * {@code -Dshopstockalert.metrics.port=9404}; the metrics are then served on {@code http://localhost:<port>/metrics}.
+ * Otherwise, every method of this class returns right away, so the instrumentation costs next to nothing.
+ * </p>
+ * <p>
+ * The following metrics are collected:
+ * </p>
+ * <ul>
+ *     <li>{@code shopstockalert_check_duration_seconds} (histogram, per target): the duration of complete checks,</li>
+ *     <li>{@code shopstockalert_checks_total} (counter, per target and outcome): the number of checks,</li>
+ *     <li>{@code shopstockalert_phase_duration_seconds} (histogram, per phase and host): the duration of fetching,
+ *     parsing and extracting a webpage and of sending a notification,</li>
+ *     <li>{@code shopstockalert_responses_total} (counter, per host and status): the number of HTTP responses,</li>
+ *     <li>{@code shopstockalert_fetch_cache_total} (counter, per result): the number of webpage requests served from
+ *     the {@link FetchCache} ({@code hit}), by a concurrent download ({@code coalesced}) or by a download of their own
+ *     ({@code miss}).</li>
+ * </ul>
+ */
+public class Metrics {
+    /**
+     * The system property holding the port of the metrics endpoint.
+     */
+    public static final String PORT_PROPERTY = "shopstockalert.metrics.port";
+    /**
+     * Whether metrics are collected at all.
+     */
+    static final boolean ENABLED = System.getProperty(PORT_PROPERTY) != null;
+
+    private static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    private static final Map<Series, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<Series, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, String> HELP = Map.of(
+        "shopstockalert_check_duration_seconds", "Duration of complete checks per target.",
+        "shopstockalert_checks_total", "Number of checks per target and outcome.",
+        "shopstockalert_phase_duration_seconds", "Duration of the phases of a check per host.",
+        "shopstockalert_responses_total", "Number of HTTP responses per host and status.",
+        "shopstockalert_fetch_cache_total", "Number of webpage requests per fetch cache result.");
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts the metrics endpoint on the port given by the system property {@value #PORT_PROPERTY}, if set.
+     *
+     * @return A {@link Closeable} stopping the endpoint, or {@code null} if metrics are disabled.
+     * @throws IOException If the endpoint cannot be started.
+     */
+    public static Closeable serve() throws IOException {
+        if (!ENABLED) {
+            return null;
+        }
+        int port = Integer.parseInt(System.getProperty(PORT_PROPERTY));
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", Metrics::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shopstockalert-metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        System.out.println("Serving metrics on http://localhost:" + port + "/metrics");
+        return () -> server.stop(0);
+    }
+
+    /**
+     * Returns the start time of a measurement.
+     *
+     * @return The current value of {@link System#nanoTime()}, or 0 if metrics are disabled.
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a phase of a check.
+     *
+     * @param phase The phase, e.g. "fetch".
+     * @param url   The URL of the webpage, whose host is used as label.
+     * @param start The start time returned by {@link #start()}.
+     */
+    static void phase(String phase, String url, long start) {
+        if (ENABLED) {
+            observe(new Series("shopstockalert_phase_duration_seconds",
+                "phase=\"" + phase + "\",host=\"" + escape(host(url)) + "\""), start);
+        }
+    }
+
+    /**
+     * Counts an HTTP response.
+     *
+     * @param url    The URL of the webpage, whose host is used as label.
+     * @param status The status code of the response.
+     */
+    static void response(String url, int status) {
+        if (ENABLED) {
+            increment(new Series("shopstockalert_responses_total",
+                "host=\"" + escape(host(url)) + "\",status=\"" + status + "\""));
+        }
+    }
+
+    /**
+     * Counts a webpage request by how it has been served by the {@link FetchCache}.
+     *
+     * @param result The result, "hit", "coalesced" or "miss".
+     */
+    static void cache(String result) {
+        if (ENABLED) {
+            increment(new Series("shopstockalert_fetch_cache_total", "result=\"" + result + "\""));
+        }
+    }
+
+    /**
+     * Records a complete check of a target.
+     *
+     * @param target  The checked target.
+     * @param outcome The outcome of the check, e.g. "changed", "unchanged" or "failed".
+     * @param start   The start time returned by {@link #start()}.
+     */
+    static void check(Target target, String outcome, long start) {
+        if (ENABLED) {
+            String label = "target=\"" + escape(target.toString()) + "\"";
+            observe(new Series("shopstockalert_check_duration_seconds", label), start);
+            increment(new Series("shopstockalert_checks_total", label + ",outcome=\"" + outcome + "\""));
+        }
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text format.
+     *
+     * @return The text exposition of all metrics.
+     */
+    static String scrape() {
+        Map<Series, Object> all = new TreeMap<>();
+        all.putAll(HISTOGRAMS);
+        all.putAll(COUNTERS);
+        StringBuilder text = new StringBuilder();
+        String current = null;
+        for (Map.Entry<Series, Object> entry : all.entrySet()) {
+            Series series = entry.getKey();
+            if (!series.name().equals(current)) {
+                current = series.name();
+                text.append("# HELP ").append(current).append(' ').append(HELP.get(current)).append('\n')
+                    .append("# TYPE ").append(current).append(' ')
+                    .append(entry.getValue() instanceof Histogram ? "histogram" : "counter").append('\n');
+            }
+            if (entry.getValue() instanceof Histogram histogram) {
+                histogram.render(series, text);
+            } else {
+                text.append(series.name()).append('{').append(series.labels()).append("} ")
+                    .append(((LongAdder) entry.getValue()).sum()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static void observe(Series series, long start) {
+        HISTOGRAMS.computeIfAbsent(series, ignored -> new Histogram()).observe((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void increment(Series series) {
+        COUNTERS.computeIfAbsent(series, ignored -> new LongAdder()).increment();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static String host(String url) {
+        String host = Website.host(url);
+        return host.isEmpty() ? "unknown" : host;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * A metric name together with its rendered labels.
+     */
+    private record Series(String name, String labels) implements Comparable<Series> {
+        @Override
+        public int compareTo(Series other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : labels.compareTo(other.labels);
+        }
+    }
+
+    /**
+     * A cumulative latency histogram with fixed buckets.
+     */
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void observe(double seconds) {
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(seconds);
+        }
+
+        private void render(Series series, StringBuilder text) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                text.append(series.name()).append("_bucket{").append(series.labels()).append(",le=\"")
+                    .append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            text.append(series.name()).append("_bucket{").append(series.labels()).append(",le=\"+Inf\"} ")
+                .append(count.sum()).append('\n')
+                .append(series.name()).append("_sum{").append(series.labels()).append("} ").append(sum.sum()).append('\n')
+                .append(series.name()).append("_count{").append(series.labels()).append("} ").append(count.sum())
+                .append('\n');
+        }
+    }
+}
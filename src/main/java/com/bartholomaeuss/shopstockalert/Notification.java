@@ -0,0 +1,12 @@
+package com.bartholomaeuss.shopstockalert;
+
+/**
+ * An email notification that is waiting to be sent.
+ *
+ * @param fromEmailAddress The email address that will appear in the "From" header of the email.
+ * @param toEmailAddress   The email address of the recipient.
+ * @param subject          The subject of the email.
+ * @param bodyText         The body text of the email.
+ */
+public record Notification(String fromEmailAddress, String toEmailAddress, String subject, String bodyText) {
+}
@@ -0,0 +1,61 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sends {@link Notification}s through a mail transport.
+ * <p>
+ * Two transports are available: the Gmail API (see {@link SendMessage}), which is used by default, and SMTP (see
+ * {@link SmtpNotifier}), which is used if the system property {@value SmtpNotifier#HOST_PROPERTY} names a mail server.
+ * A notifier may hold resources such as open connections, which are released by {@link #close()}.
+ * </p>
+ */
+@FunctionalInterface
+public interface Notifier extends Closeable {
+    /**
+     * Sends the notification.
+     *
+     * @param notification The notification to be sent.
+     * @throws Exception If the notification could not be sent and should be retried.
+     */
+    void send(Notification notification) throws Exception;
+
+    /**
+     * Releases the resources held by this notifier. Does nothing by default.
+     *
+     * @throws IOException If a resource cannot be released.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Returns a notifier sending through the Gmail API of this process (see {@link SendMessage#send(Notification)}).
+     * <p>
+     * The notifier is a lambda rather than a method reference to {@link SendMessage#send(Notification)}: linking a
+     * method reference resolves its return type, which would load the Gmail API and Jakarta Mail classes on every
+     * run. This way, they are only loaded once a notification is actually sent, so a run that finds nothing does
+     * not pay for them.
+     * </p>
+     *
+     * @return The Gmail {@link Notifier}.
+     */
+    static Notifier gmail() {
+        return notification -> SendMessage.send(notification);
+    }
+
+    /**
+     * Returns the notifier configured by the system properties of this process.
+     *
+     * @param concurrency The maximum number of notifications sent at the same time, which bounds the number of
+     *                    connections an SMTP notifier keeps open.
+     * @return An {@link SmtpNotifier} if {@value SmtpNotifier#HOST_PROPERTY} is set, the Gmail notifier otherwise.
+     */
+    static Notifier fromSystemProperties(int concurrency) {
+        if (System.getProperty(SmtpNotifier.HOST_PROPERTY) == null) {
+            return gmail();
+        }
+        return SmtpNotifier.fromSystemProperties(concurrency);
+    }
+}
@@ -0,0 +1,446 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable queue of {@link Notification}s that are sent asynchronously by a pool of workers.
+ * <p>
+ * Every notification is written to its own file in the outbox directory before {@link #enqueue(Notification)} returns,
+ * so it survives a crash or restart; notifications left over from a previous run are picked up again when the outbox
+ * is opened. A fixed number of workers sends the notifications, so a slow or failing delivery never blocks a check.
+ * </p>
+ * <p>
+ * An open outbox holds a lock on the file {@code outbox.lock} in its directory, so a second run cannot pick up the
+ * notifications that are still being sent by the first one and send them twice.
+ * </p>
+ * <p>
+ * A notification whose delivery fails is retried with exponential backoff. After {@link #MAX_ATTEMPTS} failed attempts
+ * it is appended to the dead-letter file {@code dead-letter.log} in the outbox directory and removed from the queue.
+ * If more than the configured capacity of notifications is pending, {@link #enqueue(Notification)} blocks until
+ * notifications have been sent, so a mail outage cannot fill up the disk.
+ * </p>
+ * <p>
+ * Alerts collected into a {@link Digest} are kept in the subdirectory {@code digest} of the outbox directory until
+ * their digest is enqueued.
+ * </p>
+ */
+public class Outbox implements Closeable {
+    /**
+     * The number of delivery attempts after which a notification is moved to the dead-letter file.
+     */
+    static final int MAX_ATTEMPTS = 8;
+    /**
+     * The delay before the first retry, which doubles with every further attempt.
+     */
+    static final Duration INITIAL_BACKOFF = Duration.ofSeconds(5);
+    /**
+     * The maximum delay between two attempts.
+     */
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+    /**
+     * The maximum time {@link #close()} waits for the deliveries in progress before releasing the directory.
+     */
+    static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String SUFFIX = ".msg";
+    private static final String DEAD_LETTER_FILE = "dead-letter.log";
+    private static final String DIGEST_DIRECTORY = "digest";
+    private static final String LOCK_FILE = "outbox.lock";
+
+    private final Path directory;
+    private final Delivery delivery;
+    private final int capacity;
+    private final Duration initialBackoff;
+    private final FileChannel lock;
+    private final BlockingQueue<Path> ready = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shopstockalert-outbox-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int pending = 0;
+    private int backingOff = 0;
+    private Digest digest;
+    private volatile boolean closed = false;
+
+    private Outbox(Path directory, Delivery delivery, int concurrency, int capacity, Duration initialBackoff,
+                   FileChannel lock) {
+        this.directory = directory;
+        this.delivery = delivery;
+        this.capacity = capacity;
+        this.initialBackoff = initialBackoff;
+        this.lock = lock;
+        this.workers = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("shopstockalert-outbox-", 0).factory());
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    /**
+     * Opens the outbox in the given directory and starts its workers.
+     * <p>
+     * Notifications left over from a previous run are queued for delivery right away, and alerts left over in its
+     * digest are collected again.
+     * </p>
+     *
+     * @param directory   The directory holding the pending notifications.
+     * @param delivery    The delivery used to send a notification.
+     * @param concurrency The maximum number of notifications sent at the same time.
+     * @param capacity    The maximum number of pending notifications before {@link #enqueue(Notification)} blocks.
+     * @return The opened {@link Outbox}.
+     * @throws IOException If the directory cannot be created or read, or if it is used by another outbox.
+     */
+    public static Outbox open(Path directory, Delivery delivery, int concurrency, int capacity) throws IOException {
+        return open(directory, delivery, concurrency, capacity, INITIAL_BACKOFF);
+    }
+
+    /**
+     * Opens the outbox in the given directory with the given delay before the first retry, e.g. to retry quickly in
+     * tests.
+     *
+     * @param directory      The directory holding the pending notifications.
+     * @param delivery       The delivery used to send a notification.
+     * @param concurrency    The maximum number of notifications sent at the same time.
+     * @param capacity       The maximum number of pending notifications before {@link #enqueue(Notification)} blocks.
+     * @param initialBackoff The delay before the first retry, which doubles with every further attempt.
+     * @return The opened {@link Outbox}.
+     * @throws IOException If the directory cannot be created or read, or if it is used by another outbox.
+     */
+    static Outbox open(Path directory, Delivery delivery, int concurrency, int capacity, Duration initialBackoff)
+        throws IOException {
+        Files.createDirectories(directory);
+        Outbox outbox = new Outbox(directory, delivery, concurrency, capacity, initialBackoff, lock(directory));
+        List<Path> leftovers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            files.forEach(leftovers::add);
+        } catch (IOException e) {
+            outbox.close();
+            throw e;
+        }
+        leftovers.sort(null);
+        synchronized (outbox) {
+            outbox.pending += leftovers.size();
+        }
+        outbox.ready.addAll(leftovers);
+        if (!leftovers.isEmpty()) {
+            System.out.println("Recovered " + leftovers.size() + " pending notifications.");
+        }
+        try {
+            outbox.digest = Digest.open(directory.resolve(DIGEST_DIRECTORY), outbox);
+        } catch (IOException e) {
+            outbox.close();
+            throw e;
+        }
+        return outbox;
+    }
+
+    /**
+     * Locks the outbox directory, so no other outbox sends its notifications at the same time.
+     *
+     * @param directory The directory holding the pending notifications.
+     * @return The {@link FileChannel} holding the lock.
+     * @throws IOException If the lock file cannot be opened, or if the directory is locked by another outbox.
+     */
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // the directory is used by another outbox of this process
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        throw new IOException("Outbox " + directory + " is used by another process");
+    }
+
+    /**
+     * Writes the notification to the outbox and queues it for delivery.
+     * <p>
+     * This method blocks while the outbox is at its capacity.
+     * </p>
+     *
+     * @param notification The notification to be sent.
+     * @throws IOException If the notification cannot be written to the outbox directory.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for capacity.
+     */
+    public void enqueue(Notification notification) throws IOException, InterruptedException {
+        synchronized (this) {
+            while (pending >= capacity) {
+                wait();
+            }
+            pending++;
+        }
+        String name = Instant.now().toEpochMilli() + "-" + UUID.randomUUID() + SUFFIX;
+        Path file = directory.resolve(name);
+        try {
+            write(file, notification, 0);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+        ready.add(file);
+    }
+
+    /**
+     * Returns the digest collecting alerts of this outbox.
+     *
+     * @return The {@link Digest} of this outbox.
+     */
+    public Digest getDigest() {
+        return digest;
+    }
+
+    /**
+     * Waits until no notification is being sent and none is ready to be sent.
+     * <p>
+     * Notifications waiting for a retry are not waited for; they stay in the outbox directory and are sent by a
+     * later run if this process terminates before.
+     * </p>
+     *
+     * @param timeout The maximum time to wait.
+     * @return {@code true} if the outbox became idle, {@code false} if the timeout elapsed before.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            while (pending > backingOff) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the workers and releases the outbox directory once they have finished the deliveries in progress.
+     * Notifications that have not been sent yet stay in the outbox directory, and alerts whose digest has not been
+     * enqueued yet stay in its digest directory.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (digest != null) {
+            digest.close();
+        }
+        retries.shutdownNow();
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                System.err.println("Notifications of outbox " + directory + " are still being sent.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                lock.close();
+            } catch (IOException e) {
+                System.err.println("Unable to unlock outbox " + directory + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Takes notifications from the queue and sends them until the outbox is closed.
+     */
+    private void work() {
+        while (!closed) {
+            Path file;
+            try {
+                file = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            attempt(file);
+        }
+    }
+
+    /**
+     * Makes a single delivery attempt and schedules a retry or moves the notification to the dead-letter file on failure.
+     *
+     * @param file The file of the notification.
+     */
+    private void attempt(Path file) {
+        Properties properties;
+        try {
+            properties = read(file);
+        } catch (IOException e) {
+            System.err.println("Unable to read notification " + file + ": " + e);
+            release();
+            return;
+        }
+        Notification notification = new Notification(properties.getProperty("from"), properties.getProperty("to"),
+            properties.getProperty("subject"), properties.getProperty("body"));
+        int attempts = Integer.parseInt(properties.getProperty("attempts", "0")) + 1;
+        try {
+            delivery.deliver(notification);
+        } catch (Exception e) {
+            if (attempts >= MAX_ATTEMPTS) {
+                System.err.println("Giving up on notification to " + notification.toEmailAddress() + ": " + e);
+                deadLetter(file, notification, e);
+                return;
+            }
+            try {
+                write(file, notification, attempts);
+            } catch (IOException writeError) {
+                System.err.println("Unable to record attempt of " + file + ": " + writeError);
+            }
+            Duration backoff = backoff(initialBackoff, attempts);
+            System.err.println("Sending notification to " + notification.toEmailAddress() + " failed, retrying in "
+                + backoff.toSeconds() + "s: " + e);
+            synchronized (this) {
+                backingOff++;
+                notifyAll();
+            }
+            try {
+                retries.schedule(() -> {
+                    synchronized (this) {
+                        backingOff--;
+                    }
+                    ready.add(file);
+                }, backoff.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException closing) {
+                // the outbox has been closed, the notification is retried by a later run
+            }
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // the notification has been sent, so it must not be retried; a later run may still send it once more
+            System.err.println("Unable to remove sent notification " + file + ": " + e);
+        }
+        release();
+    }
+
+    /**
+     * Returns the delay before the next attempt.
+     *
+     * @param initial  The delay before the first retry.
+     * @param attempts The number of failed attempts so far.
+     * @return The exponentially growing delay, capped at {@link #MAX_BACKOFF}.
+     */
+    static Duration backoff(Duration initial, int attempts) {
+        Duration backoff = initial.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+    }
+
+    /**
+     * Appends the notification to the dead-letter file and removes it from the outbox.
+     *
+     * @param file         The file of the notification.
+     * @param notification The notification that could not be sent.
+     * @param cause        The error of the last attempt.
+     */
+    private void deadLetter(Path file, Notification notification, Exception cause) {
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(DEAD_LETTER_FILE), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(Instant.now() + "\t" + notification.fromEmailAddress() + "\t" + notification.toEmailAddress()
+                + "\t" + notification.subject() + "\t" + notification.bodyText().replace('\n', ' ')
+                + "\t" + String.valueOf(cause).replace('\n', ' ') + "\n");
+        } catch (IOException e) {
+            System.err.println("Unable to dead-letter " + file + ": " + e);
+            release();
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Unable to remove dead-lettered notification " + file + ": " + e);
+        }
+        release();
+    }
+
+    /**
+     * Frees the capacity held by a notification that has left the outbox.
+     */
+    private synchronized void release() {
+        pending--;
+        notifyAll();
+    }
+
+    /**
+     * Atomically writes the notification and its number of attempts to the given file.
+     *
+     * @param file         The file of the notification.
+     * @param notification The notification to be written.
+     * @param attempts     The number of failed delivery attempts so far.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void write(Path file, Notification notification, int attempts) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("from", notification.fromEmailAddress());
+        properties.setProperty("to", notification.toEmailAddress());
+        properties.setProperty("subject", notification.subject() == null ? "" : notification.subject());
+        properties.setProperty("body", notification.bodyText());
+        properties.setProperty("attempts", Integer.toString(attempts));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a notification file.
+     *
+     * @param file The file of the notification.
+     * @return The {@link Properties} stored in the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Sends a single notification.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * Sends the notification.
+         *
+         * @param notification The notification to be sent.
+         * @throws Exception If the notification could not be sent and should be retried.
+         */
+        void deliver(Notification notification) throws Exception;
+    }
+}
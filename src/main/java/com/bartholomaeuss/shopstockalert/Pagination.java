@@ -0,0 +1,184 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Describes how many pages of a multi-page listing are checked and how the further pages are found.
+ * <p>
+ * By default, only the page at the URL of a target is checked. If a target allows more than one page, the further
+ * pages are either
+ * </p>
+ * <ul>
+ *     <li>generated from a <b>URL template</b> in which {@value #PAGE_PLACEHOLDER} is replaced by the page numbers
+ *     2, 3, ... up to the maximum number of pages, so that all pages can be fetched at the same time, or</li>
+ *     <li><b>discovered</b> by following the pagination links of the pages already fetched (see
+ *     {@link Rule#getPagination()}). The links found on a page are fetched at the same time, so a paginator
+ *     linking to all pages costs a single round trip after the first page.</li>
+ * </ul>
+ * <p>
+ * At most {@link #getConcurrency()} pages of a target are fetched at the same time. The pages found on a page are
+ * remembered, so the further pages can still be checked if the page itself has not been modified since the previous
+ * check.
+ * </p>
+ */
+public class Pagination {
+    /**
+     * The placeholder in a URL template that is replaced by the page number.
+     */
+    public static final String PAGE_PLACEHOLDER = "{page}";
+    /**
+     * The pagination of a target that checks a single page only.
+     */
+    public static final Pagination NONE = new Pagination(1, null, 1);
+    static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final Map<String, List<String>> LINKS = new ConcurrentHashMap<>();
+
+    private final int pages;
+    private final String template;
+    private final int concurrency;
+
+    /**
+     * Constructs a new {@code Pagination}.
+     *
+     * @param pages       The maximum number of pages checked, including the first one.
+     * @param template    The URL template of the further pages containing {@value #PAGE_PLACEHOLDER}, or {@code null}
+     *                    if the further pages are discovered through pagination links.
+     * @param concurrency The maximum number of pages fetched at the same time.
+     * @throws IllegalArgumentException If a number is not positive or the template lacks the placeholder.
+     */
+    public Pagination(int pages, String template, int concurrency) {
+        if (pages <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Pages and page concurrency must be positive");
+        }
+        if (template != null && !template.contains(PAGE_PLACEHOLDER)) {
+            throw new IllegalArgumentException("Page URL must contain " + PAGE_PLACEHOLDER + ": " + template);
+        }
+        this.pages = pages;
+        this.template = template;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Returns the maximum number of pages checked.
+     *
+     * @return The maximum number of pages, including the first one.
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * Returns the maximum number of pages fetched at the same time.
+     *
+     * @return The page concurrency.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns whether the further pages are discovered through pagination links rather than a URL template.
+     *
+     * @return {@code true} if pagination links are followed, {@code false} otherwise.
+     */
+    public boolean isDiscovering() {
+        return pages > 1 && template == null;
+    }
+
+    /**
+     * Returns the URLs of the further pages generated from the URL template.
+     *
+     * @return A {@link List} of the URLs of pages 2 to {@link #getPages()}, or an empty list without a template.
+     */
+    public List<String> getTemplateUrls() {
+        if (template == null) {
+            return List.of();
+        }
+        List<String> urls = new ArrayList<>(pages - 1);
+        for (int page = 2; page <= pages; page++) {
+            urls.add(template.replace(PAGE_PLACEHOLDER, Integer.toString(page)));
+        }
+        return urls;
+    }
+
+    /**
+     * Creates the executor on which the further pages are fetched.
+     *
+     * @return An {@link ExecutorService} running at most {@link #getConcurrency()} virtual threads at a time.
+     */
+    ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().name("shopstockalert-page-", 0).factory());
+    }
+
+    /**
+     * Extracts the absolute URLs of the pagination links within the given element.
+     *
+     * @param root     The element to be searched, usually the document of a page.
+     * @param selector The selector matching the pagination links.
+     * @return A {@link List} of the distinct URLs of the links, without fragments.
+     */
+    static List<String> links(Element root, Evaluator selector) {
+        Set<String> links = new LinkedHashSet<>();
+        for (Element link : root.select(selector)) {
+            add(link, links);
+        }
+        return List.copyOf(links);
+    }
+
+    /**
+     * Adds the absolute URL of a pagination link to the given set, unless it is not an HTTP link.
+     *
+     * @param link  The element carrying the link in its {@code href} attribute.
+     * @param links The set the URL is added to.
+     */
+    static void add(Element link, Set<String> links) {
+        String url = link.absUrl("href");
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            links.add(url);
+        }
+    }
+
+    /**
+     * Remembers the pagination links found on a page.
+     *
+     * @param key   The key of the page.
+     * @param links The URLs of the pagination links.
+     */
+    static void remember(String key, List<String> links) {
+        LINKS.put(key, links);
+    }
+
+    /**
+     * Returns the pagination links found on a page during a previous check.
+     *
+     * @param key The key of the page.
+     * @return A {@link List} of the URLs of the pagination links, or an empty list if none are known.
+     */
+    static List<String> recall(String key) {
+        return LINKS.getOrDefault(key, List.of());
+    }
+
+    /**
+     * Forgets the pagination links found on the page with the given key and on the further pages checked under it.
+     *
+     * @param key The key of the first page of a listing.
+     */
+    static void forget(String key) {
+        LINKS.keySet().removeIf(page -> page.equals(key) || page.startsWith(key + " "));
+    }
+}
@@ -0,0 +1,39 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.HttpStatusException;
+
+import java.time.Duration;
+
+/**
+ * Signals that a host asked not to be requested again for a while.
+ * <p>
+ * This exception is thrown when a host answers with {@code 429 Too Many Requests} or {@code 503 Service Unavailable},
+ * and for every further request to the same host until the requested time has passed (see {@link HostRateLimiter}).
+ * </p>
+ */
+public class RetryAfterException extends HttpStatusException {
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructs a new {@code RetryAfterException}.
+     *
+     * @param status     The status code with which the host refused the request.
+     * @param url        The requested URL.
+     * @param retryAfter The time after which the host may be requested again.
+     */
+    public RetryAfterException(int status, String url, Duration retryAfter) {
+        super("Host asked to retry after " + retryAfter.toSeconds() + "s", status, url);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the time after which the host may be requested again.
+     *
+     * @return The {@link Duration} to wait before the next request.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,663 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Describes which elements of a webpage are relevant and how the links are extracted from them.
+ * <p>
+ * A rule consists of
+ * </p>
+ * <ul>
+ *     <li>a <b>container</b> selector that matches the elements representing a single item (e.g. an article),</li>
+ *     <li>an optional <b>text</b> selector that narrows down the part of the item whose text is filtered
+ *     (e.g. the {@code h2} heading); if absent, the text of the whole item is filtered,</li>
+ *     <li>a list of <b>keywords</b>, of which the filtered text has to contain at least one (case-insensitive),</li>
+ *     <li>an optional list of <b>excluded</b> keywords (e.g. "sold out"), of which the filtered text must not
+ *     contain any (case-insensitive),</li>
+ *     <li>a <b>link</b> selector that matches the element whose {@code href} attribute links to the item,</li>
+ *     <li>an optional <b>pagination</b> selector that matches the links to further pages of a listing
+ *     (see {@link Pagination}); if absent, {@link #DEFAULT_PAGINATION} is used,</li>
+ *     <li>an {@link ItemExtractor} that extracts the id, price and availability of an item of interest; its title is
+ *     the text of the text selector, or else the text of its link,</li>
+ *     <li>an optional {@link JsonState} describing the products embedded as JSON in the webpage, which can be read
+ *     instead of the DOM (see {@link Extraction#JSON} and {@link #filterJson(List)}),</li>
+ *     <li>an optional {@link DetailPage} telling whether an item of interest is available on its detail page, which
+ *     is then verified before it is reported (see {@link DetailVerifier}).</li>
+ * </ul>
+ * <p>
+ * The selectors are compiled once when the rule is created. Selecting the containers walks the document a single
+ * time and does not descend into a container once it has been found. The containers are then filtered and their
+ * links are extracted (see {@link #filter(List)}), which can be skipped if the containers are known to be unchanged
+ * (see {@link Fingerprint}). Containers found by other means, e.g. while a webpage is still being streamed, can be
+ * filtered the same way. The keywords are matched by a {@link KeywordMatcher}, which scans the text of an item
+ * once for all keywords without building the text as a string.
+ * </p>
+ */
+public class Rule {
+    /**
+     * The CSS selector matching the links to further pages of a listing if a rule does not specify one.
+     */
+    public static final String DEFAULT_PAGINATION = "a[rel=next][href], link[rel=next][href], .pagination a[href]";
+
+    private final String name;
+    private final Evaluator container;
+    private final Evaluator text;
+    private final List<String> included;
+    private final List<String> excluded;
+    private final KeywordMatcher keywords;
+    private final Evaluator link;
+    private final Evaluator pagination;
+    private final ItemExtractor items;
+    private final JsonState json;
+    private final DetailPage detail;
+
+    private Rule(Builder builder) {
+        this.name = builder.name;
+        this.container = QueryParser.parse(builder.container);
+        this.text = builder.text == null || builder.text.isBlank() ? null : QueryParser.parse(builder.text);
+        this.included = List.copyOf(builder.keywords);
+        this.excluded = List.copyOf(builder.excluded);
+        this.keywords = new KeywordMatcher(included, excluded);
+        this.link = QueryParser.parse(builder.link);
+        this.pagination = QueryParser.parse(builder.pagination == null || builder.pagination.isBlank()
+            ? DEFAULT_PAGINATION
+            : builder.pagination);
+        this.items = builder.items;
+        this.json = builder.json;
+        this.detail = builder.detail;
+    }
+
+    /**
+     * Starts building a rule from its required parts.
+     * <p>
+     * The rule filters the text of the whole item, excludes no keywords, takes the link from {@code a[href]}, follows
+     * {@link #DEFAULT_PAGINATION}, extracts the items with {@link ItemExtractor#DEFAULT}, and has neither a JSON state
+     * nor a detail page, unless the {@link Builder} is told otherwise.
+     * </p>
+     *
+     * @param name      The name of the rule, usually the service name.
+     * @param container The CSS selector matching the elements that represent a single item.
+     * @param keywords  The keywords of which the filtered text has to contain at least one.
+     * @return A {@link Builder} of the rule.
+     */
+    public static Builder builder(String name, String container, List<String> keywords) {
+        return new Builder(name, container, keywords);
+    }
+
+    /**
+     * Returns the name of this rule.
+     *
+     * @return The name of the rule.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the keywords of which the filtered text of an item of interest has to contain at least one.
+     *
+     * @return An unmodifiable {@link List} of the keywords.
+     */
+    public List<String> getKeywords() {
+        return included;
+    }
+
+    /**
+     * Returns the keywords of which the filtered text of an item of interest must not contain any.
+     *
+     * @return An unmodifiable {@link List} of the excluded keywords.
+     */
+    public List<String> getExcluded() {
+        return excluded;
+    }
+
+    /**
+     * Returns the compiled container selector of this rule.
+     *
+     * @return The {@link Evaluator} matching the elements that represent a single item.
+     */
+    public Evaluator getContainer() {
+        return container;
+    }
+
+    /**
+     * Returns the compiled pagination selector of this rule.
+     *
+     * @return The {@link Evaluator} matching the links to further pages of a listing.
+     */
+    public Evaluator getPagination() {
+        return pagination;
+    }
+
+    /**
+     * Returns the description of the products embedded as JSON in the webpages of this rule.
+     *
+     * @return The {@link JsonState}, or {@code null} if the webpages do not embed their products as JSON.
+     */
+    public JsonState getJsonState() {
+        return json;
+    }
+
+    /**
+     * Returns the description of the detail pages of the items found by this rule.
+     *
+     * @return The {@link DetailPage}, or {@code null} if items of interest are not verified on their detail pages.
+     */
+    public DetailPage getDetailPage() {
+        return detail;
+    }
+
+    /**
+     * Evaluates this rule against the given element, usually the document of a webpage.
+     *
+     * @param root The element to be searched for items.
+     * @return The {@link Result} of the evaluation.
+     */
+    public Result evaluate(Element root) {
+        return filter(select(root));
+    }
+
+    /**
+     * Selects all containers within the given element in a single traversal.
+     * <p>
+     * The traversal does not descend into a container once it has been found.
+     * </p>
+     *
+     * @param root The element to be searched for items.
+     * @return A {@link List} of all elements matching the container selector, in document order.
+     */
+    public List<Element> select(Element root) {
+        List<Element> containers = new ArrayList<>();
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (!(node instanceof Element element) || !container.matches(root, element)) {
+                    return FilterResult.CONTINUE;
+                }
+                containers.add(element);
+                return FilterResult.SKIP_ENTIRELY;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, root);
+        return containers;
+    }
+
+    /**
+     * Filters the given containers and extracts the links and fields of those that are of interest.
+     *
+     * @param containers The elements that matched the container selector of this rule.
+     * @return The {@link Result} holding the containers, the items of interest, their links and their fields.
+     */
+    public Result filter(List<Element> containers) {
+        Result result = new Result(containers);
+        for (Element item : containers) {
+            if (accepts(item)) {
+                result.matches.add(item);
+                Element anchor = item.selectFirst(link);
+                String href = anchor == null ? "" : anchor.attr("href");
+                if (!href.isEmpty()) {
+                    result.hrefs.add(href);
+                }
+                result.items.add(items.extract(item, extractTitle(item, anchor), href));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Filters the given containers for many subscribers at once and extracts the links and fields of the items of
+     * interest to any of them.
+     * <p>
+     * Instead of the keywords of this rule, every subscriber has its own keywords (see {@link SubscriptionIndex}). The
+     * filtered text of every container is scanned a single time for the keywords of all subscribers, and the link and
+     * fields of an item are extracted once no matter how many subscribers it is of interest to.
+     * </p>
+     *
+     * @param containers    The elements that matched the container selector of this rule.
+     * @param subscriptions The index of the keywords of the subscribers.
+     * @return A {@link List} with one {@link Result} per subscriber, in the order of the subscribers of the index.
+     */
+    public List<Result> filter(List<Element> containers, SubscriptionIndex subscriptions) {
+        List<Result> results = new ArrayList<>(subscriptions.size());
+        for (int i = 0; i < subscriptions.size(); i++) {
+            results.add(new Result(containers));
+        }
+        for (Element item : containers) {
+            BitSet accepted = subscriptions.match(text == null ? List.of(item) : item.select(text));
+            if (accepted.isEmpty()) {
+                continue;
+            }
+            Element anchor = item.selectFirst(link);
+            String href = anchor == null ? "" : anchor.attr("href");
+            Item extracted = items.extract(item, extractTitle(item, anchor), href);
+            for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+                Result result = results.get(i);
+                result.matches.add(item);
+                if (!href.isEmpty()) {
+                    result.hrefs.add(href);
+                }
+                result.items.add(extracted);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads the products embedded as JSON in the given script elements and extracts the links and fields of those that
+     * are of interest.
+     * <p>
+     * A product is of interest if its flag is set or, if the JSON state has no flag member, if its title contains at
+     * least one of the keywords and none of the excluded keywords. Its title defaults to its link and its availability
+     * is unknown. Products occurring several times in the JSON are reported once. A script holding malformed JSON is
+     * skipped.
+     * </p>
+     *
+     * @param scripts The script elements that matched the script selector of the JSON state.
+     * @return The {@link Result} holding the scripts as containers and the links and fields of the products of
+     * interest; since the products are not elements, it holds no matches.
+     * @throws IllegalStateException If this rule has no JSON state.
+     */
+    public Result filterJson(List<Element> scripts) {
+        return filterJson(scripts, null).getFirst();
+    }
+
+    /**
+     * Reads the products embedded as JSON in the given script elements for many subscribers at once and extracts the
+     * links and fields of the products of interest to any of them.
+     * <p>
+     * The title of every product is scanned a single time for the keywords of all subscribers (see
+     * {@link SubscriptionIndex}). If the JSON state has a flag member, every flagged product is of interest to all
+     * subscribers.
+     * </p>
+     *
+     * @param scripts       The script elements that matched the script selector of the JSON state.
+     * @param subscriptions The index of the keywords of the subscribers, or {@code null} to filter with the keywords of
+     *                      this rule.
+     * @return A {@link List} with one {@link Result} per subscriber, in the order of the subscribers of the index.
+     * @throws IllegalStateException If this rule has no JSON state.
+     */
+    public List<Result> filterJson(List<Element> scripts, SubscriptionIndex subscriptions) {
+        List<Result> results = readJson(scripts, subscriptions);
+        if (results != null) {
+            return results;
+        }
+        int count = subscriptions == null ? 1 : subscriptions.size();
+        return Collections.nCopies(count, new Result(scripts));
+    }
+
+    /**
+     * Reads the products embedded as JSON in the given script elements, falling back to filtering the given containers
+     * if the webpage holds no readable JSON state.
+     * <p>
+     * The containers are filtered like with {@link Extraction#DOM} (see {@link #filter(List)} and
+     * {@link #filter(List, SubscriptionIndex)}) if no script matched the script selector of the JSON state, or if every
+     * script that did holds malformed JSON, e.g. after the shop has changed how it embeds its state.
+     * </p>
+     *
+     * @param scripts       The script elements that matched the script selector of the JSON state.
+     * @param containers    The elements that matched the container selector of this rule.
+     * @param subscriptions The index of the keywords of the subscribers, or {@code null} to filter with the keywords of
+     *                      this rule.
+     * @return A {@link List} with one {@link Result} per subscriber, in the order of the subscribers of the index.
+     * @throws IllegalStateException If this rule has no JSON state.
+     */
+    public List<Result> filterJson(List<Element> scripts, List<Element> containers, SubscriptionIndex subscriptions) {
+        List<Result> results = readJson(scripts, subscriptions);
+        if (results != null) {
+            return results;
+        }
+        System.out.println("No readable JSON state for rule " + name + ", filtering its containers instead.");
+        return subscriptions == null ? List.of(filter(containers)) : filter(containers, subscriptions);
+    }
+
+    /**
+     * Reads the products embedded as JSON in the given script elements.
+     *
+     * @param scripts       The script elements that matched the script selector of the JSON state.
+     * @param subscriptions The index of the keywords of the subscribers, or {@code null} to filter with the keywords of
+     *                      this rule.
+     * @return A {@link List} with one {@link Result} per subscriber, or {@code null} if no script holds readable JSON.
+     * @throws IllegalStateException If this rule has no JSON state.
+     */
+    private List<Result> readJson(List<Element> scripts, SubscriptionIndex subscriptions) {
+        if (json == null) {
+            throw new IllegalStateException("Rule " + name + " has no JSON state");
+        }
+        int count = subscriptions == null ? 1 : subscriptions.size();
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new Result(scripts));
+        }
+        Set<String> seen = new HashSet<>();
+        boolean readable = false;
+        for (Element script : scripts) {
+            try {
+                json.read(script.data(), product -> {
+                    BitSet accepted = acceptJson(product, subscriptions, count);
+                    Item item = toItem(product);
+                    if (accepted.isEmpty() || !seen.add(item.id())) {
+                        return;
+                    }
+                    for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+                        Result result = results.get(i);
+                        if (!item.href().isEmpty()) {
+                            result.hrefs.add(item.href());
+                        }
+                        result.items.add(item);
+                    }
+                });
+                readable = true;
+            } catch (IOException e) {
+                System.out.println("Skipping malformed JSON state: " + e.getMessage());
+            }
+        }
+        return readable ? results : null;
+    }
+
+    /**
+     * Determines the subscribers a product read from the JSON state is of interest to.
+     *
+     * @param product       The product, which has already been filtered by its flag.
+     * @param subscriptions The index of the keywords of the subscribers, or {@code null} for the keywords of this rule.
+     * @param count         The number of subscribers.
+     * @return A {@link BitSet} holding the indices of the subscribers accepting the product.
+     */
+    private BitSet acceptJson(JsonState.Product product, SubscriptionIndex subscriptions, int count) {
+        BitSet accepted = new BitSet(count);
+        if (json.hasFlag()) {
+            accepted.set(0, count);
+        } else if (product.title() == null) {
+            return accepted;
+        } else if (subscriptions != null) {
+            accepted = subscriptions.match(product.title());
+        } else if (keywords.matches(product.title())) {
+            accepted.set(0);
+        }
+        return accepted;
+    }
+
+    private static Item toItem(JsonState.Product product) {
+        String id = product.id() == null || product.id().isEmpty() ? product.url() : product.id();
+        String title = product.title() == null || product.title().isEmpty() ? product.url() : product.title();
+        long price = product.price() == null ? Item.NO_PRICE : ItemExtractor.parsePrice(product.price());
+        return new Item(id, title, price, Item.Availability.UNKNOWN, product.url());
+    }
+
+    /**
+     * Checks whether the filtered text of the given item contains at least one of the keywords and none of the
+     * excluded keywords.
+     *
+     * @param item The element representing a single item.
+     * @return {@code true} if the item is of interest, {@code false} otherwise.
+     */
+    boolean accepts(Element item) {
+        return text == null ? keywords.matches(item) : keywords.matches(item.select(text));
+    }
+
+    /**
+     * Extracts the title of the given item.
+     *
+     * @param item   The element representing a single item.
+     * @param anchor The element carrying the link of the item, or {@code null} if the item has no link.
+     * @return The text of the text selector, or else the text of the link, or else the text of the whole item.
+     */
+    private String extractTitle(Element item, Element anchor) {
+        if (text != null) {
+            String title = item.select(text).text();
+            if (!title.isEmpty()) {
+                return title;
+            }
+        }
+        String title = anchor == null ? "" : anchor.text();
+        return title.isEmpty() ? item.text() : title;
+    }
+
+    /**
+     * Collects the optional parts of a {@link Rule} before its selectors and keywords are compiled.
+     */
+    public static class Builder {
+        private final String name;
+        private final String container;
+        private final List<String> keywords;
+        private String text;
+        private List<String> excluded = List.of();
+        private String link = "a[href]";
+        private String pagination;
+        private ItemExtractor items = ItemExtractor.DEFAULT;
+        private JsonState json;
+        private DetailPage detail;
+
+        private Builder(String name, String container, List<String> keywords) {
+            this.name = name;
+            this.container = container;
+            this.keywords = keywords;
+        }
+
+        /**
+         * Narrows down the part of an item whose text is filtered.
+         *
+         * @param text The CSS selector matching the elements within an item whose text is filtered, or {@code null}
+         *             to filter the text of the whole item.
+         * @return This builder.
+         */
+        public Builder text(String text) {
+            this.text = text;
+            return this;
+        }
+
+        /**
+         * Sets the keywords of which the filtered text must not contain any.
+         *
+         * @param excluded The excluded keywords.
+         * @return This builder.
+         */
+        public Builder exclude(List<String> excluded) {
+            this.excluded = excluded;
+            return this;
+        }
+
+        /**
+         * Sets the element within an item that carries the link.
+         *
+         * @param link The CSS selector matching the element carrying the link.
+         * @return This builder.
+         */
+        public Builder link(String link) {
+            this.link = link;
+            return this;
+        }
+
+        /**
+         * Sets the links to further pages of a listing.
+         *
+         * @param pagination The CSS selector matching the pagination links, or {@code null} for
+         *                   {@link #DEFAULT_PAGINATION}.
+         * @return This builder.
+         */
+        public Builder pagination(String pagination) {
+            this.pagination = pagination;
+            return this;
+        }
+
+        /**
+         * Sets the extractor of the fields of the items of interest.
+         *
+         * @param items The {@link ItemExtractor}.
+         * @return This builder.
+         */
+        public Builder items(ItemExtractor items) {
+            this.items = items;
+            return this;
+        }
+
+        /**
+         * Sets the description of the products embedded as JSON in the webpage.
+         *
+         * @param json The {@link JsonState}, or {@code null} if the webpage has none.
+         * @return This builder.
+         */
+        public Builder json(JsonState json) {
+            this.json = json;
+            return this;
+        }
+
+        /**
+         * Has the items of interest verified on their detail pages before they are reported.
+         *
+         * @param detail The {@link DetailPage}, or {@code null} to report items without visiting their detail pages.
+         * @return This builder.
+         */
+        public Builder detail(DetailPage detail) {
+            this.detail = detail;
+            return this;
+        }
+
+        /**
+         * Compiles the selectors and keywords into a rule.
+         *
+         * @return The {@link Rule}.
+         * @throws org.jsoup.select.Selector.SelectorParseException If one of the selectors is invalid.
+         */
+        public Rule build() {
+            return new Rule(this);
+        }
+    }
+
+    /**
+     * The outcome of evaluating a {@link Rule} against a webpage.
+     */
+    public static class Result {
+        private final List<Element> containers;
+        private final List<Element> matches = new ArrayList<>();
+        private final List<String> hrefs = new ArrayList<>();
+        private final List<Item> items = new ArrayList<>();
+
+        /**
+         * Constructs a result holding the given containers but no items of interest yet.
+         *
+         * @param containers The elements that matched the container selector.
+         */
+        public Result(List<Element> containers) {
+            this.containers = containers;
+        }
+
+        /**
+         * Merges the results of several pages of a listing into one.
+         * <p>
+         * The containers and items of interest are concatenated in the order of the results. Links and items found on
+         * more than one page are kept only once, and so is the matching element of such an item, so the matches stay
+         * paired with the items.
+         * </p>
+         *
+         * @param results The results to be merged.
+         * @return The merged {@link Result}.
+         */
+        static Result merge(List<Result> results) {
+            List<Element> containers = new ArrayList<>();
+            Set<String> hrefs = new LinkedHashSet<>();
+            Map<String, Item> items = new LinkedHashMap<>();
+            List<Element> matches = new ArrayList<>();
+            for (Result result : results) {
+                containers.addAll(result.containers);
+                hrefs.addAll(result.hrefs);
+                boolean paired = result.matches.size() == result.items.size();
+                for (int i = 0; i < result.items.size(); i++) {
+                    Item item = result.items.get(i);
+                    if (items.putIfAbsent(item.id(), item) == null && paired) {
+                        matches.add(result.matches.get(i));
+                    }
+                }
+                if (!paired) {
+                    matches.addAll(result.matches);
+                }
+            }
+            Result merged = new Result(containers);
+            merged.matches.addAll(matches);
+            merged.hrefs.addAll(hrefs);
+            merged.items.addAll(items.values());
+            return merged;
+        }
+
+        /**
+         * Returns a copy of this result that keeps only the items of interest whose link passes the given test.
+         * <p>
+         * Items without a link are always kept. The containers are those of this result.
+         * </p>
+         *
+         * @param verified The test a link has to pass, see {@link DetailVerifier#verify}.
+         * @return The retained {@link Result}.
+         */
+        Result retain(Predicate<String> verified) {
+            Result retained = new Result(containers);
+            boolean paired = matches.size() == items.size();
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                if (item.href().isEmpty() || verified.test(item.href())) {
+                    if (paired) {
+                        retained.matches.add(matches.get(i));
+                    }
+                    retained.items.add(item);
+                }
+            }
+            hrefs.stream().filter(verified).forEach(retained.hrefs::add);
+            return retained;
+        }
+
+        /**
+         * Returns all elements that matched the container selector.
+         *
+         * @return A {@link List} of all items found on the webpage.
+         */
+        public List<Element> getContainers() {
+            return containers;
+        }
+
+        /**
+         * Returns all items whose filtered text contains at least one of the keywords and none of the excluded ones.
+         *
+         * @return A {@link List} of all items of interest.
+         */
+        public List<Element> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Returns the links of all items of interest.
+         *
+         * @return A {@link List} of the non-empty href attributes of the items of interest.
+         */
+        public List<String> getHrefs() {
+            return hrefs;
+        }
+
+        /**
+         * Returns the fields of all items of interest.
+         *
+         * @return A {@link List} of the {@link Item}s of interest, in the order of {@link #getMatches()}.
+         */
+        public List<Item> getItems() {
+            return items;
+        }
+    }
+}
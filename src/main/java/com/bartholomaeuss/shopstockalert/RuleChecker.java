@@ -0,0 +1,684 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Checker} that evaluates a {@link Rule} against a webpage.
+ * <p>
+ * The webpage is fetched and the rule is evaluated in a single traversal of the DOM when the checker is
+ * constructed. Afterwards the items, the items of interest and their links can be retrieved without
+ * touching the DOM again. If the server reports that the webpage has not been modified since the previous check,
+ * the rule is not evaluated at all and no items are reported. Likewise, if the {@link Fingerprint} of the containers
+ * equals the one of the previous check, the containers are not filtered and no items are reported.
+ * </p>
+ * <p>
+ * If the first page of the listing cannot be fetched, e.g. because the host timed out or is skipped by its
+ * {@link CircuitBreaker}, the checker does not fail either. It reports no items, counts as unchanged, and describes the
+ * failure with its {@link #getFetchResult()}.
+ * </p>
+ * <p>
+ * If the rule has a {@link DetailPage}, only the items of interest that are available on their detail pages are
+ * reported (see {@link DetailVerifier}). Since an item may sell out while the listing stays the same, the containers
+ * of such rules are always filtered, and the {@link Fingerprint} of a page covers the verdicts on its items as well, so
+ * the page only counts as unchanged if the same items are still available.
+ * </p>
+ */
+public class RuleChecker implements Checker {
+    private final Rule rule;
+    private final Website website;
+    private final List<Website> pages = new ArrayList<>();
+    private final SubscriptionIndex subscriptions;
+    private final List<Rule.Result> results;
+    private final Rule.Result result;
+    /**
+     * The items of interest per page evaluated in full, one map per subscriber.
+     */
+    private final List<Map<String, List<Item>>> itemsByPage;
+    /**
+     * The URLs of the pages on which some items could not be verified on their detail pages.
+     */
+    private final Set<String> unverified = new HashSet<>();
+    private final boolean unchanged;
+    private FetchResult fetchResult;
+    private boolean partial;
+
+    /**
+     * Constructs a {@code RuleChecker} that fetches the webpage at the given URL and evaluates the rule against it.
+     *
+     * @param rule The rule to be evaluated.
+     * @param url  The URL of the website to be checked.
+     */
+    public RuleChecker(Rule rule, String url) {
+        this(rule, url, Extraction.DOM, url, Pagination.NONE, null);
+    }
+
+    /**
+     * Constructs a {@code RuleChecker} that fetches the webpage of the given target and evaluates the rule against it.
+     * <p>
+     * The webpage is extracted as configured for the target. With {@link Extraction#STREAM}, the containers of the
+     * rule are filtered while the webpage is still being downloaded and the rest of the webpage is discarded, so the
+     * full DOM is never held in memory. {@link Extraction#JSON} streams the webpage the same way, but keeps only the
+     * scripts holding the JSON state of the rule and reads the items from them. Whether the webpage has changed is tracked
+     * under the {@link Target#getListingKey()}, so targets watching the same listing have to be checked together (see
+     * {@link CheckerRegistry#create(List)}) rather than one after another.
+     * </p>
+     * <p>
+     * If the target checks several pages of a listing (see {@link Target#getPagination()}), the further pages are
+     * fetched in parallel and the rule is evaluated against each of them. The items of all pages are merged and links
+     * found on several pages are reported once. The listing is unchanged only if every page is unchanged. A further
+     * page that cannot be fetched is skipped, so a listing that has become shorter does not fail the check.
+     * </p>
+     *
+     * @param rule   The rule to be evaluated.
+     * @param target The target to be checked.
+     */
+    public RuleChecker(Rule rule, Target target) {
+        this(rule, target.getUrl(), target.getExtraction(), target.getListingKey(), target.getPagination(), null);
+    }
+
+    /**
+     * Constructs a {@code RuleChecker} that fetches the listing watched by many subscribers once and evaluates the
+     * rule against it on behalf of every subscriber.
+     * <p>
+     * The listing is fetched as configured for the first subscriber, since all subscribers share the same
+     * {@link Target#getListingKey()}, under which whether the listing has changed is tracked. Every subscriber gets the
+     * items matching its own keywords (see {@link #getSubscriber(int)}), while the containers are selected and the
+     * fields of an item are extracted only once.
+     * </p>
+     *
+     * @param rule          The rule to be evaluated.
+     * @param subscriptions The index of the subscribers watching the listing.
+     */
+    public RuleChecker(Rule rule, SubscriptionIndex subscriptions) {
+        this(rule, subscriptions.getSubscribers().getFirst(), subscriptions);
+    }
+
+    private RuleChecker(Rule rule, Target listing, SubscriptionIndex subscriptions) {
+        this(rule, listing.getUrl(), listing.getExtraction(), listing.getListingKey(), listing.getPagination(),
+            subscriptions);
+    }
+
+    /**
+     * Constructs a {@code RuleChecker} that fetches the webpages of a listing and evaluates the rule against them.
+     *
+     * @param rule       The rule to be evaluated.
+     * @param url        The URL of the first page of the listing.
+     * @param extraction The way in which the items are extracted from the webpages.
+     * @param key        The key under which the validators of the first page are remembered.
+     * @param pagination    The number of pages to be checked and how the further pages are found.
+     * @param subscriptions The index of the subscribers of the listing, or {@code null} to evaluate the keywords of the
+     *                      rule.
+     */
+    private RuleChecker(Rule rule, String url, Extraction extraction, String key, Pagination pagination,
+                        SubscriptionIndex subscriptions) {
+        this.rule = rule;
+        this.subscriptions = subscriptions;
+        List<Page> fetched = pagination.getPages() == 1
+            ? List.of(first(url, extraction, key, false))
+            : crawl(url, extraction, key, pagination);
+        this.website = fetched.getFirst().website();
+        fetched.stream().filter(page -> page.website() != null).forEach(page -> pages.add(page.website()));
+        if (rule.getDetailPage() != null) {
+            fetched = verify(url, fetched);
+        }
+        List<List<Rule.Result>> evaluated = fetched.stream().map(Page::results).toList();
+        List<Rule.Result> merged = new ArrayList<>();
+        for (int i = 0; i < evaluated.getFirst().size(); i++) {
+            int subscriber = i;
+            merged.add(evaluated.size() == 1
+                ? evaluated.getFirst().get(subscriber)
+                : Rule.Result.merge(evaluated.stream().map(results -> results.get(subscriber)).toList()));
+        }
+        this.results = List.copyOf(merged);
+        this.result = results.getFirst();
+        List<Map<String, List<Item>>> byPage = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, List<Item>> items = new LinkedHashMap<>();
+            for (Page page : fetched) {
+                if (!page.unchanged() && !unverified.contains(page.url())) {
+                    items.put(page.url(), page.results().get(i).getItems());
+                }
+            }
+            byPage.add(Collections.unmodifiableMap(items));
+        }
+        this.itemsByPage = List.copyOf(byPage);
+        this.unchanged = fetched.stream().allMatch(Page::unchanged);
+        this.partial |= fetched.size() > 1 && fetched.stream().anyMatch(Page::unchanged);
+    }
+
+    /**
+     * Constructs a {@code RuleChecker} that evaluates the rule against an already fetched webpage.
+     *
+     * @param rule    The rule to be evaluated.
+     * @param website The website to be checked.
+     */
+    public RuleChecker(Rule rule, Website website) {
+        this.rule = rule;
+        this.subscriptions = null;
+        this.website = website;
+        this.pages.add(website);
+        this.unchanged = website.isNotModified();
+        this.fetchResult = FetchResult.of(website);
+        if (website.isNotModified()) {
+            this.result = new Rule.Result(List.of());
+        } else {
+            Events.Extract event = new Events.Extract();
+            event.begin();
+            long start = Metrics.start();
+            Rule.Result evaluated = rule.evaluate(website.getDOM());
+            record(event, start, website.getUrl(), List.of(evaluated), false);
+            if (rule.getDetailPage() == null) {
+                this.result = evaluated;
+            } else {
+                Map<String, Boolean> verified = verdicts(website.getUrl(), List.of(evaluated));
+                this.result = evaluated.retain(href -> verified.getOrDefault(href, false));
+            }
+        }
+        this.results = List.of(result);
+        this.itemsByPage = List.of(unchanged || partial ? Map.of() : Map.of(website.getUrl(), result.getItems()));
+    }
+
+    /**
+     * Forgets what has been remembered about the pages of the listing with the given key: their validators,
+     * fingerprints and pagination links.
+     * <p>
+     * The next check of the listing fetches and evaluates every page in full. This is needed if the results of a check
+     * could not be stored or notified, since the next check would otherwise skip the unchanged pages and never report
+     * the changes again.
+     * </p>
+     *
+     * @param key The key under which the validators of the first page are remembered.
+     */
+    public static void forget(String key) {
+        Website.forget(key);
+        Fingerprint.forget(key);
+        Pagination.forget(key);
+    }
+
+    /**
+     * Verifies the items of interest of all evaluated pages on their detail pages and drops those that are not
+     * available.
+     * <p>
+     * Afterwards, the {@link Fingerprint} of every evaluated page is extended by the verdicts on its links and
+     * compared with the one of the previous check, so a page whose containers and verdicts are the same as before is
+     * reported as unchanged.
+     * </p>
+     *
+     * @param url     The URL of the first page of the listing, against which relative links are resolved.
+     * @param fetched All fetched pages of the listing.
+     * @return The pages with their verified results.
+     */
+    private List<Page> verify(String url, List<Page> fetched) {
+        Map<String, Boolean> verified = verdicts(url, fetched.stream()
+            .filter(page -> !page.unchanged())
+            .flatMap(page -> page.results().stream())
+            .toList());
+        Predicate<String> available = href -> verified.getOrDefault(href, false);
+        List<Page> verifiedPages = new ArrayList<>(fetched.size());
+        for (Page page : fetched) {
+            if (page.unchanged()) {
+                verifiedPages.add(page);
+                continue;
+            }
+            long fingerprint = page.fingerprint();
+            for (Rule.Result result : page.results()) {
+                for (String href : result.getHrefs()) {
+                    fingerprint = Fingerprint.extend(fingerprint, href + "=" + verified.get(href));
+                    if (!verified.containsKey(href)) {
+                        unverified.add(page.url());
+                    }
+                }
+            }
+            if (Fingerprint.unchanged(page.key(), fingerprint)) {
+                List<Rule.Result> skipped = Collections.nCopies(page.results().size(),
+                    new Rule.Result(page.results().getFirst().getContainers()));
+                verifiedPages.add(new Page(page.url(), page.website(), skipped, true, page.links(), page.key(), fingerprint));
+            } else {
+                List<Rule.Result> retained = page.results().stream().map(result -> result.retain(available)).toList();
+                verifiedPages.add(new Page(page.url(), page.website(), retained, false, page.links(), page.key(), fingerprint));
+            }
+        }
+        return verifiedPages;
+    }
+
+    /**
+     * Verifies the items of interest of the given results on their detail pages.
+     * <p>
+     * The links found for all subscribers on all pages are verified together, so every detail page is fetched at most
+     * once per check. An item whose detail page cannot be fetched is dropped as well, but then the items cover only
+     * part of the listing, so the previously reported items are not reported as removed.
+     * </p>
+     *
+     * @param url     The URL of the first page of the listing, against which relative links are resolved.
+     * @param results The results whose links are to be verified.
+     * @return A {@link Map} from every link to {@code true} if its item is available, see
+     * {@link DetailVerifier#verify}.
+     */
+    private Map<String, Boolean> verdicts(String url, List<Rule.Result> results) {
+        Set<String> hrefs = new LinkedHashSet<>();
+        results.forEach(result -> hrefs.addAll(result.getHrefs()));
+        if (hrefs.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Boolean> verified = DetailVerifier.verify(rule.getDetailPage(), url, hrefs);
+        if (verified.size() < hrefs.size()) {
+            partial = true;
+        }
+        return verified;
+    }
+
+    /**
+     * Fetches all pages of a listing, the further pages in parallel.
+     * <p>
+     * The pages generated from a URL template are requested right away, while the first page is fetched on the
+     * calling thread. Pagination links are followed as soon as the page they were found on has been evaluated, until
+     * the maximum number of pages has been requested.
+     * </p>
+     *
+     * @param url        The URL of the first page of the listing.
+     * @param extraction The way in which the items are extracted from the webpages.
+     * @param key        The key under which the validators of the first page are remembered.
+     * @param pagination The number of pages to be checked and how the further pages are found.
+     * @return A {@link List} of all fetched pages, starting with the first one.
+     */
+    private List<Page> crawl(String url, Extraction extraction, String key, Pagination pagination) {
+        boolean discover = pagination.isDiscovering();
+        List<Page> fetched = new ArrayList<>();
+        Set<String> requested = new HashSet<>(List.of(url));
+        List<Future<Page>> pending = new ArrayList<>();
+        try (ExecutorService executor = pagination.newExecutor()) {
+            Consumer<String> submit = link -> {
+                if (requested.size() < pagination.getPages() && requested.add(link)) {
+                    pending.add(executor.submit(() -> further(link, extraction, key + " " + link, discover)));
+                }
+            };
+            pagination.getTemplateUrls().forEach(submit);
+            Page first = first(url, extraction, key, discover);
+            fetched.add(first);
+            if (first.website() == null) {
+                pending.forEach(future -> future.cancel(true));
+                return fetched;
+            }
+            first.links().forEach(submit);
+            while (!pending.isEmpty()) {
+                List<Future<Page>> wave = List.copyOf(pending);
+                pending.clear();
+                for (Future<Page> future : wave) {
+                    Page page = join(future);
+                    if (page != null) {
+                        fetched.add(page);
+                        page.links().forEach(submit);
+                    } else {
+                        partial = true;
+                    }
+                }
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Fetches and evaluates the first page of a listing and remembers how the fetch has ended.
+     * <p>
+     * If the page cannot be fetched, an unchanged page without website, items and links is returned, so the listing
+     * is reported as unchanged and the items found by the previous check are kept.
+     * </p>
+     *
+     * @param url        The URL of the page.
+     * @param extraction The way in which the items are extracted from the webpage.
+     * @param key        The key under which the validators and the fingerprint of the page are remembered.
+     * @param discover   Whether the pagination links of the page are collected.
+     * @return The evaluated {@link Page}.
+     */
+    private Page first(String url, Extraction extraction, String key, boolean discover) {
+        try {
+            Page page = fetch(url, extraction, key, discover);
+            fetchResult = FetchResult.of(page.website());
+            return page;
+        } catch (IOException e) {
+            fetchResult = FetchResult.failed(url, e);
+            int count = subscriptions == null ? 1 : subscriptions.size();
+            return new Page(url, null, Collections.nCopies(count, new Rule.Result(List.of())), true, List.of(), key, 0);
+        }
+    }
+
+    /**
+     * Fetches and evaluates a further page of a listing.
+     *
+     * @param url        The URL of the page.
+     * @param extraction The way in which the items are extracted from the webpage.
+     * @param key        The key under which the validators and the fingerprint of the page are remembered.
+     * @param discover   Whether the pagination links of the page are collected.
+     * @return The evaluated {@link Page}, or {@code null} if the page cannot be fetched.
+     */
+    private Page further(String url, Extraction extraction, String key, boolean discover) {
+        try {
+            return fetch(url, extraction, key, discover);
+        } catch (IOException e) {
+            System.out.println("Skipping page " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Waits for a further page of a listing.
+     *
+     * @param future The future of the page.
+     * @return The evaluated {@link Page}, or {@code null} if the page cannot be fetched or the calling thread is
+     * interrupted while waiting.
+     */
+    private static Page join(Future<Page> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetches a single page and evaluates the rule against it.
+     * <p>
+     * With {@link Extraction#STREAM}, the pagination links are streamed along with the containers, and with
+     * {@link Extraction#JSON} along with the scripts holding the JSON state, which take the place of the containers.
+     * The containers are streamed with the scripts as well, so a page without a readable JSON state is filtered like
+     * with {@link Extraction#DOM} (see {@link Rule#filterJson(List, List, SubscriptionIndex)}). If the server
+     * reports that the page has not been modified, the pagination links found during the previous check are used.
+     * </p>
+     *
+     * @param url        The URL of the page.
+     * @param extraction The way in which the items are extracted from the webpage.
+     * @param key        The key under which the validators and the fingerprint of the page are remembered.
+     * @param discover   Whether the pagination links of the page are collected.
+     * @return The evaluated {@link Page}.
+     * @throws IOException If an error occurs while fetching the page.
+     */
+    private Page fetch(String url, Extraction extraction, String key, boolean discover) throws IOException {
+        List<Element> streamed = new ArrayList<>();
+        List<Element> scripts = new ArrayList<>();
+        Set<String> links = new LinkedHashSet<>();
+        Website page;
+        if (extraction == Extraction.STREAM || extraction == Extraction.JSON) {
+            Evaluator container = rule.getContainer();
+            Evaluator script = extraction == Extraction.JSON ? rule.getJsonState().getScript() : null;
+            Evaluator kept = script == null ? container : either(script, container);
+            page = new Website(url, key, discover ? either(kept, rule.getPagination()) : kept, element -> {
+                if (script != null && script.matches(element.root(), element)) {
+                    scripts.add(element);
+                } else if (container.matches(element.root(), element)) {
+                    streamed.add(element);
+                } else {
+                    Pagination.add(element, links);
+                }
+            });
+        } else {
+            page = new Website(url, key);
+        }
+        int count = subscriptions == null ? 1 : subscriptions.size();
+        if (page.isNotModified()) {
+            return new Page(url, page, Collections.nCopies(count, new Rule.Result(List.of())), true,
+                discover ? Pagination.recall(key) : List.of(), key, 0);
+        }
+        Events.Extract event = new Events.Extract();
+        event.begin();
+        long start = Metrics.start();
+        List<Element> containers = extraction == Extraction.DOM ? rule.select(page.getDOM()) : streamed;
+        if (discover && extraction == Extraction.DOM) {
+            links.addAll(Pagination.links(page.getDOM(), rule.getPagination()));
+        }
+        List<Element> fingerprinted = scripts.isEmpty() ? containers : scripts;
+        long fingerprint = Fingerprint.of(fingerprinted);
+        boolean fingerprintUnchanged = rule.getDetailPage() == null && Fingerprint.unchanged(key, fingerprint);
+        List<Rule.Result> evaluated;
+        if (fingerprintUnchanged) {
+            evaluated = Collections.nCopies(count, new Rule.Result(fingerprinted));
+        } else if (extraction == Extraction.JSON) {
+            evaluated = rule.filterJson(scripts, containers, subscriptions);
+        } else if (subscriptions == null) {
+            evaluated = List.of(rule.filter(containers));
+        } else {
+            evaluated = rule.filter(containers, subscriptions);
+        }
+        record(event, start, url, evaluated, fingerprintUnchanged);
+        if (discover) {
+            Pagination.remember(key, List.copyOf(links));
+        }
+        return new Page(url, page, evaluated, fingerprintUnchanged, List.copyOf(links), key, fingerprint);
+    }
+
+    /**
+     * Combines two selectors into one matching the elements matched by either of them.
+     *
+     * @param first  The first selector.
+     * @param second The second selector.
+     * @return An {@link Evaluator} matching every element matched by one of the selectors.
+     */
+    private static Evaluator either(Evaluator first, Evaluator second) {
+        return new Evaluator() {
+            @Override
+            public boolean matches(Element root, Element element) {
+                return first.matches(root, element) || second.matches(root, element);
+            }
+        };
+    }
+
+    /**
+     * Records the extraction of the items of interest from a page as metric and JFR event.
+     *
+     * @param event                The event that has been begun before the extraction.
+     * @param start                The start time returned by {@link Metrics#start()}.
+     * @param url                  The URL of the page.
+     * @param results              The results of the extraction, one per subscriber.
+     * @param fingerprintUnchanged Whether the filtering was skipped because the containers are unchanged.
+     */
+    private void record(Events.Extract event, long start, String url, List<Rule.Result> results,
+                        boolean fingerprintUnchanged) {
+        Metrics.phase("extract", url, start);
+        if (event.shouldCommit()) {
+            event.rule = rule.getName();
+            event.containers = results.getFirst().getContainers().size();
+            event.matches = results.stream().mapToInt(result -> result.getItems().size()).sum();
+            event.fingerprintUnchanged = fingerprintUnchanged;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the rule evaluated by this checker.
+     *
+     * @return The {@link Rule} object.
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the website of the first page of the listing.
+     *
+     * @return The {@link Website}, or {@code null} if the first page could not be fetched.
+     */
+    @Override
+    public Website getWebsite() {
+        return website;
+    }
+
+    @Override
+    public FetchResult getFetchResult() {
+        return fetchResult;
+    }
+
+    /**
+     * Retrieves the title of the webpage.
+     * <p>
+     * If several pages of a listing have been checked, the title of the first page that has been modified is returned.
+     * </p>
+     *
+     * @return The title of the webpage, or {@code null} if no page has been modified.
+     */
+    @Override
+    public String getTitle() {
+        for (Website page : pages) {
+            if (!page.isNotModified()) {
+                return page.getDOM().title();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves all items found on the webpage.
+     *
+     * @return An {@link Elements} object containing all elements that matched the container selector of the rule.
+     */
+    public Elements getArticles() {
+        return new Elements(result.getContainers());
+    }
+
+    /**
+     * Retrieves all items of interest found on the webpage.
+     *
+     * @return A {@link List} of {@link Element} objects whose filtered text contains one of the keywords of the rule.
+     */
+    public List<Element> getMatches() {
+        return result.getMatches();
+    }
+
+    @Override
+    public List<String> getHrefs() {
+        return result.getHrefs();
+    }
+
+    @Override
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    @Override
+    public List<Item> getItems() {
+        return result.getItems();
+    }
+
+    /**
+     * Retrieves the items of interest found on every page of the listing that has been evaluated in full.
+     * <p>
+     * Pages that are unchanged since the previous check or could not be fetched are missing, and so are pages on which
+     * some items could not be verified on their detail pages.
+     * </p>
+     *
+     * @return A {@link Map} from the URL of every evaluated page, as requested, to its items of interest.
+     */
+    @Override
+    public Map<String, List<Item>> getItemsByPage() {
+        return itemsByPage.getFirst();
+    }
+
+    /**
+     * Returns whether the items of interest cover only part of the listing.
+     * <p>
+     * This is the case if a further page could not be fetched, or if some pages of the listing are unchanged since
+     * the previous check and have therefore not been evaluated again.
+     * </p>
+     *
+     * @return {@code true} if only some pages of the listing have been evaluated, {@code false} otherwise.
+     */
+    @Override
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Returns a checker reporting the items of interest to a single subscriber of the listing.
+     * <p>
+     * The returned checker shares the fetched pages of this checker; only its links and items are those matching the
+     * keywords of the subscriber.
+     * </p>
+     *
+     * @param index The index of the subscriber within the {@link SubscriptionIndex} of this checker, 0 if the checker
+     *              evaluates the keywords of the rule.
+     * @return The {@link Checker} of the subscriber.
+     * @throws IndexOutOfBoundsException If there is no subscriber with the given index.
+     */
+    public Checker getSubscriber(int index) {
+        Rule.Result subscribed = results.get(index);
+        return new Checker() {
+            @Override
+            public Website getWebsite() {
+                return website;
+            }
+
+            @Override
+            public String getTitle() {
+                return RuleChecker.this.getTitle();
+            }
+
+            @Override
+            public List<String> getHrefs() {
+                return subscribed.getHrefs();
+            }
+
+            @Override
+            public boolean isUnchanged() {
+                return unchanged;
+            }
+
+            @Override
+            public List<Item> getItems() {
+                return subscribed.getItems();
+            }
+
+            @Override
+            public Map<String, List<Item>> getItemsByPage() {
+                return itemsByPage.get(index);
+            }
+
+            @Override
+            public boolean isPartial() {
+                return partial;
+            }
+
+            @Override
+            public FetchResult getFetchResult() {
+                return fetchResult;
+            }
+        };
+    }
+
+    /**
+     * A single fetched and evaluated page of a listing.
+     *
+     * @param url         The URL of the page as requested.
+     * @param website     The fetched page, or {@code null} if the page could not be fetched.
+     * @param results     The results of evaluating the rule against the page, one per subscriber.
+     * @param unchanged   Whether the page is unchanged since the previous check.
+     * @param links       The URLs of the pagination links found on the page.
+     * @param key         The key under which the validators and the fingerprint of the page are remembered.
+     * @param fingerprint The {@link Fingerprint} of the containers of the page, or 0 if the page has not been
+     *                    evaluated.
+     */
+    private record Page(String url, Website website, List<Rule.Result> results, boolean unchanged, List<String> links, String key,
+                        long fingerprint) {
+    }
+}
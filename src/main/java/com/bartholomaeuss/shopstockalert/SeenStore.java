@@ -0,0 +1,442 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Remembers which links have already been notified for which target, so only new links trigger a notification.
+ * <p>
+ * The store is kept in memory and backed by an append-only log file, in which every line records one notified link:
+ * </p>
+ * <pre>
+ * &lt;epoch millis&gt; TAB &lt;target key&gt; TAB &lt;href&gt;
+ * </pre>
+ * <p>
+ * When the store is opened, the log is read once. Entries older than the time to live (TTL) are dropped, so a link
+ * that is still listed after the TTL has expired is notified again. Since expired entries are only dropped from
+ * memory, the log is rewritten without them by {@link #compact()}, which also happens automatically when the store is
+ * opened and the log contains more expired than live entries.
+ * </p>
+ * <p>
+ * Several processes may use the same log file, e.g. a daemon and a one-off check. Every process holds a lock on the
+ * file {@code <log file>.lock} while it appends to or rewrites the log, and picks up the entries of the other processes
+ * before rewriting it, so a compaction never drops the links another process has just notified.
+ * </p>
+ * <p>
+ * A store shared by several daemons (see {@link #openShared(Path, Duration)}) keeps a log file per target in a shared
+ * directory instead, named after a UUID derived from the key of the target, and reads the log of a target on every
+ * check, since another daemon may have notified links of the target in the meantime (see {@link ShardCoordinator}).
+ * The log of a target is only written by the daemon holding the lease of its listing, and it is compacted whenever it
+ * is read and contains more expired than live entries.
+ * </p>
+ * <p>
+ * Links are looked up by {@link #findNew(String, List)} and recorded by {@link #record(String, List)} once they have
+ * been notified, so a link whose notification could not be queued is still new at the next check.
+ * </p>
+ */
+public class SeenStore implements Closeable {
+    /**
+     * The default time after which a notified link is forgotten.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofDays(30);
+
+    private static final String SUFFIX = ".log";
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * The log file, or the directory of the log files of the targets if the store is shared.
+     */
+    private final Path path;
+    private final Duration ttl;
+    private final Clock clock;
+    private final boolean shared;
+    private final Map<String, Map<String, Long>> seen = new HashMap<>();
+    private FileChannel lock;
+    private BufferedWriter writer;
+    /**
+     * The identity of the log file the writer appends to, which changes when another process rewrites the log.
+     */
+    private Object writerKey;
+
+    private SeenStore(Path path, Duration ttl, Clock clock, boolean shared) {
+        this.path = path;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.shared = shared;
+    }
+
+    /**
+     * Opens the store backed by the given log file, creating the file if it does not exist yet.
+     *
+     * @param path The path of the log file.
+     * @param ttl  The time after which a notified link is forgotten.
+     * @return The opened {@link SeenStore}.
+     * @throws IOException If the log file cannot be read or opened for appending.
+     */
+    public static SeenStore open(Path path, Duration ttl) throws IOException {
+        return open(path, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the store backed by the given log file using the given clock.
+     *
+     * @param path  The path of the log file.
+     * @param ttl   The time after which a notified link is forgotten.
+     * @param clock The clock providing the current time.
+     * @return The opened {@link SeenStore}.
+     * @throws IOException If the log file cannot be read or opened for appending.
+     */
+    static SeenStore open(Path path, Duration ttl, Clock clock) throws IOException {
+        SeenStore store = new SeenStore(path, ttl, clock, false);
+        store.lock = FileChannel.open(path.resolveSibling(path.getFileName() + LOCK_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock locked = store.lock.lock();
+            try {
+                int lines = store.load(path, null);
+                if (lines > 2 * store.size()) {
+                    store.rewrite(path);
+                }
+                store.openWriter();
+            } finally {
+                locked.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Opens the store in the given directory shared with other processes, creating the directory if it does not exist
+     * yet.
+     *
+     * @param directory The directory holding the log files of the targets.
+     * @param ttl       The time after which a notified link is forgotten.
+     * @return The opened {@link SeenStore}, which reads the log of a target every time.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static SeenStore openShared(Path directory, Duration ttl) throws IOException {
+        return openShared(directory, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the store in the given directory shared with other processes using the given clock.
+     *
+     * @param directory The directory holding the log files of the targets.
+     * @param ttl       The time after which a notified link is forgotten.
+     * @param clock     The clock providing the current time.
+     * @return The opened {@link SeenStore}.
+     * @throws IOException If the directory cannot be created.
+     */
+    static SeenStore openShared(Path directory, Duration ttl, Clock clock) throws IOException {
+        Files.createDirectories(directory);
+        return new SeenStore(directory, ttl, clock, true);
+    }
+
+    /**
+     * Returns the links that have not been notified for the given target yet and records them as notified.
+     *
+     * @param key   The key of the target.
+     * @param hrefs The links currently found for the target.
+     * @return A {@link List} of the links that have not been notified before, in their original order.
+     * @throws IOException If the log file cannot be read or the new links cannot be appended to it.
+     */
+    public synchronized List<String> filterNew(String key, List<String> hrefs) throws IOException {
+        List<String> fresh = findNew(key, hrefs);
+        record(key, fresh);
+        return fresh;
+    }
+
+    /**
+     * Returns the links that have not been notified for the given target yet without recording them.
+     * <p>
+     * The links are recorded by {@link #record(String, List)} once their notification has been queued.
+     * </p>
+     *
+     * @param key   The key of the target.
+     * @param hrefs The links currently found for the target.
+     * @return A {@link List} of the links that have not been notified before, in their original order.
+     * @throws IOException If the log file of a shared store cannot be read or compacted.
+     */
+    public synchronized List<String> findNew(String key, List<String> hrefs) throws IOException {
+        long now = clock.millis();
+        if (!shared) {
+            return filter(key, hrefs, now);
+        }
+        Path file = file(key);
+        try {
+            int lines = load(file, key);
+            List<String> fresh = filter(key, hrefs, now);
+            if (lines > 2 * size()) {
+                rewrite(file);
+            }
+            return fresh;
+        } finally {
+            seen.clear();
+        }
+    }
+
+    /**
+     * Records the given links as notified for the given target now.
+     *
+     * @param key   The key of the target.
+     * @param hrefs The links that have been notified.
+     * @throws IOException If the links cannot be appended to the log file.
+     */
+    public synchronized void record(String key, List<String> hrefs) throws IOException {
+        if (hrefs.isEmpty()) {
+            return;
+        }
+        long now = clock.millis();
+        if (shared) {
+            try (BufferedWriter appender = Files.newBufferedWriter(file(key), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String href : hrefs) {
+                    append(appender, now, key, href);
+                }
+            }
+            return;
+        }
+        FileLock locked = lock.lock();
+        try {
+            if (!Objects.equals(writerKey, key(path))) {
+                // another process has rewritten the log since it was opened for appending
+                writer.close();
+                openWriter();
+                load(path, null);
+            }
+            Map<String, Long> known = seen.computeIfAbsent(key, k -> new HashMap<>());
+            for (String href : hrefs) {
+                known.put(href, now);
+                append(writer, now, key, href);
+            }
+            writer.flush();
+        } finally {
+            locked.release();
+        }
+    }
+
+    /**
+     * Returns the log file of the given target in a shared store.
+     *
+     * @param key The key of the target.
+     * @return The {@link Path} of the log file of the target.
+     */
+    private Path file(String key) {
+        return path.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    /**
+     * Returns the links that have not been notified for the given target within the TTL.
+     *
+     * @param key   The key of the target.
+     * @param hrefs The links currently found for the target.
+     * @param now   The current time in epoch milliseconds.
+     * @return A {@link List} of the links that have not been notified before, in their original order and without
+     * duplicates.
+     */
+    private List<String> filter(String key, List<String> hrefs, long now) {
+        long expiry = now - ttl.toMillis();
+        Map<String, Long> known = seen.getOrDefault(key, Map.of());
+        Set<String> unique = new HashSet<>();
+        List<String> fresh = new ArrayList<>();
+        for (String href : hrefs) {
+            Long notified = known.get(href);
+            if ((notified == null || notified <= expiry) && unique.add(href)) {
+                fresh.add(href);
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Rewrites the log file so that it only contains the entries that have not expired yet.
+     * <p>
+     * The log is read again while the lock of the log file is held, so the entries appended by other processes are
+     * kept, and the live entries are written to a temporary file first, which then atomically replaces the log file.
+     * A shared store is left alone, since the log of a target is compacted whenever it is read by the daemon holding
+     * the lease of its listing, and no other daemon may write it at the same time.
+     * </p>
+     *
+     * @throws IOException If the log file cannot be rewritten.
+     */
+    public synchronized void compact() throws IOException {
+        if (shared) {
+            return;
+        }
+        FileLock locked = lock.lock();
+        try {
+            writer.close();
+            load(path, null);
+            rewrite(path);
+        } finally {
+            try {
+                openWriter();
+            } finally {
+                locked.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of links currently remembered across all targets.
+     * <p>
+     * A shared store does not keep any links in memory between two calls of {@link #filterNew(String, List)}, so its
+     * size is always 0.
+     * </p>
+     *
+     * @return The number of remembered links.
+     */
+    public synchronized int size() {
+        return seen.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } finally {
+            if (lock != null) {
+                lock.close();
+            }
+        }
+    }
+
+    /**
+     * Opens the log file for appending, creating it if it does not exist yet.
+     *
+     * @throws IOException If the log file cannot be opened.
+     */
+    private void openWriter() throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        writerKey = key(path);
+    }
+
+    /**
+     * Returns the identity of the given file, which tells whether it has been replaced.
+     *
+     * @param file The file.
+     * @return The file key, or {@code null} if the file does not exist or the file system does not provide one.
+     * @throws IOException If the attributes of the file cannot be read.
+     */
+    private static Object key(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the given log file with the entries in memory that have not expired yet, dropping the expired ones
+     * from memory as well.
+     *
+     * @param file The log file to be replaced.
+     * @throws IOException If the log file cannot be rewritten.
+     */
+    private void rewrite(Path file) throws IOException {
+        long expiry = clock.millis() - ttl.toMillis();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter compacted = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Map<String, Long>> target : seen.entrySet()) {
+                target.getValue().values().removeIf(notified -> notified <= expiry);
+                for (Map.Entry<String, Long> entry : target.getValue().entrySet()) {
+                    append(compacted, entry.getValue(), target.getKey(), entry.getKey());
+                }
+            }
+        }
+        seen.values().removeIf(Map::isEmpty);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a log file into memory, skipping expired and malformed entries.
+     *
+     * @param file The log file.
+     * @param key  The key of the target whose log file this is, or {@code null} to take the key of every entry from
+     *             the entry itself.
+     * @return The number of lines of the log file.
+     * @throws IOException If the log file exists but cannot be read.
+     */
+    private int load(Path file, String key) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long expiry = clock.millis() - ttl.toMillis();
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] fields = line.split("\t", 3);
+                if (fields.length != 3) {
+                    continue;
+                }
+                long notified;
+                try {
+                    notified = Long.parseLong(fields[0]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (notified > expiry) {
+                    seen.computeIfAbsent(key == null ? fields[1] : key, k -> new HashMap<>())
+                        .merge(fields[2], notified, Math::max);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Appends a single entry to a log file without flushing it.
+     *
+     * @param writer   The writer of the log file.
+     * @param notified The time the link was notified, in epoch milliseconds.
+     * @param key      The key of the target.
+     * @param href     The notified link.
+     * @throws IOException If the entry cannot be written.
+     */
+    private static void append(BufferedWriter writer, long notified, String key, String href) throws IOException {
+        writer.write(Long.toString(notified));
+        writer.write('\t');
+        writer.write(sanitize(key));
+        writer.write('\t');
+        writer.write(sanitize(href));
+        writer.write('\n');
+    }
+
+    /**
+     * Replaces the characters separating fields and lines of the log file.
+     *
+     * @param value The value to be written.
+     * @return The value with tabs and line breaks replaced by spaces.
+     */
+    private static String sanitize(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -1,5 +1,6 @@
 package com.bartholomaeuss.shopstockalert;
 
+import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
@@ -27,13 +28,22 @@ import static com.bartholomaeuss.shopstockalert.GMailAuth.*;
  * It handles the construction of the email message, encodes it in the appropriate format,
  * and interacts with the Gmail API to send the email.
  * </p>
- */public class SendMessage {
+ * <p>
+ * The HTTP transport and the Gmail client are created once per process on the first send and reused afterwards, with
+ * the credential cached by {@link GMailAuth#getCredentials(NetHttpTransport)}. A different client, e.g. one pointing at
+ * a local stand-in server, can be installed with {@link #useService(Gmail)}.
+ * </p>
+ */
+public class SendMessage {
+    private static final Session SESSION = Session.getInstance(new Properties(), null);
+    private static Gmail service;
+
     /**
      * Sends an email from the user's Gmail account to the specified recipient.
      * <p>
-     * This method initializes the Gmail API client, constructs a MIME message from the provided
-     * email details, encodes it, and sends it using the Gmail API. It returns the sent message
-     * object if the email was successfully sent, or {@code null} if an error occurred.
+     * This method constructs a MIME message from the provided email details, encodes it, and sends it using the
+     * Gmail API client of this process. It returns the sent message object if the email was successfully sent,
+     * or {@code null} if an error occurred.
      * </p>
      *
      * @param fromEmailAddress The email address that will appear in the "From" header of the email.
@@ -51,16 +61,75 @@ import static com.bartholomaeuss.shopstockalert.GMailAuth.*;
                                     String bodyText)
         throws MessagingException, IOException, GeneralSecurityException {
 
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-        Gmail service = new Gmail.Builder(new NetHttpTransport(),
-            JSON_FACTORY,
-            getCredentials(HTTP_TRANSPORT))
-            .setApplicationName(APPLICATION_NAME)
-            .build();
+        try {
+            return send(new Notification(fromEmailAddress, toEmailAddress, messageSubject, bodyText));
+        } catch (GoogleJsonResponseException e) {
+            GoogleJsonError error = e.getDetails();
+            if (error.getCode() == 403) {
+                System.err.println("Unable to send message: " + e.getDetails());
+            } else {
+                throw e;
+            }
+        }
+        return null;
+    }
 
-        Properties props = new Properties();
-        Session session = Session.getDefaultInstance(props, null);
-        MimeMessage email = new MimeMessage(session);
+    /**
+     * Sends a notification from the user's Gmail account.
+     * <p>
+     * Unlike {@link #sendEmail(String, String, String, String)}, this method reports every failure, including
+     * a denied request, as an exception, so the caller can decide whether to retry.
+     * </p>
+     *
+     * @param notification The notification to be sent.
+     * @return The sent {@link Message} object.
+     * @throws MessagingException If there is an error with the email format or addressing.
+     * @throws IOException        If an error occurs while accessing the credentials or sending the email.
+     * @throws GeneralSecurityException If there is an error with the security configuration or credentials.
+     */
+    public static Message send(Notification notification)
+        throws MessagingException, IOException, GeneralSecurityException {
+        Gmail service = getService();
+        Events.Send event = new Events.Send();
+        event.begin();
+        long start = Metrics.start();
+        try {
+            Message message = createMessage(notification.fromEmailAddress(), notification.toEmailAddress(),
+                notification.subject(), notification.bodyText());
+            message = service.users().messages().send("me", message).execute();
+            event.success = true;
+            System.out.println("Message id: " + message.getId());
+            return message;
+        } finally {
+            Metrics.phase("send", service.getRootUrl(), start);
+            if (event.shouldCommit()) {
+                event.recipient = notification.toEmailAddress();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Builds the Gmail API representation of an email.
+     * <p>
+     * This method constructs a MIME message from the provided email details and encodes it URL-safe Base64,
+     * as expected by the Gmail API.
+     * </p>
+     *
+     * @param fromEmailAddress The email address that will appear in the "From" header of the email.
+     * @param toEmailAddress   The email address of the recipient.
+     * @param messageSubject   The subject of the email.
+     * @param bodyText         The body text of the email.
+     * @return The {@link Message} object carrying the encoded email.
+     * @throws MessagingException If there is an error with the email format or addressing.
+     * @throws IOException        If the MIME message cannot be written.
+     */
+    public static Message createMessage(String fromEmailAddress,
+                                        String toEmailAddress,
+                                        String messageSubject,
+                                        String bodyText)
+        throws MessagingException, IOException {
+        MimeMessage email = new MimeMessage(SESSION);
         email.setFrom(new InternetAddress(fromEmailAddress));
         email.addRecipient(jakarta.mail.Message.RecipientType.TO,
             new InternetAddress(toEmailAddress));
@@ -73,21 +142,44 @@ import static com.bartholomaeuss.shopstockalert.GMailAuth.*;
         String encodedEmail = Base64.encodeBase64URLSafeString(rawMessageBytes);
         Message message = new Message();
         message.setRaw(encodedEmail);
+        return message;
+    }
 
-        try {
-            message = service.users().messages().send("me", message).execute();
-            System.out.println("Message id: " + message.getId());
-            System.out.println(message.toPrettyString());
-            return message;
-        } catch (GoogleJsonResponseException e) {
-            // TODO(developer) - handle error appropriately
-            GoogleJsonError error = e.getDetails();
-            if (error.getCode() == 403) {
-                System.err.println("Unable to send message: " + e.getDetails());
-            } else {
-                throw e;
-            }
+    /**
+     * Returns the Gmail API client of this process, creating it on first use.
+     * <p>
+     * On every further call, the access token of the credential the client authorizes its requests with is refreshed
+     * if it is about to expire.
+     * </p>
+     *
+     * @return The {@link Gmail} client.
+     * @throws IOException If the credentials cannot be loaded or refreshed.
+     * @throws GeneralSecurityException If the trusted HTTP transport cannot be created.
+     */
+    static synchronized Gmail getService() throws IOException, GeneralSecurityException {
+        if (service == null) {
+            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
+            service = new Gmail.Builder(HTTP_TRANSPORT,
+                JSON_FACTORY,
+                getCredentials(HTTP_TRANSPORT))
+                .setApplicationName(APPLICATION_NAME)
+                .build();
+        } else if (service.getRequestFactory().getInitializer() instanceof Credential credential) {
+            refreshIfExpiring(credential);
         }
-        return null;
+        return service;
+    }
+
+    /**
+     * Installs the Gmail API client to be used for all further sends.
+     * <p>
+     * This allows sending through a client that was built with a different root URL or request initializer,
+     * e.g. against a local stand-in HTTP server.
+     * </p>
+     *
+     * @param gmail The {@link Gmail} client to be used.
+     */
+    public static synchronized void useService(Gmail gmail) {
+        service = gmail;
     }
 }
@@ -0,0 +1,392 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits the listings of a target list between several daemons sharing a directory, without any external service.
+ * <p>
+ * Every daemon joins the group by creating a file named after its id in the {@code members} subdirectory of the
+ * shared directory and holding an exclusive lock on it for as long as it runs. The operating system releases the lock
+ * when the process ends, however it ends, so a member whose file is not locked is dead: its file is removed by the
+ * next member that notices. Every member lists the living members every {@link #REFRESH_INTERVAL} and places them on a
+ * consistent hash ring with {@value #VIRTUAL_NODES} virtual nodes each. A listing belongs to the member that follows
+ * the hash of its key on the ring (see {@link #owns(String)}), so if a member joins or dies, only the listings on its
+ * part of the ring move to another member, and the others keep their listings.
+ * </p>
+ * <p>
+ * Until all members have noticed a change of the group, two members may consider themselves the owner of the same
+ * listing. A listing is therefore only checked while holding its <b>lease</b>, an exclusive lock on a file of the
+ * {@code leases} subdirectory (see {@link #tryLease(String)}), so it is never checked by two members at the same time.
+ * The lease file names the member that held the lease last, so a member taking over a listing knows that what it
+ * remembers about the listing from an earlier check may be outdated (see {@link Lease#isHandedOver()}). Since the
+ * members also share their snapshots (see {@link SnapshotStore#openShared(Path)}) and notified links (see
+ * {@link SeenStore#openShared(Path, Duration)}), a member taking over a listing compares its items with those found by
+ * the previous owner and does not notify them again.
+ * </p>
+ * <p>
+ * File locks are held per process, and closing any channel of a locked file releases the lock of the process on some
+ * platforms. The files this process holds locks on are therefore tracked, and a file that is already locked by this
+ * process, e.g. by another coordinator of the same process, is never opened again to probe it.
+ * </p>
+ * <p>
+ * A daemon joins the group in the directory given by the system property {@value #DIRECTORY_PROPERTY}. Its id
+ * defaults to {@code <pid>@<host>} and can be set with {@value #ID_PROPERTY}; the ids of all members must differ.
+ * Several daemons on the same machine need working directories of their own, since their outboxes and histories are
+ * not shared.
+ * </p>
+ */
+public class ShardCoordinator implements Closeable {
+    /**
+     * The system property holding the directory shared by all members of the group.
+     */
+    public static final String DIRECTORY_PROPERTY = "shopstockalert.shard.dir";
+    /**
+     * The system property holding the id of this member.
+     */
+    public static final String ID_PROPERTY = "shopstockalert.shard.id";
+    /**
+     * The number of points every member occupies on the hash ring, which evens out the share of every member.
+     */
+    static final int VIRTUAL_NODES = 64;
+    /**
+     * The interval in which the living members are listed.
+     */
+    static final Duration REFRESH_INTERVAL = Duration.ofSeconds(5);
+
+    private static final String MEMBERS = "members";
+    private static final String LEASES = "leases";
+    private static final String SUFFIX = ".lock";
+    /**
+     * The files this process holds a lock on, as absolute paths.
+     */
+    private static final Set<Path> LOCKED = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final String id;
+    private FileChannel channel;
+    private volatile List<String> members = List.of();
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+    private ShardCoordinator(Path directory, String id) {
+        this.directory = directory;
+        this.id = id;
+    }
+
+    /**
+     * Joins the group sharing the given directory, creating the directory if it does not exist yet.
+     *
+     * @param directory The directory shared by all members of the group.
+     * @param id        The id of this member, which must be a valid file name.
+     * @return The {@link ShardCoordinator} of this member.
+     * @throws IOException If the directory cannot be created, or if a living member already has the given id.
+     */
+    public static ShardCoordinator join(Path directory, String id) throws IOException {
+        Files.createDirectories(directory.resolve(MEMBERS));
+        Files.createDirectories(directory.resolve(LEASES));
+        ShardCoordinator coordinator = new ShardCoordinator(directory, id);
+        coordinator.register();
+        coordinator.refresh();
+        return coordinator;
+    }
+
+    /**
+     * Joins the group configured by the system properties of this process.
+     *
+     * @return The {@link ShardCoordinator} of this member, or {@code null} if {@value #DIRECTORY_PROPERTY} is not set.
+     * @throws IOException If the group cannot be joined.
+     */
+    public static ShardCoordinator fromSystemProperties() throws IOException {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        String id = System.getProperty(ID_PROPERTY, ManagementFactory.getRuntimeMXBean().getName());
+        return join(Path.of(directory), id);
+    }
+
+    /**
+     * Lists the living members and rebuilds the hash ring if the group has changed.
+     * <p>
+     * The files of dead members are removed. If the file of this member has been removed, because another member
+     * took it for dead while it was joining, it is created and locked again.
+     * </p>
+     *
+     * @return {@code true} if the group has changed since the previous refresh, {@code false} otherwise.
+     * @throws IOException If the members cannot be listed.
+     */
+    public synchronized boolean refresh() throws IOException {
+        if (!Files.exists(member(id))) {
+            unlock(member(id), channel);
+            register();
+        }
+        List<String> alive = new ArrayList<>(List.of(id));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve(MEMBERS), "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String member = name.substring(0, name.length() - SUFFIX.length());
+                if (!member.equals(id) && isAlive(file)) {
+                    alive.add(member);
+                }
+            }
+        }
+        Collections.sort(alive);
+        if (alive.equals(members)) {
+            return false;
+        }
+        NavigableMap<Long, String> points = new TreeMap<>();
+        for (String member : alive) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                points.putIfAbsent(hash(member + "#" + i), member);
+            }
+        }
+        ring = points;
+        members = List.copyOf(alive);
+        return true;
+    }
+
+    /**
+     * Returns whether the given listing belongs to this member.
+     *
+     * @param listing The listing key of the targets, see {@link Target#getListingKey()}.
+     * @return {@code true} if this member follows the hash of the listing on the ring, {@code false} otherwise.
+     */
+    public boolean owns(String listing) {
+        NavigableMap<Long, String> points = ring;
+        Map.Entry<Long, String> owner = points.ceilingEntry(hash(listing));
+        if (owner == null) {
+            owner = points.firstEntry();
+        }
+        return owner == null || owner.getValue().equals(id);
+    }
+
+    /**
+     * Takes the lease of the given listing if no other member holds it.
+     * <p>
+     * The lease must be closed once the listing has been checked, which lets other members take it again. The id of
+     * this member is written to the lease file, so the next member taking the lease can tell whether it has been
+     * handed over.
+     * </p>
+     *
+     * @param listing The listing key of the targets, see {@link Target#getListingKey()}.
+     * @return The {@link Lease} of the listing, or {@code null} if another member, or another coordinator of this
+     * process, holds it.
+     * @throws IOException If the lease file cannot be opened, read or written.
+     */
+    public Lease tryLease(String listing) throws IOException {
+        Path file = directory.resolve(LEASES).resolve(name(listing) + SUFFIX).toAbsolutePath();
+        FileChannel lease = tryLock(file);
+        if (lease == null) {
+            return null;
+        }
+        try {
+            ByteBuffer holder = ByteBuffer.allocate((int) Math.min(lease.size(), 1024));
+            while (holder.hasRemaining() && lease.read(holder, holder.position()) > 0) {
+                // read the id of the previous holder
+            }
+            String previous = new String(holder.array(), 0, holder.position(), StandardCharsets.UTF_8);
+            if (!previous.equals(id)) {
+                lease.truncate(0);
+                lease.write(ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8)), 0);
+            }
+            return new Lease(file, lease, !previous.equals(id));
+        } catch (IOException | RuntimeException e) {
+            unlock(file, lease);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the directory shared by all members of the group.
+     *
+     * @return The shared directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the id of this member.
+     *
+     * @return The id.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the ids of the living members as of the last refresh, including this member.
+     *
+     * @return A sorted {@link List} of member ids.
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Leaves the group, so its listings move to the remaining members on their next refresh.
+     *
+     * @throws IOException If the file of this member cannot be removed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            Files.deleteIfExists(member(id));
+        } finally {
+            unlock(member(id), channel);
+        }
+    }
+
+    /**
+     * Creates the file of this member and locks it.
+     *
+     * @throws IOException If the file cannot be created, or if it is locked by a living member with the same id.
+     */
+    private void register() throws IOException {
+        channel = tryLock(member(id));
+        if (channel == null) {
+            throw new IOException("Member " + id + " is already running in " + directory);
+        }
+    }
+
+    /**
+     * Checks whether the member owning the given file is alive, removing the file if it is not.
+     *
+     * @param file The file of the member.
+     * @return {@code true} if the file is locked, {@code false} otherwise.
+     * @throws IOException If the file cannot be opened or removed.
+     */
+    private static boolean isAlive(Path file) throws IOException {
+        if (LOCKED.contains(file.toAbsolutePath())) {
+            return true;
+        }
+        try (FileChannel probe = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (probe.tryLock() == null) {
+                return true;
+            }
+            Files.deleteIfExists(file);
+            return false;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Opens and locks the given file, creating it if it does not exist yet, unless this process holds a lock on it.
+     *
+     * @param file The file to be locked.
+     * @return The {@link FileChannel} holding the lock, or {@code null} if the file is locked by this or another
+     * process.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static FileChannel tryLock(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        if (!LOCKED.add(absolute)) {
+            return null;
+        }
+        FileChannel locked = null;
+        try {
+            locked = FileChannel.open(absolute, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            if (locked.tryLock() != null) {
+                return locked;
+            }
+            locked.close();
+            locked = null;
+            return null;
+        } finally {
+            if (locked == null) {
+                LOCKED.remove(absolute);
+            }
+        }
+    }
+
+    /**
+     * Releases the lock this process holds on the given file.
+     *
+     * @param file    The locked file.
+     * @param channel The channel holding the lock.
+     * @throws IOException If the channel cannot be closed.
+     */
+    private static void unlock(Path file, FileChannel channel) throws IOException {
+        try {
+            channel.close();
+        } finally {
+            LOCKED.remove(file.toAbsolutePath());
+        }
+    }
+
+    private Path member(String member) {
+        return directory.resolve(MEMBERS).resolve(member + SUFFIX);
+    }
+
+    private static String name(String key) {
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static long hash(String key) {
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+    }
+
+    /**
+     * The lease of a listing, which is held until it is closed.
+     */
+    public static final class Lease implements Closeable {
+        private final Path file;
+        private final FileChannel channel;
+        private final boolean handedOver;
+
+        private Lease(Path file, FileChannel channel, boolean handedOver) {
+            this.file = file;
+            this.channel = channel;
+            this.handedOver = handedOver;
+        }
+
+        /**
+         * Returns whether the lease has been held by another member since this member held it last.
+         * <p>
+         * If so, the listing may have been checked by another member, and what this member remembers about the
+         * listing, e.g. the validators and fingerprints of its pages, may be older than the shared snapshots and has to
+         * be forgotten (see {@link RuleChecker#forget(String)}).
+         * </p>
+         *
+         * @return {@code true} if another member or no member has held the lease last, {@code false} if this member
+         * has.
+         */
+        public boolean isHandedOver() {
+            return handedOver;
+        }
+
+        /**
+         * Releases the lease.
+         *
+         * @throws IOException If the lease file cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            unlock(file, channel);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.bartholomaeuss.shopstockalert;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Notifier} that sends notifications to an SMTP server over a pool of connections that are kept open.
+ * <p>
+ * Opening an SMTP connection takes several round trips for the greeting, {@code EHLO}, {@code STARTTLS} and
+ * {@code AUTH}, while sending a message over an open connection takes only one per command. The notifier therefore
+ * keeps up to the given number of authenticated connections open and sends every message over an idle one, so the
+ * notifications of many recipients are fanned out over the same few connections without reconnecting. A connection
+ * that has been idle for more than {@value #VALIDATE_AFTER_SECONDS} seconds is checked with a {@code NOOP} before it is
+ * reused, and a connection is replaced once it has sent
+ * {@value #DEFAULT_MESSAGES_PER_CONNECTION} messages, as many servers limit the messages per connection. A connection
+ * whose send fails is closed, so the retry of the notification starts on a fresh one.
+ * </p>
+ * <p>
+ * The connections are only used by a fixed pool of platform threads, one per connection. Jakarta Mail holds a monitor
+ * while it waits for the server, which would pin the carrier thread of a virtual thread such as an outbox worker for
+ * the whole round trip.
+ * </p>
+ * <p>
+ * The server is configured with the system properties {@value #HOST_PROPERTY}, {@value #PORT_PROPERTY} (by default
+ * {@value #DEFAULT_PORT}), {@value #USER_PROPERTY} and {@value #STARTTLS_PROPERTY} (by default {@code true}); the
+ * password is read from the environment variable {@value #PASSWORD_VARIABLE}, so it does not show up in the process
+ * list. Without a user, no authentication is attempted, so the notifier can be pointed at a local stand-in server.
+ * </p>
+ */
+public class SmtpNotifier implements Notifier {
+    /**
+     * The system property holding the host name of the SMTP server.
+     */
+    public static final String HOST_PROPERTY = "shopstockalert.smtp.host";
+    /**
+     * The system property holding the port of the SMTP server.
+     */
+    public static final String PORT_PROPERTY = "shopstockalert.smtp.port";
+    /**
+     * The system property holding the user name to authenticate with.
+     */
+    public static final String USER_PROPERTY = "shopstockalert.smtp.user";
+    /**
+     * The system property holding whether the connection is upgraded with {@code STARTTLS}.
+     */
+    public static final String STARTTLS_PROPERTY = "shopstockalert.smtp.starttls";
+    /**
+     * The environment variable holding the password to authenticate with.
+     */
+    public static final String PASSWORD_VARIABLE = "SHOPSTOCKALERT_SMTP_PASSWORD";
+    static final int DEFAULT_PORT = 587;
+    static final int DEFAULT_MESSAGES_PER_CONNECTION = 100;
+    static final long VALIDATE_AFTER_SECONDS = 10;
+    private static final String TIMEOUT_MILLIS = "30000";
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final int messagesPerConnection;
+    /**
+     * The threads sending the messages, one per connection of the pool.
+     */
+    private final ExecutorService senders;
+    /**
+     * The connections that are open but not in use, the most recently used first, guarded by itself.
+     */
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+
+    /**
+     * Constructs a notifier for the given SMTP server that reuses a connection for
+     * {@value #DEFAULT_MESSAGES_PER_CONNECTION} messages.
+     *
+     * @param host     The host name of the SMTP server.
+     * @param port     The port of the SMTP server.
+     * @param user     The user name to authenticate with, or {@code null} to send without authentication.
+     * @param password The password to authenticate with, or {@code null} to send without authentication.
+     * @param startTls Whether the connection has to be upgraded with {@code STARTTLS}.
+     * @param poolSize The maximum number of connections open at the same time.
+     */
+    public SmtpNotifier(String host, int port, String user, String password, boolean startTls, int poolSize) {
+        this(host, port, user, password, startTls, poolSize, DEFAULT_MESSAGES_PER_CONNECTION);
+    }
+
+    /**
+     * Constructs a notifier for the given SMTP server.
+     *
+     * @param host                  The host name of the SMTP server.
+     * @param port                  The port of the SMTP server.
+     * @param user                  The user name to authenticate with, or {@code null} to send without
+     *                              authentication.
+     * @param password              The password to authenticate with, or {@code null} to send without
+     *                              authentication.
+     * @param startTls              Whether the connection has to be upgraded with {@code STARTTLS}.
+     * @param poolSize              The maximum number of connections open at the same time.
+     * @param messagesPerConnection The number of messages after which a connection is replaced, 1 to connect for
+     *                              every message.
+     */
+    public SmtpNotifier(String host, int port, String user, String password, boolean startTls, int poolSize,
+                        int messagesPerConnection) {
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", host);
+        properties.setProperty("mail.smtp.port", Integer.toString(port));
+        properties.setProperty("mail.smtp.auth", Boolean.toString(user != null));
+        properties.setProperty("mail.smtp.starttls.enable", Boolean.toString(startTls));
+        properties.setProperty("mail.smtp.starttls.required", Boolean.toString(startTls));
+        properties.setProperty("mail.smtp.connectiontimeout", TIMEOUT_MILLIS);
+        properties.setProperty("mail.smtp.timeout", TIMEOUT_MILLIS);
+        properties.setProperty("mail.smtp.writetimeout", TIMEOUT_MILLIS);
+        this.session = Session.getInstance(properties, null);
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.messagesPerConnection = Math.max(1, messagesPerConnection);
+        this.senders = Executors.newFixedThreadPool(Math.max(1, poolSize),
+            Thread.ofPlatform().name("shopstockalert-smtp-", 0).daemon().factory());
+    }
+
+    /**
+     * Constructs a notifier for the SMTP server configured by the system properties of this process.
+     *
+     * @param poolSize The maximum number of connections open at the same time.
+     * @return The {@link SmtpNotifier}.
+     * @throws IllegalArgumentException If {@value #HOST_PROPERTY} is not set or {@value #PORT_PROPERTY} is not a
+     *                                  number.
+     */
+    public static SmtpNotifier fromSystemProperties(int poolSize) {
+        String host = System.getProperty(HOST_PROPERTY);
+        if (host == null || host.isBlank()) {
+            throw new IllegalArgumentException("No SMTP server configured, set " + HOST_PROPERTY);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(System.getProperty(PORT_PROPERTY, Integer.toString(DEFAULT_PORT)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid SMTP port: " + System.getProperty(PORT_PROPERTY), e);
+        }
+        return new SmtpNotifier(host, port, System.getProperty(USER_PROPERTY), System.getenv(PASSWORD_VARIABLE),
+            Boolean.parseBoolean(System.getProperty(STARTTLS_PROPERTY, "true")), poolSize);
+    }
+
+    /**
+     * Sends the notification over an idle connection, or over a new one if none is idle.
+     * <p>
+     * The message is handed to one of the sender threads of this notifier, and this method blocks until it has been
+     * accepted or rejected by the server, or while all connections of the pool are in use.
+     * </p>
+     *
+     * @param notification The notification to be sent.
+     * @throws MessagingException If the message cannot be built, a connection cannot be opened or the server rejects
+     *                            the message.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the message to be sent.
+     */
+    @Override
+    public void send(Notification notification) throws MessagingException, InterruptedException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(notification.fromEmailAddress()));
+        message.addRecipient(Message.RecipientType.TO, new InternetAddress(notification.toEmailAddress()));
+        message.setSubject(notification.subject());
+        message.setText(notification.bodyText());
+        Events.Send event = new Events.Send();
+        event.begin();
+        long start = Metrics.start();
+        try {
+            join(senders.submit(() -> transmit(message)));
+            event.success = true;
+        } finally {
+            Metrics.phase("send", "smtp://" + host + ":" + port, start);
+            if (event.shouldCommit()) {
+                event.recipient = notification.toEmailAddress();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Sends a message over a connection of the pool, on a sender thread.
+     *
+     * @param message The message to be sent.
+     * @return {@code null}.
+     * @throws MessagingException If a connection cannot be opened or the server rejects the message.
+     */
+    private Void transmit(MimeMessage message) throws MessagingException {
+        Connection connection = borrow();
+        try {
+            connection.transport().sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException | RuntimeException e) {
+            close(connection);
+            throw e;
+        }
+        messages.increment();
+        giveBack(new Connection(connection.transport(), connection.sent() + 1, System.nanoTime()));
+        return null;
+    }
+
+    /**
+     * Waits for a message to be sent by a sender thread.
+     * <p>
+     * The send is not cancelled if the calling thread is interrupted, since the server may already have accepted the
+     * message.
+     * </p>
+     *
+     * @param sent The future of the send.
+     * @throws MessagingException If the send has failed.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    private static void join(Future<Void> sent) throws MessagingException, InterruptedException {
+        try {
+            sent.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case MessagingException cause -> throw cause;
+                case RuntimeException cause -> throw cause;
+                case Error cause -> throw cause;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Takes an idle connection that is still open, or opens a new one.
+     * <p>
+     * A connection that has been used recently is assumed to be open, so it is not checked with a round trip.
+     * </p>
+     *
+     * @return The {@link Connection} to send over.
+     * @throws MessagingException If a new connection cannot be opened or authenticated.
+     */
+    private Connection borrow() throws MessagingException {
+        while (true) {
+            Connection connection;
+            synchronized (idle) {
+                connection = idle.pollFirst();
+            }
+            if (connection == null) {
+                break;
+            }
+            boolean recent = System.nanoTime() - connection.used() < TimeUnit.SECONDS.toNanos(VALIDATE_AFTER_SECONDS);
+            if (recent || connection.transport().isConnected()) {
+                return connection;
+            }
+            close(connection);
+        }
+        Transport transport = session.getTransport("smtp");
+        transport.connect(host, port, user, password);
+        connects.increment();
+        return new Connection(transport, 0, System.nanoTime());
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it if it has sent enough messages.
+     *
+     * @param connection The connection that has been used.
+     */
+    private void giveBack(Connection connection) {
+        if (connection.sent() < messagesPerConnection) {
+            synchronized (idle) {
+                idle.addFirst(connection);
+            }
+            return;
+        }
+        close(connection);
+    }
+
+    private static void close(Connection connection) {
+        try {
+            connection.transport().close();
+        } catch (MessagingException e) {
+            // the connection is discarded anyway
+        }
+    }
+
+    /**
+     * Returns the number of connections that have been opened.
+     *
+     * @return The number of connections.
+     */
+    public long getConnects() {
+        return connects.sum();
+    }
+
+    /**
+     * Returns the number of messages that have been accepted by the server.
+     *
+     * @return The number of messages.
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * Stops the sender threads once the pending messages have been sent and closes all connections.
+     */
+    @Override
+    public void close() {
+        senders.close();
+        List<Connection> connections;
+        synchronized (idle) {
+            connections = List.copyOf(idle);
+            idle.clear();
+        }
+        connections.forEach(SmtpNotifier::close);
+    }
+
+    /**
+     * An open connection to the SMTP server.
+     *
+     * @param transport The transport of the connection.
+     * @param sent      The number of messages sent over the connection.
+     * @param used      The time the connection has last been used, see {@link System#nanoTime()}.
+     */
+    private record Connection(Transport transport, int sent, long used) {
+    }
+}
@@ -0,0 +1,308 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The items of interest listed on the webpage of a target at the time of a check.
+ * <p>
+ * The snapshot of a check is compared with the one of the previous check of the same target (see
+ * {@link #diff(Snapshot)}), so notifications can say exactly what has changed instead of repeating the whole list.
+ * Every item remembers the page of the listing it was found on, so a check that evaluates only some pages can keep
+ * the items of the other pages (see {@link #with(Snapshot)}). Snapshots are stored in a compact binary format (see
+ * {@link #encode()}):
+ * </p>
+ * <pre>
+ * snapshot = magic:int32 pages:varint string* count:varint item*
+ * item     = flags:byte href:string [id:string] title:string price:varint page:varint
+ * string   = length:varint utf-8 bytes
+ * </pre>
+ * <p>
+ * The URLs of the pages are stored once, and every item refers to its page by index. Bit 0 of the flags is set if the
+ * id equals the link, in which case the id is omitted; bits 1 and 2 hold the {@link Item.Availability}. The price is
+ * stored plus one, so that {@link Item#NO_PRICE} takes a single byte. Snapshots stored before pages were remembered
+ * lack the page table and the page of every item; their items are read as found on an unknown page.
+ * </p>
+ */
+public final class Snapshot {
+    /**
+     * The snapshot of a target that has not been checked before.
+     */
+    public static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Set.of());
+
+    /**
+     * The page of the items of a single-page listing, and of items stored before pages were remembered.
+     */
+    static final String UNKNOWN_PAGE = "";
+
+    private static final int MAGIC_WITHOUT_PAGES = 0x53534131;
+    private static final int MAGIC = 0x53534132;
+    private static final int ID_IS_HREF = 1;
+
+    private final Map<String, Item> items;
+    /**
+     * The page every item was found on, by id.
+     */
+    private final Map<String, String> pages;
+    /**
+     * The pages that have been evaluated in full to take this snapshot. They are not stored.
+     */
+    private final Set<String> evaluated;
+
+    private Snapshot(Map<String, Item> items, Map<String, String> pages, Set<String> evaluated) {
+        this.items = items;
+        this.pages = pages;
+        this.evaluated = evaluated;
+    }
+
+    /**
+     * Creates a snapshot of the given items of a single-page listing.
+     * <p>
+     * If several items have the same id, only the first one is kept.
+     * </p>
+     *
+     * @param items The items of interest listed on the webpage.
+     * @return The {@link Snapshot} of the items.
+     */
+    public static Snapshot of(List<Item> items) {
+        return of(Map.of(UNKNOWN_PAGE, items));
+    }
+
+    /**
+     * Creates a snapshot of the items of the given pages of a listing.
+     * <p>
+     * If several items have the same id, only the first one is kept, together with its page.
+     * </p>
+     *
+     * @param items The items of interest listed on every page that has been evaluated in full, by the URL of the page.
+     * @return The {@link Snapshot} of the items.
+     */
+    public static Snapshot of(Map<String, List<Item>> items) {
+        Map<String, Item> byId = new LinkedHashMap<>();
+        Map<String, String> pages = new HashMap<>();
+        items.forEach((page, listed) -> {
+            for (Item item : listed) {
+                if (byId.putIfAbsent(item.id(), item) == null) {
+                    pages.put(item.id(), page);
+                }
+            }
+        });
+        return new Snapshot(Collections.unmodifiableMap(byId), pages, Set.copyOf(items.keySet()));
+    }
+
+    /**
+     * Returns the items of this snapshot.
+     *
+     * @return An unmodifiable {@link List} of the items, in the order they were listed.
+     */
+    public List<Item> getItems() {
+        return List.copyOf(items.values());
+    }
+
+    /**
+     * Returns the number of items of this snapshot.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Updates this snapshot with the items of a newer, partial snapshot.
+     * <p>
+     * This is used if only some pages of a listing have been evaluated: the items of the newer snapshot replace the
+     * ones with the same id, and the items of the pages that have not been evaluated are kept, since they may still be
+     * listed there. Items of an evaluated page that the newer snapshot lacks are dropped, so they are reported as
+     * removed. Items found on an unknown page are always kept.
+     * </p>
+     *
+     * @param newer The snapshot of the evaluated pages.
+     * @return The updated {@link Snapshot}.
+     */
+    public Snapshot with(Snapshot newer) {
+        Map<String, Item> merged = new LinkedHashMap<>();
+        Map<String, String> mergedPages = new HashMap<>();
+        items.forEach((id, item) -> {
+            String page = pages.getOrDefault(id, UNKNOWN_PAGE);
+            if (newer.items.containsKey(id)) {
+                merged.put(id, newer.items.get(id));
+                mergedPages.put(id, newer.pages.get(id));
+            } else if (page.equals(UNKNOWN_PAGE) || !newer.evaluated.contains(page)) {
+                merged.put(id, item);
+                mergedPages.put(id, page);
+            }
+        });
+        newer.items.forEach((id, item) -> {
+            if (merged.putIfAbsent(id, item) == null) {
+                mergedPages.put(id, newer.pages.get(id));
+            }
+        });
+        return new Snapshot(Collections.unmodifiableMap(merged), mergedPages, newer.evaluated);
+    }
+
+    /**
+     * Computes the changes from this snapshot to the given newer one.
+     * <p>
+     * Items only listed in the newer snapshot are {@link Delta.Type#NEW} and items only listed in this snapshot are
+     * {@link Delta.Type#REMOVED}. An item listed in both is a {@link Delta.Type#PRICE_DROP} if both prices are known
+     * and the newer one is lower, and {@link Delta.Type#BACK_IN_STOCK} if it was out of stock and is in stock now;
+     * both can apply at the same time. Any other change of an item is not reported.
+     * </p>
+     *
+     * @param newer The snapshot of the current check.
+     * @return A {@link List} of all changes, those of the items of the newer snapshot first and in their order.
+     */
+    public List<Delta> diff(Snapshot newer) {
+        List<Delta> deltas = new ArrayList<>();
+        for (Item item : newer.items.values()) {
+            Item previous = items.get(item.id());
+            if (previous == null) {
+                deltas.add(new Delta(Delta.Type.NEW, item, null));
+                continue;
+            }
+            if (item.hasPrice() && previous.hasPrice() && item.price() < previous.price()) {
+                deltas.add(new Delta(Delta.Type.PRICE_DROP, item, previous));
+            }
+            if (previous.availability() == Item.Availability.OUT_OF_STOCK
+                && item.availability() == Item.Availability.IN_STOCK) {
+                deltas.add(new Delta(Delta.Type.BACK_IN_STOCK, item, previous));
+            }
+        }
+        for (Item previous : items.values()) {
+            if (!newer.items.containsKey(previous.id())) {
+                deltas.add(new Delta(Delta.Type.REMOVED, previous, previous));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Encodes this snapshot in the binary format described above.
+     *
+     * @return The encoded snapshot.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + items.size() * 64);
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        Map<String, Integer> pageIndices = new LinkedHashMap<>();
+        for (String id : items.keySet()) {
+            pageIndices.putIfAbsent(pages.getOrDefault(id, UNKNOWN_PAGE), pageIndices.size());
+        }
+        writeVarint(out, pageIndices.size());
+        pageIndices.keySet().forEach(page -> writeString(out, page));
+        writeVarint(out, items.size());
+        for (Item item : items.values()) {
+            boolean idIsHref = item.id().equals(item.href());
+            out.write((idIsHref ? ID_IS_HREF : 0) | item.availability().ordinal() << 1);
+            writeString(out, item.href());
+            if (!idIsHref) {
+                writeString(out, item.id());
+            }
+            writeString(out, item.title());
+            writeVarint(out, item.price() + 1);
+            writeVarint(out, pageIndices.get(pages.getOrDefault(item.id(), UNKNOWN_PAGE)));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a snapshot from the binary format described above.
+     *
+     * @param bytes The encoded snapshot.
+     * @return The decoded {@link Snapshot}.
+     * @throws IOException If the bytes do not hold a valid snapshot.
+     */
+    public static Snapshot decode(byte[] bytes) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            int magic = in.getInt();
+            if (magic != MAGIC && magic != MAGIC_WITHOUT_PAGES) {
+                throw new IOException("Not a snapshot");
+            }
+            List<String> pageTable = new ArrayList<>();
+            if (magic == MAGIC) {
+                for (long i = readVarint(in); i > 0; i--) {
+                    pageTable.add(readString(in));
+                }
+            }
+            long count = readVarint(in);
+            Map<String, Item> items = new LinkedHashMap<>();
+            Map<String, String> pages = new HashMap<>();
+            Item.Availability[] availabilities = Item.Availability.values();
+            for (long i = 0; i < count; i++) {
+                int flags = in.get();
+                int availability = (flags >>> 1) & 3;
+                if (availability >= availabilities.length) {
+                    throw new IOException("Invalid availability in snapshot: " + availability);
+                }
+                String href = readString(in);
+                String id = (flags & ID_IS_HREF) != 0 ? href : readString(in);
+                String title = readString(in);
+                long price = readVarint(in) - 1;
+                String page = UNKNOWN_PAGE;
+                if (magic == MAGIC) {
+                    long index = readVarint(in);
+                    if (index >= pageTable.size()) {
+                        throw new IOException("Invalid page in snapshot: " + index);
+                    }
+                    page = pageTable.get((int) index);
+                }
+                items.put(id, new Item(id, title, price, availabilities[availability], href));
+                pages.put(id, page);
+            }
+            return new Snapshot(Collections.unmodifiableMap(items), pages, Set.of());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot");
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        long length = readVarint(in);
+        if (length > in.remaining()) {
+            throw new IOException("Truncated snapshot");
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), (int) length, StandardCharsets.UTF_8);
+        in.position(in.position() + (int) length);
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the latest {@link Snapshot} of every target, so the next check can report what has changed.
+ * <p>
+ * Every target has its own file in the store directory, named after a UUID derived from the key of the target and
+ * holding the encoded snapshot (see {@link Snapshot#encode()}). A file is read on the first check of its target and
+ * kept in memory afterwards; it is replaced atomically whenever the snapshot changes, so an interrupted write never
+ * leaves a broken snapshot behind. A snapshot that cannot be read is treated as empty.
+ * </p>
+ * <p>
+ * A store shared by several daemons (see {@link #openShared(Path)}) does not keep snapshots in memory but reads the
+ * file of a target on every check, since another daemon may have checked the target in the meantime
+ * (see {@link ShardCoordinator}).
+ * </p>
+ */
+public class SnapshotStore {
+    private static final String SUFFIX = ".snap";
+
+    private final Path directory;
+    private final boolean shared;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private SnapshotStore(Path directory, boolean shared) {
+        this.directory = directory;
+        this.shared = shared;
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory if it does not exist yet.
+     *
+     * @param directory The directory holding the snapshot files.
+     * @return The opened {@link SnapshotStore}.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static SnapshotStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new SnapshotStore(directory, false);
+    }
+
+    /**
+     * Opens the store in the given directory shared with other processes, creating the directory if it does not exist
+     * yet.
+     *
+     * @param directory The directory holding the snapshot files.
+     * @return The opened {@link SnapshotStore}, which reads the latest snapshot of a target from its file every time.
+     * @throws IOException If the directory cannot be created.
+     */
+    public static SnapshotStore openShared(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new SnapshotStore(directory, true);
+    }
+
+    /**
+     * Returns the latest snapshot of the given target.
+     *
+     * @param key The key of the target.
+     * @return The latest {@link Snapshot}, or {@link Snapshot#EMPTY} if the target has not been checked before.
+     */
+    public Snapshot get(String key) {
+        return shared ? load(key) : snapshots.computeIfAbsent(key, this::load);
+    }
+
+    /**
+     * Replaces the latest snapshot of the given target.
+     * <p>
+     * The snapshot is written to a temporary file first, which then atomically replaces the file of the target.
+     * </p>
+     *
+     * @param key      The key of the target.
+     * @param snapshot The snapshot of the current check.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void put(String key, Snapshot snapshot) throws IOException {
+        Path file = file(key);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, snapshot.encode());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (!shared) {
+            snapshots.put(key, snapshot);
+        }
+    }
+
+    private Snapshot load(String key) {
+        Path file = file(key);
+        try {
+            return Snapshot.decode(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return Snapshot.EMPTY;
+        } catch (IOException e) {
+            System.err.println("Unable to read snapshot " + file + ", starting over: " + e);
+            return Snapshot.EMPTY;
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+}
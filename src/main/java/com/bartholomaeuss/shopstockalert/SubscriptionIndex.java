@@ -0,0 +1,138 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The keywords of many subscribers watching the same listing, indexed so that one scan of an item serves all of them.
+ * <p>
+ * Every subscriber is a {@link Target} with its own keywords and excluded keywords (see {@link Target#getKeywords()}),
+ * falling back to those of the {@link Rule} of the listing. The distinct keywords of all subscribers are compiled into
+ * a single {@link KeywordMatcher}, and an inverted index maps every keyword to the subscribers that include or
+ * exclude it. Matching an item therefore scans its text once and only touches the subscribers of the keywords it
+ * contains, so the cost per item does not grow with the number of subscribers.
+ * </p>
+ */
+public class SubscriptionIndex {
+    private final List<Target> subscribers;
+    private final KeywordMatcher matcher;
+    /**
+     * The subscribers including each keyword, by the index of the keyword.
+     */
+    private final int[][] including;
+    /**
+     * The subscribers excluding each keyword, by the index of the keyword.
+     */
+    private final int[][] excluding;
+
+    /**
+     * Builds the index of the given subscribers.
+     *
+     * @param subscribers The targets watching the listing.
+     * @param rule        The rule of the listing, whose keywords apply to subscribers without keywords of their own.
+     */
+    public SubscriptionIndex(List<Target> subscribers, Rule rule) {
+        this.subscribers = List.copyOf(subscribers);
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> keywords = new ArrayList<>();
+        List<List<Integer>> includingList = new ArrayList<>();
+        List<List<Integer>> excludingList = new ArrayList<>();
+        for (int subscriber = 0; subscriber < this.subscribers.size(); subscriber++) {
+            Target target = this.subscribers.get(subscriber);
+            List<String> included = target.getKeywords() == null ? rule.getKeywords() : target.getKeywords();
+            List<String> excluded = target.getExcluded() == null ? rule.getExcluded() : target.getExcluded();
+            for (int pass = 0; pass < 2; pass++) {
+                for (String keyword : pass == 0 ? included : excluded) {
+                    String normalized = KeywordMatcher.normalize(keyword);
+                    if (normalized.isEmpty()) {
+                        continue;
+                    }
+                    Integer id = ids.get(normalized);
+                    if (id == null) {
+                        id = keywords.size();
+                        ids.put(normalized, id);
+                        keywords.add(normalized);
+                        includingList.add(new ArrayList<>());
+                        excludingList.add(new ArrayList<>());
+                    }
+                    List<Integer> postings = (pass == 0 ? includingList : excludingList).get(id);
+                    if (postings.isEmpty() || postings.getLast() != subscriber) {
+                        postings.add(subscriber);
+                    }
+                }
+            }
+        }
+        this.matcher = new KeywordMatcher(keywords, List.of());
+        this.including = toArrays(includingList);
+        this.excluding = toArrays(excludingList);
+    }
+
+    /**
+     * Returns the number of subscribers.
+     *
+     * @return The number of subscribers.
+     */
+    public int size() {
+        return subscribers.size();
+    }
+
+    /**
+     * Returns the subscribers of the listing.
+     *
+     * @return An unmodifiable {@link List} of the subscribers, in the order given when the index was built.
+     */
+    public List<Target> getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * Determines the subscribers an item is of interest to.
+     *
+     * @param elements The elements of the item whose text is filtered.
+     * @return A {@link BitSet} holding the indices of the subscribers whose keywords the combined text of the elements
+     * contains at least one of and whose excluded keywords it contains none of.
+     */
+    BitSet match(List<Element> elements) {
+        return accept(matcher.find(elements));
+    }
+
+    /**
+     * Determines the subscribers an item is of interest to by its plain text, e.g. the title read from the JSON state
+     * of a webpage.
+     *
+     * @param text The text of the item.
+     * @return A {@link BitSet} holding the indices of the subscribers whose keywords the text contains at least one of
+     * and whose excluded keywords it contains none of.
+     */
+    BitSet match(CharSequence text) {
+        return accept(matcher.find(text));
+    }
+
+    private BitSet accept(BitSet found) {
+        BitSet accepted = new BitSet();
+        for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+            for (int subscriber : including[id]) {
+                accepted.set(subscriber);
+            }
+        }
+        for (int id = found.nextSetBit(0); id >= 0 && !accepted.isEmpty(); id = found.nextSetBit(id + 1)) {
+            for (int subscriber : excluding[id]) {
+                accepted.clear(subscriber);
+            }
+        }
+        return accepted;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> postings) {
+        int[][] arrays = new int[postings.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = postings.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+}
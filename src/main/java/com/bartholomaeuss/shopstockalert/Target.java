@@ -0,0 +1,458 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes a single page that should be watched by the ShopStockAlert application.
+ * <p>
+ * A target bundles the service name (e.g. "zolonda" or "wbw", see {@link CheckerRegistry}), the URL of the page, the interval
+ * in which the page should be checked, the sender's email address and the recipients of the
+ * notification. Targets are usually read from a target list file, where every non-empty line
+ * that does not start with {@code #} describes one target:
+ * </p>
+ * <pre>
+ * # service  url                      interval(s)  from                 to[,to...]                  [options]
+ * zolonda    https://example.com/deals 60          sender@example.com  a@example.com,b@example.com extraction=stream
+ * </pre>
+ * <p>
+ * The five mandatory columns may be followed by options of the form {@code key=value}. The following options are
+ * supported:
+ * </p>
+ * <ul>
+ *     <li><b>extraction</b>: {@code dom} (default), {@code stream} or {@code json}, see {@link Extraction}.</li>
+ *     <li><b>digest</b>: a window in seconds over which the alerts for each recipient are collected into a single
+ *     email, see {@link Digest}. By default, every alert is sent right away.</li>
+ *     <li><b>pages</b>: the maximum number of pages of a multi-page listing that are checked, 1 by default, see
+ *     {@link Pagination}.</li>
+ *     <li><b>page-url</b>: a URL template of the further pages of a listing in which {@code {page}} is replaced by
+ *     the page number. By default, the pagination links of the pages are followed.</li>
+ *     <li><b>page-concurrency</b>: the maximum number of pages of a listing fetched at the same time, 4 by
+ *     default.</li>
+ *     <li><b>alerts</b>: a comma-separated list of the changes that are notified, out of {@code new},
+ *     {@code removed}, {@code price-drop} and {@code back-in-stock}, see {@link Delta}. By default, all changes
+ *     but removed items are notified.</li>
+ *     <li><b>keywords</b>: a comma-separated list of keywords replacing those of the rule of the service, so several
+ *     targets can watch the same listing for different items, see {@link SubscriptionIndex}. Since the columns are
+ *     separated by whitespace, a {@code +} stands for a space, e.g. {@code keywords=red+shoes,boots}.</li>
+ *     <li><b>exclude</b>: a comma-separated list of excluded keywords replacing those of the rule of the service,
+ *     written like {@code keywords}.</li>
+ * </ul>
+ * <p>
+ * Targets that watch the same listing, i.e. that have the same {@link #getListingKey()}, are checked together: the
+ * listing is fetched once and the keywords of all of them are matched in a single pass over the items.
+ * </p>
+ */
+public class Target {
+    /**
+     * The options that select which items of a listing a target finds, see {@link #getKey()}.
+     */
+    private static final List<String> ITEM_OPTIONS = List.of("extraction", "pages", "page-url", "keywords", "exclude");
+
+    private final String service;
+    private final String url;
+    private final Duration interval;
+    private final String fromEmailAddress;
+    private final List<String> toEmailAddresses;
+    private final Map<String, String> options;
+
+    /**
+     * Constructs a new {@code Target}.
+     *
+     * @param service          The service name ("zolonda" or "wbw").
+     * @param url              The URL of the website to be checked.
+     * @param interval         The interval in which the website should be checked.
+     * @param fromEmailAddress The sender's email address.
+     * @param toEmailAddresses The email addresses of the recipients.
+     */
+    public Target(String service, String url, Duration interval, String fromEmailAddress, List<String> toEmailAddresses) {
+        this(service, url, interval, fromEmailAddress, toEmailAddresses, Map.of());
+    }
+
+    /**
+     * Constructs a new {@code Target} with additional options.
+     *
+     * @param service          The service name ("zolonda" or "wbw").
+     * @param url              The URL of the website to be checked.
+     * @param interval         The interval in which the website should be checked.
+     * @param fromEmailAddress The sender's email address.
+     * @param toEmailAddresses The email addresses of the recipients.
+     * @param options          The additional options of the target.
+     */
+    public Target(String service, String url, Duration interval, String fromEmailAddress, List<String> toEmailAddresses,
+                  Map<String, String> options) {
+        this.service = service;
+        this.url = url;
+        this.interval = interval;
+        this.fromEmailAddress = fromEmailAddress;
+        this.toEmailAddresses = List.copyOf(toEmailAddresses);
+        this.options = Map.copyOf(options);
+    }
+
+    /**
+     * Parses a single line of a target list file.
+     * <p>
+     * The line must consist of five whitespace separated columns: the service name, the URL,
+     * the check interval in seconds, the sender's email address and a comma separated list
+     * of recipients. These may be followed by any number of {@code key=value} options.
+     * </p>
+     *
+     * @param line The line to be parsed.
+     * @return The {@link Target} described by the line.
+     * @throws IllegalArgumentException If the line does not describe a valid target or names an unknown service.
+     */
+    public static Target parse(String line) {
+        String[] columns = line.trim().split("\\s+");
+        if (columns.length < 5) {
+            throw new IllegalArgumentException("Expected at least 5 columns but got " + columns.length + ": " + line);
+        }
+        if (!CheckerRegistry.isRegistered(columns[0])) {
+            throw new IllegalArgumentException("Unknown service: " + columns[0]);
+        }
+        long seconds;
+        try {
+            seconds = Long.parseLong(columns[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid interval: " + columns[2], e);
+        }
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + columns[2]);
+        }
+        List<String> recipients = Arrays.stream(columns[4].split(","))
+            .filter(recipient -> !recipient.isEmpty())
+            .toList();
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 5; i < columns.length; i++) {
+            int separator = columns[i].indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid option: " + columns[i]);
+            }
+            options.put(columns[i].substring(0, separator), columns[i].substring(separator + 1));
+        }
+        Target target = new Target(columns[0], columns[1], Duration.ofSeconds(seconds), columns[3], recipients, options);
+        // fail early on invalid options instead of on the first check
+        target.getExtraction();
+        target.getDigestWindow();
+        target.getPagination();
+        target.getAlerts();
+        if ((target.getKeywords() != null || target.getExcluded() != null)
+            && CheckerRegistry.getRule(target.getService()) == null) {
+            throw new IllegalArgumentException("Service " + target.getService() + " does not support keywords per target: "
+                + line);
+        }
+        if (target.getExtraction() == Extraction.JSON && (CheckerRegistry.getRule(target.getService()) == null
+            || CheckerRegistry.getRule(target.getService()).getJsonState() == null)) {
+            throw new IllegalArgumentException("Service " + target.getService() + " has no JSON state: " + line);
+        }
+        if (target.getMinInterval().compareTo(target.getMaxInterval()) > 0) {
+            throw new IllegalArgumentException("Minimum interval exceeds maximum interval: " + line);
+        }
+        return target;
+    }
+
+    /**
+     * Reads all targets from a target list file.
+     * <p>
+     * Empty lines and lines starting with {@code #} are ignored.
+     * </p>
+     *
+     * @param path The path of the target list file.
+     * @return A {@link List} of all {@link Target} objects described by the file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a line of the file does not describe a valid target.
+     */
+    public static List<Target> load(Path path) throws IOException {
+        List<Target> targets = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            targets.add(parse(trimmed));
+        }
+        return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Returns the service name of this target.
+     *
+     * @return The service name ("zolonda" or "wbw").
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * Returns the URL of the website to be checked.
+     *
+     * @return The URL of the website.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the interval in which the website should be checked.
+     *
+     * @return The check interval.
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the sender's email address.
+     *
+     * @return The sender's email address.
+     */
+    public String getFromEmailAddress() {
+        return fromEmailAddress;
+    }
+
+    /**
+     * Returns the email addresses of the recipients.
+     *
+     * @return An unmodifiable {@link List} of recipient email addresses.
+     */
+    public List<String> getToEmailAddresses() {
+        return toEmailAddresses;
+    }
+
+    /**
+     * Returns a key identifying this target.
+     * <p>
+     * Two targets have the same key if they watch the same URL with the same service on behalf of the same
+     * sender and recipients, and find the same items there, i.e. if they have the same options that select the items
+     * ({@code extraction}, {@code pages}, {@code page-url}, {@code keywords} and {@code exclude}). State that has to be
+     * kept between two checks of a target, such as its {@link Snapshot}, is stored under this key. Options that are
+     * not set are left out, so targets without options keep the keys they had before these options existed.
+     * </p>
+     *
+     * @return The key of this target.
+     */
+    public String getKey() {
+        StringBuilder key = new StringBuilder(service).append(' ').append(url).append(' ').append(fromEmailAddress)
+            .append(' ').append(String.join(",", toEmailAddresses));
+        for (String option : ITEM_OPTIONS) {
+            String value = getOption(option, null);
+            if (value != null) {
+                key.append(' ').append(option).append('=').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a key identifying the listing watched by this target.
+     * <p>
+     * Two targets have the same listing key if they fetch the same pages of the same URL in the same way, no matter
+     * which items they are interested in or whom they notify. Such targets can share a single fetch.
+     * </p>
+     *
+     * @return The listing key of this target.
+     */
+    public String getListingKey() {
+        return service + " " + url + " " + getExtraction() + " " + getOption("pages", "1") + " "
+            + getOption("page-url", "") + " " + getOption("page-concurrency", "");
+    }
+
+    /**
+     * Returns the value of an option of this target.
+     *
+     * @param key          The name of the option.
+     * @param defaultValue The value to be returned if the option is not set.
+     * @return The value of the option, or the default value if the option is not set.
+     */
+    public String getOption(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * Returns the way in which the items are extracted from the webpage of this target.
+     *
+     * @return The {@link Extraction} mode given by the {@code extraction} option, {@link Extraction#DOM} by default.
+     * @throws IllegalArgumentException If the {@code extraction} option names an unknown mode.
+     */
+    public Extraction getExtraction() {
+        return Extraction.parse(getOption("extraction", "dom"));
+    }
+
+    /**
+     * Returns the window over which the alerts of this target are collected into a single email per recipient.
+     *
+     * @return The window given by the {@code digest} option in seconds, or {@code null} if alerts are sent right away.
+     * @throws IllegalArgumentException If the {@code digest} option is not a positive number.
+     */
+    public Duration getDigestWindow() {
+        return getSeconds("digest", "Digest window");
+    }
+
+    /**
+     * Returns the shortest interval in which the website of this target may be checked.
+     * <p>
+     * The interval of a target adapts to how often its webpage changes, within the bounds given by
+     * {@link #getMinInterval()} and {@link #getMaxInterval()}. Without these options, both bounds equal
+     * {@link #getInterval()}, so the target is checked in a fixed interval.
+     * </p>
+     *
+     * @return The interval given by the {@code min-interval} option in seconds, or the configured interval.
+     * @throws IllegalArgumentException If the {@code min-interval} option is not a positive number.
+     */
+    public Duration getMinInterval() {
+        Duration min = getSeconds("min-interval", "Minimum interval");
+        return min == null ? interval : min;
+    }
+
+    /**
+     * Returns the longest interval in which the website of this target may be checked.
+     *
+     * @return The interval given by the {@code max-interval} option in seconds, or the configured interval.
+     * @throws IllegalArgumentException If the {@code max-interval} option is not a positive number.
+     * @see #getMinInterval()
+     */
+    public Duration getMaxInterval() {
+        Duration max = getSeconds("max-interval", "Maximum interval");
+        return max == null ? interval : max;
+    }
+
+    /**
+     * Returns how many pages of the listing at the URL of this target are checked and how the further pages are found.
+     * <p>
+     * The {@code pages} option gives the maximum number of pages, 1 by default. The further pages are generated from the
+     * URL template given by the {@code page-url} option, or discovered through the pagination links of the pages if the
+     * option is not set. The {@code page-concurrency} option limits the number of pages fetched at the same time.
+     * </p>
+     *
+     * @return The {@link Pagination} of this target, {@link Pagination#NONE} if only a single page is checked.
+     * @throws IllegalArgumentException If one of the options is invalid.
+     */
+    public Pagination getPagination() {
+        Long pages = getPositive("pages", "Pages");
+        Long concurrency = getPositive("page-concurrency", "Page concurrency");
+        String template = getOption("page-url", null);
+        if (pages == null) {
+            if (template != null) {
+                throw new IllegalArgumentException("Page URL requires the number of pages: " + template);
+            }
+            return Pagination.NONE;
+        }
+        return new Pagination(Math.toIntExact(pages), template,
+            concurrency == null ? Pagination.DEFAULT_CONCURRENCY : Math.toIntExact(concurrency));
+    }
+
+    /**
+     * Returns the changes of the listing of this target that are notified.
+     *
+     * @return The {@link Delta.Type}s given by the {@code alerts} option, all but {@link Delta.Type#REMOVED} by
+     * default.
+     * @throws IllegalArgumentException If the {@code alerts} option names an unknown change.
+     */
+    public Set<Delta.Type> getAlerts() {
+        String value = getOption("alerts", null);
+        if (value == null) {
+            return EnumSet.of(Delta.Type.NEW, Delta.Type.PRICE_DROP, Delta.Type.BACK_IN_STOCK);
+        }
+        Set<Delta.Type> alerts = EnumSet.noneOf(Delta.Type.class);
+        for (String name : value.split(",")) {
+            try {
+                alerts.add(Delta.Type.parse(name));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid alert: " + name, e);
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Returns the keywords of which the text of an item of interest to this target has to contain at least one.
+     *
+     * @return The keywords given by the {@code keywords} option, or {@code null} if the keywords of the rule of the
+     * service apply.
+     */
+    public List<String> getKeywords() {
+        return getKeywords("keywords");
+    }
+
+    /**
+     * Returns the keywords of which the text of an item of interest to this target must not contain any.
+     *
+     * @return The keywords given by the {@code exclude} option, or {@code null} if the excluded keywords of the rule
+     * of the service apply.
+     */
+    public List<String> getExcluded() {
+        return getKeywords("exclude");
+    }
+
+    /**
+     * Returns the value of an option holding a comma-separated list of keywords.
+     *
+     * @param key The name of the option.
+     * @return The keywords, in which every {@code +} has been replaced by a space, or {@code null} if the option is not
+     * set.
+     */
+    private List<String> getKeywords(String key) {
+        String value = getOption(key, null);
+        if (value == null) {
+            return null;
+        }
+        return Arrays.stream(value.split(","))
+            .map(keyword -> keyword.replace('+', ' ').trim())
+            .filter(keyword -> !keyword.isEmpty())
+            .toList();
+    }
+
+    /**
+     * Returns the value of an option holding a positive number of seconds.
+     *
+     * @param key         The name of the option.
+     * @param description The description of the option used in error messages.
+     * @return The value of the option, or {@code null} if the option is not set.
+     * @throws IllegalArgumentException If the option is not a positive number.
+     */
+    private Duration getSeconds(String key, String description) {
+        Long seconds = getPositive(key, description);
+        return seconds == null ? null : Duration.ofSeconds(seconds);
+    }
+
+    /**
+     * Returns the value of an option holding a positive number.
+     *
+     * @param key         The name of the option.
+     * @param description The description of the option used in error messages.
+     * @return The value of the option, or {@code null} if the option is not set.
+     * @throws IllegalArgumentException If the option is not a positive number.
+     */
+    private Long getPositive(String key, String description) {
+        String value = getOption(key, null);
+        if (value == null) {
+            return null;
+        }
+        long number;
+        try {
+            number = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + description.toLowerCase(Locale.ROOT) + ": " + value, e);
+        }
+        if (number <= 0) {
+            throw new IllegalArgumentException(description + " must be positive: " + value);
+        }
+        return number;
+    }
+
+    @Override
+    public String toString() {
+        return service + " " + url;
+    }
+}
@@ -0,0 +1,163 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A training run that exercises the code paths of a one-shot run without network access and without sending mail.
+ * <p>
+ * The training run serves a listing page of each built-in service from a local HTTP server and checks it like a
+ * one-shot run does, once parsing the whole page and once streaming it, checks a page embedding its products as JSON
+ * with every extraction mode including {@link Extraction#JSON}, and encodes the resulting notifications
+ * without sending them. Finally, it queries the {@link History} the checks have been recorded in. It is used by the {@code cds} build profile to record which classes a run loads into an
+ * AppCDS archive, and can be run with the {@code native-image-agent} to refresh the reflection metadata of the
+ * {@code native} build profile:
+ * </p>
+ * <pre>
+ * java -agentlib:native-image-agent=config-merge-dir=src/main/resources/META-INF/native-image/com.bartholomaeuss.shopstockalert/ShopStockAlert \
+ *      -cp target/ShopStockAlert-1.0-SNAPSHOT.jar com.bartholomaeuss.shopstockalert.Training
+ * </pre>
+ * <p>
+ * All state written by the checks, i.e. the seen links and the outbox, is kept in a temporary directory that is
+ * deleted at the end of the run.
+ * </p>
+ */
+public class Training {
+    /**
+     * A listing page that the rule of the {@link WBWChecker} finds one item of interest on.
+     */
+    private static final String WBW_PAGE = """
+        <html><head><title>Wohnungen</title></head><body>
+        <div class="section-wohnung container"><h2>Rath, 3 Zimmer</h2><a href="/wohnung/1">Details</a></div>
+        <div class="section-wohnung container"><h2>Bilk, 2 Zimmer</h2><a href="/wohnung/2">Details</a></div>
+        </body></html>
+        """;
+    /**
+     * A listing page that the rule of the {@link ZolondaChecker} finds one item of interest on.
+     */
+    private static final String ZOLONDA_PAGE = """
+        <html><head><title>Deals</title></head><body>
+        <div hidden><article><p>Sneaker deal</p><a href="/artikel/1">Zum Artikel</a></article>
+        <article><p>Jacke</p><a href="/artikel/2">Zum Artikel</a></article></div>
+        </body></html>
+        """;
+    /**
+     * A listing page embedding its products as JSON, which the {@link #STATE_RULE} finds one item of interest in.
+     */
+    private static final String STATE_PAGE = """
+        <html><head><title>Angebote</title></head><body>
+        <article><p>Sneaker deal</p><a href="/artikel/1">Zum Artikel</a></article>
+        <script type="application/json">{"products":[{"sku":"1","name":"Sneaker","url":"/artikel/1","price":"19.99",
+        "isDeal":true},{"sku":"2","name":"Jacke","url":"/artikel/2","price":"49.99","isDeal":false}]}</script>
+        </body></html>
+        """;
+    /**
+     * The rule of the service "state", which reads the products of the {@link #STATE_PAGE} from its JSON state.
+     */
+    private static final Rule STATE_RULE = Rule.builder("state", "article", List.of("deal"))
+        .json(new JsonState("script[type=application/json]", "url", "isDeal", "name", "sku", "price"))
+        .build();
+    private static final String SENDER = "training@example.com";
+
+    private Training() {
+    }
+
+    /**
+     * Runs the training.
+     *
+     * @param args Not used.
+     * @throws IOException If the local HTTP server cannot be started or a check fails.
+     * @throws InterruptedException If the training is interrupted while waiting for the outbox.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("shopstockalert-training");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", Training::handle);
+        server.start();
+        CheckerRegistry.register(STATE_RULE);
+        SnapshotStore snapshots = SnapshotStore.open(directory.resolve("snapshots"));
+        try (SeenStore seenStore = SeenStore.open(directory.resolve("seen.log"), SeenStore.DEFAULT_TTL);
+             History history = History.open(directory.resolve("history"));
+             Outbox outbox = Outbox.open(directory.resolve("outbox"), Training::encode, 1, 10)) {
+            String root = "http://localhost:" + server.getAddress().getPort();
+            for (String service : List.of("wbw", "zolonda", "state")) {
+                for (Extraction extraction : Extraction.values()) {
+                    if (extraction == Extraction.JSON && CheckerRegistry.getRule(service).getJsonState() == null) {
+                        continue;
+                    }
+                    String recipient = extraction.name().toLowerCase(Locale.ROOT) + "@example.com";
+                    App.check(new Target(service, root + "/" + service, Duration.ZERO, SENDER, List.of(recipient),
+                        Map.of("extraction", extraction.name())), seenStore, snapshots, history, outbox);
+                }
+            }
+            outbox.awaitIdle(Duration.ofSeconds(10));
+            history.query(key -> true, Instant.EPOCH, Instant.now().plusSeconds(1), ZoneOffset.UTC);
+        } finally {
+            server.stop(0);
+            delete(directory);
+        }
+        System.out.println("Training run finished.");
+    }
+
+    /**
+     * Serves the listing page of the service named by the path of the request.
+     *
+     * @param exchange The exchange of the request.
+     * @throws IOException If the response cannot be sent.
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = (switch (exchange.getRequestURI().getPath()) {
+                case "/wbw" -> WBW_PAGE;
+                case "/state" -> STATE_PAGE;
+                default -> ZOLONDA_PAGE;
+            }).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Encodes a notification as it would be sent, without sending it.
+     *
+     * @param notification The notification to be encoded.
+     * @throws Exception If the notification cannot be encoded.
+     */
+    private static void encode(Notification notification) throws Exception {
+        SendMessage.createMessage(notification.fromEmailAddress(), notification.toEmailAddress(),
+            notification.subject(), notification.bodyText());
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     *
+     * @param directory The directory to be deleted.
+     * @throws IOException If a file cannot be deleted.
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
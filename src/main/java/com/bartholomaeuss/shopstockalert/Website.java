@@ -1,9 +1,45 @@
 package com.bartholomaeuss.shopstockalert;
 
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
+import org.jsoup.helper.HttpConnection;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Represents a website that can be accessed and fetched using a URL.
@@ -11,37 +47,650 @@ import java.io.IOException;
  * This class is responsible for initializing a connection to a given URL and fetching the Document Object Model (DOM)
  * of the webpage. The DOM is then stored and can be retrieved for further processing.
  * </p>
+ * <p>
+ * All websites are fetched through a single shared {@link HttpClient}, which keeps connections to a host open
+ * and reuses them for subsequent requests. Responses are requested gzip or deflate compressed. The {@code ETag} and
+ * {@code Last-Modified} headers of every response are remembered per URL, or per key if several callers watch the
+ * same URL independently, and sent back as {@code If-None-Match} and {@code If-Modified-Since} on the next request
+ * with the same key, so a webpage that has not changed is answered with
+ * {@code 304 Not Modified} and is neither downloaded nor parsed again (see {@link #isNotModified()}).
+ * Requests are rate-limited per host by the {@link HostRateLimiter}; a host answering with {@code 429} or
+ * {@code 503} is left alone for the time given in its {@code Retry-After} header (see {@link RetryAfterException}).
+ * A host that keeps failing is skipped for a while by its {@link CircuitBreaker}.
+ * Websites with the same URL share their downloads through the {@link FetchCache}, so a webpage watched by several
+ * targets is downloaded once, and whether it has changed is still determined per key.
+ * </p>
+ * <p>
+ * For large webpages of which only a few elements are of interest, a website can also be streamed
+ * (see {@link #Website(String, String, Evaluator, Consumer)}). The elements of interest are then handed out while the body
+ * is still being downloaded, and everything else is discarded as soon as it has been parsed. Streamed websites bypass
+ * the {@link FetchCache}, since caching would mean holding the whole body in memory after all.
+ * </p>
+ * <p>
+ * Every request has two deadlines: a connection must be established within {@value #DEFAULT_CONNECT_TIMEOUT_SECONDS}
+ * seconds and the complete response must have arrived within {@value #DEFAULT_TIMEOUT_SECONDS} seconds, otherwise the
+ * request is cancelled and fails with an {@link HttpTimeoutException}. A slow request can additionally be
+ * <b>hedged</b>: if no response has arrived after the hedge delay, the same request is sent once more and the first
+ * response is used, which cuts off the slow tail of a host's response times at the cost of a few extra requests.
+ * Hedging is disabled by default. The deadlines and the hedge delay can be changed with the system properties
+ * {@value #CONNECT_TIMEOUT_PROPERTY} (in seconds), {@value #TIMEOUT_PROPERTY} (in seconds) and
+ * {@value #HEDGE_PROPERTY} (in milliseconds), the latter two also with {@link #setDeadline(Duration, Duration)}.
+ * </p>
  */
 public class Website {
+    /**
+     * The system property holding the time within which a connection to a host must be established in seconds.
+     */
+    public static final String CONNECT_TIMEOUT_PROPERTY = "shopstockalert.fetch.connect-timeout";
+    /**
+     * The system property holding the time within which the complete response must have arrived in seconds.
+     */
+    public static final String TIMEOUT_PROPERTY = "shopstockalert.fetch.timeout";
+    /**
+     * The system property holding the time after which a pending request is hedged in milliseconds.
+     */
+    public static final String HEDGE_PROPERTY = "shopstockalert.fetch.hedge";
+    static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+    static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(Duration.ofSeconds(Long.parseLong(
+            System.getProperty(CONNECT_TIMEOUT_PROPERTY, Long.toString(DEFAULT_CONNECT_TIMEOUT_SECONDS)))))
+        .build();
+    private static final Map<String, Validators> VALIDATORS = new ConcurrentHashMap<>();
+    private static final LongAdder TIMED_OUT = new LongAdder();
+    private static final LongAdder HEDGED = new LongAdder();
+    private static volatile Duration timeout = Duration.ofSeconds(
+        Long.parseLong(System.getProperty(TIMEOUT_PROPERTY, Long.toString(DEFAULT_TIMEOUT_SECONDS))));
+    private static volatile Duration hedgeAfter = Duration.ofMillis(
+        Long.parseLong(System.getProperty(HEDGE_PROPERTY, "0")));
+
     private final String url;
+    private final String key;
     private final Document DOM;
+    private final boolean notModified;
+
+    /**
+     * Changes the deadline of every request and the delay after which a pending request is hedged.
+     *
+     * @param responseTimeout The time within which the complete response must have arrived.
+     * @param hedgeDelay      The time after which a pending request is sent once more, or {@link Duration#ZERO} to
+     *                        disable hedging.
+     */
+    public static void setDeadline(Duration responseTimeout, Duration hedgeDelay) {
+        timeout = responseTimeout;
+        hedgeAfter = hedgeDelay;
+    }
+
+    /**
+     * Returns the host of the given URL, under which requests are rate-limited, guarded by a circuit breaker and
+     * measured.
+     *
+     * @param url The URL.
+     * @return The host of the URL, or an empty string if the URL has no host or is not a valid URI.
+     */
+    static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the number of requests that have been cancelled because their response did not arrive in time.
+     *
+     * @return The number of timed out requests.
+     */
+    public static long getTimedOut() {
+        return TIMED_OUT.sum();
+    }
+
+    /**
+     * Returns the number of requests that have been hedged because their response was slow.
+     *
+     * @return The number of hedged requests.
+     */
+    public static long getHedged() {
+        return HEDGED.sum();
+    }
 
     /**
      * Constructs a new {@code Website} instance with the specified URL.
      * <p>
      * This constructor initializes the website by connecting to the provided URL and fetching the DOM of the webpage.
+     * If the webpage has not changed since it was fetched the last time, no DOM is fetched and
+     * {@link #isNotModified()} returns {@code true}.
      * </p>
      *
      * @param url The URL of the website to be initialized.
      * @throws IOException If an error occurs while connecting to the URL or fetching the DOM.
      */
     public Website(String url) throws IOException {
+        this(url, url);
+    }
+
+    /**
+     * Constructs a new {@code Website} instance with the specified URL, remembering its validators under the given key.
+     * <p>
+     * This constructor behaves like {@link #Website(String)}, but whether the webpage has changed is determined
+     * relative to the last fetch with the same key rather than the same URL.
+     * </p>
+     *
+     * @param url The URL of the website to be initialized.
+     * @param key The key under which the validators of the webpage are remembered.
+     * @throws IOException If an error occurs while connecting to the URL or fetching the DOM.
+     */
+    public Website(String url, String key) throws IOException {
+        this.url = url;
+        this.key = key;
+        Validators validators = VALIDATORS.get(key);
+        FetchCache.Body body = FetchCache.fetch(url, validators, Website::download);
+        this.notModified = body.isNotModified(validators);
+        this.DOM = notModified ? null : getDOM(body);
+    }
+
+    /**
+     * Constructs a new {@code Website} instance by streaming the webpage at the specified URL.
+     * <p>
+     * Every element matching the selector is passed to the consumer as soon as it has been parsed completely and is
+     * removed from the DOM afterwards. All other elements are discarded as soon as they have been parsed, unless they
+     * are part of an element matching the selector that has not been parsed completely yet. Only the {@code <html>},
+     * {@code <head>}, {@code <title>} and {@code <body>} elements are kept, so the DOM returned by {@link #getDOM()} is
+     * merely a skeleton providing the title of the page.
+     * If the webpage has not changed since it was fetched the last time, the consumer is not called at all.
+     * </p>
+     *
+     * @param url      The URL of the website to be initialized.
+     * @param key      The key under which the validators of the webpage are remembered.
+     * @param selector The selector matching the elements of interest.
+     * @param consumer The consumer receiving every element of interest.
+     * @throws IOException If an error occurs while connecting to the URL or streaming the DOM.
+     */
+    public Website(String url, String key, Evaluator selector, Consumer<Element> consumer) throws IOException {
         this.url = url;
-        this.DOM = getDOM(url);
+        this.key = key;
+        this.DOM = stream(VALIDATORS.get(key), selector, consumer);
+        this.notModified = DOM == null;
+    }
+
+    /**
+     * Sends a conditional, compression-enabled GET request to the specified URL and reads the decompressed body.
+     *
+     * @param url        The URL to be fetched.
+     * @param validators The validators of the previous response, or {@code null} for an unconditional request.
+     * @return The {@link FetchCache.Body} of the response.
+     * @throws RetryAfterException If the host answers with {@code 429} or {@code 503}, or has done so before and the
+     *                             time it asked to wait has not passed yet.
+     * @throws CircuitOpenException If the host has failed too often in a row to be requested now.
+     * @throws HttpTimeoutException If the host could not be connected or the response did not arrive in time.
+     * @throws IOException If an error occurs while connecting to the URL or if the server responds with an error status.
+     */
+    private static FetchCache.Body download(String url, Validators validators) throws IOException {
+        Duration deadline = timeout;
+        HttpRequest request = request(url, validators, deadline);
+        CircuitBreaker.acquire(url);
+        HostRateLimiter.acquire(url);
+        Events.Fetch event = new Events.Fetch();
+        event.begin();
+        long start = Metrics.start();
+        HttpResponse<byte[]> response;
+        try {
+            response = send(request, HttpResponse.BodyHandlers.ofByteArray(), url, deadline);
+        } catch (IOException e) {
+            CircuitBreaker.failure(url);
+            throw e;
+        }
+        int status = response.statusCode();
+        byte[] bytes = null;
+        try {
+            if (status >= 200 && status < 300) {
+                try (InputStream body = decode(response.headers(), new ByteArrayInputStream(response.body()))) {
+                    bytes = body.readAllBytes();
+                }
+            }
+        } finally {
+            record(event, url, status, start);
+        }
+        settle(url, response);
+        if (status == 304) {
+            return new FetchCache.Body(response.uri().toString(), null, null, validators, System.nanoTime());
+        }
+        if (bytes == null) {
+            throw new HttpStatusException("HTTP error fetching URL", status, url);
+        }
+        return new FetchCache.Body(response.uri().toString(), bytes, charset(response), validators(response),
+            System.nanoTime());
+    }
+
+    /**
+     * Sends a conditional, compression-enabled GET request for the webpage of this website and streams its body
+     * straight from the connection into the DOM, bypassing the {@link FetchCache}.
+     * <p>
+     * The deadline of the request covers the complete body as it does for a download: the response headers must have
+     * arrived in time as usual, and the body is cut off once the rest of the deadline has passed, failing with an
+     * {@link HttpTimeoutException} rather than yielding the items of a truncated webpage. Once the body has been
+     * streamed successfully, the validators of the response are remembered for the next request.
+     * </p>
+     *
+     * @param validators The validators of the previous response, or {@code null} for an unconditional request.
+     * @param selector   The selector matching the elements of interest.
+     * @param consumer   The consumer receiving every element of interest.
+     * @return The skeleton {@link Document} that is left once all other elements have been discarded, or {@code null}
+     * if the host answered {@code 304 Not Modified}.
+     * @throws RetryAfterException If the host answers with {@code 429} or {@code 503}, or has done so before and the
+     *                             time it asked to wait has not passed yet.
+     * @throws CircuitOpenException If the host has failed too often in a row to be requested now.
+     * @throws HttpTimeoutException If the host could not be connected or the response did not arrive in time.
+     * @throws IOException If an error occurs while streaming the body or if the server responds with an error status.
+     */
+    private Document stream(Validators validators, Evaluator selector, Consumer<Element> consumer) throws IOException {
+        Duration deadline = timeout;
+        long begin = System.nanoTime();
+        HttpRequest request = request(url, validators, deadline);
+        CircuitBreaker.acquire(url);
+        HostRateLimiter.acquire(url);
+        Events.Fetch event = new Events.Fetch();
+        event.begin();
+        long start = Metrics.start();
+        HttpResponse<InputStream> response;
+        try {
+            response = send(request, HttpResponse.BodyHandlers.ofInputStream(), url, deadline);
+        } catch (IOException e) {
+            CircuitBreaker.failure(url);
+            throw e;
+        }
+        int status = response.statusCode();
+        try (InputStream body = response.body()) {
+            record(event, url, status, start);
+            settle(url, response);
+            if (status == 304) {
+                return null;
+            }
+            if (status < 200 || status >= 300) {
+                throw new HttpStatusException("HTTP error fetching URL", status, url);
+            }
+            AtomicBoolean timedOut = new AtomicBoolean();
+            CompletableFuture<Void> cutOff = CompletableFuture.runAsync(() -> {
+                timedOut.set(true);
+                close(body);
+            }, CompletableFuture.delayedExecutor(deadline.toNanos() - (System.nanoTime() - begin),
+                TimeUnit.NANOSECONDS));
+            Document document;
+            try {
+                document = streamDOM(decode(response.headers(), body), charset(response), response.uri().toString(),
+                    selector, consumer);
+            } catch (IOException e) {
+                // the cut-off may still be closing the body, so only its flag tells whether it caused the failure
+                cutOff.cancel(false);
+                if (timedOut.get()) {
+                    throw timedOut(deadline);
+                }
+                throw e;
+            }
+            cutOff.cancel(false);
+            if (timedOut.get()) {
+                throw timedOut(deadline);
+            }
+            remember(validators(response));
+            return document;
+        }
+    }
+
+    /**
+     * Builds a conditional, compression-enabled GET request for the specified URL.
+     *
+     * @param url        The URL to be fetched.
+     * @param validators The validators of the previous response, or {@code null} for an unconditional request.
+     * @param deadline   The time within which the response headers must have arrived.
+     * @return The {@link HttpRequest}.
+     */
+    private static HttpRequest request(String url, Validators validators, Duration deadline) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(deadline)
+            .header("User-Agent", HttpConnection.DEFAULT_UA)
+            .header("Accept-Encoding", "gzip, deflate");
+        if (validators != null) {
+            if (validators.eTag() != null) {
+                request.header("If-None-Match", validators.eTag());
+            }
+            if (validators.lastModified() != null) {
+                request.header("If-Modified-Since", validators.lastModified());
+            }
+        }
+        return request.build();
+    }
+
+    /**
+     * Records the response to a request as metric and JFR event.
+     *
+     * @param event  The event that has been begun before sending the request.
+     * @param url    The requested URL.
+     * @param status The status code of the response.
+     * @param start  The start time returned by {@link Metrics#start()}.
+     */
+    private static void record(Events.Fetch event, String url, int status, long start) {
+        Metrics.phase("fetch", url, start);
+        Metrics.response(url, status);
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reports the status of a response to the {@link CircuitBreaker} of the host and fails if the host asks to be left
+     * alone for a while.
+     *
+     * @param url      The requested URL.
+     * @param response The response of the host.
+     * @throws RetryAfterException If the host answered with {@code 429} or {@code 503}.
+     */
+    private static void settle(String url, HttpResponse<?> response) throws RetryAfterException {
+        int status = response.statusCode();
+        if (status >= 500 && status != 503) {
+            CircuitBreaker.failure(url);
+        } else {
+            CircuitBreaker.success(url);
+        }
+        if (status == 429 || status == 503) {
+            throw HostRateLimiter.block(url, status, response.headers().firstValue("Retry-After").orElse(null));
+        }
+    }
+
+    /**
+     * Extracts the validators from the headers of the response.
+     *
+     * @param response The response whose validators are to be extracted.
+     * @return The {@link Validators}, or {@code null} if the host sent neither an {@code ETag} nor a
+     * {@code Last-Modified} header.
+     */
+    private static Validators validators(HttpResponse<?> response) {
+        String eTag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        return eTag == null && lastModified == null ? null : new Validators(eTag, lastModified);
     }
 
     /**
-     * Fetches the Document Object Model (DOM) from the specified URL.
+     * Counts a request that has missed its deadline and describes it.
+     *
+     * @param deadline The deadline of the request.
+     * @return The {@link HttpTimeoutException} to be thrown.
+     */
+    private HttpTimeoutException timedOut(Duration deadline) {
+        TIMED_OUT.increment();
+        return new HttpTimeoutException("Timed out fetching " + url + " after " + deadline.toMillis() + " ms");
+    }
+
+    /**
+     * Sends the request and waits for the complete response until the deadline, hedging the request if it is slow.
      * <p>
-     * This method uses Jsoup to connect to the given URL and retrieve the DOM of the webpage.
+     * If hedging is enabled and no response has arrived after the hedge delay, the request is sent a second time,
+     * provided the host has a token left right away (see {@link HostRateLimiter#tryAcquire(String)}), and whichever
+     * response arrives first is used. The request that is still pending is cancelled, as is every request that misses
+     * the deadline.
      * </p>
      *
-     * @param url The URL from which to fetch the DOM.
+     * @param request  The request to be sent.
+     * @param url      The requested URL.
+     * @param deadline The time within which the complete response must have arrived.
+     * @param handler  The handler of the body, which is complete once the whole body has arrived, or once the headers
+     *                 have arrived if the body is streamed.
+     * @return The {@link HttpResponse} with the still compressed body.
+     * @throws HttpTimeoutException If the host could not be connected or the response did not arrive in time.
+     * @throws IOException If an error occurs while sending the request or receiving the response.
+     */
+    private static <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, String url,
+                                            Duration deadline) throws IOException {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> primary = CLIENT.sendAsync(request, handler);
+        CompletableFuture<HttpResponse<T>> secondary = null;
+        HttpResponse<T> used = null;
+        try {
+            CompletableFuture<HttpResponse<T>> response = primary;
+            Duration hedge = hedgeAfter;
+            if (!hedge.isZero() && hedge.compareTo(deadline) < 0) {
+                try {
+                    used = primary.get(hedge.toNanos(), TimeUnit.NANOSECONDS);
+                    return used;
+                } catch (TimeoutException e) {
+                    if (HostRateLimiter.tryAcquire(url)) {
+                        HEDGED.increment();
+                        secondary = CLIENT.sendAsync(request, handler);
+                        response = firstOf(primary, secondary);
+                    }
+                }
+            }
+            used = response.get(deadline.toNanos() - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            return used;
+        } catch (TimeoutException e) {
+            TIMED_OUT.increment();
+            throw new HttpTimeoutException("Timed out fetching " + url + " after " + deadline.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + url, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException wrapped && wrapped.getCause() != null
+                ? wrapped.getCause() : e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error fetching " + url, cause);
+        } finally {
+            primary.cancel(true);
+            discard(primary, used);
+            if (secondary != null) {
+                secondary.cancel(true);
+                discard(secondary, used);
+            }
+        }
+    }
+
+    /**
+     * Closes the body of a response that is not used, e.g. the one of a hedged request that has lost, once it arrives.
+     * This matters for streamed bodies, which hold on to their connection until they are closed.
+     *
+     * @param response The future of the response.
+     * @param used     The response that is used, or {@code null} if none is.
+     */
+    private static void discard(CompletableFuture<? extends HttpResponse<?>> response, HttpResponse<?> used) {
+        response.thenAccept(unused -> {
+            if (unused != used && unused.body() instanceof Closeable body) {
+                close(body);
+            }
+        });
+    }
+
+    /**
+     * Closes the given body, ignoring any error, since a body that is closed early is never read again.
+     *
+     * @param body The body to be closed.
+     */
+    private static void close(Closeable body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // The body is abandoned anyway.
+        }
+    }
+
+    /**
+     * Combines two requests into one that completes with the first response, or fails once both have failed.
+     *
+     * @param first  The original request.
+     * @param second The hedged request.
+     * @return A {@link CompletableFuture} of the first response.
+     */
+    private static <T> CompletableFuture<T> firstOf(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        BiConsumer<T, Throwable> complete = (response, error) -> {
+            if (error == null) {
+                winner.complete(response);
+            } else if (failed.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        };
+        first.whenComplete(complete);
+        second.whenComplete(complete);
+        return winner;
+    }
+
+    /**
+     * Parses the Document Object Model (DOM) from the specified body.
+     * <p>
+     * The charset is taken from the {@code Content-Type} header or, if absent, detected by Jsoup. Once the DOM has been
+     * parsed successfully, the validators of the body are remembered for the next request.
+     * </p>
+     *
+     * @param body The decompressed body of the response.
      * @return The {@link Document} object representing the DOM of the page.
-     * @throws IOException If an error occurs while fetching the page, such as connectivity issues or an invalid URL.
+     * @throws IOException If an error occurs while reading the body.
+     */
+    private Document getDOM(FetchCache.Body body) throws IOException {
+        Events.Parse event = new Events.Parse();
+        event.begin();
+        long start = Metrics.start();
+        Document document = Jsoup.parse(new ByteArrayInputStream(body.bytes()), body.charset(), body.uri());
+        remember(body.validators());
+        record(event, start, false);
+        return document;
+    }
+
+    /**
+     * Streams the Document Object Model (DOM) from the specified body.
+     * <p>
+     * This method parses the body incrementally with Jsoup's {@link StreamParser} while it is still being received, so
+     * only the elements of interest are ever held in memory as DOM, and the parse time includes receiving the body.
+     * Since the stream parser cannot detect the charset from the document itself, the charset is taken from the
+     * {@code Content-Type} header and defaults to UTF-8.
+     * </p>
+     *
+     * @param body        The decompressed body of the response.
+     * @param charsetName The charset given by the {@code Content-Type} header, or {@code null} if absent.
+     * @param uri         The URI of the webpage after redirects, used to resolve relative links.
+     * @param selector    The selector matching the elements of interest.
+     * @param consumer    The consumer receiving every element of interest.
+     * @return The skeleton {@link Document} that is left once all other elements have been discarded.
+     * @throws IOException If an error occurs while reading or decompressing the body.
+     */
+    private Document streamDOM(InputStream body, String charsetName, String uri, Evaluator selector,
+                               Consumer<Element> consumer) throws IOException {
+        Charset charset = charsetName == null ? StandardCharsets.UTF_8 : Charset.forName(charsetName);
+        Events.Parse event = new Events.Parse();
+        event.begin();
+        long start = Metrics.start();
+        Document document;
+        try (StreamParser parser = new StreamParser(Parser.htmlParser())
+                 .parse(new BufferedReader(new InputStreamReader(body, charset)), uri)) {
+            document = parser.document();
+            for (Element element : (Iterable<Element>) parser::iterator) {
+                if (selector.matches(document, element)) {
+                    consumer.accept(element);
+                    element.remove();
+                } else if (!isSkeleton(element) && element.parent() != null
+                    && element.closest(selector) == null) {
+                    element.remove();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        record(event, start, true);
+        return document;
+    }
+
+    /**
+     * Records the parsing of the body of this website as metric and JFR event.
+     *
+     * @param event    The event that has been begun before parsing.
+     * @param start    The start time returned by {@link Metrics#start()}.
+     * @param streamed Whether the body has been streamed.
      */
-    private Document getDOM(String url) throws IOException {
-        return Jsoup.connect(url).get();
+    private void record(Events.Parse event, long start, boolean streamed) {
+        Metrics.phase("parse", url, start);
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.streamed = streamed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks whether the element belongs to the skeleton of the document that is kept while streaming.
+     *
+     * @param element The element to be checked.
+     * @return {@code true} for the {@code html}, {@code head}, {@code title} and {@code body} elements.
+     */
+    private static boolean isSkeleton(Element element) {
+        return element.nameIs("html") || element.nameIs("head") || element.nameIs("title") || element.nameIs("body");
+    }
+
+    /**
+     * Remembers the validators of a response for the next request with the key of this website.
+     *
+     * @param validators The validators to be remembered, or {@code null} if the host sent none.
+     */
+    private void remember(Validators validators) {
+        if (validators != null) {
+            VALIDATORS.put(key, validators);
+        }
+    }
+
+    /**
+     * Forgets the validators remembered under the given key and under the keys of the further pages checked under it,
+     * so the next request for them is not conditional.
+     *
+     * @param key The key of the first page of a listing.
+     */
+    static void forget(String key) {
+        VALIDATORS.keySet().removeIf(page -> page.equals(key) || page.startsWith(key + " "));
+    }
+
+    /**
+     * Forgets the validators remembered under the given key only, so the next request with it is not conditional.
+     *
+     * @param key The key of a single webpage.
+     */
+    static void forgetPage(String key) {
+        VALIDATORS.remove(key);
+    }
+
+    /**
+     * Wraps the body of a response according to its {@code Content-Encoding} header.
+     *
+     * @param headers The headers of the response.
+     * @param body    The still compressed body of the response.
+     * @return An {@link InputStream} providing the decompressed body.
+     * @throws IOException If the gzip header of the body cannot be read.
+     */
+    static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+
+    /**
+     * Extracts the charset from the {@code Content-Type} header of the response.
+     *
+     * @param response The response whose charset is to be determined.
+     * @return The name of the charset, or {@code null} if the header does not specify one.
+     */
+    static String charset(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                return trimmed.substring(8).replace("\"", "").trim();
+            }
+        }
+        return null;
     }
 
     /**
@@ -62,9 +711,28 @@ public class Website {
      * This method provides access to the DOM of the website that was fetched during initialization.
      * </p>
      *
-     * @return The {@link Document} object representing the DOM of the webpage.
+     * @return The {@link Document} object representing the DOM of the webpage,
+     * or {@code null} if the webpage has not been modified since it was fetched the last time.
      */
     public Document getDOM() {
         return DOM;
     }
+
+    /**
+     * Returns whether the server reported that the webpage has not changed since it was fetched the last time.
+     *
+     * @return {@code true} if the server responded with {@code 304 Not Modified}, {@code false} otherwise.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * The validators of the last response for a URL.
+     *
+     * @param eTag         The value of the {@code ETag} header, or {@code null} if absent.
+     * @param lastModified The value of the {@code Last-Modified} header, or {@code null} if absent.
+     */
+    record Validators(String eTag, String lastModified) {
+    }
 }
@@ -1,115 +1,59 @@
 package com.bartholomaeuss.shopstockalert;
 
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Checks the availability of products on a website and processes the relevant information.
  * <p>
- * This class fetches the webpage content, retrieves articles, filters for deals, and extracts href attributes
- * from the deal elements.
+ * This class fetches the webpage content, retrieves the articles within hidden sections, filters for deals,
+ * and extracts href attributes from the deal elements. All of this is done in a single traversal of the DOM
+ * by evaluating the {@link #RULE} of this checker.
  * </p>
  */
-public class ZolondaChecker {
-    private Website website = null;
-    private String title;
-    private Elements articles;
-    private List<Element> deals;
-    private List<String> hrefs;
-
-    /**
-     * Constructs an AvailabilityChecker object for a predefined website URL.
-     * <p>
-     * The constructor initializes the Website object, retrieves the title, articles, deals and hrefs.
-     * </p>
-     */
-    public ZolondaChecker(String url) {
-
-        try {
-            this.website = new Website(url);
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.out.println("An error occurred, the program will now exit.");
-            System.exit(4);
-        }
-        this.title = getTitle();
-        this.articles = getArticles();
-        this.deals = getDeals();
-        this.hrefs = getHrefs();
-
-    }
-
+public class ZolondaChecker extends RuleChecker {
     /**
-     * Retrieves the Website object associated with this AvailabilityChecker.
-     *
-     * @return The {@link Website} object.
+     * The rule selecting all articles within hidden divs whose text contains the keyword "deal".
      */
-    public Website getWebsite() {
-        return website;
-    }
+    public static final Rule RULE = Rule.builder("zolonda", "div[hidden] article", List.of("deal")).build();
 
     /**
-     * Retrieves the title of the webpage.
+     * Constructs a {@code ZolondaChecker} object for a specified website URL.
      * <p>
-     * This method returns the title of the webpage fetched from the URL provided in the constructor.
+     * The constructor initializes the Website object and evaluates the {@link #RULE} against it.
      * </p>
      *
-     * @return The title of the webpage.
+     * @param url The URL of the website to be checked.
      */
-    public String getTitle() {
-        return website.getDOM().title();
+    public ZolondaChecker(String url) {
+        super(RULE, url);
     }
 
     /**
-     * Retrieves all article elements from the hidden sections of the webpage.
-     * <p>
-     * This method selects all article elements within hidden divs in the webpage's DOM.
-     * </p>
+     * Constructs a {@code ZolondaChecker} object for the webpage of a specified target.
      *
-     * @return An {@link Elements} object containing all article elements.
+     * @param target The target to be checked.
      */
-    public Elements getArticles() {
-        return website.getDOM().select("div[hidden]").select("article");
+    public ZolondaChecker(Target target) {
+        super(RULE, target);
     }
 
     /**
-     * Filters the articles to include only those that contain the keyword "deal".
-     * <p>
-     * This method iterates through all articles and keeps only those whose text contains the keyword "deal".
-     * </p>
+     * Constructs a {@code ZolondaChecker} object for an already fetched website.
      *
-     * @return A {@link List} of {@link Element} objects that represent the filtered deal articles.
+     * @param website The website to be checked.
      */
-    public List<Element> getDeals() {
-        List<Element> filteredArticles = new ArrayList<>();
-        for (Element article : articles) {
-            if (article.text().toLowerCase().contains("deal")) {
-                filteredArticles.add(article);
-            }
-        }
-        return filteredArticles;
+    public ZolondaChecker(Website website) {
+        super(RULE, website);
     }
 
     /**
-     * Extracts all href attributes from the deal articles.
-     * <p>
-     * This method retrieves the href attribute from each <a> tag found within the filtered deal articles.
-     * </p>
+     * Retrieves the articles that contain the keyword "deal".
      *
-     * @return A {@link List} of {@link String} objects representing the href attributes of the deal articles.
+     * @return A {@link List} of {@link Element} objects that represent the filtered deal articles.
      */
-    public List<String> getHrefs() {
-        List<String> hrefs = new ArrayList<>();
-        for (Element deal : deals) {
-            String href = deal.getElementsByTag("a").attr("href");
-            if (!href.isEmpty()) {
-                hrefs.add(href);
-            }
-        }
-        return hrefs;
+    public List<Element> getDeals() {
+        return getMatches();
     }
 }
@@ -0,0 +1,52 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveIntervalTest {
+    private static final Duration MIN = Duration.ofSeconds(30);
+    private static final Duration MAX = Duration.ofMinutes(10);
+
+    @Test
+    void halvesTheIntervalWhenTheWebpageChanged() {
+        AdaptiveInterval interval = new AdaptiveInterval(Duration.ofMinutes(4), MIN, MAX);
+        assertEquals(Duration.ofMinutes(2), interval.update(true));
+        assertEquals(Duration.ofMinutes(1), interval.update(true));
+        assertEquals(Duration.ofMinutes(1), interval.get());
+    }
+
+    @Test
+    void growsTheIntervalByAQuarterWhenTheWebpageIsUnchanged() {
+        AdaptiveInterval interval = new AdaptiveInterval(Duration.ofMinutes(4), MIN, MAX);
+        assertEquals(Duration.ofMinutes(5), interval.update(false));
+        assertEquals(Duration.ofSeconds(375), interval.update(false));
+    }
+
+    @Test
+    void keepsTheIntervalWithinItsBounds() {
+        AdaptiveInterval interval = new AdaptiveInterval(Duration.ofMinutes(1), MIN, MAX);
+        assertEquals(MIN, interval.update(true));
+        assertEquals(MIN, interval.update(true));
+        for (int i = 0; i < 20; i++) {
+            interval.update(false);
+        }
+        assertEquals(MAX, interval.get());
+        assertEquals(MIN, new AdaptiveInterval(Duration.ofSeconds(1), MIN, MAX).get());
+        assertEquals(MAX, new AdaptiveInterval(Duration.ofHours(1), MIN, MAX).get());
+    }
+
+    @Test
+    void startsAtTheIntervalOfTheTarget() {
+        Target target = new Target("shop", "https://shop.example/list", Duration.ofMinutes(2), "from@example.com",
+            List.of("to@example.com"), Map.of("min-interval", "60", "max-interval", "300"));
+        AdaptiveInterval interval = new AdaptiveInterval(target);
+        assertEquals(Duration.ofMinutes(2), interval.get());
+        assertEquals(Duration.ofMinutes(1), interval.update(true));
+        assertEquals(Duration.ofMinutes(1), interval.update(true));
+    }
+}
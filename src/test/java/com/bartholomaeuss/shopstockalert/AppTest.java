@@ -0,0 +1,129 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private final List<Notification> delivered = new CopyOnWriteArrayList<>();
+    private ShopServer shop;
+
+    @BeforeAll
+    static void registerShop() {
+        FetchCache.setLimit(Duration.ZERO, 0);
+        HostRateLimiter.setLimit(0, 1);
+        CheckerRegistry.register(Rule.builder("paged-shop", "li.item", List.of("flat")).pagination("nav a").build());
+    }
+
+    @BeforeEach
+    void startShop() throws IOException {
+        shop = new ShopServer();
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+    }
+
+    @Test
+    void reportsAnItemRemovedFromAPageWhileAnotherPageIsUnmodified() throws IOException, InterruptedException {
+        shop.page("/list", page(List.of("/flat/1", "/flat/2"), "/list?page=2", "/list?page=3"));
+        shop.page("/list?page=2", page(List.of("/flat/3")));
+        shop.page("/list?page=3", page(List.of("/flat/4")));
+        Target target = new Target("paged-shop", shop.url("/list"), Duration.ofMinutes(5), "from@example.com",
+            List.of("to@example.com"), Map.of("pages", "3", "alerts", "new,removed"));
+
+        try (SeenStore seenStore = SeenStore.open(directory.resolve("seen.log"), SeenStore.DEFAULT_TTL);
+             Outbox outbox = Outbox.open(directory.resolve("outbox"), delivered::add, 1, 10, Duration.ofMillis(1))) {
+            SnapshotStore snapshots = SnapshotStore.open(directory.resolve("snapshots"));
+            assertTrue(App.check(target, seenStore, snapshots, null, outbox));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+            assertEquals(1, delivered.size());
+            assertEquals(4, delivered.getFirst().bodyText().lines().filter(line -> line.startsWith("New: ")).count());
+
+            shop.page("/list", page(List.of("/flat/1"), "/list?page=2", "/list?page=3"));
+            shop.page("/list?page=3", page(List.of("/flat/4", "/flat/5")));
+            assertTrue(App.check(target, seenStore, snapshots, null, outbox));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+
+            assertEquals(1, shop.notModified());
+            assertEquals(2, delivered.size());
+            List<String> lines = delivered.get(1).bodyText().lines().toList();
+            assertEquals(2, lines.size(), lines.toString());
+            assertTrue(lines.getFirst().startsWith("New: ") && lines.getFirst().endsWith("/flat/5"), lines.toString());
+            assertTrue(lines.get(1).startsWith("Removed: ") && lines.get(1).endsWith("/flat/2"), lines.toString());
+            assertEquals(List.of("/flat/1", "/flat/3", "/flat/4", "/flat/5"),
+                snapshots.get(target.getKey()).getItems().stream().map(Item::href).map(this::path).toList());
+
+            assertFalse(App.check(target, seenStore, snapshots, null, outbox));
+        }
+    }
+
+    @Test
+    void notifiesAnItemAgainWhoseNotificationCouldNotBeQueued() throws IOException, InterruptedException {
+        shop.page("/list", page(List.of("/flat/1")));
+        Target target = new Target("paged-shop", shop.url("/list"), Duration.ofMinutes(5), "from@example.com",
+            List.of("to@example.com"), Map.of());
+        Path outboxDirectory = directory.resolve("outbox");
+
+        try (SeenStore seenStore = SeenStore.open(directory.resolve("seen.log"), SeenStore.DEFAULT_TTL);
+             Outbox outbox = Outbox.open(outboxDirectory, delivered::add, 1, 10, Duration.ofMillis(1))) {
+            SnapshotStore snapshots = SnapshotStore.open(directory.resolve("snapshots"));
+            delete(outboxDirectory);
+            assertThrows(IOException.class, () -> App.check(target, seenStore, snapshots, null, outbox));
+            assertEquals(0, seenStore.size());
+
+            Files.createDirectories(outboxDirectory);
+            assertTrue(App.check(target, seenStore, snapshots, null, outbox));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+            assertEquals(1, delivered.size());
+            assertTrue(delivered.getFirst().bodyText().endsWith("/flat/1"), delivered.getFirst().bodyText());
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private String path(String href) {
+        return href.substring(href.indexOf("/flat/"));
+    }
+
+    private String page(List<String> items, String... links) {
+        StringBuilder html = new StringBuilder("<html><body><ul>");
+        for (String item : items) {
+            html.append("<li class='item'><a href='").append(item).append("'>Flat ").append(item).append("</a></li>");
+        }
+        html.append("</ul><nav>");
+        for (String link : links) {
+            html.append("<a href='").append(shop.url(link)).append("'>page</a>");
+        }
+        return html.append("</nav></body></html>").toString();
+    }
+}
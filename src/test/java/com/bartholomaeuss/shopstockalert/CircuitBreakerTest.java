@@ -0,0 +1,103 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+    private static final String SHOP = "http://shop.example/list";
+    private static final String OTHER = "http://other.example/list";
+    private static final Duration COOL_DOWN = Duration.ofSeconds(CircuitBreaker.DEFAULT_COOL_DOWN_SECONDS);
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    @BeforeEach
+    void useClock() {
+        CircuitBreaker.setClock(clock);
+        CircuitBreaker.setLimit(CircuitBreaker.DEFAULT_FAILURES, COOL_DOWN);
+    }
+
+    @AfterEach
+    void restoreClock() {
+        CircuitBreaker.setClock(null);
+        CircuitBreaker.setLimit(CircuitBreaker.DEFAULT_FAILURES, COOL_DOWN);
+    }
+
+    @Test
+    void opensAfterTheConsecutiveFailuresOfAHost() throws CircuitOpenException {
+        long rejected = CircuitBreaker.getRejected();
+        fail(SHOP, CircuitBreaker.DEFAULT_FAILURES - 1);
+        CircuitBreaker.acquire(SHOP);
+
+        CircuitBreaker.failure(SHOP);
+        CircuitOpenException open = assertThrows(CircuitOpenException.class, () -> CircuitBreaker.acquire(SHOP));
+        assertEquals(COOL_DOWN, open.getRetryAfter());
+        assertEquals(1, CircuitBreaker.getOpen());
+        assertEquals(rejected + 1, CircuitBreaker.getRejected());
+        CircuitBreaker.acquire(OTHER);
+    }
+
+    @Test
+    void aSuccessResetsTheCountOfFailures() throws CircuitOpenException {
+        fail(SHOP, CircuitBreaker.DEFAULT_FAILURES - 1);
+        CircuitBreaker.success(SHOP);
+        fail(SHOP, CircuitBreaker.DEFAULT_FAILURES - 1);
+
+        CircuitBreaker.acquire(SHOP);
+        assertEquals(0, CircuitBreaker.getOpen());
+    }
+
+    @Test
+    void probesTheHostAfterTheCoolDownAndClosesOnSuccess() throws CircuitOpenException {
+        fail(SHOP, CircuitBreaker.DEFAULT_FAILURES);
+
+        clock.advance(COOL_DOWN.minusSeconds(1));
+        CircuitOpenException open = assertThrows(CircuitOpenException.class, () -> CircuitBreaker.acquire(SHOP));
+        assertEquals(Duration.ofSeconds(1), open.getRetryAfter());
+
+        clock.advance(Duration.ofSeconds(1));
+        CircuitBreaker.acquire(SHOP);
+        // only the probe is let through while it is pending
+        assertThrows(CircuitOpenException.class, () -> CircuitBreaker.acquire(SHOP));
+
+        CircuitBreaker.success(SHOP);
+        CircuitBreaker.acquire(SHOP);
+        CircuitBreaker.acquire(SHOP);
+        assertEquals(0, CircuitBreaker.getOpen());
+    }
+
+    @Test
+    void staysOpenForAnotherCoolDownIfTheProbeFails() throws CircuitOpenException {
+        fail(SHOP, CircuitBreaker.DEFAULT_FAILURES);
+        clock.advance(COOL_DOWN);
+        CircuitBreaker.acquire(SHOP);
+
+        CircuitBreaker.failure(SHOP);
+        clock.advance(COOL_DOWN.minusSeconds(1));
+        assertThrows(CircuitOpenException.class, () -> CircuitBreaker.acquire(SHOP));
+        clock.advance(Duration.ofSeconds(1));
+        CircuitBreaker.acquire(SHOP);
+        assertEquals(1, CircuitBreaker.getOpen());
+    }
+
+    @Test
+    void letsEveryRequestThroughIfDisabled() throws CircuitOpenException {
+        CircuitBreaker.setLimit(0, COOL_DOWN);
+        fail(SHOP, 10);
+
+        CircuitBreaker.acquire(SHOP);
+        assertEquals(0, CircuitBreaker.getOpen());
+    }
+
+    private static void fail(String url, int times) {
+        for (int i = 0; i < times; i++) {
+            CircuitBreaker.failure(url);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DetailVerifierTest {
+    private static final DetailPage DETAIL = new DetailPage("button.buy", List.of("sold out"));
+
+    private ShopServer shop;
+
+    @BeforeEach
+    void startShop() throws IOException {
+        FetchCache.setLimit(Duration.ZERO, 0);
+        HostRateLimiter.setLimit(0, 1);
+        DetailVerifier.setLimit(Duration.ZERO, 2);
+        shop = new ShopServer();
+        shop.page("/flat/1", "<html><body><button class='buy'>Rent</button></body></html>");
+        shop.page("/flat/2", "<html><body><button class='buy'>Sold out</button></body></html>");
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+        DetailVerifier.setLimit(Duration.ofSeconds(DetailVerifier.DEFAULT_TTL_SECONDS),
+            DetailVerifier.DEFAULT_CONCURRENCY);
+    }
+
+    @Test
+    void keepsTheVerdictOfAnUnchangedDetailPage() {
+        assertEquals(Map.of("/flat/1", true, "/flat/2", false), verify());
+        assertEquals(Map.of("/flat/1", true, "/flat/2", false), verify());
+        assertEquals(2, shop.notModified());
+    }
+
+    @Test
+    void fetchesADetailPageAgainOnceItsVerdictIsGone() throws IOException {
+        new Website(shop.url("/flat/1"), "detail " + shop.url("/flat/1"));
+
+        assertEquals(Map.of("/flat/1", true, "/flat/2", false), verify());
+        assertEquals(1, shop.notModified());
+        assertEquals(3, shop.requests("/flat/1"));
+
+        DetailVerifier.setLimit(Duration.ZERO, 2);
+        assertEquals(Map.of("/flat/1", true, "/flat/2", false), verify());
+        assertEquals(1, shop.notModified());
+        assertEquals(4, shop.requests("/flat/1"));
+    }
+
+    private Map<String, Boolean> verify() {
+        return DetailVerifier.verify(DETAIL, shop.url("/list"), List.of("/flat/1", "/flat/2"));
+    }
+}
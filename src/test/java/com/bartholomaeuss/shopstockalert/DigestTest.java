@@ -0,0 +1,88 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DigestTest {
+    private static final Duration WINDOW = Duration.ofHours(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private final List<Notification> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    void sendsTheAlertsOfAWindowAsOneEmail() throws IOException, InterruptedException {
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            outbox.getDigest().add(WINDOW, new Notification("from@example.com", "to@example.com", "Shop A", "NEW: /a"));
+            outbox.getDigest().add(WINDOW, new Notification("from@example.com", "to@example.com", "Shop B", "NEW: /b"));
+            outbox.getDigest().add(WINDOW,
+                new Notification("from@example.com", "other@example.com", "Shop A", "NEW: /a"));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+            assertEquals(List.of(), delivered);
+            outbox.getDigest().flushAll();
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(2, delivered.size());
+        Notification digest = delivered.stream()
+            .filter(notification -> notification.toEmailAddress().equals("to@example.com"))
+            .findFirst().orElseThrow();
+        assertEquals("ShopStockAlert: 2 alerts", digest.subject());
+        assertEquals("Shop A\nNEW: /a\n\nShop B\nNEW: /b", digest.bodyText());
+    }
+
+    @Test
+    void sendsASingleAlertWithItsOwnSubject() throws IOException, InterruptedException {
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            outbox.getDigest().add(WINDOW, new Notification("from@example.com", "to@example.com", "Shop A", "NEW: /a"));
+            outbox.getDigest().flushAll();
+            outbox.getDigest().flushAll();
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(new Notification("from@example.com", "to@example.com", "Shop A", "Shop A\nNEW: /a")),
+            delivered);
+    }
+
+    @Test
+    void keepsPendingAlertsAcrossRestarts() throws IOException, InterruptedException {
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            outbox.getDigest().add(WINDOW, new Notification("from@example.com", "to@example.com", "Shop A", "NEW: /a"));
+        }
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            outbox.getDigest().flushAll();
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(new Notification("from@example.com", "to@example.com", "Shop A", "Shop A\nNEW: /a")),
+            delivered);
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            outbox.getDigest().flushAll();
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    void sendsOverdueAlertsOfAPreviousRunRightAway() throws IOException, InterruptedException {
+        Outbox crashed = Outbox.open(directory, delivered::add, 1, 10);
+        crashed.getDigest().add(Duration.ofMillis(1), new Notification("from@example.com", "to@example.com", "Shop A",
+            "NEW: /a"));
+        crashed.close();
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10)) {
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (delivered.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(1, delivered.size());
+    }
+}
@@ -0,0 +1,143 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.Message;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local HTTP server standing in for the Gmail API.
+ * <p>
+ * Every request is recorded with its method and path. The emails sent through {@code users.messages.send} are
+ * unzipped if necessary, decoded from their {@code raw} field and answered with a message id. The token endpoint
+ * {@code /token} answers every refresh with the access token {@code refreshed}.
+ * </p>
+ */
+final class GmailServer implements AutoCloseable {
+    private final HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<MimeMessage> messages = new CopyOnWriteArrayList<>();
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+
+    GmailServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Returns a Gmail API client sending to this server without any credential.
+     *
+     * @return The {@link Gmail} client.
+     */
+    Gmail gmail() {
+        return gmail(null);
+    }
+
+    /**
+     * Returns a Gmail API client sending to this server with the given credential.
+     *
+     * @param credential The initializer authorizing every request, e.g. a credential, or {@code null} for none.
+     * @return The {@link Gmail} client.
+     */
+    Gmail gmail(HttpRequestInitializer credential) {
+        return new Gmail.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), credential)
+            .setRootUrl(url("/"))
+            .setApplicationName("ShopStockAlertTest")
+            .build();
+    }
+
+    /**
+     * Returns the URL of the given path on this server.
+     *
+     * @param path The path, e.g. {@code /token}.
+     * @return The absolute URL.
+     */
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Returns the method and path of every request received so far, e.g. {@code POST /gmail/v1/users/me/messages/send}.
+     *
+     * @return The requests in the order they were received.
+     */
+    List<String> requests() {
+        return requests;
+    }
+
+    /**
+     * Returns the {@code Authorization} header of every email sent so far.
+     *
+     * @return The headers in the order the emails were received, {@code null} for an email sent without one.
+     */
+    List<String> authorizations() {
+        return authorizations;
+    }
+
+    /**
+     * Returns the emails sent so far.
+     *
+     * @return The decoded emails in the order they were received.
+     */
+    List<MimeMessage> messages() {
+        return messages;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath());
+            InputStream input = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                input = new GZIPInputStream(input);
+            }
+            String body = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            if (exchange.getRequestURI().getPath().equals("/token")) {
+                respond(exchange, "{\"access_token\":\"refreshed\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+                return;
+            }
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            Message message = GsonFactory.getDefaultInstance().fromString(body, Message.class);
+            try {
+                messages.add(new MimeMessage(Session.getInstance(new Properties()),
+                    new ByteArrayInputStream(Base64.decodeBase64(message.getRaw()))));
+            } catch (MessagingException | RuntimeException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            respond(exchange, "{\"id\":\"" + messages.size() + "\"}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+}
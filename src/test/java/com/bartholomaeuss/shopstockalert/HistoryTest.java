@@ -0,0 +1,59 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryTest {
+    private static final Instant START = Instant.parse("2026-07-01T08:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private final ManualClock clock = new ManualClock(START);
+
+    @Test
+    void recordsAndQueriesTheChecksOfATarget() throws IOException {
+        try (History history = History.open(directory, clock)) {
+            history.record("shop a", List.of("1", "2"));
+            clock.advance(Duration.ofHours(1));
+            history.record("shop a", List.of("1", "2"));
+            clock.advance(Duration.ofHours(1));
+            history.record("shop a", List.of("2", "3"));
+            history.record("shop b", List.of("1"));
+        }
+        try (History history = History.openReadOnly(directory)) {
+            History.Report report = history.query(key -> key.equals("shop a"), START, START.plus(Duration.ofDays(1)),
+                ZoneOffset.UTC);
+            assertEquals(4, report.scanned());
+            assertEquals(3, report.checks());
+            assertEquals(6, report.found());
+            assertEquals(1, report.appeared());
+            assertEquals(1, report.disappeared());
+        }
+    }
+
+    @Test
+    void allowsASingleWriterAtATime() throws IOException {
+        try (History history = History.open(directory, clock)) {
+            history.record("shop a", List.of("1"));
+            assertThrows(IOException.class, () -> History.open(directory, clock));
+            try (History reader = History.openReadOnly(directory)) {
+                assertEquals(1, reader.size());
+            }
+            history.record("shop a", List.of("2"));
+        }
+        try (History history = History.open(directory, clock)) {
+            assertEquals(2, history.size());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostRateLimiterTest {
+    private static final String SHOP = "http://shop.example/list";
+    private static final String OTHER = "http://other.example/list";
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    @BeforeEach
+    void useClock() {
+        HostRateLimiter.setClock(clock);
+        HostRateLimiter.setLimit(2, 3);
+    }
+
+    @AfterEach
+    void restoreClock() {
+        HostRateLimiter.setClock(null);
+        HostRateLimiter.setLimit(HostRateLimiter.DEFAULT_RATE, HostRateLimiter.DEFAULT_BURST);
+    }
+
+    @Test
+    void sendsABurstAndThenRefillsAtTheRate() throws IOException {
+        HostRateLimiter.acquire(SHOP);
+        assertTrue(HostRateLimiter.tryAcquire(SHOP));
+        assertTrue(HostRateLimiter.tryAcquire(SHOP));
+        assertFalse(HostRateLimiter.tryAcquire(SHOP));
+
+        clock.advance(Duration.ofMillis(499));
+        assertFalse(HostRateLimiter.tryAcquire(SHOP));
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(HostRateLimiter.tryAcquire(SHOP));
+        assertFalse(HostRateLimiter.tryAcquire(SHOP));
+    }
+
+    @Test
+    void refillsNoMoreThanTheBurst() {
+        assertEquals(3, take(SHOP, 10));
+        clock.advance(Duration.ofHours(1));
+        assertEquals(3, take(SHOP, 10));
+    }
+
+    @Test
+    void keepsABucketPerHost() {
+        assertEquals(3, take(SHOP, 10));
+        assertEquals(3, take(OTHER, 10));
+    }
+
+    @Test
+    void blocksAHostUntilItsRetryAfterHasPassed() {
+        HostRateLimiter.block(SHOP, 429, "30");
+        assertFalse(HostRateLimiter.tryAcquire(SHOP));
+        assertThrows(RetryAfterException.class, () -> HostRateLimiter.acquire(SHOP));
+        assertTrue(HostRateLimiter.tryAcquire(OTHER));
+
+        clock.advance(Duration.ofSeconds(30));
+        assertTrue(HostRateLimiter.tryAcquire(SHOP));
+    }
+
+    @Test
+    void defaultBurstCoversTheParallelFetchesOfACheck() {
+        HostRateLimiter.setLimit(HostRateLimiter.DEFAULT_RATE, HostRateLimiter.DEFAULT_BURST);
+        int parallel = Pagination.DEFAULT_CONCURRENCY + DetailVerifier.DEFAULT_CONCURRENCY;
+
+        assertEquals(parallel, take(SHOP, parallel + 1));
+        clock.advance(Duration.ofSeconds((long) Math.ceil(parallel / HostRateLimiter.DEFAULT_RATE)));
+        assertEquals(parallel, take(SHOP, parallel + 1));
+    }
+
+    private static int take(String url, int attempts) {
+        int taken = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (HostRateLimiter.tryAcquire(url)) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
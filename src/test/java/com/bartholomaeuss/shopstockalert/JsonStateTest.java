@@ -0,0 +1,125 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonStateTest {
+    private static final Rule RULE = Rule.builder("shop", "article", List.of("deal"))
+        .json(new JsonState("script[type=application/json]", "url", null, "name", "sku", "price"))
+        .build();
+    private static final String ARTICLES = "<article><h2>Deal: red shoes</h2><a href='/p/1'>more</a></article>"
+        + "<article><h2>Boots</h2><a href='/p/2'>more</a></article>"
+        + "<article><h2>Deal: lamp</h2><a href='/p/3'>more</a></article>";
+    private static final String STATE = "{\"props\":{\"products\":["
+        + "{\"sku\":\"1\",\"name\":\"Deal: red shoes\",\"price\":\"19,99 €\",\"url\":\"/p/1\"},"
+        + "{\"sku\":\"2\",\"name\":\"Boots\",\"url\":\"/p/2\"},"
+        + "{\"url\":\"/p/3\",\"images\":[{\"url\":\"/img/3.png\"}],\"name\":\"Deal: lamp\",\"sku\":\"3\"}]}}";
+
+    private ShopServer shop;
+
+    @BeforeAll
+    static void disableLimits() {
+        HostRateLimiter.setLimit(0, 1);
+    }
+
+    @BeforeEach
+    void startShop() throws IOException {
+        shop = new ShopServer();
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+    }
+
+    @Test
+    void readsTheSameProductsAsTheDom() {
+        shop.page("/list", "<html><body>" + ARTICLES
+            + "<script type='application/json'>" + STATE + "</script></body></html>");
+
+        RuleChecker dom = new RuleChecker(RULE, target("dom"));
+        RuleChecker json = new RuleChecker(RULE, target("json"));
+
+        assertEquals(List.of("/p/1", "/p/3"), dom.getHrefs());
+        assertEquals(dom.getHrefs(), json.getHrefs());
+        assertEquals(List.of("Deal: red shoes", "Deal: lamp"), json.getItems().stream().map(Item::title).toList());
+        assertEquals(List.of("1", "3"), json.getItems().stream().map(Item::id).toList());
+        assertEquals(1999, json.getItems().getFirst().price());
+    }
+
+    @Test
+    void readsAStateAssignedByJavaScript() {
+        Document page = Jsoup.parse("<script type='application/json'>window.__STATE__ = " + STATE + ";</script>");
+
+        Rule.Result result = RULE.filterJson(page.select("script"));
+
+        assertEquals(List.of("/p/1", "/p/3"), result.getHrefs());
+    }
+
+    @Test
+    void skipsAScriptHoldingMalformedJson() {
+        Document page = Jsoup.parse("<script type='application/json'>{\"products\":[{\"url\":</script>"
+            + "<script type='application/json'>" + STATE + "</script>");
+
+        Rule.Result result = RULE.filterJson(page.select("script"));
+
+        assertEquals(List.of("/p/1", "/p/3"), result.getHrefs());
+    }
+
+    @Test
+    void fallsBackToTheDomIfThePageHasNoState() {
+        shop.page("/list", "<html><body>" + ARTICLES + "</body></html>");
+
+        RuleChecker dom = new RuleChecker(RULE, target("dom"));
+        RuleChecker json = new RuleChecker(RULE, target("json"));
+
+        assertEquals(List.of("/p/1", "/p/3"), json.getHrefs());
+        assertEquals(dom.getItems(), json.getItems());
+    }
+
+    @Test
+    void fallsBackToTheDomIfTheStateIsMalformed() {
+        shop.page("/list", "<html><body>" + ARTICLES
+            + "<script type='application/json'>{\"props\":{\"products\":[{\"url\":</script></body></html>");
+
+        RuleChecker json = new RuleChecker(RULE, target("json"));
+
+        assertEquals(List.of("/p/1", "/p/3"), json.getHrefs());
+    }
+
+    @Test
+    void readsTheStateRatherThanTheDomIfBothArePresent() {
+        Document page = Jsoup.parse("<article><h2>Deal: chair</h2><a href='/p/9'>more</a></article>"
+            + "<script type='application/json'>" + STATE + "</script>");
+
+        List<Rule.Result> results = RULE.filterJson(page.select("script"), page.select("article"), null);
+
+        assertEquals(List.of("/p/1", "/p/3"), results.getFirst().getHrefs());
+    }
+
+    @Test
+    void findsNothingInAMalformedStateWithoutContainers() {
+        Document page = Jsoup.parse("<script type='application/json'>{\"products\":[{\"url\":</script>");
+
+        Rule.Result result = RULE.filterJson(page.select("script"));
+
+        assertEquals(List.of(), result.getHrefs());
+        assertEquals(1, result.getContainers().size());
+    }
+
+    private Target target(String extraction) {
+        return new Target("shop", shop.url("/list"), Duration.ofMinutes(5), "from@example.com",
+            List.of(extraction + "@example.com"), Map.of("extraction", extraction));
+    }
+}
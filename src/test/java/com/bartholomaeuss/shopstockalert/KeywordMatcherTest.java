@@ -0,0 +1,150 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeywordMatcherTest {
+    private static final String[] TOKENS = {
+        "a", "b", "A", "B", "ab", " ", "  ", "\n", "\t", "&nbsp;", "&#8203;", "&shy;",
+        "<div>", "</div>", "<span>", "</span>", "<p>", "</p>", "<br>", "<pre>", "</pre>", "<li>", "</li>",
+        "<b>", "</b>", "<h2>", "</h2>", "<!-- a b -->", "<textarea>", "</textarea>", "<title>", "</title>"
+    };
+    private static final String KEYWORD_ALPHABET = "ab  ";
+
+    @Test
+    void matchesTheTextOfAnElementAcrossItsTextNodes() {
+        Element body = Jsoup.parseBodyFragment("<h2>Flat in <b>RATH</b>ingen</h2>").body();
+        assertTrue(new KeywordMatcher(List.of("in rath"), List.of()).matches(body));
+        assertTrue(new KeywordMatcher(List.of("rathingen"), List.of()).matches(body));
+        assertFalse(new KeywordMatcher(List.of("flatin"), List.of()).matches(body));
+    }
+
+    @Test
+    void separatesBlockElementsAndCollapsesWhitespace() {
+        Element body = Jsoup.parseBodyFragment("<div>Sold</div><div>\n  out</div>").body();
+        assertTrue(new KeywordMatcher(List.of("Sold  Out"), List.of()).matches(body));
+        assertFalse(new KeywordMatcher(List.of("soldout"), List.of()).matches(body));
+    }
+
+    @Test
+    void rejectsTextContainingAnExcludedKeyword() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("deal"), List.of("sold out"));
+        assertTrue(matcher.matches(Jsoup.parseBodyFragment("<p>Deal of the day</p>").body()));
+        assertFalse(matcher.matches(Jsoup.parseBodyFragment("<p>Deal of the day</p><p>Sold out</p>").body()));
+        assertFalse(new KeywordMatcher(List.of("deal"), List.of())
+            .matches(Jsoup.parseBodyFragment("<p>Offer</p>").body()));
+    }
+
+    @Test
+    void matchesTheJoinedTextOfSeveralElements() {
+        Element body = Jsoup.parseBodyFragment("<h2>Flat</h2><p>Rath</p><h2>Sold out</h2>").body();
+        List<Element> headings = body.select("h2");
+        assertTrue(new KeywordMatcher(List.of("flat sold"), List.of()).matches(headings));
+        assertFalse(new KeywordMatcher(List.of("rath"), List.of()).matches(headings));
+        assertFalse(new KeywordMatcher(List.of("flat"), List.of("sold out")).matches(headings));
+    }
+
+    @Test
+    void doesNotInsertASpaceAfterTheLastBlockOfAnInlineElement() {
+        Element body = Jsoup.parseBodyFragment("<span><div>ab</div></span>a").body();
+        assertEquals("aba", body.text());
+        assertFalse(new KeywordMatcher(List.of("ab a"), List.of()).matches(body));
+        assertTrue(new KeywordMatcher(List.of("aba"), List.of()).matches(body));
+    }
+
+    @Test
+    void keepsTheWhitespaceOfPreformattedText() {
+        Element body = Jsoup.parseBodyFragment("<pre>a\n\nb</pre> <span> c</span>").body();
+        assertFalse(new KeywordMatcher(List.of("a b"), List.of()).matches(body));
+        assertTrue(new KeywordMatcher(List.of("b c"), List.of()).matches(body));
+    }
+
+    @Test
+    void matchesLikeTheTextOfAnElement() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20_000; run++) {
+            Element body = Jsoup.parseBodyFragment(html(random)).body();
+            List<Element> elements = new ArrayList<>(body.getAllElements());
+            Element element = elements.get(random.nextInt(elements.size()));
+            String text = element.text().toLowerCase(Locale.ROOT);
+            String included = keyword(random);
+            String excluded = keyword(random);
+            String message = element.outerHtml() + " with " + included + " but not " + excluded;
+            assertEquals(text.contains(included), new KeywordMatcher(List.of(included), List.of()).matches(element),
+                message);
+            assertEquals(text.contains(included) && !text.contains(excluded),
+                new KeywordMatcher(List.of(included), List.of(excluded)).matches(element), message);
+        }
+    }
+
+    @Test
+    void matchesLikeTheJoinedTextOfSeveralElements() {
+        Random random = new Random(7);
+        for (int run = 0; run < 10_000; run++) {
+            Element body = Jsoup.parseBodyFragment(html(random)).body();
+            Elements elements = new Elements();
+            for (Element element : body.getAllElements()) {
+                if (random.nextBoolean()) {
+                    elements.add(element);
+                }
+            }
+            String text = elements.text().toLowerCase(Locale.ROOT);
+            List<String> keywords = List.of(keyword(random), keyword(random), keyword(random));
+            BitSet expected = new BitSet();
+            for (int id = 0; id < keywords.size(); id++) {
+                if (text.contains(keywords.get(id))) {
+                    expected.set(id);
+                }
+            }
+            String message = body.outerHtml() + " with " + keywords;
+            KeywordMatcher matcher = new KeywordMatcher(keywords, List.of());
+            assertEquals(expected, matcher.find(elements), message);
+            assertEquals(!expected.isEmpty(), matcher.matches(elements), message);
+        }
+    }
+
+    @Test
+    void matchesPlainTextWithCollapsedWhitespace() {
+        KeywordMatcher matcher = new KeywordMatcher(List.of("Sold  Out"), List.of("pre-order"));
+        assertTrue(matcher.matches("Currently\n sold out"));
+        assertFalse(matcher.matches("Sold out, pre-order now"));
+        assertFalse(matcher.matches("soldout"));
+    }
+
+    private static String html(Random random) {
+        StringBuilder html = new StringBuilder();
+        int length = 1 + random.nextInt(16);
+        for (int i = 0; i < length; i++) {
+            html.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return html.toString();
+    }
+
+    /**
+     * Returns a random keyword in the form it is matched in, i.e. lower case with single spaces.
+     */
+    private static String keyword(Random random) {
+        String keyword;
+        do {
+            StringBuilder raw = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                raw.append(KEYWORD_ALPHABET.charAt(random.nextInt(KEYWORD_ALPHABET.length())));
+            }
+            keyword = KeywordMatcher.normalize(raw.toString());
+        } while (keyword.isEmpty());
+        return keyword;
+    }
+}
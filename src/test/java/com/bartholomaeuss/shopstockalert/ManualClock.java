@@ -0,0 +1,42 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when a test advances it.
+ */
+final class ManualClock extends Clock {
+    private Instant now;
+
+    ManualClock(Instant now) {
+        this.now = now;
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param duration The time to be added.
+     */
+    void advance(Duration duration) {
+        now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return now;
+    }
+}
@@ -0,0 +1,156 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxTest {
+    private static final Duration BACKOFF = Duration.ofMillis(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Notification NOTIFICATION =
+        new Notification("from@example.com", "to@example.com", "Shop A", "NEW: /a");
+
+    @TempDir
+    Path directory;
+
+    private final List<Notification> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    void backoffDoublesUpToItsMaximum() {
+        assertEquals(Outbox.INITIAL_BACKOFF, Outbox.backoff(Outbox.INITIAL_BACKOFF, 1));
+        assertEquals(Outbox.INITIAL_BACKOFF.multipliedBy(2), Outbox.backoff(Outbox.INITIAL_BACKOFF, 2));
+        assertEquals(Outbox.INITIAL_BACKOFF.multipliedBy(8), Outbox.backoff(Outbox.INITIAL_BACKOFF, 4));
+        assertEquals(Outbox.MAX_BACKOFF, Outbox.backoff(Outbox.INITIAL_BACKOFF, 10));
+        assertEquals(Outbox.MAX_BACKOFF, Outbox.backoff(Outbox.INITIAL_BACKOFF, 100));
+    }
+
+    @Test
+    void sendsNotificationsAndRemovesTheirFiles() throws IOException, InterruptedException {
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 2, 10, BACKOFF)) {
+            outbox.enqueue(NOTIFICATION);
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(NOTIFICATION), delivered);
+        assertEquals(0, messages());
+    }
+
+    @Test
+    void retriesAFailedDeliveryUntilItSucceeds() throws IOException, InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        try (Outbox outbox = Outbox.open(directory, notification -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("Connection refused");
+            }
+            delivered.add(notification);
+        }, 1, 10, BACKOFF)) {
+            outbox.enqueue(NOTIFICATION);
+            await(() -> !delivered.isEmpty());
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(List.of(NOTIFICATION), delivered);
+        assertEquals(0, messages());
+        assertTrue(Files.notExists(directory.resolve("dead-letter.log")));
+    }
+
+    @Test
+    void movesANotificationToTheDeadLetterFileAfterTooManyAttempts() throws IOException, InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        Path deadLetter = directory.resolve("dead-letter.log");
+        try (Outbox outbox = Outbox.open(directory, notification -> {
+            attempts.incrementAndGet();
+            throw new IOException("Mailbox unavailable");
+        }, 1, 10, BACKOFF)) {
+            outbox.enqueue(NOTIFICATION);
+            await(() -> Files.exists(deadLetter) && messages() == 0);
+        }
+        assertEquals(Outbox.MAX_ATTEMPTS, attempts.get());
+        List<String> lines = Files.readAllLines(deadLetter);
+        assertEquals(1, lines.size());
+        String[] fields = lines.getFirst().split("\t");
+        assertEquals(List.of("from@example.com", "to@example.com", "Shop A", "NEW: /a"), List.of(fields).subList(1, 5));
+        assertTrue(fields[5].contains("Mailbox unavailable"));
+    }
+
+    @Test
+    void sendsNotificationsLeftOverFromAPreviousRun() throws IOException, InterruptedException {
+        Outbox crashed = Outbox.open(directory, notification -> {
+            throw new IOException("Connection refused");
+        }, 1, 10, Duration.ofHours(1));
+        crashed.enqueue(NOTIFICATION);
+        crashed.close();
+        assertEquals(1, messages());
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10, BACKOFF)) {
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(NOTIFICATION), delivered);
+        assertEquals(0, messages());
+    }
+
+    @Test
+    void refusesADirectoryThatIsUsedByAnotherOutbox() throws IOException, InterruptedException {
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10, BACKOFF)) {
+            outbox.enqueue(NOTIFICATION);
+            assertThrows(IOException.class, () -> Outbox.open(directory, delivered::add, 1, 10, BACKOFF));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        try (Outbox outbox = Outbox.open(directory, delivered::add, 1, 10, BACKOFF)) {
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(NOTIFICATION), delivered);
+    }
+
+    @Test
+    void treatsANotificationWhoseFileCannotBeRemovedAsSent() throws IOException, InterruptedException {
+        Notification second = new Notification("from@example.com", "to@example.com", "Shop B", "NEW: /b");
+        try (Outbox outbox = Outbox.open(directory, notification -> {
+            if (delivered.isEmpty()) {
+                // replace the file of the notification by a directory that cannot be removed
+                try (Stream<Path> files = Files.list(directory)) {
+                    Path file = files.filter(path -> path.toString().endsWith(".msg")).findFirst().orElseThrow();
+                    Files.delete(file);
+                    Files.createDirectories(file.resolve("blocked"));
+                }
+            }
+            delivered.add(notification);
+        }, 1, 1, Duration.ofHours(1))) {
+            outbox.enqueue(NOTIFICATION);
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+            // a retry would hold the only slot of the outbox for an hour
+            assertTimeoutPreemptively(TIMEOUT, () -> outbox.enqueue(second));
+            assertTrue(outbox.awaitIdle(TIMEOUT));
+        }
+        assertEquals(List.of(NOTIFICATION, second), delivered);
+        assertTrue(Files.notExists(directory.resolve("dead-letter.log")));
+    }
+
+    private long messages() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".msg")).count();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaginationTest {
+    private static final Rule RULE = Rule.builder("shop", "li.item", List.of("flat"))
+        .pagination("nav a")
+        .build();
+
+    private ShopServer shop;
+
+    @BeforeAll
+    static void disableLimits() {
+        FetchCache.setLimit(Duration.ZERO, 0);
+        HostRateLimiter.setLimit(0, 1);
+    }
+
+    @BeforeEach
+    void startShop() throws IOException {
+        shop = new ShopServer();
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+    }
+
+    @Test
+    void generatesTheFurtherPagesFromATemplate() {
+        Pagination pagination = new Pagination(3, "https://shop.example/list?page={page}", 2);
+        assertEquals(List.of("https://shop.example/list?page=2", "https://shop.example/list?page=3"),
+            pagination.getTemplateUrls());
+        assertFalse(pagination.isDiscovering());
+        assertTrue(new Pagination(3, null, 2).isDiscovering());
+        assertFalse(Pagination.NONE.isDiscovering());
+        assertThrows(IllegalArgumentException.class, () -> new Pagination(3, "https://shop.example/list", 2));
+        assertThrows(IllegalArgumentException.class, () -> new Pagination(0, null, 2));
+    }
+
+    @Test
+    void extractsDistinctAbsoluteHttpLinks() {
+        String html = "<nav><a href='?page=2'>2</a><a href='?page=2#top'>next</a><a href='/list?page=3'>3</a>"
+            + "<a href='mailto:shop@example.com'>mail</a><a href='javascript:void(0)'>more</a></nav>";
+        assertEquals(List.of("https://shop.example/list?page=2", "https://shop.example/list?page=3"),
+            Pagination.links(Jsoup.parse(html, "https://shop.example/list"), RULE.getPagination()));
+    }
+
+    @Test
+    void mergesTheItemsOfDiscoveredPages() {
+        shop.page("/list", page(List.of("/flat/1", "/flat/2"), "/list?page=2", "/list?page=3"));
+        shop.page("/list?page=2", page(List.of("/flat/2", "/flat/3"), "/list", "/list?page=3"));
+        shop.page("/list?page=3", page(List.of("/flat/4"), "/list?page=2", "/list?page=4"));
+        shop.page("/list?page=4", page(List.of("/flat/5")));
+
+        RuleChecker checker = new RuleChecker(RULE, target(Map.of("pages", "3")));
+
+        assertEquals(List.of("/flat/1", "/flat/2", "/flat/3", "/flat/4"), checker.getHrefs());
+        assertFalse(checker.isPartial());
+        assertEquals(0, shop.requests("/list?page=4"));
+    }
+
+    @Test
+    void fetchesTheFurtherPagesOfATemplate() {
+        shop.page("/list", page(List.of("/flat/1")));
+        shop.page("/list?page=2", page(List.of("/flat/2")));
+        shop.page("/list?page=3", page(List.of("/flat/3")));
+
+        RuleChecker checker = new RuleChecker(RULE,
+            target(Map.of("pages", "3", "page-url", shop.url("/list?page={page}"))));
+
+        assertEquals(List.of("/flat/1", "/flat/2", "/flat/3"), checker.getHrefs());
+    }
+
+    @Test
+    void skipsAFurtherPageThatCannotBeFetched() {
+        shop.page("/list", page(List.of("/flat/1")));
+        shop.page("/list?page=3", page(List.of("/flat/3")));
+
+        RuleChecker checker = new RuleChecker(RULE,
+            target(Map.of("pages", "3", "page-url", shop.url("/list?page={page}"))));
+
+        assertEquals(List.of("/flat/1", "/flat/3"), checker.getHrefs());
+        assertTrue(checker.isPartial());
+    }
+
+    @Test
+    void followsTheRememberedLinksOfAnUnmodifiedPage() {
+        shop.page("/list", page(List.of("/flat/1"), "/list?page=2"));
+        shop.page("/list?page=2", page(List.of("/flat/2")));
+        Target target = target(Map.of("pages", "2"));
+        assertEquals(List.of("/flat/1", "/flat/2"), new RuleChecker(RULE, target).getHrefs());
+
+        shop.page("/list?page=2", page(List.of("/flat/2", "/flat/3")));
+        RuleChecker checker = new RuleChecker(RULE, target);
+
+        assertEquals(1, shop.notModified());
+        assertEquals(2, shop.requests("/list?page=2"));
+        assertEquals(List.of("/flat/2", "/flat/3"), checker.getHrefs());
+        assertFalse(checker.isUnchanged());
+        assertTrue(checker.isPartial());
+
+        RuleChecker unchanged = new RuleChecker(RULE, target);
+        assertTrue(unchanged.isUnchanged());
+        assertEquals(List.of(), unchanged.getHrefs());
+    }
+
+    private Target target(Map<String, String> options) {
+        return new Target("shop", shop.url("/list"), Duration.ofMinutes(5), "from@example.com",
+            List.of("to@example.com"), options);
+    }
+
+    private String page(List<String> items, String... links) {
+        StringBuilder html = new StringBuilder("<html><body><ul>");
+        for (String item : items) {
+            html.append("<li class='item'><a href='").append(item).append("'>Flat ").append(item).append("</a></li>");
+        }
+        html.append("</ul><nav>");
+        for (String link : links) {
+            html.append("<a href='").append(shop.url(link)).append("'>page</a>");
+        }
+        return html.append("</nav></body></html>").toString();
+    }
+}
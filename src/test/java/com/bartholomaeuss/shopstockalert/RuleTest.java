@@ -0,0 +1,80 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RuleTest {
+    private static final Rule FLATS = Rule.builder("shop", "li.item", List.of("flat")).build();
+
+    @Test
+    void matchesWbwContainersCarryingBothClassesInAnyOrder() {
+        Document page = Jsoup.parse("<div class='section-wohnung container'><h2>Rath</h2><a href='/1'>1</a></div>"
+            + "<div class='container section-wohnung'><h2>Unterrath</h2><a href='/2'>2</a></div>"
+            + "<div class='section-wohnung container new'><h2>Rath</h2><p>Bilk</p><a href='/3'>3</a></div>"
+            + "<div class='section-wohnung'><h2>Rath</h2><a href='/4'>4</a></div>");
+
+        // before: getElementsByClass only matched a class attribute of exactly "section-wohnung container"
+        assertEquals(1, page.getElementsByClass("section-wohnung container").size());
+        // after: the selector matches every element carrying both classes
+        Rule.Result result = WBWChecker.RULE.evaluate(page);
+        assertEquals(3, result.getContainers().size());
+        assertEquals(List.of("/1", "/2", "/3"), result.getHrefs());
+    }
+
+    @Test
+    void filtersWbwContainersByTheTextOfAllTheirHeadings() {
+        Document page = Jsoup.parse("<div class='section-wohnung container'><h2>Bilk</h2><p>Rath</p></div>"
+            + "<div class='section-wohnung container'><h2>Bilk</h2><h2>Rath</h2><a href='/2'>2</a></div>");
+        Element first = page.getElementsByClass("section-wohnung container").first();
+
+        // before and after: only the text of the h2 headings is filtered
+        assertEquals("bilk", first.getElementsByTag("h2").text().toLowerCase(Locale.ROOT));
+        assertEquals(List.of("/2"), WBWChecker.RULE.evaluate(page).getHrefs());
+    }
+
+    @Test
+    void doesNotReportAContainerNestedInAnotherOne() {
+        Document page = Jsoup.parse("<div hidden><article><a href='/outer'>Bundle</a>"
+            + "<article><a href='/inner'>Deal</a></article></article></div>");
+
+        // before: the nested article was reported on its own
+        assertEquals(2, page.select("div[hidden]").select("article").size());
+        // after: the traversal skips the subtree of a container, whose text still includes the nested one
+        Rule.Result result = ZolondaChecker.RULE.evaluate(page);
+        assertEquals(1, result.getContainers().size());
+        assertEquals(List.of("/outer"), result.getHrefs());
+    }
+
+    @Test
+    void mergesThePagesOfAListingWithoutDuplicates() {
+        Rule.Result first = FLATS.evaluate(Jsoup.parse(items("/flat/1", "/flat/2")));
+        Rule.Result second = FLATS.evaluate(Jsoup.parse(items("/flat/2", "/flat/3")));
+        Rule.Result third = FLATS.evaluate(Jsoup.parse(items("/flat/3")));
+
+        Rule.Result merged = Rule.Result.merge(List.of(first, second, third));
+
+        assertEquals(5, merged.getContainers().size());
+        assertEquals(List.of("/flat/1", "/flat/2", "/flat/3"), merged.getHrefs());
+        assertEquals(List.of("/flat/1", "/flat/2", "/flat/3"), merged.getItems().stream().map(Item::href).toList());
+        assertEquals(3, merged.getMatches().size());
+        assertSame(first.getMatches().get(1), merged.getMatches().get(1));
+        assertSame(second.getMatches().get(1), merged.getMatches().get(2));
+        assertEquals(merged.getMatches(), merged.retain(href -> true).getMatches());
+    }
+
+    private static String items(String... hrefs) {
+        StringBuilder html = new StringBuilder("<ul>");
+        for (String href : hrefs) {
+            html.append("<li class='item'><a href='").append(href).append("'>Flat ").append(href).append("</a></li>");
+        }
+        return html.append("</ul>").toString();
+    }
+}
@@ -0,0 +1,167 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeenStoreTest {
+    private static final Duration TTL = Duration.ofDays(30);
+
+    @TempDir
+    Path directory;
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2026-01-01T00:00:00Z"));
+
+    @Test
+    void notifiesEveryLinkOncePerTarget() throws IOException {
+        try (SeenStore store = SeenStore.open(directory.resolve("seen.log"), TTL, clock)) {
+            assertEquals(List.of("/a", "/b"), store.filterNew("t1", List.of("/a", "/b")));
+            assertEquals(List.of("/c"), store.filterNew("t1", List.of("/a", "/b", "/c")));
+            assertEquals(List.of("/a"), store.filterNew("t2", List.of("/a")));
+            assertEquals(4, store.size());
+        }
+    }
+
+    @Test
+    void remembersLinksAcrossRestarts() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            store.filterNew("t1", List.of("/a", "/b"));
+        }
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(2, store.size());
+            assertEquals(List.of("/c"), store.filterNew("t1", List.of("/a", "/c")));
+        }
+    }
+
+    @Test
+    void notifiesLinkAgainOnceTheTtlHasExpired() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            store.filterNew("t1", List.of("/a"));
+            clock.advance(TTL.minusMinutes(1));
+            assertEquals(List.of(), store.filterNew("t1", List.of("/a")));
+            clock.advance(Duration.ofMinutes(2));
+            assertEquals(List.of("/a"), store.filterNew("t1", List.of("/a")));
+        }
+        clock.advance(TTL.plusMinutes(1));
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void compactionDropsExpiredEntriesFromTheLog() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            store.filterNew("t1", List.of("/a", "/b", "/c"));
+            clock.advance(TTL.plusMinutes(1));
+            store.filterNew("t1", List.of("/d"));
+            assertEquals(4, Files.readAllLines(log).size());
+            store.compact();
+            assertEquals(1, store.size());
+            assertEquals(1, Files.readAllLines(log).size());
+            assertEquals(List.of(), store.filterNew("t1", List.of("/d")));
+        }
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void openingCompactsALogOfMostlyExpiredEntries() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            store.filterNew("t1", List.of("/a", "/b", "/c"));
+        }
+        clock.advance(TTL.plusMinutes(1));
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            store.filterNew("t1", List.of("/d"));
+        }
+        assertEquals(List.of("/d"), Files.readAllLines(log).stream().map(line -> line.split("\t")[2]).toList());
+    }
+
+    @Test
+    void skipsMalformedLinesAndSanitizesFields() throws IOException {
+        Path log = directory.resolve("seen.log");
+        Files.writeString(log, "garbage\nnot-a-number\tt1\t/x\n");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(0, store.size());
+            store.filterNew("t\t1", List.of("/a\nb"));
+        }
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(List.of(), store.filterNew("t 1", List.of("/a b")));
+        }
+    }
+
+    @Test
+    void findsNewLinksWithoutRecordingThem() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(List.of("/a", "/b"), store.findNew("t1", List.of("/a", "/b", "/a")));
+            assertEquals(List.of("/a", "/b"), store.findNew("t1", List.of("/a", "/b")));
+            assertEquals(0, store.size());
+            store.record("t1", List.of("/a"));
+            assertEquals(List.of("/b"), store.findNew("t1", List.of("/a", "/b")));
+        }
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(List.of("/b"), store.findNew("t1", List.of("/a", "/b")));
+        }
+    }
+
+    @Test
+    void compactionKeepsTheLinksRecordedByAnotherProcess() throws IOException {
+        Path log = directory.resolve("seen.log");
+        try (SeenStore first = SeenStore.open(log, TTL, clock);
+             SeenStore second = SeenStore.open(log, TTL, clock)) {
+            first.record("t1", List.of("/a"));
+            second.record("t1", List.of("/b"));
+            first.compact();
+            second.record("t1", List.of("/c"));
+            assertEquals(List.of(), first.findNew("t1", List.of("/a", "/b")));
+        }
+        try (SeenStore store = SeenStore.open(log, TTL, clock)) {
+            assertEquals(3, store.size());
+            assertEquals(List.of("/d"), store.filterNew("t1", List.of("/a", "/b", "/c", "/d")));
+        }
+    }
+
+    @Test
+    void sharesTheNotifiedLinksOfATargetBetweenStores() throws IOException {
+        Path shared = directory.resolve("seen");
+        try (SeenStore first = SeenStore.openShared(shared, TTL, clock);
+             SeenStore second = SeenStore.openShared(shared, TTL, clock)) {
+            assertEquals(List.of("/a", "/b"), first.filterNew("t1", List.of("/a", "/b")));
+            assertEquals(List.of("/c"), second.filterNew("t1", List.of("/a", "/b", "/c")));
+            assertEquals(List.of("/a"), second.filterNew("t2", List.of("/a")));
+            assertEquals(List.of(), first.filterNew("t1", List.of("/c")));
+            assertEquals(0, first.size());
+        }
+    }
+
+    @Test
+    void compactsTheSharedLogOfATargetWhenItIsRead() throws IOException {
+        Path shared = directory.resolve("seen");
+        try (SeenStore store = SeenStore.openShared(shared, TTL, clock)) {
+            store.filterNew("t1", List.of("/a", "/b", "/c"));
+            clock.advance(TTL.plusMinutes(1));
+            assertEquals(List.of("/d"), store.filterNew("t1", List.of("/d")));
+            store.compact();
+        }
+        try (Stream<Path> files = Files.list(shared)) {
+            List<Path> logs = files.toList();
+            assertEquals(1, logs.size());
+            assertEquals(List.of("/d"), Files.readAllLines(logs.getFirst()).stream()
+                .map(line -> line.split("\t")[2]).toList());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.gmail.model.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SendMessageTest {
+    private GmailServer gmail;
+
+    @BeforeEach
+    void startGmail() throws IOException {
+        gmail = new GmailServer();
+        SendMessage.useService(gmail.gmail());
+    }
+
+    @AfterEach
+    void stopGmail() {
+        gmail.close();
+    }
+
+    @Test
+    void sendsTheEncodedEmailThroughTheInstalledClient()
+        throws MessagingException, IOException, GeneralSecurityException {
+        Message sent = SendMessage.sendEmail("from@example.com", "to@example.com", "Shop A", "NEW: /a");
+
+        assertEquals("1", sent.getId());
+        assertEquals(List.of("POST /gmail/v1/users/me/messages/send"), gmail.requests());
+        MimeMessage email = gmail.messages().getFirst();
+        assertArrayEquals(new InternetAddress[]{new InternetAddress("from@example.com")}, email.getFrom());
+        assertArrayEquals(new InternetAddress[]{new InternetAddress("to@example.com")},
+            email.getRecipients(jakarta.mail.Message.RecipientType.TO));
+        assertEquals("Shop A", email.getSubject());
+        assertEquals("NEW: /a", email.getContent());
+    }
+
+    @Test
+    void reusesTheClientForFurtherSends() throws MessagingException, IOException, GeneralSecurityException {
+        SendMessage.sendEmail("from@example.com", "to@example.com", "Shop A", "NEW: /a");
+        SendMessage.sendEmail("from@example.com", "other@example.com", "Shop B", "NEW: /b");
+
+        assertEquals(2, gmail.messages().size());
+        assertEquals("Shop B", gmail.messages().get(1).getSubject());
+    }
+
+    @Test
+    void refreshesTheCredentialOfTheClientBeforeItExpires()
+        throws MessagingException, IOException, GeneralSecurityException {
+        Credential credential = new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+            .setTransport(new NetHttpTransport())
+            .setJsonFactory(GsonFactory.getDefaultInstance())
+            .setTokenServerEncodedUrl(gmail.url("/token"))
+            .setClientAuthentication(new ClientParametersAuthentication("client", "secret"))
+            .build()
+            .setAccessToken("expiring")
+            .setRefreshToken("refresh")
+            .setExpiresInSeconds(120L);
+        SendMessage.useService(gmail.gmail(credential));
+
+        SendMessage.sendEmail("from@example.com", "to@example.com", "Shop A", "NEW: /a");
+
+        assertEquals(List.of("POST /token", "POST /gmail/v1/users/me/messages/send"), gmail.requests());
+        assertEquals(List.of("Bearer refreshed"), gmail.authorizations());
+    }
+}
@@ -0,0 +1,109 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardCoordinatorTest {
+    private static final List<String> LISTINGS = IntStream.range(0, 200).mapToObj(i -> "shop /list/" + i).toList();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void splitsTheListingsBetweenTheMembers() throws IOException {
+        try (ShardCoordinator a = ShardCoordinator.join(directory, "a");
+             ShardCoordinator b = ShardCoordinator.join(directory, "b")) {
+            assertTrue(a.refresh());
+            assertFalse(b.refresh());
+            assertEquals(List.of("a", "b"), a.getMembers());
+            assertEquals(List.of("a", "b"), b.getMembers());
+            long ownedByA = LISTINGS.stream().filter(a::owns).count();
+            assertTrue(ownedByA > 0 && ownedByA < LISTINGS.size(), "a owns " + ownedByA);
+            for (String listing : LISTINGS) {
+                assertNotEquals(a.owns(listing), b.owns(listing), listing);
+            }
+        }
+    }
+
+    @Test
+    void handsTheListingsOfALeavingMemberOver() throws IOException {
+        try (ShardCoordinator a = ShardCoordinator.join(directory, "a")) {
+            List<String> ownedByA;
+            try (ShardCoordinator b = ShardCoordinator.join(directory, "b")) {
+                a.refresh();
+                ownedByA = LISTINGS.stream().filter(a::owns).toList();
+                try (ShardCoordinator c = ShardCoordinator.join(directory, "c")) {
+                    a.refresh();
+                    assertEquals(List.of("a", "b", "c"), a.getMembers());
+                    assertTrue(LISTINGS.stream().filter(a::owns).allMatch(ownedByA::contains));
+                }
+                assertTrue(a.refresh());
+                assertEquals(ownedByA, LISTINGS.stream().filter(a::owns).toList());
+            }
+            assertTrue(a.refresh());
+            assertEquals(List.of("a"), a.getMembers());
+            assertTrue(LISTINGS.stream().allMatch(a::owns));
+        }
+    }
+
+    @Test
+    void rejectsASecondMemberWithTheSameId() throws IOException {
+        try (ShardCoordinator a = ShardCoordinator.join(directory, "a")) {
+            assertThrows(IOException.class, () -> ShardCoordinator.join(directory, "a"));
+            a.refresh();
+            assertEquals(List.of("a"), a.getMembers());
+        }
+    }
+
+    @Test
+    void grantsALeaseToOneMemberAtATime() throws IOException {
+        try (ShardCoordinator a = ShardCoordinator.join(directory, "a");
+             ShardCoordinator b = ShardCoordinator.join(directory, "b")) {
+            String listing = LISTINGS.getFirst();
+            try (ShardCoordinator.Lease lease = a.tryLease(listing)) {
+                assertNotNull(lease);
+                assertNull(b.tryLease(listing));
+                assertNull(a.tryLease(listing));
+                assertNull(b.tryLease(listing));
+            }
+            try (ShardCoordinator.Lease lease = b.tryLease(listing)) {
+                assertNotNull(lease);
+                assertNull(a.tryLease(listing));
+            }
+        }
+    }
+
+    @Test
+    void tellsWhetherALeaseHasBeenHandedOver() throws IOException {
+        try (ShardCoordinator a = ShardCoordinator.join(directory, "a");
+             ShardCoordinator b = ShardCoordinator.join(directory, "b")) {
+            String listing = LISTINGS.getFirst();
+            assertTrue(handedOver(a, listing));
+            assertFalse(handedOver(a, listing));
+            assertTrue(handedOver(b, listing));
+            assertFalse(handedOver(b, listing));
+            assertTrue(handedOver(a, listing));
+            assertTrue(handedOver(b, LISTINGS.getLast()));
+        }
+    }
+
+    private static boolean handedOver(ShardCoordinator member, String listing) throws IOException {
+        try (ShardCoordinator.Lease lease = member.tryLease(listing)) {
+            assertNotNull(lease);
+            return lease.isHandedOver();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP server serving the pages of a shop from memory.
+ * <p>
+ * Every page carries an {@code ETag} derived from its content and is answered with {@code 304 Not Modified} if it
+ * is requested with a matching {@code If-None-Match} header. Unknown paths are answered with {@code 404 Not Found}.
+ * Requests are handled concurrently, so a request that is delayed (see {@link #delay(String, Duration, int)}) does not
+ * hold up the others.
+ * </p>
+ */
+final class ShopServer implements AutoCloseable {
+    private final HttpServer server;
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final Map<String, Delay> delays = new ConcurrentHashMap<>();
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+
+    ShopServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    /**
+     * Serves the given HTML at the given path from now on.
+     *
+     * @param path The path of the page, starting with a slash.
+     * @param html The content of the page.
+     */
+    void page(String path, String html) {
+        pages.put(path, html);
+    }
+
+    /**
+     * Answers the next requests for the given path only after the given delay, e.g. to make a request slow enough to be
+     * hedged or to miss its deadline.
+     *
+     * @param path     The path of the page.
+     * @param delay    The time to wait before answering.
+     * @param requests The number of requests to be delayed.
+     */
+    void delay(String path, Duration delay, int requests) {
+        delays.put(path, new Delay(delay, new AtomicInteger(requests)));
+    }
+
+    /**
+     * Returns the absolute URL of the given path.
+     *
+     * @param path The path, starting with a slash.
+     * @return The URL on this server.
+     */
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Returns the number of requests for the given path, including those answered with {@code 304 Not Modified}.
+     *
+     * @param path The path of the page.
+     * @return The number of requests.
+     */
+    int requests(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 304 Not Modified}.
+     *
+     * @return The number of unmodified responses.
+     */
+    int notModified() {
+        return notModified.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getRawPath();
+            if (exchange.getRequestURI().getRawQuery() != null) {
+                path += "?" + exchange.getRequestURI().getRawQuery();
+            }
+            requests.computeIfAbsent(path, ignored -> new AtomicInteger()).incrementAndGet();
+            Delay delay = delays.get(path);
+            if (delay != null && delay.requests().getAndDecrement() > 0) {
+                try {
+                    Thread.sleep(delay.time());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            String html = pages.get(path);
+            if (html == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String eTag = "\"" + Integer.toHexString(html.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = html.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    /**
+     * The delay of the next requests for a path.
+     *
+     * @param time     The time to wait before answering.
+     * @param requests The number of requests still to be delayed.
+     */
+    private record Delay(Duration time, AtomicInteger requests) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.bartholomaeuss.shopstockalert;
+
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmtpNotifierTest {
+    private static final Notification NOTIFICATION =
+        new Notification("from@example.com", "to@example.com", "Shop A", "New: /a");
+
+    private SmtpSimulator server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new SmtpSimulator();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void sendsEveryMessageOverTheSameConnection() throws MessagingException, InterruptedException {
+        try (SmtpNotifier notifier = notifier(1, 100)) {
+            for (int i = 0; i < 5; i++) {
+                notifier.send(NOTIFICATION);
+            }
+            assertEquals(1, notifier.getConnects());
+            assertEquals(5, notifier.getMessages());
+        }
+        assertEquals(1, server.getConnections());
+        assertEquals(5, server.getMessages());
+        assertEquals(5, server.getRecipients());
+    }
+
+    @Test
+    void replacesAConnectionOnceItHasSentEnoughMessages() throws MessagingException, InterruptedException {
+        try (SmtpNotifier notifier = notifier(1, 2)) {
+            for (int i = 0; i < 5; i++) {
+                notifier.send(NOTIFICATION);
+            }
+            assertEquals(3, notifier.getConnects());
+        }
+        assertEquals(3, server.getConnections());
+        assertEquals(5, server.getMessages());
+    }
+
+    @Test
+    void fansOutConcurrentMessagesOverThePool() throws Exception {
+        ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+        try (SmtpNotifier notifier = notifier(2, 100); callers) {
+            List<Future<Void>> sent = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                sent.add(callers.submit(() -> {
+                    notifier.send(NOTIFICATION);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : sent) {
+                future.get();
+            }
+            assertTrue(notifier.getConnects() <= 2, "Opened " + notifier.getConnects() + " connections");
+            assertEquals(20, notifier.getMessages());
+        }
+        assertEquals(20, server.getMessages());
+    }
+
+    @Test
+    void failsOnceTheServerIsGone() throws MessagingException, InterruptedException {
+        try (SmtpNotifier notifier = notifier(1, 100)) {
+            notifier.send(NOTIFICATION);
+            server.close();
+            assertThrows(MessagingException.class, () -> notifier.send(NOTIFICATION));
+            assertThrows(MessagingException.class, () -> notifier.send(NOTIFICATION));
+            assertEquals(1, notifier.getMessages());
+        }
+    }
+
+    private SmtpNotifier notifier(int poolSize, int messagesPerConnection) {
+        return new SmtpNotifier(server.getHost(), server.getPort(), null, null, false, poolSize,
+            messagesPerConnection);
+    }
+}
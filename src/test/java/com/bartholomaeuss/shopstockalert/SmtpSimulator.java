@@ -0,0 +1,174 @@
+package com.bartholomaeuss.shopstockalert;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates a mail server by speaking a minimal subset of SMTP on the loopback interface.
+ * <p>
+ * The simulator accepts every sender and recipient without authentication or {@code STARTTLS} and discards the
+ * messages, counting connections, messages and recipients instead, so an {@link SmtpNotifier} can be pointed at it
+ * with {@code startTls} disabled and without a user. Every reply can be delayed by a fixed <b>latency</b>, which stands
+ * in for the round trip to a remote server that makes opening a connection expensive.
+ * </p>
+ */
+public class SmtpSimulator implements Closeable {
+    private final ServerSocket server;
+    private final Duration latency;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder recipients = new LongAdder();
+
+    /**
+     * Starts a simulator on an ephemeral loopback port that replies instantly.
+     *
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public SmtpSimulator() throws IOException {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * Starts a simulator on an ephemeral loopback port.
+     *
+     * @param latency The delay before every reply.
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public SmtpSimulator(Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        connections.execute(this::accept);
+    }
+
+    /**
+     * Returns the address the simulator listens on.
+     *
+     * @return The loopback address as a string.
+     */
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Returns the port the simulator listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the number of connections that have been accepted.
+     *
+     * @return The number of connections.
+     */
+    public long getConnections() {
+        return accepted.sum();
+    }
+
+    /**
+     * Returns the number of messages that have been received.
+     *
+     * @return The number of messages.
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * Returns the number of recipients the received messages have been addressed to.
+     *
+     * @return The number of recipients.
+     */
+    public long getRecipients() {
+        return recipients.sum();
+    }
+
+    /**
+     * Stops the server and drops all open connections.
+     */
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // the server is stopped anyway
+        }
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                accepted.increment();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Answers the commands of a single connection until the client quits or disconnects.
+     *
+     * @param socket The socket of the connection.
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                 StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 localhost ESMTP simulator");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-8BITMIME\r\n250 SIZE 10485760");
+                    case "HELO", "MAIL", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "RCPT" -> {
+                        recipients.increment();
+                        reply(out, "250 OK");
+                    }
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // the message is discarded
+                        }
+                        messages.increment();
+                        reply(out, "250 OK queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // the client has disconnected or the simulator is stopped
+        }
+    }
+
+    private void reply(OutputStream out, String reply) throws IOException, InterruptedException {
+        if (!latency.isZero()) {
+            Thread.sleep(latency);
+        }
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
@@ -0,0 +1,97 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+    private static final Item FLAT = new Item("/flat/1", "Flat in Rath", 120_000, Item.Availability.IN_STOCK,
+        "/flat/1");
+    private static final Item SHOE = new Item("sku-42", "Shoe ÄÖÜ", Item.NO_PRICE, Item.Availability.OUT_OF_STOCK,
+        "/shoe?id=42");
+    private static final Item LAMP = Item.of("/lamp");
+
+    @Test
+    void encodesAndDecodesItems() throws IOException {
+        Snapshot snapshot = Snapshot.of(List.of(FLAT, SHOE, LAMP));
+        Snapshot decoded = Snapshot.decode(snapshot.encode());
+        assertEquals(List.of(FLAT, SHOE, LAMP), decoded.getItems());
+        assertEquals(List.of(), Snapshot.decode(Snapshot.EMPTY.encode()).getItems());
+    }
+
+    @Test
+    void keepsTheFirstItemOfAnId() {
+        Item cheaper = new Item(FLAT.id(), FLAT.title(), 100_000, FLAT.availability(), FLAT.href());
+        assertEquals(List.of(FLAT), Snapshot.of(List.of(FLAT, cheaper)).getItems());
+    }
+
+    @Test
+    void rejectsMalformedBytes() {
+        byte[] encoded = Snapshot.of(List.of(FLAT, SHOE)).encode();
+        assertThrows(IOException.class, () -> Snapshot.decode("not a snapshot".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IOException.class, () -> Snapshot.decode(Arrays.copyOf(encoded, encoded.length - 3)));
+        assertThrows(IOException.class, () -> Snapshot.decode(new byte[0]));
+    }
+
+    @Test
+    void decodesSnapshotsStoredWithoutPages() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{'S', 'S', 'A', '1', 1, 1});
+        byte[] href = "/flat/1".getBytes(StandardCharsets.UTF_8);
+        out.write(href.length);
+        out.writeBytes(href);
+        out.write(0);
+        out.write(0);
+        Snapshot legacy = Snapshot.decode(out.toByteArray());
+        assertEquals(List.of(Item.of("/flat/1")), legacy.getItems());
+
+        Snapshot partial = legacy.with(Snapshot.of(Map.of("https://shop.example/list", List.of())));
+        assertEquals(List.of(Item.of("/flat/1")), partial.getItems());
+    }
+
+    @Test
+    void reportsTheChangesOfItems() {
+        Item cheaperFlat = new Item(FLAT.id(), FLAT.title(), 110_000, Item.Availability.IN_STOCK, FLAT.href());
+        Item shoeInStock = new Item(SHOE.id(), SHOE.title(), SHOE.price(), Item.Availability.IN_STOCK, SHOE.href());
+        Item chair = Item.of("/chair");
+        List<Delta> deltas = Snapshot.of(List.of(FLAT, SHOE, LAMP))
+            .diff(Snapshot.of(List.of(chair, cheaperFlat, shoeInStock)));
+        assertEquals(List.of(
+            new Delta(Delta.Type.NEW, chair, null),
+            new Delta(Delta.Type.PRICE_DROP, cheaperFlat, FLAT),
+            new Delta(Delta.Type.BACK_IN_STOCK, shoeInStock, SHOE),
+            new Delta(Delta.Type.REMOVED, LAMP, LAMP)), deltas);
+        assertEquals(List.of(), Snapshot.of(List.of(FLAT)).diff(Snapshot.of(List.of(FLAT))));
+    }
+
+    @Test
+    void keepsOnlyTheItemsOfPagesThatHaveNotBeenEvaluated() throws IOException {
+        Map<String, List<Item>> full = new LinkedHashMap<>();
+        full.put("page1", List.of(FLAT));
+        full.put("page2", List.of(SHOE));
+        full.put("page3", List.of(LAMP));
+        Snapshot previous = Snapshot.decode(Snapshot.of(full).encode());
+
+        Item chair = Item.of("/chair");
+        Map<String, List<Item>> partial = new LinkedHashMap<>();
+        partial.put("page1", List.of(chair));
+        partial.put("page3", List.of(LAMP));
+        Snapshot current = previous.with(Snapshot.of(partial));
+
+        assertEquals(List.of(SHOE, LAMP, chair), current.getItems());
+        assertEquals(List.of(new Delta(Delta.Type.NEW, chair, null), new Delta(Delta.Type.REMOVED, FLAT, FLAT)),
+            previous.diff(current));
+
+        Snapshot next = Snapshot.decode(current.encode()).with(Snapshot.of(Map.of("page2", List.of())));
+        assertEquals(List.of(LAMP, chair), next.getItems());
+    }
+}
@@ -0,0 +1,99 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubscriptionIndexTest {
+    private static final Rule RULE = Rule.builder("shop", "li.item", List.of("flat"))
+        .text("h2")
+        .exclude(List.of("sold out"))
+        .build();
+
+    private ShopServer shop;
+
+    @BeforeAll
+    static void disableLimits() {
+        HostRateLimiter.setLimit(0, 1);
+    }
+
+    @BeforeEach
+    void startShop() throws IOException {
+        shop = new ShopServer();
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+    }
+
+    @Test
+    void matchesEverySubscriberWithItsOwnKeywords() {
+        SubscriptionIndex index = new SubscriptionIndex(List.of(
+            target(Map.of()),
+            target(Map.of("keywords", "red+shoes,boots")),
+            target(Map.of("keywords", "flat", "exclude", "rath"))), RULE);
+
+        assertEquals(3, index.size());
+        assertEquals(subscribers(0), index.match(text("Flat in Rath")));
+        assertEquals(subscribers(2), index.match(text("Flat in Bilk, sold out")));
+        assertEquals(subscribers(1), index.match(text("Red  shoes and BOOTS")));
+        assertEquals(subscribers(0, 1, 2), index.match(text("Flat with boots")));
+        assertEquals(subscribers(), index.match(text("Boots, sold out")));
+        assertEquals(subscribers(2), index.match(text("Flat with boots, sold out")));
+        assertEquals(subscribers(), index.match(text("Shoes")));
+    }
+
+    @Test
+    void reportsTheItemsOfInterestToEachSubscriberOfAListing() {
+        shop.page("/list", "<html><body><ul>"
+            + item("/flat/1", "Flat in Rath")
+            + item("/flat/2", "Flat in Bilk, sold out")
+            + item("/boots/3", "Red shoes and boots")
+            + item("/flat/4", "Flat with boots")
+            + "</ul></body></html>");
+        SubscriptionIndex index = new SubscriptionIndex(List.of(
+            target(Map.of()),
+            target(Map.of("keywords", "red+shoes,boots")),
+            target(Map.of("keywords", "flat", "exclude", "rath"))), RULE);
+
+        RuleChecker checker = new RuleChecker(RULE, index);
+
+        assertEquals(List.of("/flat/1", "/flat/4"), checker.getSubscriber(0).getHrefs());
+        assertEquals(List.of("/boots/3", "/flat/4"), checker.getSubscriber(1).getHrefs());
+        assertEquals(List.of("/flat/2", "/flat/4"), checker.getSubscriber(2).getHrefs());
+        assertEquals(1, shop.requests("/list"));
+    }
+
+    private Target target(Map<String, String> options) {
+        return new Target("shop", shop.url("/list"), Duration.ofMinutes(5), "from@example.com",
+            List.of("to@example.com"), options);
+    }
+
+    private static List<Element> text(String heading) {
+        return List.of(Jsoup.parseBodyFragment("<h2>" + heading + "</h2>").body());
+    }
+
+    private static BitSet subscribers(int... indices) {
+        BitSet subscribers = new BitSet();
+        for (int index : indices) {
+            subscribers.set(index);
+        }
+        return subscribers;
+    }
+
+    private static String item(String href, String heading) {
+        return "<li class='item'><h2>" + heading + "</h2><a href='" + href + "'>more</a></li>";
+    }
+}
@@ -0,0 +1,40 @@
+package com.bartholomaeuss.shopstockalert;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TargetTest {
+    private static final String URL = "https://shop.example/list";
+
+    @Test
+    void keepsTheKeyOfATargetWithoutOptions() {
+        assertEquals("shop " + URL + " from@example.com a@example.com,b@example.com",
+            target(Map.of(), "a@example.com", "b@example.com").getKey());
+        assertEquals(target(Map.of()).getKey(), target(Map.of("digest", "60", "alerts", "new")).getKey());
+    }
+
+    @Test
+    void distinguishesTargetsFindingDifferentItemsOfTheSameListing() {
+        Target boots = target(Map.of("keywords", "boots"));
+        Target shoes = target(Map.of("keywords", "red+shoes"));
+        Target notBoots = target(Map.of("exclude", "boots"));
+
+        assertEquals(boots.getListingKey(), shoes.getListingKey());
+        assertEquals(boots.getListingKey(), notBoots.getListingKey());
+        assertNotEquals(boots.getKey(), shoes.getKey());
+        assertNotEquals(boots.getKey(), notBoots.getKey());
+        assertNotEquals(target(Map.of()).getKey(), target(Map.of("pages", "3")).getKey());
+        assertNotEquals(target(Map.of()).getKey(), target(Map.of("extraction", "stream")).getKey());
+    }
+
+    private static Target target(Map<String, String> options, String... to) {
+        return new Target("shop", URL, Duration.ofMinutes(5), "from@example.com",
+            to.length == 0 ? List.of("to@example.com") : List.of(to), options);
+    }
+}
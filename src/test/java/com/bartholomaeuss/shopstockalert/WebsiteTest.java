@@ -0,0 +1,133 @@
+package com.bartholomaeuss.shopstockalert;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebsiteTest {
+    private static final Evaluator ITEM = QueryParser.parse("li.item");
+
+    private ShopServer shop;
+
+    @BeforeEach
+    void startShop() throws IOException {
+        FetchCache.setLimit(Duration.ofMinutes(1), 1 << 20);
+        HostRateLimiter.setLimit(0, 1);
+        shop = new ShopServer();
+    }
+
+    @AfterEach
+    void stopShop() {
+        shop.close();
+        FetchCache.setLimit(Duration.ZERO, 0);
+        Website.setDeadline(Duration.ofSeconds(Website.DEFAULT_TIMEOUT_SECONDS), Duration.ZERO);
+    }
+
+    @Test
+    void streamsAWebpageWithoutCachingIt() throws IOException {
+        shop.page("/list", "<html><body><ul><li class='item'>a</li><li class='item'>b</li></ul></body></html>");
+        List<String> items = new ArrayList<>();
+        Website website = new Website(shop.url("/list"), "stream", ITEM, element -> items.add(element.text()));
+
+        assertEquals(List.of("a", "b"), items);
+        assertFalse(website.isNotModified());
+        assertEquals(0, FetchCache.getSize());
+
+        items.clear();
+        assertTrue(new Website(shop.url("/list"), "stream", ITEM, element -> items.add(element.text()))
+            .isNotModified());
+        assertEquals(List.of(), items);
+        assertEquals(2, shop.requests("/list"));
+        assertEquals(1, shop.notModified());
+
+        new Website(shop.url("/list"), "dom");
+        assertTrue(FetchCache.getSize() > 0);
+    }
+
+    @Test
+    void hedgesASlowRequestAndUsesTheFirstResponse() throws IOException {
+        shop.page("/list", "<html><body><ul><li class='item'>a</li></ul></body></html>");
+        shop.delay("/list", Duration.ofSeconds(3), 1);
+        Website.setDeadline(Duration.ofSeconds(10), Duration.ofMillis(100));
+        long hedged = Website.getHedged();
+
+        long start = System.nanoTime();
+        Website website = new Website(shop.url("/list"), "hedged");
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+        assertEquals("a", website.getDOM().select(ITEM).text());
+        assertEquals(hedged + 1, Website.getHedged());
+        assertEquals(2, shop.requests("/list"));
+    }
+
+    @Test
+    void doesNotHedgeARequestWithoutATokenOfItsHost() throws IOException {
+        HostRateLimiter.setLimit(0.001, 1);
+        shop.page("/list", "<html><body><ul><li class='item'>a</li></ul></body></html>");
+        shop.delay("/list", Duration.ofMillis(500), 1);
+        Website.setDeadline(Duration.ofSeconds(10), Duration.ofMillis(100));
+        long hedged = Website.getHedged();
+
+        Website website = new Website(shop.url("/list"), "unhedged");
+
+        assertEquals("a", website.getDOM().select(ITEM).text());
+        assertEquals(hedged, Website.getHedged());
+        assertEquals(1, shop.requests("/list"));
+    }
+
+    @Test
+    void countsARequestThatMissesItsDeadline() {
+        shop.page("/list", "<html><body><ul><li class='item'>a</li></ul></body></html>");
+        shop.delay("/list", Duration.ofSeconds(3), 1);
+        Website.setDeadline(Duration.ofMillis(300), Duration.ZERO);
+        long timedOut = Website.getTimedOut();
+
+        assertThrows(HttpTimeoutException.class, () -> new Website(shop.url("/list"), "deadline"));
+        assertEquals(timedOut + 1, Website.getTimedOut());
+        assertEquals(1, shop.requests("/list"));
+    }
+
+    @Test
+    void cutsOffABodyThatMissesTheDeadline() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (exchange; OutputStream body = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, 0);
+                body.write("<html><body><ul><li class='item'>a</li>".getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                Thread.sleep(2_000);
+                body.write("<li class='item'>b</li></ul></body></html>".getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException | IOException e) {
+                // The client has given up.
+            }
+        });
+        server.start();
+        try {
+            Website.setDeadline(Duration.ofMillis(500), Duration.ZERO);
+            List<Element> items = new ArrayList<>();
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/slow";
+            assertThrows(HttpTimeoutException.class, () -> new Website(url, url, ITEM, items::add));
+            assertTrue(items.size() <= 1);
+        } finally {
+            server.stop(0);
+        }
+    }
+}